@@ -0,0 +1,68 @@
+package com.javaanalysis.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+
+/**
+ * Inputs and outputs shared by the diagram tasks: the source directory (by content and
+ * relative path, so the cache entry is shared between checkouts), the analyzer classpath,
+ * and an output directory that holds nothing but the task's diagrams.
+ */
+public abstract class AbstractDiagramTask extends DefaultTask {
+    @InputDirectory
+    @PathSensitive(PathSensitivity.RELATIVE)
+    @IgnoreEmptyDirectories
+    public abstract DirectoryProperty getSourceDirectory();
+
+    /**
+     * JavaAnalysis and its dependencies, loaded in an isolated class loader
+     */
+    @Classpath
+    public abstract ConfigurableFileCollection getAnalyzerClasspath();
+
+    /**
+     * Time budget per image render in seconds (0 = none)
+     */
+    @Input
+    public abstract Property<Long> getRenderTimeoutSeconds();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDirectory();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations();
+
+    /**
+     * Empties the output directory, so diagrams of removed entry points do not linger, and
+     * returns a queue running work with the analyzer classpath
+     */
+    protected WorkQueue prepare() {
+        getFileSystemOperations().delete(spec -> spec.delete(getOutputDirectory()));
+        getOutputDirectory().get().getAsFile().mkdirs();
+        return getWorkerExecutor().classLoaderIsolation(spec -> spec.getClasspath().from(getAnalyzerClasspath()));
+    }
+
+    protected void configure(DiagramWorkAction.Parameters parameters, String kind, String outputName) {
+        parameters.getKind().set(kind);
+        parameters.getSourceDirectory().set(getSourceDirectory());
+        parameters.getOutputBasePath().set(getOutputDirectory().file(outputName).get().getAsFile().getPath());
+        parameters.getRenderTimeoutMillis().set(getRenderTimeoutSeconds().map(seconds -> seconds * 1000));
+    }
+}
@@ -0,0 +1,15 @@
+package com.javaanalysis.gradle;
+
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Draws the class diagram of the source directory to {@code class-diagram.puml/.png/.svg}
+ */
+@CacheableTask
+public abstract class ClassDiagramTask extends AbstractDiagramTask {
+    @TaskAction
+    public void generate() {
+        prepare().submit(DiagramWorkAction.class, parameters -> configure(parameters, "class", "class-diagram"));
+    }
+}
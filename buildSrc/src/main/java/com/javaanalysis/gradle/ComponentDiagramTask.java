@@ -0,0 +1,17 @@
+package com.javaanalysis.gradle;
+
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Draws the package component diagram of the source directory to
+ * {@code component-diagram.puml/.png/.svg}
+ */
+@CacheableTask
+public abstract class ComponentDiagramTask extends AbstractDiagramTask {
+    @TaskAction
+    public void generate() {
+        prepare().submit(DiagramWorkAction.class,
+                parameters -> configure(parameters, "component", "component-diagram"));
+    }
+}
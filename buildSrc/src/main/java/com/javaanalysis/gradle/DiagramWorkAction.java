@@ -0,0 +1,112 @@
+package com.javaanalysis.gradle;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Generates one diagram in the Gradle process through {@code com.javaanalysis.DiagramPipeline}.
+ *
+ * The action runs in a class loader holding only the analyzer classpath, so JavaParser and
+ * PlantUML never clash with the build's own classes. The pipeline is not on the plugin's
+ * compile classpath and is called reflectively; it changes no global state, which is what
+ * makes running it inside the daemon safe.
+ */
+public abstract class DiagramWorkAction implements WorkAction<DiagramWorkAction.Parameters> {
+    public interface Parameters extends WorkParameters {
+        /** "class", "component" or "sequence" */
+        Property<String> getKind();
+
+        DirectoryProperty getSourceDirectory();
+
+        /** Output path without extension */
+        Property<String> getOutputBasePath();
+
+        Property<Long> getRenderTimeoutMillis();
+
+        Property<String> getClassName();
+
+        Property<String> getMethodName();
+
+        Property<Integer> getDepth();
+
+        Property<Integer> getMaxImplementations();
+
+        /** Sequence compaction budget, see {@code DiagramPipeline.Builder#compact}; unset for none */
+        Property<Integer> getCompact();
+    }
+
+    @Override
+    public void execute() {
+        Parameters parameters = getParameters();
+        String kind = parameters.getKind().get();
+        try {
+            Class<?> pipelineType = Class.forName("com.javaanalysis.DiagramPipeline");
+            Class<?> sinkType = Class.forName("com.javaanalysis.DiagramSink");
+            Path source = parameters.getSourceDirectory().get().getAsFile().toPath();
+
+            Object builder = pipelineType.getMethod("builder", Path.class).invoke(null, source);
+            configure(builder, "renderTimeoutMillis", long.class, parameters.getRenderTimeoutMillis().get());
+            if (kind.equals("sequence")) {
+                configure(builder, "depth", int.class, parameters.getDepth().get());
+                configure(builder, "maxImplementations", int.class, parameters.getMaxImplementations().get());
+                if (parameters.getCompact().isPresent()) {
+                    configure(builder, "compact", int.class, parameters.getCompact().get());
+                }
+            }
+            Object pipeline = builder.getClass().getMethod("build").invoke(builder);
+            try {
+                draw(pipelineType, sinkType, pipeline, kind, parameters);
+            } finally {
+                pipelineType.getMethod("close").invoke(pipeline);
+            }
+        } catch (InvocationTargetException e) {
+            throw new GradleException("Could not generate the " + kind + " diagram "
+                    + parameters.getOutputBasePath().get(), e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new GradleException("The analyzer classpath does not contain a compatible JavaAnalysis", e);
+        }
+    }
+
+    private static void draw(Class<?> pipelineType, Class<?> sinkType, Object pipeline, String kind,
+                             Parameters parameters) throws ReflectiveOperationException {
+        Object sink = Class.forName("com.javaanalysis.FileDiagramSink").getConstructor(String.class)
+                .newInstance(parameters.getOutputBasePath().get());
+        switch (kind) {
+            case "class":
+                pipelineType.getMethod("classDiagram", Map.class, sinkType)
+                        .invoke(pipeline, analyze(pipelineType, pipeline), sink);
+                break;
+            case "component":
+                pipelineType.getMethod("componentDiagram", Map.class, sinkType)
+                        .invoke(pipeline, analyze(pipelineType, pipeline), sink);
+                break;
+            case "sequence":
+                // The model only pays off when calls are fanned out to implementations
+                Object model = parameters.getMaxImplementations().get() > 0 ? analyze(pipelineType, pipeline) : null;
+                pipelineType.getMethod("sequenceDiagram", Map.class, String.class, String.class, sinkType)
+                        .invoke(pipeline, model, parameters.getClassName().get(), parameters.getMethodName().get(),
+                                sink);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown diagram kind: " + kind);
+        }
+    }
+
+    private static Object analyze(Class<?> pipelineType, Object pipeline) throws ReflectiveOperationException {
+        return pipelineType.getMethod("analyze").invoke(pipeline);
+    }
+
+    private static void configure(Object builder, String name, Class<?> type, Object value)
+            throws ReflectiveOperationException {
+        Method method = builder.getClass().getMethod(name, type);
+        method.invoke(builder, value);
+    }
+}
@@ -0,0 +1,39 @@
+package com.javaanalysis.gradle;
+
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+
+/**
+ * The {@code umlDiagrams} block: defaults for the diagram tasks
+ */
+public abstract class DiagramsExtension {
+    /**
+     * Sources to analyze (default {@code src/main/java})
+     */
+    public abstract DirectoryProperty getSourceDirectory();
+
+    /**
+     * Where the tasks write, one subdirectory per task (default {@code build/diagrams})
+     */
+    public abstract DirectoryProperty getOutputDirectory();
+
+    /**
+     * JavaAnalysis and its dependencies (default the {@code umlAnalyzer} configuration)
+     */
+    public abstract ConfigurableFileCollection getAnalyzerClasspath();
+
+    /**
+     * Sequence diagram entry points as {@code <class-name>.<method-name>}
+     */
+    public abstract ListProperty<String> getEntryPoints();
+
+    public abstract Property<Integer> getDepth();
+
+    public abstract Property<Integer> getMaxImplementations();
+
+    public abstract Property<Integer> getCompact();
+
+    public abstract Property<Long> getRenderTimeoutSeconds();
+}
@@ -0,0 +1,70 @@
+package com.javaanalysis.gradle;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.tasks.TaskProvider;
+
+/**
+ * Adds the {@code classDiagram}, {@code componentDiagram} and {@code sequenceDiagram} tasks
+ * and a {@code diagrams} task running all three.
+ *
+ * The tasks declare the source directory and the analyzer classpath as inputs and their
+ * diagrams as outputs, so they are up to date while neither changes and are restored from
+ * the build cache otherwise. They run in the Gradle process through the worker API, so
+ * tasks of different projects (with {@code --parallel}) and the entry points of one
+ * sequence task run in parallel.
+ */
+public class JavaAnalysisPlugin implements Plugin<Project> {
+    private static final String GROUP = "documentation";
+
+    @Override
+    public void apply(Project project) {
+        Configuration analyzer = project.getConfigurations().create("umlAnalyzer", configuration -> {
+            configuration.setDescription("JavaAnalysis and its dependencies, used by the diagram tasks");
+            configuration.setCanBeConsumed(false);
+            configuration.setCanBeResolved(true);
+        });
+
+        DiagramsExtension extension = project.getExtensions().create("umlDiagrams", DiagramsExtension.class);
+        extension.getSourceDirectory().convention(project.getLayout().getProjectDirectory().dir("src/main/java"));
+        extension.getOutputDirectory().convention(project.getLayout().getBuildDirectory().dir("diagrams"));
+        extension.getAnalyzerClasspath().from(analyzer);
+        extension.getDepth().convention(1);
+        extension.getMaxImplementations().convention(0);
+        extension.getRenderTimeoutSeconds().convention(120L);
+
+        project.getTasks().withType(AbstractDiagramTask.class).configureEach(task -> {
+            task.setGroup(GROUP);
+            task.getSourceDirectory().convention(extension.getSourceDirectory());
+            task.getAnalyzerClasspath().from(extension.getAnalyzerClasspath());
+            task.getRenderTimeoutSeconds().convention(extension.getRenderTimeoutSeconds());
+        });
+
+        TaskProvider<ClassDiagramTask> classDiagram = project.getTasks().register("classDiagram",
+                ClassDiagramTask.class, task -> {
+                    task.setDescription("Draws the class diagram of the sources");
+                    task.getOutputDirectory().convention(extension.getOutputDirectory().dir("class"));
+                });
+        TaskProvider<ComponentDiagramTask> componentDiagram = project.getTasks().register("componentDiagram",
+                ComponentDiagramTask.class, task -> {
+                    task.setDescription("Draws the package component diagram of the sources");
+                    task.getOutputDirectory().convention(extension.getOutputDirectory().dir("component"));
+                });
+        TaskProvider<SequenceDiagramTask> sequenceDiagram = project.getTasks().register("sequenceDiagram",
+                SequenceDiagramTask.class, task -> {
+                    task.setDescription("Draws a sequence diagram per umlDiagrams entry point");
+                    task.getOutputDirectory().convention(extension.getOutputDirectory().dir("sequence"));
+                    task.getEntryPoints().convention(extension.getEntryPoints());
+                    task.getDepth().convention(extension.getDepth());
+                    task.getMaxImplementations().convention(extension.getMaxImplementations());
+                    task.getCompact().convention(extension.getCompact());
+                });
+
+        project.getTasks().register("diagrams", task -> {
+            task.setGroup(GROUP);
+            task.setDescription("Draws the class, component and sequence diagrams");
+            task.dependsOn(classDiagram, componentDiagram, sequenceDiagram);
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package com.javaanalysis.gradle;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Draws a sequence diagram per entry point to {@code sequence-<class>-<method>.puml/.png}.
+ * Each entry point is a separate work item, so they are traced in parallel.
+ */
+@CacheableTask
+public abstract class SequenceDiagramTask extends AbstractDiagramTask {
+    /**
+     * Entry points as {@code <class-name>.<method-name>}; the class name may be
+     * package-qualified
+     */
+    @Input
+    public abstract ListProperty<String> getEntryPoints();
+
+    /**
+     * Levels of callees traced (1 to 5)
+     */
+    @Input
+    public abstract Property<Integer> getDepth();
+
+    /**
+     * Implementations an interface call is fanned out to (0 = none)
+     */
+    @Input
+    public abstract Property<Integer> getMaxImplementations();
+
+    /**
+     * Folds repeated calls into loops and collapses callees beyond this many calls (0 =
+     * fold only); unset draws every call
+     */
+    @Input
+    @Optional
+    public abstract Property<Integer> getCompact();
+
+    @TaskAction
+    public void generate() {
+        // Every entry point is checked before the output is emptied or any work is queued
+        List<String[]> entries = new ArrayList<>();
+        for (String entryPoint : getEntryPoints().get()) {
+            int dot = entryPoint.lastIndexOf('.');
+            if (dot <= 0 || dot == entryPoint.length() - 1) {
+                throw new GradleException("Entry point must be <class-name>.<method-name>: " + entryPoint);
+            }
+            String className = entryPoint.substring(0, dot);
+            if (!hasSourceFile(className)) {
+                throw new GradleException("Entry point class not found in "
+                        + getSourceDirectory().get().getAsFile() + ": " + className);
+            }
+            entries.add(new String[]{className, entryPoint.substring(dot + 1)});
+        }
+
+        WorkQueue queue = prepare();
+        for (String[] entry : entries) {
+            String className = entry[0];
+            String methodName = entry[1];
+            queue.submit(DiagramWorkAction.class, parameters -> {
+                configure(parameters, "sequence", "sequence-" + className + "-" + methodName);
+                parameters.getClassName().set(className);
+                parameters.getMethodName().set(methodName);
+                parameters.getDepth().set(getDepth());
+                parameters.getMaxImplementations().set(getMaxImplementations());
+                parameters.getCompact().set(getCompact());
+            });
+        }
+    }
+
+    /**
+     * Whether the source directory declares the class, given as {@code Cat} (in any package)
+     * or {@code com.acme.Cat}; matches the analyzer's lookup of entry classes
+     */
+    private boolean hasSourceFile(String className) {
+        String[] segments = className.split("\\.");
+        int type = 0;
+        while (type < segments.length - 1 && (segments[type].isEmpty() || !Character.isUpperCase(segments[type].charAt(0)))) {
+            type++;
+        }
+        segments[type] = segments[type] + ".java";
+        Path relativePath = Paths.get("", Arrays.copyOfRange(segments, 0, type + 1));
+        try (Stream<Path> files = Files.walk(getSourceDirectory().get().getAsFile().toPath())) {
+            return files.anyMatch(file -> file.endsWith(relativePath) && Files.isRegularFile(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.javaanalysis.gradle;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JavaAnalysisPluginTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void tasksAreRegisteredAndCacheable() {
+        Project project = project();
+
+        Set<String> dependencies = new TreeSet<>();
+        for (Object dependency : project.getTasks().getByName("diagrams").getDependsOn()) {
+            dependencies.add(((TaskProvider<?>) dependency).getName());
+        }
+        assertEquals(Set.of("classDiagram", "componentDiagram", "sequenceDiagram"), dependencies);
+        for (String name : dependencies) {
+            assertEquals("documentation", project.getTasks().getByName(name).getGroup());
+        }
+        for (Class<?> type : List.of(ClassDiagramTask.class, ComponentDiagramTask.class, SequenceDiagramTask.class)) {
+            assertTrue(type.isAnnotationPresent(CacheableTask.class), type.getSimpleName());
+        }
+    }
+
+    @Test
+    void tasksTakeTheExtensionDefaults() {
+        Project project = project();
+        DiagramsExtension extension = project.getExtensions().getByType(DiagramsExtension.class);
+        extension.getSourceDirectory().set(file("sample"));
+        extension.getEntryPoints().set(List.of("Cat.play"));
+        extension.getDepth().set(3);
+
+        SequenceDiagramTask sequence = (SequenceDiagramTask) project.getTasks().getByName("sequenceDiagram");
+        assertEquals(file("sample"), sequence.getSourceDirectory().get().getAsFile());
+        assertEquals(List.of("Cat.play"), sequence.getEntryPoints().get());
+        assertEquals(3, (int) sequence.getDepth().get());
+        assertEquals(0, (int) sequence.getMaxImplementations().get());
+        assertFalse(sequence.getCompact().isPresent());
+        assertEquals(120L, (long) sequence.getRenderTimeoutSeconds().get());
+        assertEquals(file("build/diagrams/sequence"), sequence.getOutputDirectory().get().getAsFile());
+
+        ClassDiagramTask classDiagram = (ClassDiagramTask) project.getTasks().getByName("classDiagram");
+        assertEquals(file("build/diagrams/class"), classDiagram.getOutputDirectory().get().getAsFile());
+    }
+
+    @Test
+    void unknownEntryPointsFailBeforeAnyWork() throws IOException {
+        Project project = project();
+        File sources = file("src/main/java/com/acme");
+        Files.createDirectories(sources.toPath());
+        Files.writeString(new File(sources, "Cat.java").toPath(), "package com.acme; class Cat { void play() { } }");
+        File output = file("build/diagrams/sequence");
+        Files.createDirectories(output.toPath());
+        Files.writeString(new File(output, "sequence-Old-run.puml").toPath(), "@startuml\n@enduml\n");
+
+        SequenceDiagramTask sequence = (SequenceDiagramTask) project.getTasks().getByName("sequenceDiagram");
+        sequence.getEntryPoints().set(List.of("com.acme.Cat.play", "Dog.bark"));
+        GradleException failure = assertThrows(GradleException.class, sequence::generate);
+        assertTrue(failure.getMessage().endsWith(": Dog"), failure.getMessage());
+
+        sequence.getEntryPoints().set(List.of("play"));
+        assertThrows(GradleException.class, sequence::generate);
+        assertTrue(new File(output, "sequence-Old-run.puml").exists(), "outputs must be kept on failure");
+    }
+
+    private File file(String path) {
+        return directory.resolve(path).toFile();
+    }
+
+    private Project project() {
+        Project project = ProjectBuilder.builder().withProjectDir(directory.toFile()).build();
+        project.getPluginManager().apply(JavaAnalysisPlugin.class);
+        return project;
+    }
+}
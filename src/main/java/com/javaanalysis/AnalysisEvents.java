@@ -0,0 +1,177 @@
+package com.javaanalysis;
+
+import jdk.jfr.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Custom Java Flight Recorder events for the analysis and rendering hot paths.
+ *
+ * Events follow the usual JFR pattern: create, {@code begin()}, do the work, then fill in
+ * the fields and {@code commit()} only if {@code shouldCommit()} - so when no recording is
+ * running the cost is an allocation the JIT can eliminate. {@link #startRecording(Path)}
+ * wraps a run in a recording that can be opened in JDK Mission Control.
+ */
+public final class AnalysisEvents {
+    private static final String CATEGORY = "JavaAnalysis";
+
+    private AnalysisEvents() {
+    }
+
+    @Name("com.javaanalysis.FileParsed")
+    @Label("File Parsed")
+    @Category({CATEGORY, "Analysis"})
+    @Description("A source or class file was parsed")
+    @StackTrace(false)
+    public static class FileParsedEvent extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+
+        @Label("Success")
+        public boolean success;
+    }
+
+    @Name("com.javaanalysis.CallResolution")
+    @Label("Call Resolution")
+    @Category({CATEGORY, "Sequence"})
+    @Description("A method call was resolved, or failed to resolve, while tracing a sequence")
+    @StackTrace(false)
+    public static class CallResolutionEvent extends Event {
+        @Label("Caller Class")
+        public String sourceClass;
+
+        @Label("Method")
+        public String methodName;
+
+        @Label("Target Class")
+        public String targetClass;
+
+        @Label("Resolved By")
+        @Description("MODEL or SYMBOL_SOLVER; empty if the call was not resolved")
+        public String tier;
+
+        @Label("Resolved")
+        public boolean resolved;
+    }
+
+    @Name("com.javaanalysis.DiagramRendered")
+    @Label("Diagram Rendered")
+    @Category({CATEGORY, "Rendering"})
+    @Description("PlantUML rendered a diagram image")
+    @StackTrace(false)
+    public static class DiagramRenderedEvent extends Event {
+        @Label("Diagram")
+        public String diagram;
+
+        @Label("Format")
+        public String format;
+
+        @Label("Nodes")
+        public int nodeCount;
+
+        @Label("Edges")
+        public int edgeCount;
+
+        @Label("Layout")
+        public String layout;
+
+        @Label("Timed Out")
+        public boolean timedOut;
+
+        @Label("Success")
+        public boolean success;
+    }
+
+    @Name("com.javaanalysis.CacheAccess")
+    @Label("Cache Access")
+    @Category({CATEGORY, "Cache"})
+    @Description("A lookup in one of the analysis caches")
+    @StackTrace(false)
+    public static class CacheAccessEvent extends Event {
+        @Label("Cache")
+        public String cache;
+
+        @Label("Key")
+        public String key;
+
+        @Label("Hit")
+        public boolean hit;
+    }
+
+    /**
+     * Commits a cache access event; cheap when no recording is running
+     */
+    public static void cacheAccess(String cache, String key, boolean hit) {
+        CacheAccessEvent event = new CacheAccessEvent();
+        if (event.shouldCommit()) {
+            event.cache = cache;
+            event.key = key;
+            event.hit = hit;
+            event.commit();
+        }
+    }
+
+    /**
+     * Ends and commits a render event. Node and edge counts are taken from the PlantUML text,
+     * and only computed when a recording is actually interested in the event.
+     */
+    public static void diagramRendered(DiagramRenderedEvent event, String diagram, String format, String layout,
+                                       boolean timedOut, String plantUMLCode, boolean success) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.diagram = diagram;
+            event.format = format;
+            event.layout = layout;
+            event.timedOut = timedOut;
+            event.success = success;
+            Set<String> participants = new HashSet<>();
+            for (String line : plantUMLCode.split("\n")) {
+                String trimmed = line.trim();
+                if (trimmed.contains("->") || trimmed.contains("..>") || trimmed.contains("<|")
+                        || trimmed.contains("-up-")) {
+                    event.edgeCount++;
+                    // Sequence diagrams declare participants implicitly through their messages
+                    if (trimmed.contains(" -> ")) {
+                        participants.add(trimmed.substring(0, trimmed.indexOf(" -> ")));
+                    }
+                } else if (trimmed.startsWith("class ") || trimmed.startsWith("abstract class ")
+                        || trimmed.startsWith("interface ") || trimmed.startsWith("enum ")
+                        || trimmed.startsWith("component ")) {
+                    event.nodeCount++;
+                }
+            }
+            event.nodeCount += participants.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts a recording with the JDK "profile" settings plus all events of this class,
+     * written to the given file when the recording is stopped or the JVM exits
+     */
+    public static Recording startRecording(Path destination) throws IOException {
+        Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration("profile"));
+        } catch (ParseException e) {
+            throw new IOException("Could not load JFR profile settings", e);
+        }
+        recording.setName("JavaAnalysis");
+        recording.enable(FileParsedEvent.class);
+        recording.enable(CallResolutionEvent.class);
+        recording.enable(DiagramRenderedEvent.class);
+        recording.enable(CacheAccessEvent.class);
+        recording.setToDisk(true);
+        recording.setDestination(destination);
+        recording.start();
+        return recording;
+    }
+}
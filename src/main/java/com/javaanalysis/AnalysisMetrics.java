@@ -0,0 +1,326 @@
+package com.javaanalysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects per-stage timings, counters and allocation figures for one run.
+ *
+ * Stages are timed with {@link #start(String)}; every sample is kept so latency
+ * percentiles can be reported (per-file parse times included). Allocation is measured
+ * per thread with the HotSpot ThreadMXBean extension where available; it cannot be measured
+ * on virtual threads, and a stage that only ran there reports it as unknown. Thread-safe.
+ * A {@link #disabled()} instance records nothing and is the default everywhere.
+ */
+public class AnalysisMetrics {
+    private static final AnalysisMetrics DISABLED = new AnalysisMetrics(false);
+
+    private final boolean enabled;
+    private final Map<String, StageStats> stages = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> heapAfterStage = new ConcurrentHashMap<>();
+
+    public AnalysisMetrics() {
+        this(true);
+    }
+
+    private AnalysisMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns a shared instance that ignores everything
+     */
+    public static AnalysisMetrics disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts timing one occurrence of a stage on the current thread.
+     * Close the returned timer (try-with-resources) to record it.
+     */
+    public Timer start(String stage) {
+        return enabled ? new Timer(this, stage) : Timer.NOOP;
+    }
+
+    public void increment(String counter) {
+        add(counter, 1);
+    }
+
+    public void add(String counter, long delta) {
+        if (enabled) {
+            counters.computeIfAbsent(counter, k -> new LongAdder()).add(delta);
+        }
+    }
+
+    public long getCount(String counter) {
+        LongAdder adder = counters.get(counter);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * Records a stage occurrence that was measured elsewhere
+     *
+     * @param allocatedBytes bytes allocated, or -1 if they could not be measured
+     */
+    public void record(String stage, long nanos, long allocatedBytes) {
+        if (enabled) {
+            stages.computeIfAbsent(stage, StageStats::new).add(nanos, allocatedBytes);
+        }
+    }
+
+    /**
+     * Times a single stage occurrence, capturing wall time and bytes allocated by the current thread
+     */
+    public static class Timer implements AutoCloseable {
+        static final Timer NOOP = new Timer();
+
+        private final AnalysisMetrics metrics;
+        private final String stage;
+        private final long startNanos;
+        private final long startBytes;
+
+        private Timer() {
+            this.metrics = null;
+            this.stage = null;
+            this.startNanos = 0;
+            this.startBytes = 0;
+        }
+
+        private Timer(AnalysisMetrics metrics, String stage) {
+            this.metrics = metrics;
+            this.stage = stage;
+            this.startNanos = System.nanoTime();
+            this.startBytes = currentThreadAllocatedBytes();
+        }
+
+        @Override
+        public void close() {
+            if (metrics == null) {
+                return;
+            }
+            long elapsed = System.nanoTime() - startNanos;
+            long endBytes = startBytes < 0 ? -1 : currentThreadAllocatedBytes();
+            long allocated = endBytes < 0 ? -1 : Math.max(0, endBytes - startBytes);
+            metrics.record(stage, elapsed, allocated);
+            metrics.heapAfterStage.put(stage, usedHeap());
+        }
+    }
+
+    /**
+     * Accumulated samples for one stage
+     */
+    private static class StageStats {
+        private final String name;
+        private long[] samples = new long[16];
+        private int count;
+        private long totalNanos;
+        private long allocatedBytes;
+        private int allocationSamples;
+
+        StageStats(String name) {
+            this.name = name;
+        }
+
+        synchronized void add(long nanos, long bytes) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = nanos;
+            totalNanos += nanos;
+            if (bytes >= 0) {
+                allocatedBytes += bytes;
+                allocationSamples++;
+            }
+        }
+
+        synchronized Snapshot snapshot() {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return new Snapshot(name, count, totalNanos, allocationSamples > 0 ? allocatedBytes : -1, sorted);
+        }
+    }
+
+    /**
+     * Immutable view of a stage's statistics
+     */
+    public static class Snapshot {
+        private final String stage;
+        private final int count;
+        private final long totalNanos;
+        private final long allocatedBytes;
+        private final long[] sortedNanos;
+
+        Snapshot(String stage, int count, long totalNanos, long allocatedBytes, long[] sortedNanos) {
+            this.stage = stage;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.sortedNanos = sortedNanos;
+        }
+
+        public String getStage() { return stage; }
+        public int getCount() { return count; }
+        public long getTotalNanos() { return totalNanos; }
+        /**
+         * Bytes allocated by the occurrences measured on platform threads, or -1 if the
+         * stage only ran where allocation cannot be measured (virtual threads)
+         */
+        public long getAllocatedBytes() { return allocatedBytes; }
+
+        /**
+         * Nearest-rank percentile of the recorded latencies, in nanoseconds
+         */
+        public long percentile(double p) {
+            if (sortedNanos.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(p / 100.0 * sortedNanos.length);
+            return sortedNanos[Math.min(sortedNanos.length, Math.max(1, rank)) - 1];
+        }
+    }
+
+    public List<Snapshot> getStages() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (StageStats stats : stages.values()) {
+            snapshots.add(stats.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Writes all metrics as a JSON document
+     */
+    public void writeJson(Path path) throws IOException {
+        createParent(path);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("{\n  \"stages\": [");
+            boolean first = true;
+            for (Snapshot stage : getStages()) {
+                writer.write(first ? "\n" : ",\n");
+                first = false;
+                writer.write("    {\"stage\": \"" + escapeJson(stage.getStage()) + "\""
+                        + ", \"count\": " + stage.getCount()
+                        + ", \"totalMillis\": " + millis(stage.getTotalNanos())
+                        + ", \"p50Millis\": " + millis(stage.percentile(50))
+                        + ", \"p90Millis\": " + millis(stage.percentile(90))
+                        + ", \"p99Millis\": " + millis(stage.percentile(99))
+                        + ", \"maxMillis\": " + millis(stage.percentile(100))
+                        + ", \"allocatedBytes\": "
+                        + (stage.getAllocatedBytes() < 0 ? "null" : String.valueOf(stage.getAllocatedBytes()))
+                        + ", \"heapUsedAfterBytes\": " + heapAfterStage.getOrDefault(stage.getStage(), 0L)
+                        + "}");
+            }
+            writer.write("\n  ],\n  \"counters\": {");
+            first = true;
+            for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+                writer.write(first ? "\n" : ",\n");
+                first = false;
+                writer.write("    \"" + escapeJson(counter.getKey()) + "\": " + counter.getValue().sum());
+            }
+            writer.write("\n  },\n  \"heapUsedBytes\": " + usedHeap() + "\n}\n");
+        }
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format
+     */
+    public void writePrometheus(Path path) throws IOException {
+        createParent(path);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            List<Snapshot> snapshots = getStages();
+
+            writer.write("# HELP javaanalysis_stage_seconds Latency of analysis and rendering stages.\n");
+            writer.write("# TYPE javaanalysis_stage_seconds summary\n");
+            for (Snapshot stage : snapshots) {
+                String label = "stage=\"" + escapeLabel(stage.getStage()) + "\"";
+                for (double quantile : new double[] {0.5, 0.9, 0.99}) {
+                    writer.write("javaanalysis_stage_seconds{" + label + ",quantile=\"" + quantile + "\"} "
+                            + seconds(stage.percentile(quantile * 100)) + "\n");
+                }
+                writer.write("javaanalysis_stage_seconds_sum{" + label + "} " + seconds(stage.getTotalNanos()) + "\n");
+                writer.write("javaanalysis_stage_seconds_count{" + label + "} " + stage.getCount() + "\n");
+            }
+
+            writer.write("# HELP javaanalysis_stage_allocated_bytes_total Bytes allocated while running a stage.\n");
+            writer.write("# TYPE javaanalysis_stage_allocated_bytes_total counter\n");
+            for (Snapshot stage : snapshots) {
+                if (stage.getAllocatedBytes() >= 0) {
+                    writer.write("javaanalysis_stage_allocated_bytes_total{stage=\"" + escapeLabel(stage.getStage())
+                            + "\"} " + stage.getAllocatedBytes() + "\n");
+                }
+            }
+
+            writer.write("# HELP javaanalysis_events_total Counted analysis events.\n");
+            writer.write("# TYPE javaanalysis_events_total counter\n");
+            for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+                writer.write("javaanalysis_events_total{event=\"" + escapeLabel(counter.getKey()) + "\"} "
+                        + counter.getValue().sum() + "\n");
+            }
+
+            writer.write("# HELP javaanalysis_heap_used_bytes Heap in use when the metrics were written.\n");
+            writer.write("# TYPE javaanalysis_heap_used_bytes gauge\n");
+            writer.write("javaanalysis_heap_used_bytes " + usedHeap() + "\n");
+        }
+    }
+
+    private static void createParent(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1_000_000_000.0);
+    }
+
+    private static String escapeJson(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Bytes allocated by the current thread so far, or -1 where that is not available
+     * (always on virtual threads)
+     */
+    private static long currentThreadAllocatedBytes() {
+        if (Thread.currentThread().isVirtual()) {
+            return -1;
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getCurrentThreadAllocatedBytes();
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,322 @@
+package com.javaanalysis;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ast.CompilationUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Staged analysis pipeline: discover -> read -> parse -> extract -> merge.
+ *
+ * Stages are connected by bounded queues so they overlap and memory stays bounded.
+ * Discovery and file reading are I/O bound and run on virtual threads; parsing is
+ * CPU bound and runs on a fixed pool, each worker owning its own JavaParser
+ * (JavaParser instances are not thread-safe). At most {@code maxLiveAsts}
+ * CompilationUnits exist at any time: a permit is taken before parsing and
+ * released once the classes have been extracted from the AST.
+ */
+public class AnalysisPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisPipeline.class);
+
+    private static final Path END_OF_PATHS = Path.of("");
+    private static final SourceFile END_OF_SOURCES = new SourceFile(END_OF_PATHS, new byte[0]);
+    private static final ParsedUnit END_OF_UNITS = new ParsedUnit(END_OF_PATHS, null);
+
+    private final int parseThreads;
+    private final int maxLiveAsts;
+    private final int maxPendingReads;
+    private final Supplier<JavaParser> parserFactory;
+    private final Function<CompilationUnit, List<ClassInfo>> extractor;
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+
+    /**
+     * A file whose content has been read but not yet parsed
+     */
+    private static final class SourceFile {
+        final Path path;
+        final byte[] content;
+
+        SourceFile(Path path, byte[] content) {
+            this.path = path;
+            this.content = content;
+        }
+    }
+
+    /**
+     * A parsed AST waiting for class extraction
+     */
+    private static final class ParsedUnit {
+        final Path path;
+        final CompilationUnit unit;
+
+        ParsedUnit(Path path, CompilationUnit unit) {
+            this.path = path;
+            this.unit = unit;
+        }
+    }
+
+    public AnalysisPipeline(Supplier<JavaParser> parserFactory,
+                            Function<CompilationUnit, List<ClassInfo>> extractor) {
+        this(parserFactory, extractor, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * @param parseThreads size of the CPU-bound parsing pool
+     * @param maxLiveAsts maximum number of ASTs alive at once (backpressure bound)
+     */
+    public AnalysisPipeline(Supplier<JavaParser> parserFactory,
+                            Function<CompilationUnit, List<ClassInfo>> extractor,
+                            int parseThreads, int maxLiveAsts) {
+        if (parseThreads < 1 || maxLiveAsts < 1) {
+            throw new IllegalArgumentException("parseThreads and maxLiveAsts must be positive");
+        }
+        this.parserFactory = parserFactory;
+        this.extractor = extractor;
+        this.parseThreads = parseThreads;
+        this.maxLiveAsts = maxLiveAsts;
+        this.maxPendingReads = Math.max(16, maxLiveAsts * 4);
+    }
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs the pipeline over all .java files under the root directory.
+     * Each extracted ClassInfo is handed to the sink as soon as its file is done;
+     * the sink is only ever called from the single merge thread.
+     * Returns once every stage has drained. If the calling thread is interrupted, every
+     * stage is stopped and joined before the InterruptedException is rethrown.
+     */
+    public void run(Path root, Consumer<ClassInfo> sink) throws IOException, InterruptedException {
+        BlockingQueue<Path> pathQueue = new ArrayBlockingQueue<>(maxPendingReads);
+        BlockingQueue<SourceFile> sourceQueue = new ArrayBlockingQueue<>(maxPendingReads);
+        BlockingQueue<ParsedUnit> unitQueue = new ArrayBlockingQueue<>(maxLiveAsts);
+        Semaphore astPermits = new Semaphore(maxLiveAsts);
+        AtomicInteger parseWorkersLeft = new AtomicInteger(parseThreads);
+        AtomicBoolean aborted = new AtomicBoolean();
+        CompletableFuture<IOException> walkFailure = new CompletableFuture<>();
+
+        // Stage 1: discover
+        Thread walker = Thread.ofVirtual().name("pipeline-walk").start(() -> {
+            int found = 0;
+            try (AnalysisMetrics.Timer timer = metrics.start("walk");
+                 Stream<Path> paths = Files.walk(root)) {
+                for (Path path : (Iterable<Path>) paths::iterator) {
+                    if (Files.isRegularFile(path) && path.toString().endsWith(".java")) {
+                        pathQueue.put(path);
+                        found++;
+                    }
+                }
+                walkFailure.complete(null);
+            } catch (IOException e) {
+                walkFailure.complete(e);
+            } catch (UncheckedIOException e) {
+                walkFailure.complete(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                walkFailure.complete(null);
+            } finally {
+                logger.info("Found {} Java files", found);
+                metrics.add("files.found", found);
+                putQuietly(pathQueue, END_OF_PATHS, aborted);
+            }
+        });
+
+        // Stage 2: read (one virtual thread per file, bounded by pending-read permits)
+        Thread reader = Thread.ofVirtual().name("pipeline-read").start(() -> {
+            Semaphore readPermits = new Semaphore(maxPendingReads);
+            ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+            try {
+                while (true) {
+                    Path path = pathQueue.take();
+                    if (path == END_OF_PATHS) {
+                        break;
+                    }
+                    readPermits.acquire();
+                    readers.submit(() -> {
+                        try {
+                            byte[] content;
+                            try (AnalysisMetrics.Timer timer = metrics.start("read")) {
+                                content = Files.readAllBytes(path);
+                            }
+                            metrics.add("bytes.read", content.length);
+                            sourceQueue.put(new SourceFile(path, content));
+                        } catch (IOException e) {
+                            logger.error("Error reading file: {}", path, e);
+                            metrics.increment("files.failed");
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            readPermits.release();
+                        }
+                    });
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // Nobody drains the source queue after an abort, so stop reads blocked on it
+                if (aborted.get()) {
+                    readers.shutdownNow();
+                }
+                readers.close();
+                for (int i = 0; i < parseThreads; i++) {
+                    putQuietly(sourceQueue, END_OF_SOURCES, aborted);
+                }
+            }
+        });
+
+        // Stage 3: parse (fixed pool, one parser per worker)
+        Thread[] parsers = new Thread[parseThreads];
+        for (int i = 0; i < parseThreads; i++) {
+            parsers[i] = Thread.ofPlatform().name("pipeline-parse-" + i).daemon().start(() -> {
+                JavaParser javaParser = parserFactory.get();
+                try {
+                    while (true) {
+                        SourceFile source = sourceQueue.take();
+                        if (source == END_OF_SOURCES) {
+                            break;
+                        }
+                        astPermits.acquire();
+                        CompilationUnit unit = parse(javaParser, source);
+                        if (unit == null) {
+                            astPermits.release();
+                            continue;
+                        }
+                        unitQueue.put(new ParsedUnit(source.path, unit));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (parseWorkersLeft.decrementAndGet() == 0) {
+                        putQuietly(unitQueue, END_OF_UNITS, aborted);
+                    }
+                }
+            });
+        }
+
+        // Stage 4 + 5: extract and merge on the calling thread
+        try {
+            while (true) {
+                ParsedUnit parsed = unitQueue.take();
+                if (parsed == END_OF_UNITS) {
+                    break;
+                }
+                try {
+                    List<ClassInfo> classes;
+                    try (AnalysisMetrics.Timer timer = metrics.start("extract")) {
+                        classes = extractor.apply(parsed.unit);
+                    }
+                    metrics.add("classes.extracted", classes.size());
+                    for (ClassInfo classInfo : classes) {
+                        sink.accept(classInfo);
+                    }
+                } catch (RuntimeException e) {
+                    logger.error("Error analyzing file: {}", parsed.path, e);
+                    metrics.increment("files.failed");
+                } finally {
+                    astPermits.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            aborted.set(true);
+            walker.interrupt();
+            reader.interrupt();
+            for (Thread parser : parsers) {
+                parser.interrupt();
+            }
+            joinStages(walker, reader, parsers);
+            throw e;
+        }
+
+        joinStages(walker, reader, parsers);
+
+        IOException failure = walkFailure.getNow(null);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void joinStages(Thread walker, Thread reader, Thread[] parsers) throws InterruptedException {
+        walker.join();
+        reader.join();
+        for (Thread parser : parsers) {
+            parser.join();
+        }
+    }
+
+    /**
+     * Parses one file, returning null if it could not be parsed
+     */
+    private CompilationUnit parse(JavaParser javaParser, SourceFile source) {
+        logger.debug("Analyzing file: {}", source.path);
+        AnalysisEvents.FileParsedEvent event = new AnalysisEvents.FileParsedEvent();
+        event.begin();
+        boolean success = false;
+        try {
+            ParseResult<CompilationUnit> parseResult;
+            try (AnalysisMetrics.Timer timer = metrics.start("parse")) {
+                parseResult = javaParser.parse(new String(source.content, StandardCharsets.UTF_8));
+            }
+
+            if (!parseResult.isSuccessful()) {
+                logger.warn("Failed to parse file: {}", source.path);
+                parseResult.getProblems().forEach(problem ->
+                        logger.warn("Parse problem: {}", problem.getMessage()));
+                metrics.increment("files.failed");
+                return null;
+            }
+            metrics.increment("files.parsed");
+            success = true;
+            return parseResult.getResult().orElse(null);
+        } catch (RuntimeException e) {
+            logger.error("Error analyzing file: {}", source.path, e);
+            metrics.increment("files.failed");
+            return null;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.path = source.path.toString();
+                event.bytes = source.content.length;
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Delivers an end-of-stream marker, even if the current thread was interrupted.
+     * Gives up once the pipeline has been aborted, since nobody is draining the queue.
+     */
+    private static <T> void putQuietly(BlockingQueue<T> queue, T item, AtomicBoolean aborted) {
+        boolean interrupted = false;
+        while (!aborted.get()) {
+            try {
+                if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.javaanalysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Package and class architecture metrics computed by {@link ComponentAnalyzer#computeMetrics}.
+ *
+ * Package metrics follow Robert C. Martin's definitions: afferent coupling (Ca, classes
+ * outside the package that depend on it), efferent coupling (Ce, classes inside that depend
+ * on other packages), instability I = Ce / (Ca + Ce), abstractness A = abstract types / all
+ * types and distance from the main sequence D = |A + I - 1|.
+ */
+public class ArchitectureReport {
+    private final Map<String, PackageMetrics> packages;
+    private final Map<String, ClassMetrics> classes;
+
+    public ArchitectureReport(Map<String, PackageMetrics> packages, Map<String, ClassMetrics> classes) {
+        this.packages = Collections.unmodifiableMap(new TreeMap<>(packages));
+        this.classes = Collections.unmodifiableMap(new TreeMap<>(classes));
+    }
+
+    /**
+     * Metrics of one package (component)
+     */
+    public static class PackageMetrics {
+        private final String packageName;
+        private final int classCount;
+        private final int abstractCount;
+        private final int afferentCoupling;
+        private final int efferentCoupling;
+
+        public PackageMetrics(String packageName, int classCount, int abstractCount,
+                              int afferentCoupling, int efferentCoupling) {
+            this.packageName = packageName;
+            this.classCount = classCount;
+            this.abstractCount = abstractCount;
+            this.afferentCoupling = afferentCoupling;
+            this.efferentCoupling = efferentCoupling;
+        }
+
+        public String getPackageName() { return packageName; }
+        public int getClassCount() { return classCount; }
+        public int getAbstractCount() { return abstractCount; }
+        public int getAfferentCoupling() { return afferentCoupling; }
+        public int getEfferentCoupling() { return efferentCoupling; }
+
+        public double getInstability() {
+            int total = afferentCoupling + efferentCoupling;
+            return total == 0 ? 0.0 : (double) efferentCoupling / total;
+        }
+
+        public double getAbstractness() {
+            return classCount == 0 ? 0.0 : (double) abstractCount / classCount;
+        }
+
+        public double getDistance() {
+            return Math.abs(getAbstractness() + getInstability() - 1.0);
+        }
+    }
+
+    /**
+     * Metrics of one class
+     */
+    public static class ClassMetrics {
+        private final String className;
+        private final String packageName;
+        private final int depthOfInheritance;
+        private final int fanIn;
+        private final int fanOut;
+
+        public ClassMetrics(String className, String packageName, int depthOfInheritance, int fanIn, int fanOut) {
+            this.className = className;
+            this.packageName = packageName;
+            this.depthOfInheritance = depthOfInheritance;
+            this.fanIn = fanIn;
+            this.fanOut = fanOut;
+        }
+
+        public String getClassName() { return className; }
+        public String getPackageName() { return packageName; }
+        public int getDepthOfInheritance() { return depthOfInheritance; }
+        public int getFanIn() { return fanIn; }
+        public int getFanOut() { return fanOut; }
+    }
+
+    public Map<String, PackageMetrics> getPackages() {
+        return packages;
+    }
+
+    public Map<String, ClassMetrics> getClasses() {
+        return classes;
+    }
+
+    /**
+     * Writes {@code <basePath>-packages.csv} and {@code <basePath>-classes.csv}
+     */
+    public void writeCsv(String basePath) throws IOException {
+        try (BufferedWriter writer = newWriter(basePath + "-packages.csv")) {
+            writer.write("package,classes,abstract,ca,ce,instability,abstractness,distance\n");
+            for (PackageMetrics p : packages.values()) {
+                writer.write(csv(p.getPackageName()) + "," + p.getClassCount() + "," + p.getAbstractCount() + ","
+                        + p.getAfferentCoupling() + "," + p.getEfferentCoupling() + ","
+                        + format(p.getInstability()) + "," + format(p.getAbstractness()) + ","
+                        + format(p.getDistance()) + "\n");
+            }
+        }
+        try (BufferedWriter writer = newWriter(basePath + "-classes.csv")) {
+            writer.write("class,package,dit,fan_in,fan_out\n");
+            for (ClassMetrics c : classes.values()) {
+                writer.write(csv(c.getClassName()) + "," + csv(c.getPackageName()) + ","
+                        + c.getDepthOfInheritance() + "," + c.getFanIn() + "," + c.getFanOut() + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes {@code <basePath>.json} with both package and class metrics
+     */
+    public void writeJson(String basePath) throws IOException {
+        try (BufferedWriter writer = newWriter(basePath + ".json")) {
+            writer.write("{\n  \"packages\": [");
+            boolean first = true;
+            for (PackageMetrics p : packages.values()) {
+                writer.write(first ? "\n" : ",\n");
+                first = false;
+                writer.write("    {\"package\": " + json(p.getPackageName())
+                        + ", \"classes\": " + p.getClassCount()
+                        + ", \"abstract\": " + p.getAbstractCount()
+                        + ", \"ca\": " + p.getAfferentCoupling()
+                        + ", \"ce\": " + p.getEfferentCoupling()
+                        + ", \"instability\": " + format(p.getInstability())
+                        + ", \"abstractness\": " + format(p.getAbstractness())
+                        + ", \"distance\": " + format(p.getDistance()) + "}");
+            }
+            writer.write("\n  ],\n  \"classes\": [");
+            first = true;
+            for (ClassMetrics c : classes.values()) {
+                writer.write(first ? "\n" : ",\n");
+                first = false;
+                writer.write("    {\"class\": " + json(c.getClassName())
+                        + ", \"package\": " + json(c.getPackageName())
+                        + ", \"dit\": " + c.getDepthOfInheritance()
+                        + ", \"fanIn\": " + c.getFanIn()
+                        + ", \"fanOut\": " + c.getFanOut() + "}");
+            }
+            writer.write("\n  ]\n}\n");
+        }
+    }
+
+    private static BufferedWriter newWriter(String path) throws IOException {
+        Path file = Path.of(path).toAbsolutePath();
+        Files.createDirectories(file.getParent());
+        return Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String csv(String value) {
+        if (value.contains(",") || value.contains("\"")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    private static String json(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,701 @@
+package com.javaanalysis;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.resolution.declarations.ResolvedMethodDeclaration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Resolves method calls for sequence diagrams in tiers, cheapest first.
+ *
+ * The model tier works on declared types only: calls on {@code this}/{@code super}, on
+ * locals, parameters and fields, on {@code new Foo()}, static calls on a class name and
+ * statically imported methods are looked up in the class model, following the superclass
+ * chain. A simple type name is looked up the way the compiler would: through the file's
+ * single-type imports, its own package and its on-demand imports, so a model class named
+ * {@code List} does not capture calls on an imported {@code java.util.List} (see
+ * {@link #modelClass}). It answers only when the answer is unambiguous (one candidate
+ * signature for the name and argument count, and the whole superclass chain inside the
+ * model); anything else falls through to the JavaParser symbol solver. Both tiers report
+ * return types without package qualifiers ({@code List<Item>}).
+ *
+ * Calls the symbol solver could not resolve go into a negative cache, so the same failing
+ * call never pays for the exception twice. When the solver cannot resolve the scope's type
+ * itself, no call on that type can resolve, and the failure is keyed by the type (see
+ * {@link #typeKey}) and shared by every caller; any other failure may depend on the
+ * arguments and is keyed by the call site only (see {@link #siteKey}).
+ *
+ * Without an explicit model, classes are parsed on demand from the source root (files are
+ * indexed by name on first use). Thread-safe.
+ */
+public class CallResolver {
+    private static final Logger logger = LoggerFactory.getLogger(CallResolver.class);
+    private static final Pattern PACKAGE_QUALIFIER = Pattern.compile("(?<![\\w$.])(?:[a-z_][\\w$]*\\.)+(?=[A-Z_$])");
+
+    private final Path sourceRoot;
+    private final JavaSourceAnalyzer extractor = new JavaSourceAnalyzer();
+    private final Set<String> unresolvable = ConcurrentHashMap.newKeySet();
+    private final Map<String, List<ClassInfo>> classesByName = new ConcurrentHashMap<>();
+    private volatile Map<String, List<Path>> filesByName;
+    private boolean modelComplete;
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+
+    /**
+     * How a call was resolved
+     */
+    public enum Tier {
+        /** From declared types in the class model */
+        MODEL,
+        /** By the JavaParser symbol solver */
+        SYMBOL_SOLVER
+    }
+
+    /**
+     * A resolved call: the class declaring the method, its name and return type
+     */
+    public static class Resolution {
+        private final String targetClass;
+        private final String qualifiedTargetClass;
+        private final String methodName;
+        private final String returnType;
+        private final Tier tier;
+
+        Resolution(String targetClass, String qualifiedTargetClass, String methodName, String returnType, Tier tier) {
+            this.targetClass = targetClass;
+            this.qualifiedTargetClass = qualifiedTargetClass;
+            this.methodName = methodName;
+            this.returnType = returnType;
+            this.tier = tier;
+        }
+
+        public String getTargetClass() {
+            return targetClass;
+        }
+
+        /**
+         * Fully qualified name of the declaring class
+         */
+        public String getQualifiedTargetClass() {
+            return qualifiedTargetClass;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+
+        public String getReturnType() {
+            return returnType;
+        }
+
+        public Tier getTier() {
+            return tier;
+        }
+    }
+
+    public CallResolver(String sourceRoot) {
+        this.sourceRoot = Paths.get(sourceRoot);
+    }
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Uses an already analyzed model for the model tier instead of parsing classes on demand
+     */
+    public void setClassModel(Map<String, ClassInfo> classInfoMap) {
+        classesByName.clear();
+        for (ClassInfo classInfo : classInfoMap.values()) {
+            classesByName.computeIfAbsent(classInfo.getClassName(), name -> new ArrayList<>()).add(classInfo);
+        }
+        modelComplete = true;
+    }
+
+    /**
+     * Resolves a call made from {@code currentClass}, or returns null if it cannot be resolved
+     */
+    public Resolution resolve(MethodCallExpr call, String currentClass) {
+        return resolve(call, currentClass, new HashSet<>());
+    }
+
+    /**
+     * Resolves a call, recording in {@code consultedTypes} the simple names of the model
+     * classes looked at on the way (the call's result may change when they change)
+     */
+    public Resolution resolve(MethodCallExpr call, String currentClass, Set<String> consultedTypes) {
+        Resolution resolution;
+        TypeReference scopeType;
+        try (AnalysisMetrics.Timer timer = metrics.start("resolve.model")) {
+            TypeReference current = new TypeReference(currentClass, TypeContext.of(call), false);
+            scopeType = call.getScope().isPresent()
+                    ? scopeType(call.getScope().get(), call, current, consultedTypes) : current;
+            resolution = resolveFromModel(call, current, scopeType, consultedTypes);
+        }
+        if (resolution != null) {
+            metrics.increment("calls.resolved.model");
+            return resolution;
+        }
+
+        String typeKey = call.getScope().isPresent() && scopeType != null && !scopeType.className
+                ? typeKey(call, scopeType.name) : null;
+        String siteKey = siteKey(call, currentClass);
+        boolean typeKnown = typeKey != null && unresolvable.contains(typeKey);
+        boolean known = typeKnown || unresolvable.contains(siteKey);
+        AnalysisEvents.cacheAccess("unresolved-calls", typeKnown ? typeKey : siteKey, known);
+        if (known) {
+            metrics.increment("calls.negative_cache_hits");
+            return null;
+        }
+
+        try (AnalysisMetrics.Timer timer = metrics.start("resolve")) {
+            ResolvedMethodDeclaration resolvedMethod = call.resolve();
+            Resolution resolved = new Resolution(resolvedMethod.declaringType().getClassName(),
+                    resolvedMethod.declaringType().getQualifiedName(), resolvedMethod.getName(),
+                    displayType(resolvedMethod.getReturnType().describe()), Tier.SYMBOL_SOLVER);
+            consultedTypes.add(resolved.getTargetClass());
+            metrics.increment("calls.resolved.solver");
+            return resolved;
+        } catch (Exception e) {
+            // Library calls the solver cannot see end up here; remember them
+            logger.debug("Could not resolve method call: {}", call.getNameAsString());
+            unresolvable.add(typeKey != null && !resolvesType(call.getScope().get()) ? typeKey : siteKey);
+            return null;
+        }
+    }
+
+    /**
+     * Number of call signatures known to be unresolvable
+     */
+    public int getNegativeCacheSize() {
+        return unresolvable.size();
+    }
+
+    /**
+     * Source files under the source root that may declare the given types, found by file
+     * name. Nested names ({@code Outer.Inner}) map to the file of the outermost class.
+     */
+    public Set<Path> sourceFiles(Collection<String> typeNames) {
+        Map<String, List<Path>> files = indexFiles();
+        Set<Path> result = new TreeSet<>();
+        for (String typeName : typeNames) {
+            List<Path> paths = files.get(fileName(typeName));
+            if (paths != null) {
+                result.addAll(paths);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Where a type name was written: the package and imports of its file. Imports are known
+     * only for the file of the call being resolved; for names taken from other model classes
+     * (their superclass, their fields) only the package is.
+     */
+    private static final class TypeContext {
+        final String packageName;
+        /** Single-type imports by simple name, or null if unknown */
+        final Map<String, String> imports;
+        final Set<String> onDemandImports;
+        final Set<String> declaredTypes;
+
+        TypeContext(String packageName, Map<String, String> imports, Set<String> onDemandImports,
+                    Set<String> declaredTypes) {
+            this.packageName = packageName;
+            this.imports = imports;
+            this.onDemandImports = onDemandImports;
+            this.declaredTypes = declaredTypes;
+        }
+
+        static TypeContext of(Node node) {
+            Optional<CompilationUnit> unit = node.findCompilationUnit();
+            if (!unit.isPresent()) {
+                return new TypeContext("", null, Collections.emptySet(), Collections.emptySet());
+            }
+            Map<String, String> imports = new HashMap<>();
+            Set<String> onDemand = new HashSet<>();
+            for (ImportDeclaration importDeclaration : unit.get().getImports()) {
+                if (importDeclaration.isStatic()) {
+                    continue;
+                }
+                String name = importDeclaration.getNameAsString();
+                if (importDeclaration.isAsterisk()) {
+                    onDemand.add(name);
+                } else {
+                    imports.put(name.substring(name.lastIndexOf('.') + 1), name);
+                }
+            }
+            Set<String> declared = new HashSet<>();
+            for (TypeDeclaration<?> type : unit.get().findAll(TypeDeclaration.class)) {
+                declared.add(type.getNameAsString());
+            }
+            return new TypeContext(unit.get().getPackageDeclaration().map(p -> p.getNameAsString()).orElse(""),
+                    imports, onDemand, declared);
+        }
+
+        /**
+         * The context of names written in a model class: this one if the class is declared in
+         * this file, otherwise just its package
+         */
+        TypeContext of(ClassInfo classInfo) {
+            String classPackage = classInfo.getPackageName() == null ? "" : classInfo.getPackageName();
+            if (classPackage.equals(packageName) && declaredTypes.contains(classInfo.getClassName())) {
+                return this;
+            }
+            return new TypeContext(classPackage, null, Collections.emptySet(), Collections.emptySet());
+        }
+    }
+
+    /**
+     * A type name with the context it was written in
+     */
+    private static final class TypeReference {
+        final String name;
+        final TypeContext context;
+        /** The scope of a static call, written as a class name rather than an expression */
+        final boolean className;
+
+        TypeReference(String name, TypeContext context, boolean className) {
+            this.name = name;
+            this.context = context;
+            this.className = className;
+        }
+    }
+
+    // ------------------------------------------------------------------ model tier
+
+    private Resolution resolveFromModel(MethodCallExpr call, TypeReference currentClass, TypeReference scopeType,
+                                        Set<String> consulted) {
+        int arguments = call.getArguments().size();
+        String methodName = call.getNameAsString();
+
+        if (!call.getScope().isPresent()) {
+            Resolution resolution = findMethod(currentClass, methodName, arguments, consulted);
+            if (resolution != null) {
+                return resolution;
+            }
+            return resolveStaticImport(call, currentClass.context, methodName, arguments, consulted);
+        }
+        return scopeType == null ? null : findMethod(scopeType, methodName, arguments, consulted);
+    }
+
+    /**
+     * Declared type of a call's scope expression, or null if it cannot be told cheaply
+     */
+    private TypeReference scopeType(Expression scope, MethodCallExpr call, TypeReference currentClass,
+                                    Set<String> consulted) {
+        if (scope.isThisExpr()) {
+            return currentClass;
+        }
+        if (scope.isSuperExpr()) {
+            ClassInfo current = modelClass(currentClass, consulted);
+            return current == null || current.getSuperClass() == null ? null
+                    : new TypeReference(current.getSuperClass(), currentClass.context.of(current), false);
+        }
+        if (scope.isObjectCreationExpr()) {
+            return new TypeReference(scope.asObjectCreationExpr().getType().getNameWithScope(),
+                    currentClass.context, false);
+        }
+        if (scope.isFieldAccessExpr() && scope.asFieldAccessExpr().getScope().isThisExpr()) {
+            return fieldType(scope.asFieldAccessExpr().getNameAsString(), currentClass, consulted);
+        }
+        if (scope.isNameExpr()) {
+            String name = scope.asNameExpr().getNameAsString();
+            String local = localType(name, call);
+            if (local != null) {
+                return local.isEmpty() ? null : new TypeReference(local, currentClass.context, false);
+            }
+            TypeReference field = fieldType(name, currentClass, consulted);
+            if (field != null) {
+                return field;
+            }
+            // Not a variable: a static call on a class name
+            return Character.isUpperCase(name.charAt(0)) ? new TypeReference(name, currentClass.context, true) : null;
+        }
+        return null;
+    }
+
+    /**
+     * Type of a local variable or parameter visible from the call: null if there is none, an
+     * empty string if there is one but its type is not usable ({@code var}, or declared twice)
+     */
+    private String localType(String name, Node call) {
+        Optional<CallableDeclaration> callable = call.findAncestor(CallableDeclaration.class);
+        if (!callable.isPresent()) {
+            return null;
+        }
+        Set<String> types = new HashSet<>();
+        for (Object parameter : callable.get().getParameters()) {
+            Parameter p = (Parameter) parameter;
+            if (p.getNameAsString().equals(name)) {
+                types.add(p.isVarArgs() ? "" : p.getType().asString());
+            }
+        }
+        for (VariableDeclarator variable : callable.get().findAll(VariableDeclarator.class)) {
+            if (variable.getNameAsString().equals(name)) {
+                types.add(variable.getType().isVarType() ? "" : variable.getType().asString());
+            }
+        }
+        // Lambda parameters are usually implicitly typed
+        for (LambdaExpr lambda : callable.get().findAll(LambdaExpr.class)) {
+            for (Parameter p : lambda.getParameters()) {
+                if (p.getNameAsString().equals(name)) {
+                    types.add("");
+                }
+            }
+        }
+        if (types.isEmpty()) {
+            return null;
+        }
+        return types.size() == 1 ? types.iterator().next() : "";
+    }
+
+    /**
+     * Type of a field of the class or one of its model superclasses, or null
+     */
+    private TypeReference fieldType(String name, TypeReference type, Set<String> consulted) {
+        Set<ClassInfo> visited = new HashSet<>();
+        TypeReference current = type;
+        while (current != null) {
+            ClassInfo classInfo = modelClass(current, consulted);
+            if (classInfo == null || !visited.add(classInfo)) {
+                return null;
+            }
+            for (FieldInfo field : classInfo.getFields()) {
+                if (field.getName().equals(name)) {
+                    return new TypeReference(field.getType(), current.context.of(classInfo), false);
+                }
+            }
+            current = superClass(classInfo, current.context);
+        }
+        return null;
+    }
+
+    private static TypeReference superClass(ClassInfo classInfo, TypeContext context) {
+        return classInfo.getSuperClass() == null ? null
+                : new TypeReference(classInfo.getSuperClass(), context.of(classInfo), false);
+    }
+
+    private Resolution resolveStaticImport(MethodCallExpr call, TypeContext context, String methodName,
+                                           int arguments, Set<String> consulted) {
+        Optional<CompilationUnit> unit = call.findCompilationUnit();
+        if (!unit.isPresent()) {
+            return null;
+        }
+        Resolution found = null;
+        for (ImportDeclaration importDeclaration : unit.get().getImports()) {
+            if (!importDeclaration.isStatic()) {
+                continue;
+            }
+            String name = importDeclaration.getNameAsString();
+            String type;
+            if (importDeclaration.isAsterisk()) {
+                type = name;
+            } else if (name.endsWith("." + methodName)) {
+                type = name.substring(0, name.length() - methodName.length() - 1);
+            } else {
+                continue;
+            }
+            Resolution resolution = findMethod(new TypeReference(type, context, true), methodName, arguments,
+                    consulted);
+            if (resolution != null) {
+                if (found != null) {
+                    return null;
+                }
+                found = resolution;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Looks a method up by name and argument count along the superclass chain. Succeeds only
+     * if the chain stays inside the model and every candidate has the same parameter types
+     * (i.e. they are overrides of one method).
+     */
+    private Resolution findMethod(TypeReference type, String methodName, int arguments, Set<String> consulted) {
+        Resolution first = null;
+        List<String> signature = null;
+        Set<ClassInfo> visited = new HashSet<>();
+        TypeReference current = type;
+        while (current != null) {
+            ClassInfo classInfo = modelClass(current, consulted);
+            if (classInfo == null) {
+                // Leaves the model: the rest of the chain might hold an overload
+                return null;
+            }
+            if (!visited.add(classInfo)) {
+                return null;
+            }
+            for (MethodInfo method : classInfo.getMethods()) {
+                if (!method.getName().equals(methodName) || method.getParameters().size() != arguments
+                        || method.getReturnType() == null || method.getReturnType().isEmpty()) {
+                    continue;
+                }
+                List<String> parameterTypes = new ArrayList<>();
+                for (ParameterInfo parameter : method.getParameters()) {
+                    parameterTypes.add(parameter.getType());
+                }
+                if (signature == null) {
+                    signature = parameterTypes;
+                    first = new Resolution(classInfo.getClassName(), classInfo.getFullName(), methodName,
+                            displayType(method.getReturnType()), Tier.MODEL);
+                } else if (!signature.equals(parameterTypes)) {
+                    return null;
+                }
+            }
+            current = superClass(classInfo, current.context);
+        }
+        return first;
+    }
+
+    /**
+     * The model class a type name refers to where it was written, or null if it is not in
+     * the model or cannot be told. A qualified or single-type-imported name must match by
+     * full name (an import of {@code java.util.List} never means a model {@code List});
+     * otherwise a class in the same package wins, then one in an on-demand imported package.
+     * Only when the imports are not known does a simple name unique in the model match.
+     */
+    private ClassInfo modelClass(TypeReference type, Set<String> consulted) {
+        String name = stripTypeArguments(type.name);
+        if (name.isEmpty()) {
+            return null;
+        }
+        String simpleName = typeName(name);
+        consulted.add(simpleName);
+        List<ClassInfo> classes = classesByName.get(simpleName);
+        if (classes == null && !modelComplete) {
+            classes = loadClasses(simpleName);
+        }
+        if (classes == null || classes.isEmpty()) {
+            return null;
+        }
+
+        TypeContext context = type.context;
+        String qualified = Character.isLowerCase(name.charAt(0)) && name.indexOf('.') > 0 ? name
+                : context.imports == null ? null : context.imports.get(simpleName);
+        if (qualified != null) {
+            for (ClassInfo classInfo : classes) {
+                if (declares(classInfo, qualified)) {
+                    return classInfo;
+                }
+            }
+            return null;
+        }
+        ClassInfo samePackage = only(classes, Collections.singleton(context.packageName));
+        if (samePackage != null) {
+            return samePackage;
+        }
+        if (context.imports != null) {
+            return only(classes, context.onDemandImports);
+        }
+        return classes.size() == 1 ? classes.get(0) : null;
+    }
+
+    /**
+     * The one class in the given packages, or null if there is none or several
+     */
+    private static ClassInfo only(List<ClassInfo> classes, Set<String> packages) {
+        ClassInfo found = null;
+        for (ClassInfo classInfo : classes) {
+            if (packages.contains(classInfo.getPackageName() == null ? "" : classInfo.getPackageName())) {
+                if (found != null) {
+                    return null;
+                }
+                found = classInfo;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Whether a qualified name denotes the class, also as a nested name ({@code p.Outer.Inner})
+     */
+    private static boolean declares(ClassInfo classInfo, String qualifiedName) {
+        if (classInfo.getFullName().equals(qualifiedName)) {
+            return true;
+        }
+        String packageName = classInfo.getPackageName();
+        if (packageName == null || packageName.isEmpty()) {
+            return Character.isUpperCase(qualifiedName.charAt(0)) && qualifiedName.endsWith("." + classInfo.getClassName());
+        }
+        return qualifiedName.startsWith(packageName + ".")
+                && Character.isUpperCase(qualifiedName.charAt(packageName.length() + 1))
+                && qualifiedName.endsWith("." + classInfo.getClassName());
+    }
+
+    /**
+     * Parses the single source file named after the class, if there is exactly one
+     */
+    private List<ClassInfo> loadClasses(String simpleName) {
+        List<Path> files = indexFiles().get(simpleName);
+        List<ClassInfo> found = Collections.emptyList();
+        if (files != null && files.size() == 1) {
+            try (AnalysisMetrics.Timer timer = metrics.start("resolve.model.load")) {
+                ParseResult<CompilationUnit> result = new JavaParser().parse(files.get(0));
+                if (result.isSuccessful() && result.getResult().isPresent()) {
+                    found = new ArrayList<>();
+                    for (ClassInfo classInfo : extractor.extractClasses(result.getResult().get())) {
+                        if (classInfo.getClassName().equals(simpleName)) {
+                            found.add(classInfo);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                logger.debug("Could not parse {}", files.get(0), e);
+            }
+        }
+        List<ClassInfo> previous = classesByName.putIfAbsent(simpleName, found);
+        return previous != null ? previous : found;
+    }
+
+    private Map<String, List<Path>> indexFiles() {
+        Map<String, List<Path>> index = filesByName;
+        if (index != null) {
+            return index;
+        }
+        synchronized (this) {
+            if (filesByName == null) {
+                filesByName = indexSourceFiles(sourceRoot);
+            }
+            return filesByName;
+        }
+    }
+
+    /**
+     * Source files under a root by file name without {@code .java}, each list in walk order
+     */
+    static Map<String, List<Path>> indexSourceFiles(Path root) {
+        Map<String, List<Path>> files = new HashMap<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.filter(path -> path.toString().endsWith(".java")).forEach(path -> {
+                String fileName = path.getFileName().toString();
+                files.computeIfAbsent(fileName.substring(0, fileName.length() - 5),
+                        name -> new ArrayList<>()).add(path);
+            });
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Could not index source files under {}", root, e);
+        }
+        return files;
+    }
+
+    /**
+     * Name of the file that may declare a type: nested names ({@code Outer.Inner}) map to
+     * the outermost class, qualified names to the simple name
+     */
+    static String fileName(String typeName) {
+        int dot = typeName.indexOf('.');
+        return dot > 0 && Character.isUpperCase(typeName.charAt(0)) ? typeName.substring(0, dot) : typeName(typeName);
+    }
+
+    /**
+     * Simple name of a declared type, without type arguments or array brackets
+     */
+    private static String typeName(String type) {
+        String name = stripTypeArguments(type);
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot + 1) : name;
+    }
+
+    private static String stripTypeArguments(String type) {
+        String name = type;
+        int generic = name.indexOf('<');
+        if (generic >= 0) {
+            name = name.substring(0, generic);
+        }
+        return name.replace("[]", "").trim();
+    }
+
+    /**
+     * A type as shown in diagrams: package qualifiers dropped everywhere, so
+     * {@code java.util.List<com.shop.Item>} and {@code List<Item>} both read {@code List<Item>}
+     */
+    static String displayType(String type) {
+        return type == null ? null : PACKAGE_QUALIFIER.matcher(type).replaceAll("");
+    }
+
+    /**
+     * Whether the symbol solver can tell the type of a call's scope. If it cannot, no call
+     * on that scope can resolve, whatever the arguments.
+     */
+    private static boolean resolvesType(Expression scope) {
+        try {
+            scope.calculateResolvedType();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Identifies a call on a declared type the solver cannot see. The type is qualified by
+     * the imports of its file (the same simple name may mean another class elsewhere), so
+     * the key is shared by every call on it with that name and argument count.
+     */
+    private static String typeKey(MethodCallExpr call, String scopeType) {
+        StringBuilder key = new StringBuilder();
+        String simpleName = typeName(scopeType);
+        Optional<CompilationUnit> unit = call.findCompilationUnit();
+        String qualified = null;
+        if (unit.isPresent()) {
+            for (ImportDeclaration importDeclaration : unit.get().getImports()) {
+                if (!importDeclaration.isStatic() && !importDeclaration.isAsterisk()
+                        && importDeclaration.getNameAsString().endsWith("." + simpleName)) {
+                    qualified = importDeclaration.getNameAsString();
+                }
+            }
+        }
+        if (qualified != null) {
+            key.append(qualified);
+        } else {
+            if (unit.isPresent()) {
+                // Same package or an on-demand import: the file's context decides
+                key.append(unit.get().getPackageDeclaration().map(p -> p.getNameAsString()).orElse(""));
+                for (ImportDeclaration importDeclaration : unit.get().getImports()) {
+                    if (importDeclaration.isAsterisk() && !importDeclaration.isStatic()) {
+                        key.append(';').append(importDeclaration.getNameAsString()).append(".*");
+                    }
+                }
+                key.append('|');
+            }
+            key.append(simpleName);
+        }
+        return key.append('#').append(call.getNameAsString()).append('/').append(call.getArguments().size()).toString();
+    }
+
+    /**
+     * Identifies one call site: its file's package, the class and callable it is in, its text
+     * and its position. Its failure may depend on the arguments, so it is not shared.
+     */
+    private static String siteKey(MethodCallExpr call, String currentClass) {
+        StringBuilder key = new StringBuilder();
+        call.findCompilationUnit().flatMap(CompilationUnit::getPackageDeclaration)
+                .ifPresent(p -> key.append(p.getNameAsString()).append('.'));
+        Optional<CallableDeclaration> callable = call.findAncestor(CallableDeclaration.class);
+        key.append(currentClass).append('.')
+                .append(callable.isPresent() ? callable.get().getDeclarationAsString(false, false, true) : "")
+                .append(':').append(call);
+        call.getBegin().ifPresent(begin -> key.append('@').append(begin.line).append(':').append(begin.column));
+        return key.toString();
+    }
+}
@@ -0,0 +1,462 @@
+package com.javaanalysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.classfile.*;
+import java.lang.classfile.attribute.MethodParameterInfo;
+import java.lang.classfile.attribute.MethodParametersAttribute;
+import java.lang.classfile.attribute.SignatureAttribute;
+import java.lang.classfile.constantpool.ClassEntry;
+import java.lang.classfile.instruction.InvokeInstruction;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.MethodTypeDesc;
+import java.lang.reflect.AccessFlag;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Analyzes compiled .class files and jars with the JDK class-file API.
+ *
+ * Builds the same ClassInfo model as {@link JavaSourceAnalyzer}, and the same call edges as
+ * {@link SequenceAnalyzer}, without needing sources or a parser: only constant pools,
+ * descriptors and Signature attributes are read. Names follow the source front end, so
+ * types are recorded by simple name (e.g. {@code List<String>}).
+ */
+public class ClassFileAnalyzer {
+    private static final Logger logger = LoggerFactory.getLogger(ClassFileAnalyzer.class);
+
+    private final ClassFile classFile = ClassFile.of();
+    private final Map<String, ClassInfo> classInfoMap = new HashMap<>();
+
+    /**
+     * Raw class models by fully qualified name, kept for call-edge extraction
+     */
+    private final Map<String, ClassModel> classModels = new HashMap<>();
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Analyzes a classes directory, a jar file or a single .class file
+     */
+    public Map<String, ClassInfo> analyze(String path) throws IOException {
+        Path input = Path.of(path);
+        if (!Files.exists(input)) {
+            throw new IllegalArgumentException("Invalid class path: " + path);
+        }
+
+        logger.info("Analyzing class files in: {}", path);
+        int count;
+
+        try (AnalysisMetrics.Timer timer = metrics.start("analyze_bytecode")) {
+            count = readInput(input);
+        }
+        metrics.add("files.parsed", count);
+
+        logger.info("Read {} class files", count);
+        return Collections.unmodifiableMap(new HashMap<>(classInfoMap));
+    }
+
+    private int readInput(Path input) throws IOException {
+        int count = 0;
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> paths = Files.walk(input)) {
+                for (Path classPath : (Iterable<Path>) paths::iterator) {
+                    if (Files.isRegularFile(classPath) && isClassEntry(classPath.toString())) {
+                        count += analyzeBytes(Files.readAllBytes(classPath), classPath.toString());
+                    }
+                }
+            }
+        } else if (input.toString().endsWith(".jar")) {
+            count += analyzeJar(input.toFile());
+        } else {
+            count += analyzeBytes(Files.readAllBytes(input), input.toString());
+        }
+        return count;
+    }
+
+    private int analyzeJar(File jar) throws IOException {
+        int count = 0;
+        try (JarFile jarFile = new JarFile(jar)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                // Skip multi-release overlays; the base version describes the API well enough
+                if (entry.isDirectory() || !isClassEntry(entry.getName())
+                        || entry.getName().startsWith("META-INF/")) {
+                    continue;
+                }
+                try (InputStream in = jarFile.getInputStream(entry)) {
+                    count += analyzeBytes(in.readAllBytes(), jar + "!" + entry.getName());
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean isClassEntry(String name) {
+        return name.endsWith(".class")
+                && !name.endsWith("module-info.class")
+                && !name.endsWith("package-info.class");
+    }
+
+    /**
+     * Parses one class file; returns 1 if it was added to the model
+     */
+    private int analyzeBytes(byte[] bytes, String origin) {
+        AnalysisEvents.FileParsedEvent event = new AnalysisEvents.FileParsedEvent();
+        event.begin();
+        boolean success = false;
+        try {
+            ClassModel model = classFile.parse(bytes);
+            ClassInfo classInfo = toClassInfo(model);
+            success = true;
+            if (classInfo == null) {
+                return 0;
+            }
+            classInfoMap.put(classInfo.getFullName(), classInfo);
+            classModels.put(classInfo.getFullName(), model);
+            return 1;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Failed to read class file: {} ({})", origin, e.getMessage());
+            metrics.increment("files.failed");
+            return 0;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.path = origin;
+                event.bytes = bytes.length;
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Converts a class model into a ClassInfo, or null for synthetic and anonymous classes
+     */
+    private ClassInfo toClassInfo(ClassModel model) {
+        if (model.flags().has(AccessFlag.SYNTHETIC)) {
+            return null;
+        }
+
+        String internalName = model.thisClass().asInternalName();
+        int slash = internalName.lastIndexOf('/');
+        String packageName = slash < 0 ? "" : internalName.substring(0, slash).replace('/', '.');
+        String binaryName = internalName.substring(slash + 1);
+        String className = binaryName.substring(binaryName.lastIndexOf('$') + 1);
+        if (className.isEmpty() || Character.isDigit(className.charAt(0))) {
+            return null;
+        }
+
+        ClassInfo classInfo = new ClassInfo(className, packageName);
+        boolean isEnum = model.flags().has(AccessFlag.ENUM);
+        classInfo.setEnum(isEnum);
+        classInfo.setInterface(model.flags().has(AccessFlag.INTERFACE));
+        classInfo.setAbstract(model.flags().has(AccessFlag.ABSTRACT) && !classInfo.isInterface());
+
+        // Superclass and interfaces, preferring the generic class signature
+        Optional<SignatureAttribute> classSignature = model.findAttribute(Attributes.signature());
+        if (classSignature.isPresent()) {
+            ClassSignature signature = classSignature.get().asClassSignature();
+            String superName = simpleName(signature.superclassSignature().className());
+            if (!isImplicitSuperclass(signature.superclassSignature().className())) {
+                classInfo.setSuperClass(superName);
+                addTypeDependency(signature.superclassSignature(), classInfo);
+            }
+            for (Signature.ClassTypeSig interfaceSig : signature.superinterfaceSignatures()) {
+                String interfaceName = simpleName(interfaceSig.className());
+                if (classInfo.isInterface()) {
+                    // Interfaces "extend" their super-interfaces; the source front end records them the same way
+                    classInfo.setSuperClass(interfaceName);
+                } else {
+                    classInfo.addInterface(interfaceName);
+                }
+                addTypeDependency(interfaceSig, classInfo);
+            }
+        } else {
+            model.superclass().ifPresent(superEntry -> {
+                if (!isImplicitSuperclass(superEntry.asInternalName())) {
+                    classInfo.setSuperClass(simpleName(superEntry));
+                    addTypeDependency(superEntry.asSymbol(), classInfo);
+                }
+            });
+            for (ClassEntry interfaceEntry : model.interfaces()) {
+                if (classInfo.isInterface()) {
+                    classInfo.setSuperClass(simpleName(interfaceEntry));
+                } else {
+                    classInfo.addInterface(simpleName(interfaceEntry));
+                }
+                addTypeDependency(interfaceEntry.asSymbol(), classInfo);
+            }
+        }
+
+        for (FieldModel field : model.fields()) {
+            processField(field, classInfo, isEnum);
+        }
+
+        // Like the source front end, enums only contribute their constants
+        if (!isEnum) {
+            for (MethodModel method : model.methods()) {
+                processMethod(method, classInfo);
+            }
+        }
+
+        logger.debug("Processed class file: {}", classInfo.getFullName());
+        return classInfo;
+    }
+
+    private void processField(FieldModel field, ClassInfo classInfo, boolean isEnum) {
+        if (field.flags().has(AccessFlag.SYNTHETIC)) {
+            return;
+        }
+        String name = field.fieldName().stringValue();
+
+        if (isEnum) {
+            if (field.flags().has(AccessFlag.ENUM)) {
+                classInfo.addField(new FieldInfo(name, classInfo.getClassName(), "public"));
+            }
+            return;
+        }
+
+        Optional<SignatureAttribute> signature = field.findAttribute(Attributes.signature());
+        String type;
+        if (signature.isPresent()) {
+            Signature typeSig = signature.get().asTypeSignature();
+            type = describe(typeSig);
+            addTypeDependency(typeSig, classInfo);
+        } else {
+            type = field.fieldTypeSymbol().displayName();
+            addTypeDependency(field.fieldTypeSymbol(), classInfo);
+        }
+
+        classInfo.addField(new FieldInfo(name, type, getVisibility(field.flags())));
+    }
+
+    private void processMethod(MethodModel method, ClassInfo classInfo) {
+        AccessFlags flags = method.flags();
+        String methodName = method.methodName().stringValue();
+        if (flags.has(AccessFlag.SYNTHETIC) || flags.has(AccessFlag.BRIDGE) || methodName.equals("<clinit>")) {
+            return;
+        }
+
+        boolean constructor = methodName.equals("<init>");
+        MethodTypeDesc descriptor = method.methodTypeSymbol();
+
+        List<String> parameterTypes = new ArrayList<>();
+        String returnType;
+        Optional<SignatureAttribute> signature = method.findAttribute(Attributes.signature());
+        if (signature.isPresent()) {
+            MethodSignature methodSig = signature.get().asMethodSignature();
+            for (Signature argument : methodSig.arguments()) {
+                parameterTypes.add(describe(argument));
+                addTypeDependency(argument, classInfo);
+            }
+            returnType = describe(methodSig.result());
+            addTypeDependency(methodSig.result(), classInfo);
+        } else {
+            for (ClassDesc parameter : descriptor.parameterList()) {
+                parameterTypes.add(parameter.displayName());
+                addTypeDependency(parameter, classInfo);
+            }
+            returnType = descriptor.returnType().displayName();
+            addTypeDependency(descriptor.returnType(), classInfo);
+        }
+
+        MethodInfo methodInfo = new MethodInfo(
+                constructor ? classInfo.getClassName() : methodName,
+                constructor ? "" : returnType,
+                getVisibility(flags));
+        methodInfo.setStatic(flags.has(AccessFlag.STATIC));
+        methodInfo.setAbstract(flags.has(AccessFlag.ABSTRACT));
+
+        // Parameter names are only present when compiled with -parameters
+        List<String> parameterNames = method.findAttribute(Attributes.methodParameters())
+                .map(MethodParametersAttribute::parameters)
+                .map(params -> params.stream()
+                        .map(MethodParameterInfo::name)
+                        .map(name -> name.map(n -> n.stringValue()).orElse(""))
+                        .toList())
+                .orElse(List.of());
+        // Generic signatures omit synthetic parameters (e.g. outer instance), so align from the end
+        int offset = Math.max(0, parameterNames.size() - parameterTypes.size());
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            String name = i + offset < parameterNames.size() ? parameterNames.get(i + offset) : "";
+            methodInfo.addParameter(new ParameterInfo(name.isEmpty() ? "arg" + i : name, parameterTypes.get(i)));
+        }
+
+        classInfo.addMethod(methodInfo);
+    }
+
+    /**
+     * Extracts the calls made by a method, mirroring {@link SequenceAnalyzer#analyze}
+     * (one level deep, constructor calls excluded).
+     * {@link #analyze} must have been called on a path containing the class.
+     */
+    public List<SequenceAnalyzer.CallTrace> analyzeCalls(String className, String methodName) {
+        List<SequenceAnalyzer.CallTrace> traces = new ArrayList<>();
+
+        ClassModel model = findModel(className);
+        if (model == null) {
+            logger.error("Could not find class file for class: {}", className);
+            return traces;
+        }
+
+        Optional<MethodModel> startMethod = model.methods().stream()
+                .filter(m -> m.methodName().equalsString(methodName))
+                .filter(m -> m.code().isPresent())
+                .findFirst();
+        if (startMethod.isEmpty()) {
+            logger.error("Method {} not found in class {}", methodName, className);
+            return traces;
+        }
+
+        logger.info("Analyzing sequence starting from {}.{}", className, methodName);
+        for (CodeElement element : startMethod.get().code().get()) {
+            if (element instanceof InvokeInstruction) {
+                InvokeInstruction invoke = (InvokeInstruction) element;
+                String calledMethodName = invoke.name().stringValue();
+                if (calledMethodName.equals("<init>")) {
+                    continue;
+                }
+                String returnType = invoke.typeSymbol().returnType().displayName();
+                traces.add(new SequenceAnalyzer.CallTrace(
+                        SequenceAnalyzer.simpleClassName(className), simpleName(invoke.owner()), calledMethodName,
+                        returnType, 0));
+            }
+        }
+        return traces;
+    }
+
+    private ClassModel findModel(String className) {
+        ClassModel model = classModels.get(className);
+        if (model != null) {
+            return model;
+        }
+        for (Map.Entry<String, ClassInfo> entry : classInfoMap.entrySet()) {
+            if (entry.getValue().getClassName().equals(className)) {
+                return classModels.get(entry.getKey());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Renders a generic signature the way it would be written in source, using simple names
+     */
+    private String describe(Signature signature) {
+        if (signature instanceof Signature.BaseTypeSig) {
+            char baseType = ((Signature.BaseTypeSig) signature).baseType();
+            return ClassDesc.ofDescriptor(String.valueOf(baseType)).displayName();
+        }
+        if (signature instanceof Signature.ArrayTypeSig) {
+            return describe(((Signature.ArrayTypeSig) signature).componentSignature()) + "[]";
+        }
+        if (signature instanceof Signature.TypeVarSig) {
+            return ((Signature.TypeVarSig) signature).identifier();
+        }
+        Signature.ClassTypeSig classType = (Signature.ClassTypeSig) signature;
+        StringBuilder sb = new StringBuilder(simpleName(classType.className()));
+        if (!classType.typeArgs().isEmpty()) {
+            sb.append('<');
+            for (int i = 0; i < classType.typeArgs().size(); i++) {
+                if (i > 0) sb.append(", ");
+                Signature.TypeArg typeArg = classType.typeArgs().get(i);
+                if (typeArg instanceof Signature.TypeArg.Bounded) {
+                    Signature.TypeArg.Bounded bounded = (Signature.TypeArg.Bounded) typeArg;
+                    switch (bounded.wildcardIndicator()) {
+                        case EXTENDS: sb.append("? extends "); break;
+                        case SUPER: sb.append("? super "); break;
+                        default: break;
+                    }
+                    sb.append(describe(bounded.boundType()));
+                } else {
+                    sb.append('?');
+                }
+            }
+            sb.append('>');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Adds every class named in a signature (including type arguments) as a dependency
+     */
+    private void addTypeDependency(Signature signature, ClassInfo classInfo) {
+        if (signature instanceof Signature.ArrayTypeSig) {
+            addTypeDependency(((Signature.ArrayTypeSig) signature).componentSignature(), classInfo);
+        } else if (signature instanceof Signature.ClassTypeSig) {
+            Signature.ClassTypeSig classType = (Signature.ClassTypeSig) signature;
+            addDependency(classType.className(), classInfo);
+            for (Signature.TypeArg typeArg : classType.typeArgs()) {
+                if (typeArg instanceof Signature.TypeArg.Bounded) {
+                    addTypeDependency(((Signature.TypeArg.Bounded) typeArg).boundType(), classInfo);
+                }
+            }
+        }
+    }
+
+    private void addTypeDependency(ClassDesc type, ClassInfo classInfo) {
+        while (type.isArray()) {
+            type = type.componentType();
+        }
+        if (type.isClassOrInterface()) {
+            String descriptor = type.descriptorString();
+            addDependency(descriptor.substring(1, descriptor.length() - 1), classInfo);
+        }
+    }
+
+    /**
+     * Records a dependency by simple name, skipping java.lang and java.util like the source front end
+     */
+    private void addDependency(String internalName, ClassInfo classInfo) {
+        if (internalName.startsWith("java/lang/") || internalName.startsWith("java/util/")) {
+            return;
+        }
+        String simple = simpleName(internalName);
+        if (!simple.equals(classInfo.getClassName())) {
+            classInfo.addDependency(simple);
+        }
+    }
+
+    private boolean isImplicitSuperclass(String internalName) {
+        return internalName.equals("java/lang/Object")
+                || internalName.equals("java/lang/Enum")
+                || internalName.equals("java/lang/Record");
+    }
+
+    private String simpleName(ClassEntry entry) {
+        return simpleName(entry.asInternalName());
+    }
+
+    private String simpleName(String internalName) {
+        String name = internalName.substring(internalName.lastIndexOf('/') + 1);
+        return name.substring(name.lastIndexOf('$') + 1);
+    }
+
+    private String getVisibility(AccessFlags flags) {
+        if (flags.has(AccessFlag.PUBLIC)) {
+            return "public";
+        } else if (flags.has(AccessFlag.PRIVATE)) {
+            return "private";
+        } else if (flags.has(AccessFlag.PROTECTED)) {
+            return "protected";
+        } else {
+            return "package-private";
+        }
+    }
+
+    public Map<String, ClassInfo> getClassInfoMap() {
+        return Collections.unmodifiableMap(new HashMap<>(classInfoMap));
+    }
+}
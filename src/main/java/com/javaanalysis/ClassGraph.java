@@ -0,0 +1,242 @@
+package com.javaanalysis;
+
+import java.util.*;
+
+/**
+ * Class dependency graph over dense int ids.
+ *
+ * Every class in the model gets an id (in full-name order); extends, implements and uses
+ * edges are resolved once through a {@link ClassIndex} and stored as int arrays in both
+ * directions, so graph algorithms work on arrays instead of walking dependency strings.
+ * When a class references another one in several ways, the strongest kind is kept
+ * (extends, then implements, then uses). Ids are the index's positions; building the graph
+ * reads one class at a time, so a spilled model is not loaded whole. Immutable once built.
+ */
+public class ClassGraph {
+    private final ClassIndex index;
+    private final int[][] outgoing;
+    private final EdgeKind[][] outgoingKinds;
+    private final int[][] incoming;
+    private final EdgeKind[][] incomingKinds;
+    private final int edgeCount;
+
+    /**
+     * Kind of a dependency edge, strongest first
+     */
+    public enum EdgeKind {
+        EXTENDS,
+        IMPLEMENTS,
+        USES
+    }
+
+    public ClassGraph(Map<String, ClassInfo> classInfoMap) {
+        this(new ClassIndex(classInfoMap));
+    }
+
+    public ClassGraph(ClassIndex index) {
+        this.index = index;
+        int n = index.size();
+
+        outgoing = new int[n][];
+        outgoingKinds = new EdgeKind[n][];
+        int[] inDegree = new int[n];
+        int edges = 0;
+
+        // Scratch buffers for one class's edges; seen[target] == i + 1 marks a duplicate
+        int[] seen = new int[n];
+        int[] targets = new int[16];
+        EdgeKind[] kinds = new EdgeKind[16];
+
+        for (int i = 0; i < n; i++) {
+            ClassInfo classInfo = index.get(i);
+            List<String> names = new ArrayList<>(classInfo.getInterfaces().size() + classInfo.getDependencies().size() + 1);
+            if (classInfo.getSuperClass() != null) {
+                names.add(classInfo.getSuperClass());
+            }
+            names.addAll(classInfo.getInterfaces());
+            names.addAll(classInfo.getDependencies());
+            int superEnd = classInfo.getSuperClass() != null ? 1 : 0;
+            int interfacesEnd = superEnd + classInfo.getInterfaces().size();
+
+            // Names are in strongest-kind-first order, so the first edge to a target wins
+            seen[i] = i + 1;
+            int count = 0;
+            for (int position = 0; position < names.size(); position++) {
+                int targetId = index.indexOf(names.get(position), i);
+                if (targetId < 0 || seen[targetId] == i + 1) {
+                    continue;
+                }
+                seen[targetId] = i + 1;
+                if (count == targets.length) {
+                    targets = Arrays.copyOf(targets, count * 2);
+                    kinds = Arrays.copyOf(kinds, count * 2);
+                }
+                targets[count] = targetId;
+                kinds[count] = position < superEnd ? EdgeKind.EXTENDS
+                        : position < interfacesEnd ? EdgeKind.IMPLEMENTS
+                        : EdgeKind.USES;
+                inDegree[targetId]++;
+                count++;
+            }
+
+            outgoing[i] = Arrays.copyOf(targets, count);
+            outgoingKinds[i] = Arrays.copyOf(kinds, count);
+            edges += count;
+        }
+        edgeCount = edges;
+
+        // Invert into the incoming arrays
+        incoming = new int[n][];
+        incomingKinds = new EdgeKind[n][];
+        for (int i = 0; i < n; i++) {
+            incoming[i] = new int[inDegree[i]];
+            incomingKinds[i] = new EdgeKind[inDegree[i]];
+        }
+        int[] fill = new int[n];
+        for (int source = 0; source < n; source++) {
+            for (int position = 0; position < outgoing[source].length; position++) {
+                int target = outgoing[source][position];
+                incoming[target][fill[target]] = source;
+                incomingKinds[target][fill[target]] = outgoingKinds[source][position];
+                fill[target]++;
+            }
+        }
+    }
+
+    public ClassIndex getIndex() {
+        return index;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * The class with this id; see {@link ClassIndex#get(int)}
+     */
+    public ClassInfo node(int id) {
+        return index.get(id);
+    }
+
+    /**
+     * Names of the class with this id, without reading the class
+     */
+    public SpillingClassStore.ClassName name(int id) {
+        return index.getName(id);
+    }
+
+    /**
+     * Returns the id of a class in the graph
+     */
+    public int id(ClassInfo classInfo) {
+        return index.indexOf(classInfo.getFullName(), -1);
+    }
+
+    /**
+     * Resolves a simple or fully qualified class name to its id, or -1 if it is not in the model
+     */
+    public int find(String className) {
+        return index.indexOf(className, -1);
+    }
+
+    /**
+     * Ids of the classes this class depends on. The returned array must not be modified.
+     */
+    public int[] outgoing(int id) {
+        return outgoing[id];
+    }
+
+    /**
+     * Kinds of the outgoing edges, parallel to {@link #outgoing(int)}
+     */
+    public EdgeKind[] outgoingKinds(int id) {
+        return outgoingKinds[id];
+    }
+
+    /**
+     * Ids of the classes that depend on this class. The returned array must not be modified.
+     */
+    public int[] incoming(int id) {
+        return incoming[id];
+    }
+
+    /**
+     * Kinds of the incoming edges, parallel to {@link #incoming(int)}
+     */
+    public EdgeKind[] incomingKinds(int id) {
+        return incomingKinds[id];
+    }
+
+    /**
+     * Extracts the k-hop neighbourhood (ego graph) around the focus classes.
+     *
+     * Edges are followed in both directions up to {@code radius} hops. Per class at most
+     * {@code maxOutgoing} outgoing and {@code maxIncoming} incoming edges are followed, the
+     * strongest kinds first; 0 stops a direction, a negative limit means no limit.
+     *
+     * @return ids of the focus classes and their neighbourhood
+     */
+    public BitSet neighbourhood(Collection<Integer> focus, int radius, int maxIncoming, int maxOutgoing) {
+        BitSet included = new BitSet(size());
+        int[] frontier = new int[focus.size()];
+        int frontierSize = 0;
+        for (int id : focus) {
+            if (!included.get(id)) {
+                included.set(id);
+                frontier[frontierSize++] = id;
+            }
+        }
+
+        for (int hop = 0; hop < radius && frontierSize > 0; hop++) {
+            int[] next = new int[16];
+            int nextSize = 0;
+            for (int f = 0; f < frontierSize; f++) {
+                int v = frontier[f];
+                for (int w : strongest(outgoing[v], outgoingKinds[v], maxOutgoing)) {
+                    if (!included.get(w)) {
+                        included.set(w);
+                        if (nextSize == next.length) {
+                            next = Arrays.copyOf(next, nextSize * 2);
+                        }
+                        next[nextSize++] = w;
+                    }
+                }
+                for (int w : strongest(incoming[v], incomingKinds[v], maxIncoming)) {
+                    if (!included.get(w)) {
+                        included.set(w);
+                        if (nextSize == next.length) {
+                            next = Arrays.copyOf(next, nextSize * 2);
+                        }
+                        next[nextSize++] = w;
+                    }
+                }
+            }
+            frontier = next;
+            frontierSize = nextSize;
+        }
+        return included;
+    }
+
+    /**
+     * Picks up to {@code limit} neighbours, extends before implements before uses
+     */
+    private static int[] strongest(int[] neighbours, EdgeKind[] kinds, int limit) {
+        if (limit < 0 || neighbours.length <= limit) {
+            return neighbours;
+        }
+        int[] result = new int[limit];
+        int count = 0;
+        for (EdgeKind kind : EdgeKind.values()) {
+            for (int i = 0; i < neighbours.length && count < limit; i++) {
+                if (kinds[i] == kind) {
+                    result[count++] = neighbours[i];
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,176 @@
+package com.javaanalysis;
+
+import java.util.*;
+
+/**
+ * Resolves the type names recorded in the model (simple or fully qualified) to ClassInfos.
+ *
+ * Dependencies, superclasses and interfaces are stored the way they were written in the
+ * source, mostly as simple names. A name is resolved by full name first, then by simple
+ * name in the referencing class's own package, then by simple name anywhere (the first
+ * candidate in full-name order, so the result is deterministic). Lookups are hash lookups
+ * instead of scans over all classes. Immutable once built, so safe to share between threads.
+ *
+ * Classes are numbered by their position in full-name order. The index itself holds only
+ * their names, taken from {@link SpillingClassStore#getClassNames()} for a store, so a pass
+ * that walks positions with {@link #getName(int)}, {@link #get(int)} and
+ * {@link #indexOf(String, int)} reads a spilled model back one class at a time. Only
+ * {@link #getClasses()} and {@link #resolve(String, ClassInfo)} load every class, once.
+ */
+public class ClassIndex {
+    private final Map<String, ClassInfo> model;
+    private final List<String> keys;
+    private final List<SpillingClassStore.ClassName> names;
+    private final Map<String, Integer> byFullName = new HashMap<>();
+    private final Map<String, List<Integer>> bySimpleName = new HashMap<>();
+    private volatile List<ClassInfo> classes;
+
+    public ClassIndex(Map<String, ClassInfo> classInfoMap) {
+        this.model = classInfoMap;
+        // Full names are built on every call, so sort by a map keyed on them once
+        TreeMap<String, String> sorted = new TreeMap<>();
+        Map<String, SpillingClassStore.ClassName> classNames = new HashMap<>();
+        if (classInfoMap instanceof SpillingClassStore) {
+            for (Map.Entry<String, SpillingClassStore.ClassName> entry
+                    : ((SpillingClassStore) classInfoMap).getClassNames().entrySet()) {
+                sorted.put(entry.getValue().getFullName(), entry.getKey());
+                classNames.put(entry.getKey(), entry.getValue());
+            }
+        } else {
+            for (Map.Entry<String, ClassInfo> entry : classInfoMap.entrySet()) {
+                sorted.put(entry.getValue().getFullName(), entry.getKey());
+                classNames.put(entry.getKey(), new SpillingClassStore.ClassName(entry.getValue()));
+            }
+        }
+        this.keys = new ArrayList<>(sorted.values());
+        this.names = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            SpillingClassStore.ClassName name = classNames.get(key);
+            byFullName.put(name.getFullName(), names.size());
+            bySimpleName.computeIfAbsent(name.getClassName(), k -> new ArrayList<>()).add(names.size());
+            names.add(name);
+        }
+        if (!(classInfoMap instanceof SpillingClassStore)) {
+            List<ClassInfo> resident = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                resident.add(classInfoMap.get(key));
+            }
+            classes = Collections.unmodifiableList(resident);
+        }
+    }
+
+    /**
+     * All classes, sorted by full name. Reads a spilled model back entirely.
+     */
+    public List<ClassInfo> getClasses() {
+        List<ClassInfo> loaded = classes;
+        if (loaded == null) {
+            synchronized (this) {
+                if (classes == null) {
+                    List<ClassInfo> all = new ArrayList<>(keys.size());
+                    for (String key : keys) {
+                        all.add(model.get(key));
+                    }
+                    classes = Collections.unmodifiableList(all);
+                }
+                loaded = classes;
+            }
+        }
+        return loaded;
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Names of the class at a position, without reading it
+     */
+    public SpillingClassStore.ClassName getName(int position) {
+        return names.get(position);
+    }
+
+    /**
+     * The class at a position. From a spilled store that has not been loaded by
+     * {@link #getClasses()}, every call reads a fresh copy.
+     */
+    public ClassInfo get(int position) {
+        List<ClassInfo> loaded = classes;
+        return loaded != null ? loaded.get(position) : model.get(keys.get(position));
+    }
+
+    /**
+     * Resolves a type name as seen from a class, or returns null if it is not part of the model
+     *
+     * @param from the referencing class, or null to ignore package preference
+     */
+    public ClassInfo resolve(String name, ClassInfo from) {
+        int position = indexOf(name, from != null, from == null ? null : from.getPackageName());
+        return position < 0 ? null : getClasses().get(position);
+    }
+
+    public ClassInfo resolve(String name) {
+        return resolve(name, null);
+    }
+
+    /**
+     * Position of the class a type name resolves to as seen from the class at {@code from},
+     * or -1 if it is not part of the model
+     *
+     * @param from position of the referencing class, or -1 to ignore package preference
+     */
+    public int indexOf(String name, int from) {
+        return indexOf(name, from >= 0, from >= 0 ? names.get(from).getPackageName() : null);
+    }
+
+    private int indexOf(String name, boolean hasFrom, String packageName) {
+        if (name == null || name.isEmpty()) {
+            return -1;
+        }
+        String clean = stripTypeArguments(name);
+
+        Integer exact = byFullName.get(clean);
+        if (exact != null) {
+            return exact;
+        }
+
+        int dot = clean.lastIndexOf('.');
+        String simple = dot >= 0 ? clean.substring(dot + 1) : clean;
+        List<Integer> candidates = bySimpleName.get(simple);
+        if (candidates == null) {
+            return -1;
+        }
+        if (hasFrom && candidates.size() > 1) {
+            for (int candidate : candidates) {
+                if (Objects.equals(names.get(candidate).getPackageName(), packageName)) {
+                    return candidate;
+                }
+            }
+        }
+        return candidates.get(0);
+    }
+
+    /**
+     * Returns the component name used for a class's package, "(default)" for the default package
+     */
+    public static String componentName(ClassInfo classInfo) {
+        return componentName(classInfo.getPackageName());
+    }
+
+    public static String componentName(SpillingClassStore.ClassName className) {
+        return componentName(className.getPackageName());
+    }
+
+    private static String componentName(String packageName) {
+        return (packageName == null || packageName.isEmpty()) ? "(default)" : packageName;
+    }
+
+    private static String stripTypeArguments(String name) {
+        int generic = name.indexOf('<');
+        String result = generic >= 0 ? name.substring(0, generic) : name;
+        if (result.indexOf('[') >= 0) {
+            result = result.replace("[]", "");
+        }
+        return result.trim();
+    }
+}
@@ -0,0 +1,178 @@
+package com.javaanalysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes each ClassInfo as soon as its source file has been analyzed.
+ *
+ * Single-use: the analysis starts when the first subscriber subscribes, and a second
+ * subscriber is rejected. At most {@code bufferSize} results are held for a slow
+ * subscriber; beyond that the pipeline blocks, so the whole tree is processed in
+ * constant memory. Cancelling the subscription stops the pipeline.
+ */
+public class ClassInfoPublisher implements Flow.Publisher<ClassInfo> {
+    private static final Logger logger = LoggerFactory.getLogger(ClassInfoPublisher.class);
+
+    private final AnalysisPipeline pipeline;
+    private final Path root;
+    private final int bufferSize;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    public ClassInfoPublisher(AnalysisPipeline pipeline, Path root, int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        this.pipeline = pipeline;
+        this.root = root;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ClassInfo> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override public void request(long n) {}
+                @Override public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("ClassInfoPublisher only supports a single subscriber"));
+            return;
+        }
+
+        AnalysisSubscription subscription = new AnalysisSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.start();
+    }
+
+    /**
+     * Bridges the pipeline's merge stage to a subscriber, honouring its demand
+     */
+    private class AnalysisSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ClassInfo> subscriber;
+        private final BlockingQueue<ClassInfo> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger drainers = new AtomicInteger();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private boolean terminated;
+        private Thread driver;
+
+        AnalysisSubscription(Flow.Subscriber<? super ClassInfo> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        synchronized void start() {
+            if (cancelled || done) {
+                return;
+            }
+            driver = Thread.ofVirtual().name("class-info-publisher").start(() -> {
+                try {
+                    pipeline.run(root, this::emit);
+                } catch (InterruptedException e) {
+                    if (!cancelled) {
+                        failure.compareAndSet(null, e);
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done = true;
+                    drain();
+                }
+            });
+        }
+
+        /**
+         * Called from the merge stage; blocks while the buffer is full
+         */
+        private void emit(ClassInfo classInfo) {
+            if (cancelled) {
+                return;
+            }
+            try {
+                buffer.put(classInfo);
+            } catch (InterruptedException e) {
+                // Let the pipeline notice the interruption on its next blocking call
+                Thread.currentThread().interrupt();
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // Reactive Streams rule 3.9: signal onError and stop producing
+                failure.compareAndSet(null, new IllegalArgumentException("Subscriber requested " + n + " items"));
+                stopPipeline();
+                done = true;
+                drain();
+                return;
+            }
+            demand.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            stopPipeline();
+        }
+
+        private void stopPipeline() {
+            synchronized (this) {
+                if (driver != null) {
+                    driver.interrupt();
+                }
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Delivers buffered items while there is demand; only one thread drains at a time
+         */
+        private void drain() {
+            if (drainers.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (!cancelled && demand.get() > 0) {
+                    ClassInfo next = buffer.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    demand.decrementAndGet();
+                    try {
+                        subscriber.onNext(next);
+                    } catch (RuntimeException e) {
+                        logger.error("Subscriber failed in onNext, cancelling analysis", e);
+                        cancel();
+                    }
+                }
+                Throwable error = failure.get();
+                if (!cancelled && !terminated && done && (buffer.isEmpty() || error != null)) {
+                    terminated = true;
+                    if (error != null) {
+                        subscriber.onError(error);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                }
+                missed = drainers.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -4,12 +4,34 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
 
 /**
  * Analyzes components (packages) and their dependencies from class information
  */
 public class ComponentAnalyzer {
     private static final Logger logger = LoggerFactory.getLogger(ComponentAnalyzer.class);
+    private static final int AGGREGATION_CHUNK = 4096;
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Number of fork-join workers used to aggregate components; 1 aggregates on the calling
+     * thread. The result does not depend on it.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
 
     /**
      * Analyzes class information and groups them into components (packages)
@@ -18,53 +40,25 @@ public class ComponentAnalyzer {
      * @return Map of component name to ComponentInfo
      */
     public Map<String, ComponentInfo> analyzeComponents(Map<String, ClassInfo> classInfoMap) {
-        Map<String, ComponentInfo> componentMap = new HashMap<>();
-
-        // Step 1: Group classes by package
-        for (ClassInfo classInfo : classInfoMap.values()) {
-            String packageName = classInfo.getPackageName();
-            if (packageName == null || packageName.isEmpty()) {
-                packageName = "(default)";
-            }
-
-            ComponentInfo component = componentMap.computeIfAbsent(
-                packageName,
-                ComponentInfo::new
-            );
-
-            // Add class or interface to component
-            if (classInfo.isInterface()) {
-                component.addInterface(classInfo.getClassName());
-                component.addProvidedInterface(classInfo.getClassName());
-            } else {
-                component.addClass(classInfo.getClassName());
-            }
+        try (AnalysisMetrics.Timer timer = metrics.start("component_analysis")) {
+            return doAnalyzeComponents(classInfoMap);
         }
+    }
 
-        // Step 2: Analyze dependencies between components
-        for (ClassInfo classInfo : classInfoMap.values()) {
-            String sourcePackage = classInfo.getPackageName();
-            if (sourcePackage == null || sourcePackage.isEmpty()) {
-                sourcePackage = "(default)";
-            }
-
-            ComponentInfo sourceComponent = componentMap.get(sourcePackage);
-
-            // Analyze dependencies
-            for (String dependency : classInfo.getDependencies()) {
-                // Find the package of the dependency
-                String targetPackage = findPackageForClass(dependency, classInfoMap);
-
-                if (targetPackage != null && !targetPackage.equals(sourcePackage)) {
-                    sourceComponent.addDependency(targetPackage);
+    private Map<String, ComponentInfo> doAnalyzeComponents(Map<String, ClassInfo> classInfoMap) {
+        // Names resolve the way the class diagram resolves them, so both agree on every edge
+        ClassIndex index = new ClassIndex(classInfoMap);
 
-                    // If the dependency is an interface, mark it as required
-                    ClassInfo depClassInfo = findClassInfo(dependency, classInfoMap);
-                    if (depClassInfo != null && depClassInfo.isInterface()) {
-                        sourceComponent.addRequiredInterface(dependency);
-                    }
-                }
+        Map<String, ComponentInfo> componentMap;
+        if (parallelism > 1 && index.size() > AGGREGATION_CHUNK) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                componentMap = pool.invoke(new AggregationTask(index, 0, index.size()));
+            } finally {
+                pool.shutdown();
             }
+        } else {
+            componentMap = aggregate(index, 0, index.size());
         }
 
         logger.info("Found {} components", componentMap.size());
@@ -80,30 +74,203 @@ public class ComponentAnalyzer {
     }
 
     /**
-     * Finds the package name for a given class name
+     * Groups a range of classes (positions in the index) into components and collects their
+     * dependencies. Only the class being aggregated is read from the model; everything about
+     * the targets comes from the index's names, so a spilled model is read back one class at
+     * a time. Touches only its own result map, so ranges can be aggregated concurrently.
+     */
+    private static Map<String, ComponentInfo> aggregate(ClassIndex index, int from, int to) {
+        Map<String, ComponentInfo> componentMap = new HashMap<>();
+        for (int i = from; i < to; i++) {
+            SpillingClassStore.ClassName name = index.getName(i);
+            String sourcePackage = ClassIndex.componentName(name);
+            ComponentInfo component = componentMap.computeIfAbsent(sourcePackage, ComponentInfo::new);
+
+            // Add class or interface to component
+            if (name.isInterface()) {
+                component.addInterface(name.getClassName());
+                component.addProvidedInterface(name.getClassName());
+            } else {
+                component.addClass(name.getClassName());
+            }
+
+            // Dependencies on classes of other components
+            for (String dependency : index.get(i).getDependencies()) {
+                int position = index.indexOf(dependency, i);
+                if (position < 0) {
+                    continue;
+                }
+                SpillingClassStore.ClassName target = index.getName(position);
+                String targetPackage = ClassIndex.componentName(target);
+                if (!targetPackage.equals(sourcePackage)) {
+                    component.addDependency(targetPackage);
+
+                    // If the dependency is an interface, mark it as required
+                    if (target.isInterface()) {
+                        component.addRequiredInterface(target.getClassName());
+                    }
+                }
+            }
+        }
+        return componentMap;
+    }
+
+    /**
+     * Merges the partial components of {@code from} into {@code into}
      */
-    private String findPackageForClass(String className, Map<String, ClassInfo> classInfoMap) {
-        // Try to find by simple class name
-        for (ClassInfo classInfo : classInfoMap.values()) {
-            if (classInfo.getClassName().equals(className) ||
-                classInfo.getFullName().equals(className)) {
-                String packageName = classInfo.getPackageName();
-                return (packageName == null || packageName.isEmpty()) ? "(default)" : packageName;
+    private static Map<String, ComponentInfo> merge(Map<String, ComponentInfo> into, Map<String, ComponentInfo> from) {
+        for (ComponentInfo partial : from.values()) {
+            ComponentInfo component = into.get(partial.getComponentName());
+            if (component == null) {
+                into.put(partial.getComponentName(), partial);
+                continue;
             }
+            component.getClasses().addAll(partial.getClasses());
+            component.getInterfaces().addAll(partial.getInterfaces());
+            component.getDependencies().addAll(partial.getDependencies());
+            component.getProvidedInterfaces().addAll(partial.getProvidedInterfaces());
+            component.getRequiredInterfaces().addAll(partial.getRequiredInterfaces());
         }
-        return null;
+        return into;
     }
 
     /**
-     * Finds ClassInfo for a given class name
+     * Aggregates a range of classes, splitting it in halves down to {@link #AGGREGATION_CHUNK}
+     * classes; each half builds its own partial components, which are merged on the way up
      */
-    private ClassInfo findClassInfo(String className, Map<String, ClassInfo> classInfoMap) {
-        for (ClassInfo classInfo : classInfoMap.values()) {
-            if (classInfo.getClassName().equals(className) ||
-                classInfo.getFullName().equals(className)) {
-                return classInfo;
+    private static final class AggregationTask extends RecursiveTask<Map<String, ComponentInfo>> {
+        private final ClassIndex index;
+        private final int from;
+        private final int to;
+
+        AggregationTask(ClassIndex index, int from, int to) {
+            this.index = index;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<String, ComponentInfo> compute() {
+            if (to - from <= AGGREGATION_CHUNK) {
+                return aggregate(index, from, to);
             }
+            int middle = (from + to) >>> 1;
+            AggregationTask left = new AggregationTask(index, from, middle);
+            left.fork();
+            Map<String, ComponentInfo> right = new AggregationTask(index, middle, to).compute();
+            Map<String, ComponentInfo> leftResult = left.join();
+            // Merge the smaller map into the larger one
+            return leftResult.size() >= right.size() ? merge(leftResult, right) : merge(right, leftResult);
+        }
+    }
+
+    /**
+     * Computes package and class architecture metrics from the analyzed model.
+     *
+     * Dependencies are resolved once through a {@link ClassIndex}; everything after that is
+     * independent per class or per package and runs on parallel streams. Only classes in the
+     * model count for coupling, so library dependencies do not inflate Ce.
+     *
+     * @param classInfoMap Map of class information
+     * @return the metrics report
+     */
+    public ArchitectureReport computeMetrics(Map<String, ClassInfo> classInfoMap) {
+        try (AnalysisMetrics.Timer timer = metrics.start("architecture_metrics")) {
+            return doComputeMetrics(classInfoMap);
+        }
+    }
+
+    private ArchitectureReport doComputeMetrics(Map<String, ClassInfo> classInfoMap) {
+        ClassIndex index = new ClassIndex(classInfoMap);
+        List<ClassInfo> classes = index.getClasses();
+
+        // Resolved outgoing edges per class (dependencies, superclass and interfaces)
+        Map<ClassInfo, Set<ClassInfo>> outgoing = classes.parallelStream()
+                .collect(Collectors.toConcurrentMap(c -> c, c -> resolveReferences(c, index)));
+
+        // Fan-in by inverting the edges
+        ConcurrentMap<ClassInfo, Long> fanIn = outgoing.entrySet().parallelStream()
+                .flatMap(e -> e.getValue().stream())
+                .collect(Collectors.groupingByConcurrent(c -> c, Collectors.counting()));
+
+        Map<String, ArchitectureReport.ClassMetrics> classMetrics = classes.parallelStream()
+                .collect(Collectors.toConcurrentMap(ClassInfo::getFullName, c -> new ArchitectureReport.ClassMetrics(
+                        c.getFullName(),
+                        ClassIndex.componentName(c),
+                        depthOfInheritance(c, index),
+                        fanIn.getOrDefault(c, 0L).intValue(),
+                        outgoing.get(c).size())));
+
+        // Packages each class depends on, other than its own: Ce counts classes with any,
+        // Ca counts for every target package the classes that reach it
+        Map<ClassInfo, Set<String>> targetPackages = outgoing.entrySet().parallelStream()
+                .collect(Collectors.toConcurrentMap(Map.Entry::getKey, e -> {
+                    String own = ClassIndex.componentName(e.getKey());
+                    Set<String> packages = new HashSet<>();
+                    for (ClassInfo target : e.getValue()) {
+                        String targetPackage = ClassIndex.componentName(target);
+                        if (!targetPackage.equals(own)) {
+                            packages.add(targetPackage);
+                        }
+                    }
+                    return packages;
+                }));
+        ConcurrentMap<String, Long> afferent = targetPackages.values().parallelStream()
+                .flatMap(Set::stream)
+                .collect(Collectors.groupingByConcurrent(p -> p, Collectors.counting()));
+
+        Map<String, List<ClassInfo>> byPackage = classes.stream()
+                .collect(Collectors.groupingBy(ClassIndex::componentName));
+
+        Map<String, ArchitectureReport.PackageMetrics> packageMetrics = byPackage.entrySet().parallelStream()
+                .collect(Collectors.toConcurrentMap(Map.Entry::getKey, e -> {
+                    int abstractCount = 0;
+                    int efferent = 0;
+                    for (ClassInfo member : e.getValue()) {
+                        if (member.isInterface() || member.isAbstract()) {
+                            abstractCount++;
+                        }
+                        if (!targetPackages.get(member).isEmpty()) {
+                            efferent++;
+                        }
+                    }
+                    return new ArchitectureReport.PackageMetrics(e.getKey(), e.getValue().size(), abstractCount,
+                            afferent.getOrDefault(e.getKey(), 0L).intValue(), efferent);
+                }));
+
+        logger.info("Computed architecture metrics for {} packages and {} classes",
+                packageMetrics.size(), classMetrics.size());
+
+        return new ArchitectureReport(packageMetrics, classMetrics);
+    }
+
+    private Set<ClassInfo> resolveReferences(ClassInfo classInfo, ClassIndex index) {
+        Set<ClassInfo> targets = new HashSet<>();
+        List<String> names = new ArrayList<>(classInfo.getDependencies());
+        names.addAll(classInfo.getInterfaces());
+        if (classInfo.getSuperClass() != null) {
+            names.add(classInfo.getSuperClass());
+        }
+        for (String name : names) {
+            ClassInfo target = index.resolve(name, classInfo);
+            if (target != null && target != classInfo) {
+                targets.add(target);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Length of the extends chain; a superclass outside the model counts as one more level
+     */
+    private int depthOfInheritance(ClassInfo classInfo, ClassIndex index) {
+        int depth = 0;
+        Set<ClassInfo> seen = new HashSet<>();
+        ClassInfo current = classInfo;
+        while (current != null && current.getSuperClass() != null && seen.add(current)) {
+            depth++;
+            current = index.resolve(current.getSuperClass(), current);
         }
-        return null;
+        return depth;
     }
 }
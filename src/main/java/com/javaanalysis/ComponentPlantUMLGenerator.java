@@ -1,9 +1,6 @@
 package com.javaanalysis;
 
 import net.sourceforge.plantuml.FileFormat;
-import net.sourceforge.plantuml.FileFormatOption;
-import net.sourceforge.plantuml.SourceStringReader;
-import net.sourceforge.plantuml.core.DiagramDescription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,13 +16,44 @@ import java.util.*;
  */
 public class ComponentPlantUMLGenerator {
     private static final Logger logger = LoggerFactory.getLogger(ComponentPlantUMLGenerator.class);
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+    private DiagramRenderer renderer = new DiagramRenderer();
+    private CycleMode cycleMode = CycleMode.NONE;
+    private ArchitectureReport architectureReport;
 
-    static {
-        // Force UTF-8 encoding for PlantUML to avoid CP949 issues on Windows
-        System.setProperty("file.encoding", "UTF-8");
-        System.setProperty("plantuml.charset", "UTF-8");
-        System.setProperty("sun.jnu.encoding", "UTF-8");
-        System.setProperty("PLANTUML_SECURITY_PROFILE", "UNSECURE");
+    /**
+     * How cyclic component dependencies are shown
+     */
+    public enum CycleMode {
+        /** Draw all dependencies the same way */
+        NONE,
+        /** Draw everything, with cyclic dependencies and the components on them in red */
+        HIGHLIGHT,
+        /** Draw only the components and dependencies that take part in a cycle */
+        ONLY
+    }
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Renderer used for the images (time budget and layout fallback)
+     */
+    public void setRenderer(DiagramRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    public void setCycleMode(CycleMode cycleMode) {
+        this.cycleMode = cycleMode;
+    }
+
+    /**
+     * Colours components by their distance from the main sequence and shows I/A/D in them;
+     * null turns this off. Cycle highlighting takes precedence over the distance colour.
+     */
+    public void setArchitectureReport(ArchitectureReport architectureReport) {
+        this.architectureReport = architectureReport;
     }
 
     /**
@@ -35,6 +63,12 @@ public class ComponentPlantUMLGenerator {
      * @return PlantUML code as string
      */
     public String generatePlantUML(Map<String, ComponentInfo> componentMap) {
+        try (AnalysisMetrics.Timer timer = metrics.start("component_diagram.text")) {
+            return buildPlantUML(componentMap);
+        }
+    }
+
+    private String buildPlantUML(Map<String, ComponentInfo> componentMap) {
         StringBuilder uml = new StringBuilder();
 
         uml.append("@startuml\n");
@@ -46,15 +80,30 @@ public class ComponentPlantUMLGenerator {
         uml.append("}\n");
         uml.append("left to right direction\n\n");
 
+        // Find the dependencies that form cycles, if they are to be shown
+        Set<CycleDetector.Dependency> cyclicEdges = Collections.emptySet();
+        Set<String> cyclicComponents = new HashSet<>();
+        if (cycleMode != CycleMode.NONE) {
+            List<CycleDetector.Cycle> cycles = new CycleDetector().findCycles(componentMap);
+            cyclicEdges = CycleDetector.cyclicEdges(cycles);
+            for (CycleDetector.Cycle cycle : cycles) {
+                cyclicComponents.addAll(cycle.getComponents());
+            }
+        }
+
         // Generate component definitions
         for (ComponentInfo component : componentMap.values()) {
-            generateComponentDefinition(component, uml);
+            boolean inCycle = cyclicComponents.contains(component.getComponentName());
+            if (cycleMode == CycleMode.ONLY && !inCycle) {
+                continue;
+            }
+            generateComponentDefinition(component, inCycle, uml);
             uml.append("\n");
         }
 
         // Generate relationships (dependencies)
         uml.append("\n' Component Dependencies\n");
-        generateDependencies(componentMap, uml);
+        generateDependencies(componentMap, cyclicEdges, uml);
 
         uml.append("@enduml\n");
 
@@ -64,12 +113,26 @@ public class ComponentPlantUMLGenerator {
     /**
      * Generates a single component definition
      */
-    private void generateComponentDefinition(ComponentInfo component, StringBuilder uml) {
+    private void generateComponentDefinition(ComponentInfo component, boolean inCycle, StringBuilder uml) {
         String componentName = component.getComponentName();
         String safeComponentName = sanitizeComponentName(componentName);
 
         uml.append("component \"").append(componentName).append("\" as ").append(safeComponentName);
-        uml.append(" <<component>> {\n");
+        uml.append(" <<component>>");
+        ArchitectureReport.PackageMetrics packageMetrics = architectureReport != null
+                ? architectureReport.getPackages().get(componentName) : null;
+        if (inCycle) {
+            uml.append(" #FFCCCC");
+        } else if (packageMetrics != null) {
+            uml.append(" ").append(distanceColor(packageMetrics.getDistance()));
+        }
+        uml.append(" {\n");
+
+        if (packageMetrics != null) {
+            uml.append(String.format(Locale.ROOT, "  [I=%.2f A=%.2f D=%.2f]\n",
+                    packageMetrics.getInstability(), packageMetrics.getAbstractness(),
+                    packageMetrics.getDistance()));
+        }
 
         // List provided interfaces
         if (!component.getProvidedInterfaces().isEmpty()) {
@@ -94,9 +157,22 @@ public class ComponentPlantUMLGenerator {
     }
 
     /**
-     * Generates dependency relationships between components
+     * Green near the main sequence, yellow in between, red far from it
      */
-    private void generateDependencies(Map<String, ComponentInfo> componentMap, StringBuilder uml) {
+    private String distanceColor(double distance) {
+        if (distance < 0.3) {
+            return "#CCFFCC";
+        } else if (distance < 0.6) {
+            return "#FFFFCC";
+        }
+        return "#FFCC99";
+    }
+
+    /**
+     * Generates dependency relationships between components, marking cyclic ones
+     */
+    private void generateDependencies(Map<String, ComponentInfo> componentMap,
+                                      Set<CycleDetector.Dependency> cyclicEdges, StringBuilder uml) {
         for (ComponentInfo component : componentMap.values()) {
             String sourceComponentName = sanitizeComponentName(component.getComponentName());
 
@@ -104,7 +180,16 @@ public class ComponentPlantUMLGenerator {
                 String targetComponentName = sanitizeComponentName(targetPackage);
 
                 // Check if target component exists
-                if (componentMap.containsKey(targetPackage)) {
+                if (!componentMap.containsKey(targetPackage)) {
+                    continue;
+                }
+
+                boolean cyclic = cyclicEdges.contains(
+                        new CycleDetector.Dependency(component.getComponentName(), targetPackage));
+                if (cyclic) {
+                    uml.append(sourceComponentName).append(" .[#red,bold].> ").append(targetComponentName)
+                            .append(" : cycle\n");
+                } else if (cycleMode != CycleMode.ONLY) {
                     uml.append(sourceComponentName).append(" ..> ").append(targetComponentName)
                             .append(" : uses\n");
                 }
@@ -134,47 +219,34 @@ public class ComponentPlantUMLGenerator {
     }
 
     /**
-     * Generates an image file from PlantUML code
+     * Generates an image file from PlantUML code within the renderer's time budget
      */
     public void generateImage(String plantUMLCode, String outputPath, FileFormat format) throws IOException {
-        Path outputFilePath = Paths.get(outputPath);
-        Files.createDirectories(outputFilePath.getParent());
-
-        try (FileOutputStream outputStream = new FileOutputStream(outputPath)) {
-            SourceStringReader reader = new SourceStringReader(plantUMLCode);
-            DiagramDescription description = reader.outputImage(outputStream, new FileFormatOption(format));
-
-            if (description != null) {
-                String desc = description.getDescription();
-                logger.debug("PlantUML generation result: {}", desc);
-
-                if (desc != null && (desc.toLowerCase().contains("error") || desc.toLowerCase().contains("syntax"))) {
-                    logger.error("PlantUML generation error: {}", desc);
-                    throw new IOException("PlantUML failed to generate image: " + desc);
-                }
-            }
-        }
-
-        logger.info("Component diagram image saved to: {}", outputPath);
+        renderer.render("component", plantUMLCode, outputPath, format);
     }
 
     /**
      * Generates both PlantUML file and images (PNG, SVG)
      */
     public void generateDiagram(Map<String, ComponentInfo> componentMap, String basePath) throws IOException {
+        generateDiagram(componentMap, new FileDiagramSink(basePath));
+    }
+
+    /**
+     * Writes the PlantUML source and the PNG and SVG images to the sink
+     */
+    public void generateDiagram(Map<String, ComponentInfo> componentMap, DiagramSink sink) throws IOException {
         String plantUMLCode = generatePlantUML(componentMap);
 
         // Save PlantUML source
-        String pumlPath = basePath + ".puml";
-        savePlantUMLFile(plantUMLCode, pumlPath);
+        sink.writeText(".puml", plantUMLCode);
+        logger.info("PlantUML file saved to: {}", sink.describe(".puml"));
 
         // Generate PNG image
-        String pngPath = basePath + ".png";
-        generateImage(plantUMLCode, pngPath, FileFormat.PNG);
+        renderer.render("component", plantUMLCode, sink, FileFormat.PNG);
 
         // Generate SVG image (optional, better quality)
-        String svgPath = basePath + ".svg";
-        generateImage(plantUMLCode, svgPath, FileFormat.SVG);
+        renderer.render("component", plantUMLCode, sink, FileFormat.SVG);
 
         logger.info("Component diagrams generated successfully");
     }
@@ -0,0 +1,222 @@
+package com.javaanalysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Finds cyclic dependencies between components (packages).
+ *
+ * Uses Tarjan's strongly-connected-components algorithm, written iteratively so deep
+ * dependency chains cannot overflow the stack; it runs in O(V + E). Every strongly
+ * connected component with more than one member is a cycle. Its edge set is the
+ * dependencies that stay inside the component: each of them lies on some cycle, and no
+ * dependency outside that set does, so it is exactly what has to be looked at (and
+ * what the diagram highlights).
+ */
+public class CycleDetector {
+    private static final Logger logger = LoggerFactory.getLogger(CycleDetector.class);
+
+    /**
+     * A dependency between two components
+     */
+    public static class Dependency {
+        private final String source;
+        private final String target;
+
+        public Dependency(String source, String target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        public String getSource() { return source; }
+        public String getTarget() { return target; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Dependency)) return false;
+            Dependency other = (Dependency) o;
+            return source.equals(other.source) && target.equals(other.target);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * source.hashCode() + target.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return source + " -> " + target;
+        }
+    }
+
+    /**
+     * A set of mutually dependent components and the dependencies that form the cycle(s)
+     */
+    public static class Cycle {
+        private final List<String> components;
+        private final List<Dependency> edges;
+
+        public Cycle(List<String> components, List<Dependency> edges) {
+            this.components = components;
+            this.edges = edges;
+        }
+
+        public List<String> getComponents() { return components; }
+        public List<Dependency> getEdges() { return edges; }
+
+        @Override
+        public String toString() {
+            return "Cycle{" + components + ", edges=" + edges + '}';
+        }
+    }
+
+    /**
+     * Finds all dependency cycles between components, largest first
+     */
+    public List<Cycle> findCycles(Map<String, ComponentInfo> componentMap) {
+        // Dense ids in name order keep the result deterministic
+        List<String> names = new ArrayList<>(new TreeSet<>(componentMap.keySet()));
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            ids.put(names.get(i), i);
+        }
+
+        int[][] adjacency = new int[names.size()][];
+        for (int i = 0; i < names.size(); i++) {
+            Set<String> dependencies = componentMap.get(names.get(i)).getDependencies();
+            int[] targets = new int[dependencies.size()];
+            int count = 0;
+            for (String dependency : new TreeSet<>(dependencies)) {
+                Integer target = ids.get(dependency);
+                if (target != null && target != i) {
+                    targets[count++] = target;
+                }
+            }
+            adjacency[i] = Arrays.copyOf(targets, count);
+        }
+
+        int[] componentOf = stronglyConnectedComponents(adjacency);
+
+        // Group members and intra-component edges by SCC id
+        Map<Integer, List<String>> members = new TreeMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            members.computeIfAbsent(componentOf[i], k -> new ArrayList<>()).add(names.get(i));
+        }
+
+        Map<Integer, List<Dependency>> edges = new HashMap<>();
+        for (int source = 0; source < adjacency.length; source++) {
+            for (int target : adjacency[source]) {
+                if (componentOf[source] == componentOf[target]) {
+                    edges.computeIfAbsent(componentOf[source], k -> new ArrayList<>())
+                            .add(new Dependency(names.get(source), names.get(target)));
+                }
+            }
+        }
+
+        List<Cycle> cycles = new ArrayList<>();
+        for (Map.Entry<Integer, List<String>> entry : members.entrySet()) {
+            if (entry.getValue().size() > 1) {
+                cycles.add(new Cycle(entry.getValue(), edges.get(entry.getKey())));
+            }
+        }
+        cycles.sort(Comparator.comparingInt((Cycle c) -> c.getComponents().size()).reversed()
+                .thenComparing(c -> c.getComponents().get(0)));
+
+        return cycles;
+    }
+
+    /**
+     * Logs each cycle with its members and the dependencies that form it
+     */
+    public static void logCycles(List<Cycle> cycles) {
+        logger.info("Found {} component dependency cycles", cycles.size());
+        for (Cycle cycle : cycles) {
+            logger.info("  - Cycle of {} components: {}", cycle.getComponents().size(), cycle.getComponents());
+            for (Dependency edge : cycle.getEdges()) {
+                logger.info("      {}", edge);
+            }
+        }
+    }
+
+    /**
+     * Returns all dependencies that lie on some cycle
+     */
+    public static Set<Dependency> cyclicEdges(List<Cycle> cycles) {
+        Set<Dependency> result = new HashSet<>();
+        for (Cycle cycle : cycles) {
+            result.addAll(cycle.getEdges());
+        }
+        return result;
+    }
+
+    /**
+     * Iterative Tarjan SCC over a graph of dense int ids.
+     *
+     * @param adjacency outgoing edges per node
+     * @return the strongly connected component id of every node
+     */
+    public static int[] stronglyConnectedComponents(int[][] adjacency) {
+        int n = adjacency.length;
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] componentOf = new int[n];
+        int[] edgePosition = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] sccStack = new int[n];
+        int[] callStack = new int[n];
+        Arrays.fill(index, -1);
+
+        int nextIndex = 0;
+        int nextComponent = 0;
+        int sccTop = 0;
+
+        for (int start = 0; start < n; start++) {
+            if (index[start] != -1) {
+                continue;
+            }
+
+            int callTop = 0;
+            index[start] = low[start] = nextIndex++;
+            sccStack[sccTop++] = start;
+            onStack[start] = true;
+            callStack[callTop++] = start;
+
+            while (callTop > 0) {
+                int v = callStack[callTop - 1];
+                if (edgePosition[v] < adjacency[v].length) {
+                    int w = adjacency[v][edgePosition[v]++];
+                    if (index[w] == -1) {
+                        // Descend into w
+                        index[w] = low[w] = nextIndex++;
+                        sccStack[sccTop++] = w;
+                        onStack[w] = true;
+                        callStack[callTop++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                } else {
+                    // All edges of v done: v is a root if nothing below reached further up
+                    callTop--;
+                    if (low[v] == index[v]) {
+                        int w;
+                        do {
+                            w = sccStack[--sccTop];
+                            onStack[w] = false;
+                            componentOf[w] = nextComponent;
+                        } while (w != v);
+                        nextComponent++;
+                    }
+                    if (callTop > 0) {
+                        int parent = callStack[callTop - 1];
+                        low[parent] = Math.min(low[parent], low[v]);
+                    }
+                }
+            }
+        }
+
+        return componentOf;
+    }
+}
@@ -0,0 +1,241 @@
+package com.javaanalysis;
+
+import java.util.*;
+
+/**
+ * Transitive dependency and path queries over a {@link ClassGraph}.
+ *
+ * The graph is condensed once into its strongly connected components (every class in a
+ * cycle reaches the same set of classes). A transitive closure is a {@link BitSet} over
+ * class ids, computed on first use by a breadth-first walk of the condensed graph and kept
+ * in a bounded LRU cache; the walk stops at any component whose closure is already cached
+ * and ORs that closure in instead. Shortest paths are a plain BFS over the class graph.
+ */
+public class DependencyReachability {
+    private static final int DEFAULT_CACHE_SIZE = 4096;
+
+    private final ClassGraph graph;
+    private final int[] componentOf;
+    private final int[][] members;
+    private final int[][] successors;
+    private final boolean[] cyclic;
+    private final Map<Integer, BitSet> closures;
+
+    public DependencyReachability(ClassGraph graph) {
+        this(graph, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize maximum number of component closures kept
+     */
+    public DependencyReachability(ClassGraph graph, int cacheSize) {
+        this.graph = graph;
+        int n = graph.size();
+
+        int[][] adjacency = new int[n][];
+        for (int i = 0; i < n; i++) {
+            adjacency[i] = graph.outgoing(i);
+        }
+        this.componentOf = CycleDetector.stronglyConnectedComponents(adjacency);
+
+        int componentCount = 0;
+        for (int component : componentOf) {
+            componentCount = Math.max(componentCount, component + 1);
+        }
+
+        // Members per component
+        int[] memberCount = new int[componentCount];
+        for (int component : componentOf) {
+            memberCount[component]++;
+        }
+        members = new int[componentCount][];
+        for (int c = 0; c < componentCount; c++) {
+            members[c] = new int[memberCount[c]];
+        }
+        int[] fill = new int[componentCount];
+        for (int i = 0; i < n; i++) {
+            members[componentOf[i]][fill[componentOf[i]]++] = i;
+        }
+
+        // Condensed edges, without duplicates and self loops
+        successors = new int[componentCount][];
+        cyclic = new boolean[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            cyclic[c] = members[c].length > 1;
+            Set<Integer> targets = new LinkedHashSet<>();
+            for (int member : members[c]) {
+                for (int target : graph.outgoing(member)) {
+                    if (componentOf[target] != c) {
+                        targets.add(componentOf[target]);
+                    }
+                }
+            }
+            successors[c] = new int[targets.size()];
+            int position = 0;
+            for (int target : targets) {
+                successors[c][position++] = target;
+            }
+        }
+
+        this.closures = Collections.synchronizedMap(new LinkedHashMap<Integer, BitSet>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, BitSet> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    public ClassGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Ids of all classes the given class transitively depends on. A class is part of its
+     * own closure only when it is on a dependency cycle. The result is a copy.
+     */
+    public BitSet transitiveDependencies(int id) {
+        return (BitSet) componentClosure(componentOf[id]).clone();
+    }
+
+    /**
+     * All classes the given class transitively depends on, in full-name order
+     *
+     * @throws IllegalArgumentException if the class is not in the model
+     */
+    public List<ClassInfo> transitiveDependencies(String className) {
+        return toClasses(transitiveDependencies(require(className)));
+    }
+
+    /**
+     * All classes that classes of the given package transitively depend on, in full-name order
+     */
+    public List<ClassInfo> packageDependencies(String packageName) {
+        Set<Integer> starts = new HashSet<>();
+        for (int i = 0; i < graph.size(); i++) {
+            if (ClassIndex.componentName(graph.name(i)).equals(packageName)) {
+                starts.add(componentOf[i]);
+            }
+        }
+        BitSet result = new BitSet(graph.size());
+        for (int component : starts) {
+            result.or(componentClosure(component));
+        }
+        return toClasses(result);
+    }
+
+    /**
+     * Whether a class transitively depends on another one
+     */
+    public boolean canReach(int from, int to) {
+        return componentClosure(componentOf[from]).get(to);
+    }
+
+    public boolean canReach(String from, String to) {
+        return canReach(require(from), require(to));
+    }
+
+    /**
+     * Shortest dependency path from one class to another, both ends included, or an empty
+     * list if there is none
+     */
+    public List<ClassInfo> shortestPath(String from, String to) {
+        int source = require(from);
+        int target = require(to);
+        List<ClassInfo> path = new ArrayList<>();
+        // A cached closure answers the negative case without a search
+        BitSet cached = closures.get(componentOf[source]);
+        if (source != target && cached != null && !cached.get(target)) {
+            return path;
+        }
+
+        int[] parent = new int[graph.size()];
+        Arrays.fill(parent, -1);
+        parent[source] = source;
+        int[] queue = new int[graph.size()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+
+        while (head < tail && parent[target] == -1) {
+            int v = queue[head++];
+            for (int w : graph.outgoing(v)) {
+                if (parent[w] == -1) {
+                    parent[w] = v;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        if (parent[target] == -1) {
+            return path;
+        }
+
+        for (int v = target; v != source; v = parent[v]) {
+            path.add(graph.node(v));
+        }
+        path.add(graph.node(source));
+        Collections.reverse(path);
+        return path;
+    }
+
+    private BitSet componentClosure(int component) {
+        BitSet closure = closures.get(component);
+        AnalysisEvents.cacheAccess("reachability", graph.name(members[component][0]).getFullName(), closure != null);
+        if (closure != null) {
+            return closure;
+        }
+
+        closure = new BitSet(graph.size());
+        if (cyclic[component]) {
+            for (int member : members[component]) {
+                closure.set(member);
+            }
+        }
+
+        boolean[] visited = new boolean[members.length];
+        visited[component] = true;
+        int[] queue = new int[members.length];
+        int head = 0;
+        int tail = 0;
+        for (int successor : successors[component]) {
+            visited[successor] = true;
+            queue[tail++] = successor;
+        }
+
+        while (head < tail) {
+            int c = queue[head++];
+            for (int member : members[c]) {
+                closure.set(member);
+            }
+            BitSet known = closures.get(c);
+            if (known != null) {
+                closure.or(known);
+                continue;
+            }
+            for (int successor : successors[c]) {
+                if (!visited[successor]) {
+                    visited[successor] = true;
+                    queue[tail++] = successor;
+                }
+            }
+        }
+
+        closures.put(component, closure);
+        return closure;
+    }
+
+    private int require(String className) {
+        int id = graph.find(className);
+        if (id < 0) {
+            throw new IllegalArgumentException("Class not found in the analyzed model: " + className);
+        }
+        return id;
+    }
+
+    private List<ClassInfo> toClasses(BitSet ids) {
+        List<ClassInfo> result = new ArrayList<>(ids.cardinality());
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            result.add(graph.node(id));
+        }
+        return result;
+    }
+}
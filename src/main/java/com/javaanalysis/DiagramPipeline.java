@@ -0,0 +1,313 @@
+package com.javaanalysis;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process API for embedding the analysis, e.g. in a build service that runs many diagram
+ * jobs in one JVM.
+ *
+ * A pipeline is configured once through its {@link Builder} and is immutable afterwards.
+ * Every call uses its own analyzers, generators and renderer, so any number of jobs may run
+ * on one pipeline concurrently; only the metrics and the library index are shared, and both
+ * are thread-safe. Nothing global is changed (no system properties, no {@code System.exit}):
+ * failures are thrown, and outputs go to the {@link DiagramSink} given to each call. Close
+ * the pipeline when done with it, to release the library archives it keeps open and delete
+ * the models it spilled to disk.
+ *
+ * <pre>
+ * try (DiagramPipeline pipeline = DiagramPipeline.builder(Paths.get("src/main/java")).depth(3).build()) {
+ *     Map&lt;String, ClassInfo&gt; model = pipeline.analyze();
+ *     MemoryDiagramSink sink = new MemoryDiagramSink("classes");
+ *     pipeline.classDiagram(model, sink);
+ *     byte[] png = sink.getBytes(".png");
+ * }
+ * </pre>
+ */
+public final class DiagramPipeline implements AutoCloseable {
+    private final Path source;
+    private final boolean bytecode;
+    private final LibraryTypeSolver libraries;
+    private final AnalysisMetrics metrics;
+    private final long renderTimeoutMillis;
+    private final ComponentPlantUMLGenerator.CycleMode cycleMode;
+    private final int depth;
+    private final int maxImplementations;
+    private final boolean hideSystemCalls;
+    private final int maxSubtreeCalls;
+    private final long memoryBudget;
+    private final List<SpillingClassStore> stores = new ArrayList<>();
+
+    private DiagramPipeline(Builder builder) {
+        this.source = builder.source;
+        this.bytecode = builder.bytecode;
+        this.libraries = builder.libraries.isEmpty() ? null : new LibraryTypeSolver(builder.libraries);
+        this.metrics = builder.metrics;
+        this.renderTimeoutMillis = builder.renderTimeoutMillis;
+        this.cycleMode = builder.cycleMode;
+        this.depth = builder.depth;
+        this.maxImplementations = builder.maxImplementations;
+        this.hideSystemCalls = builder.hideSystemCalls;
+        this.maxSubtreeCalls = builder.maxSubtreeCalls;
+        this.memoryBudget = builder.memoryBudget;
+        if (libraries != null) {
+            libraries.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Starts configuring a pipeline over a source directory, or over a class directory or
+     * jar with {@link Builder#bytecode(boolean)}
+     */
+    public static Builder builder(Path source) {
+        return new Builder(source);
+    }
+
+    /**
+     * Configuration of a {@link DiagramPipeline}; not thread-safe, build it on one thread
+     */
+    public static final class Builder {
+        private final Path source;
+        private boolean bytecode;
+        private List<Path> libraries = Collections.emptyList();
+        private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+        private long renderTimeoutMillis = DiagramRenderer.DEFAULT_TIMEOUT_MILLIS;
+        private ComponentPlantUMLGenerator.CycleMode cycleMode = ComponentPlantUMLGenerator.CycleMode.NONE;
+        private int depth = 1;
+        private int maxImplementations;
+        private boolean hideSystemCalls;
+        private int maxSubtreeCalls = -1;
+        private long memoryBudget;
+
+        private Builder(Path source) {
+            this.source = source;
+        }
+
+        /**
+         * Reads compiled classes (a class directory or a jar) instead of sources
+         */
+        public Builder bytecode(boolean bytecode) {
+            this.bytecode = bytecode;
+            return this;
+        }
+
+        /**
+         * Jars, class directories or directories of jars that sequence calls may resolve
+         * into; indexed once, on first use, for all jobs of the pipeline
+         */
+        public Builder libraries(List<Path> libraries) {
+            this.libraries = new ArrayList<>(libraries);
+            return this;
+        }
+
+        /**
+         * Metrics shared by all jobs; disabled by default
+         */
+        public Builder metrics(AnalysisMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Time budget per image render (0 = none); see {@link DiagramRenderer}
+         */
+        public Builder renderTimeoutMillis(long renderTimeoutMillis) {
+            this.renderTimeoutMillis = renderTimeoutMillis;
+            return this;
+        }
+
+        public Builder cycleMode(ComponentPlantUMLGenerator.CycleMode cycleMode) {
+            this.cycleMode = cycleMode;
+            return this;
+        }
+
+        /**
+         * Levels of callees traced in sequence diagrams; see {@link SequenceAnalyzer#setMaxDepth(int)}
+         */
+        public Builder depth(int depth) {
+            this.depth = depth;
+            return this;
+        }
+
+        /**
+         * Implementations an interface call is fanned out to; see
+         * {@link SequenceAnalyzer#setMaxImplementations(int)}
+         */
+        public Builder maxImplementations(int maxImplementations) {
+            this.maxImplementations = maxImplementations;
+            return this;
+        }
+
+        public Builder hideSystemCalls(boolean hideSystemCalls) {
+            this.hideSystemCalls = hideSystemCalls;
+            return this;
+        }
+
+        /**
+         * Compacts sequence diagrams: repeated calls are folded into loops, and callees of a
+         * call drawing more than {@code maxSubtreeCalls} calls are collapsed (0 = fold only)
+         */
+        public Builder compact(int maxSubtreeCalls) {
+            this.maxSubtreeCalls = maxSubtreeCalls;
+            return this;
+        }
+
+        /**
+         * Estimated heap bytes of a source model before {@link #analyze()} spills it to a
+         * {@link SpillingClassStore} in the temporary directory (0 = keep it in memory)
+         */
+        public Builder memoryBudget(long memoryBudget) {
+            this.memoryBudget = memoryBudget;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the source does not exist
+         */
+        public DiagramPipeline build() {
+            if (!Files.isDirectory(source) && !(bytecode && Files.isRegularFile(source))) {
+                throw new IllegalArgumentException("Source directory does not exist or is not a directory: " + source);
+            }
+            return new DiagramPipeline(this);
+        }
+    }
+
+    /**
+     * Analyzes the sources (or class files) into a class model, which the diagram methods
+     * can share. With a memory budget the model may live on disk; it is owned by the
+     * pipeline and can be used until the pipeline is closed.
+     */
+    public Map<String, ClassInfo> analyze() throws IOException {
+        if (bytecode) {
+            ClassFileAnalyzer analyzer = new ClassFileAnalyzer();
+            analyzer.setMetrics(metrics);
+            return analyzer.analyze(source.toString());
+        }
+        JavaSourceAnalyzer analyzer = new JavaSourceAnalyzer();
+        analyzer.setMetrics(metrics);
+        analyzer.setMemoryBudget(memoryBudget, null);
+        Map<String, ClassInfo> classInfoMap = analyzer.analyzeDirectory(source.toString());
+        if (classInfoMap instanceof SpillingClassStore) {
+            synchronized (stores) {
+                stores.add((SpillingClassStore) classInfoMap);
+            }
+        }
+        return classInfoMap;
+    }
+
+    /**
+     * Draws the class diagram of a model to the sink (.puml, .png, .svg)
+     */
+    public void classDiagram(Map<String, ClassInfo> classInfoMap, DiagramSink sink) throws IOException {
+        PlantUMLGenerator generator = new PlantUMLGenerator();
+        generator.setMetrics(metrics);
+        generator.setRenderer(newRenderer());
+        generator.generateDiagram(classInfoMap, sink);
+    }
+
+    /**
+     * Groups a model into package components and draws them to the sink (.puml, .png, .svg)
+     *
+     * @return the components
+     */
+    public Map<String, ComponentInfo> componentDiagram(Map<String, ClassInfo> classInfoMap, DiagramSink sink)
+            throws IOException {
+        ComponentAnalyzer analyzer = new ComponentAnalyzer();
+        analyzer.setMetrics(metrics);
+        Map<String, ComponentInfo> componentMap = analyzer.analyzeComponents(classInfoMap);
+
+        ComponentPlantUMLGenerator generator = new ComponentPlantUMLGenerator();
+        generator.setMetrics(metrics);
+        generator.setRenderer(newRenderer());
+        generator.setCycleMode(cycleMode);
+        generator.generateDiagram(componentMap, sink);
+        return componentMap;
+    }
+
+    /**
+     * Traces the calls of a method and draws them to the sink (.puml, .png)
+     *
+     * @param classInfoMap model to resolve calls and find implementations from, or null; a
+     *                     model spilled to disk is not used
+     * @return the traced calls
+     */
+    public List<SequenceAnalyzer.CallTrace> sequenceDiagram(Map<String, ClassInfo> classInfoMap, String className,
+                                                            String methodName, DiagramSink sink) throws IOException {
+        List<SequenceAnalyzer.CallTrace> traces;
+        if (bytecode) {
+            ClassFileAnalyzer analyzer = new ClassFileAnalyzer();
+            analyzer.setMetrics(metrics);
+            analyzer.analyze(source.toString());
+            traces = analyzer.analyzeCalls(className, methodName);
+        } else {
+            try (SequenceAnalyzer analyzer = new SequenceAnalyzer(source.toString(), libraries)) {
+                analyzer.setMetrics(metrics);
+                analyzer.setMaxDepth(depth);
+                analyzer.setMaxImplementations(maxImplementations);
+                analyzer.setHideSystemCalls(hideSystemCalls);
+                // A spilled model would be read back class by class for every lookup
+                if (classInfoMap != null
+                        && !(classInfoMap instanceof SpillingClassStore && ((SpillingClassStore) classInfoMap).hasSpilled())) {
+                    analyzer.setClassModel(classInfoMap);
+                }
+                traces = analyzer.analyze(className, methodName);
+            }
+        }
+
+        SequencePlantUMLGenerator generator = new SequencePlantUMLGenerator();
+        generator.setMetrics(metrics);
+        generator.setRenderer(newRenderer());
+        if (maxSubtreeCalls >= 0) {
+            TraceCompactor compactor = new TraceCompactor();
+            compactor.setMetrics(metrics);
+            compactor.setMaxSubtreeCalls(maxSubtreeCalls);
+            generator.setCompactor(compactor);
+        }
+        generator.generateDiagram(SequenceAnalyzer.simpleClassName(className), methodName, traces, sink);
+        return traces;
+    }
+
+    /**
+     * Deletes the models spilled by {@link #analyze()} and closes the library archives;
+     * diagram calls still running may reopen the archives
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        synchronized (stores) {
+            for (SpillingClassStore store : stores) {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            stores.clear();
+        }
+        if (libraries != null) {
+            libraries.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * A renderer per job, so that render results do not pile up in a long-running process
+     */
+    private DiagramRenderer newRenderer() {
+        DiagramRenderer renderer = new DiagramRenderer();
+        renderer.setMetrics(metrics);
+        renderer.setTimeoutMillis(renderTimeoutMillis);
+        return renderer;
+    }
+}
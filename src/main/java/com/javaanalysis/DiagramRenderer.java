@@ -0,0 +1,516 @@
+package com.javaanalysis;
+
+import net.sourceforge.plantuml.FileFormat;
+import net.sourceforge.plantuml.FileFormatOption;
+import net.sourceforge.plantuml.SourceStringReader;
+import net.sourceforge.plantuml.core.DiagramDescription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Renders PlantUML text to image files, or to a {@link DiagramSink}, with a time budget per
+ * render.
+ *
+ * Each attempt runs on its own daemon thread and writes to a temporary file next to the
+ * target (or a buffer, for other sinks). When the budget runs out the thread is interrupted, its output stream closed and
+ * the attempt abandoned, then the diagram is tried again with a cheaper layout: PlantUML's
+ * built-in Smetana engine instead of Graphviz, and then Smetana without the dependency
+ * edges. A render that times out in every layout is logged and recorded, not thrown, so
+ * one pathological diagram cannot hang a build. Results are kept for the run summary.
+ *
+ * An abandoned attempt is not killed: PlantUML does not check for interrupts while laying
+ * out, and a Graphviz {@code dot} process it started keeps running, so the thread goes on
+ * using CPU and memory until it finishes or next writes. Abandoned threads are tracked for
+ * the whole JVM; while {@link #MAX_ABANDONED_RENDERS} of them are still alive, new renders
+ * are refused (recorded as {@link Outcome#REFUSED}) instead of piling up more, which matters
+ * in a long-running process such as a build daemon.
+ */
+public class DiagramRenderer {
+    private static final Logger logger = LoggerFactory.getLogger(DiagramRenderer.class);
+
+    /** Default time budget per render attempt */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 120_000;
+
+    /** Abandoned attempts that may still be running before new renders are refused */
+    public static final int MAX_ABANDONED_RENDERS = 4;
+
+    /** Timed out attempts of all renderers in this JVM, until their threads end */
+    private static final Set<Thread> abandoned = ConcurrentHashMap.newKeySet();
+
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private Engine engine = (code, out, format) -> new SourceStringReader(code).outputImage(out,
+            new FileFormatOption(format));
+    private final List<RenderResult> results = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Layouts tried in order until one finishes within the budget
+     */
+    public enum Layout {
+        /** The diagram as generated, laid out by Graphviz */
+        DEFAULT,
+        /** PlantUML's built-in Smetana layout engine */
+        SMETANA,
+        /** Smetana, with the dependency ({@code ..>}) edges left out */
+        SMETANA_REDUCED
+    }
+
+    /**
+     * How a render ended
+     */
+    public enum Outcome {
+        RENDERED,
+        /** Rendered, but only with a fallback layout */
+        FALLBACK,
+        /** Timed out in every layout; no image was written */
+        TIMED_OUT,
+        /** Not attempted because too many abandoned renders were still running; no image was written */
+        REFUSED
+    }
+
+    /**
+     * Draws the PlantUML text of one attempt; PlantUML itself outside of tests
+     */
+    interface Engine {
+        DiagramDescription draw(String code, OutputStream out, FileFormat format) throws IOException;
+    }
+
+    /**
+     * Outcome of rendering one image
+     */
+    public static class RenderResult {
+        private final String diagram;
+        private final String outputPath;
+        private final Outcome outcome;
+        private final Layout layout;
+        private final long elapsedMillis;
+
+        RenderResult(String diagram, String outputPath, Outcome outcome, Layout layout, long elapsedMillis) {
+            this.diagram = diagram;
+            this.outputPath = outputPath;
+            this.outcome = outcome;
+            this.layout = layout;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public String getDiagram() {
+            return diagram;
+        }
+
+        public String getOutputPath() {
+            return outputPath;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * Layout of the written image, or null if it timed out
+         */
+        public Layout getLayout() {
+            return layout;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Time budget per render attempt; 0 or less renders without a limit. A timed out attempt
+     * is abandoned, not stopped (see the class description): its thread may run on until
+     * PlantUML finishes, and at most {@link #MAX_ABANDONED_RENDERS} of them are tolerated.
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Number of abandoned render attempts in this JVM whose threads are still running
+     */
+    public static int getAbandonedCount() {
+        abandoned.removeIf(thread -> !thread.isAlive());
+        return abandoned.size();
+    }
+
+    /**
+     * Results of all renders so far, in order
+     */
+    public List<RenderResult> getResults() {
+        synchronized (results) {
+            return new ArrayList<>(results);
+        }
+    }
+
+    /**
+     * Renders the PlantUML code to an image file.
+     *
+     * @param diagram kind of diagram ("class", "component", ...), used for metrics and events
+     * @throws IOException if PlantUML reports an error or the file cannot be written
+     */
+    public RenderResult render(String diagram, String plantUMLCode, String outputPath, FileFormat format)
+            throws IOException {
+        Path target = Paths.get(outputPath).toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        return render(diagram, plantUMLCode, outputPath, new FileTarget(target), format);
+    }
+
+    /**
+     * Renders the PlantUML code to the sink's output for the format. A file sink is written
+     * through a temporary file as above; any other sink gets the image once an attempt has
+     * completed, and nothing if every layout timed out.
+     */
+    public RenderResult render(String diagram, String plantUMLCode, DiagramSink sink, FileFormat format)
+            throws IOException {
+        String extension = format.getFileSuffix();
+        if (sink instanceof FileDiagramSink) {
+            return render(diagram, plantUMLCode, ((FileDiagramSink) sink).getPath(extension).toString(), format);
+        }
+        return render(diagram, plantUMLCode, sink.describe(extension), new SinkTarget(sink, extension), format);
+    }
+
+    private RenderResult render(String diagram, String plantUMLCode, String outputPath, Target target,
+                                FileFormat format) throws IOException {
+        long startTime = System.nanoTime();
+        if (getAbandonedCount() >= MAX_ABANDONED_RENDERS) {
+            target.close(false);
+            RenderResult refused = new RenderResult(diagram, outputPath, Outcome.REFUSED, null, 0);
+            logger.error("Not rendering {}: {} abandoned renders are still running", outputPath,
+                    MAX_ABANDONED_RENDERS);
+            metrics.increment("render.refused");
+            results.add(refused);
+            return refused;
+        }
+        RenderResult result = null;
+        try (AnalysisMetrics.Timer timer = metrics.start(diagram + "_diagram.render." + format.name().toLowerCase())) {
+            for (Layout layout : Layout.values()) {
+                if (layout != Layout.DEFAULT && "sequence".equals(diagram)) {
+                    // Sequence diagrams are not laid out by Graphviz; a fallback would not be cheaper
+                    continue;
+                }
+                String code = applyLayout(plantUMLCode, layout);
+                if (code == null) {
+                    continue;
+                }
+                if (layout != Layout.DEFAULT && getAbandonedCount() >= MAX_ABANDONED_RENDERS) {
+                    logger.warn("Not trying the {} layout for {}: {} abandoned renders are still running", layout,
+                            outputPath, MAX_ABANDONED_RENDERS);
+                    break;
+                }
+                if (attempt(diagram, code, target.open(), outputPath, format, layout)) {
+                    target.commit();
+                    result = new RenderResult(diagram, outputPath,
+                            layout == Layout.DEFAULT ? Outcome.RENDERED : Outcome.FALLBACK, layout,
+                            elapsedMillis(startTime));
+                    break;
+                }
+                logger.warn("Rendering {} with the {} layout timed out after {} ms", outputPath, layout,
+                        timeoutMillis);
+                metrics.increment("render.timeouts");
+            }
+        } finally {
+            target.close(result != null);
+        }
+
+        if (result == null) {
+            result = new RenderResult(diagram, outputPath, Outcome.TIMED_OUT, null, elapsedMillis(startTime));
+            logger.error("Giving up on {}: every layout timed out", outputPath);
+        } else if (result.getOutcome() == Outcome.FALLBACK) {
+            metrics.increment("render.fallbacks");
+            logger.info("Diagram image saved to: {} (fallback layout {})", outputPath, result.getLayout());
+        } else {
+            logger.info("Diagram image saved to: {}", outputPath);
+        }
+        results.add(result);
+        return result;
+    }
+
+    /**
+     * Logs how the renders of this run went; timed out and fallback renders are listed
+     */
+    public void logSummary() {
+        List<RenderResult> snapshot = getResults();
+        if (snapshot.isEmpty()) {
+            return;
+        }
+        int rendered = 0;
+        int fallback = 0;
+        int timedOut = 0;
+        int refused = 0;
+        for (RenderResult result : snapshot) {
+            switch (result.getOutcome()) {
+                case RENDERED:
+                    rendered++;
+                    break;
+                case FALLBACK:
+                    fallback++;
+                    break;
+                case REFUSED:
+                    refused++;
+                    break;
+                default:
+                    timedOut++;
+            }
+        }
+        logger.info("Render summary: {} rendered, {} with a fallback layout, {} timed out, {} refused", rendered,
+                fallback, timedOut, refused);
+        for (RenderResult result : snapshot) {
+            if (result.getOutcome() == Outcome.FALLBACK) {
+                logger.warn("  fallback  {} ({} layout, {} ms)", result.getOutputPath(), result.getLayout(),
+                        result.getElapsedMillis());
+            } else if (result.getOutcome() == Outcome.TIMED_OUT) {
+                logger.warn("  timed out {} ({} ms); the .puml source is still available", result.getOutputPath(),
+                        result.getElapsedMillis());
+            } else if (result.getOutcome() == Outcome.REFUSED) {
+                logger.warn("  refused   {}; the .puml source is still available", result.getOutputPath());
+            }
+        }
+    }
+
+    /**
+     * Where the attempts of one render write to
+     */
+    private interface Target {
+        /**
+         * Stream for the next attempt, replacing what an earlier attempt wrote
+         */
+        OutputStream open() throws IOException;
+
+        /**
+         * Keeps what the last attempt wrote as the image
+         */
+        void commit() throws IOException;
+
+        /**
+         * Called once after the last attempt
+         */
+        void close(boolean committed) throws IOException;
+    }
+
+    /**
+     * Writes to a temporary file next to the image and moves it in place on commit
+     */
+    private static final class FileTarget implements Target {
+        private final Path target;
+        private final Path partial;
+
+        FileTarget(Path target) {
+            this.target = target;
+            this.partial = target.resolveSibling(target.getFileName() + ".part");
+        }
+
+        @Override
+        public OutputStream open() throws IOException {
+            return Files.newOutputStream(partial);
+        }
+
+        @Override
+        public void commit() throws IOException {
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        @Override
+        public void close(boolean committed) throws IOException {
+            Files.deleteIfExists(partial);
+            if (!committed) {
+                // Leave no stale image from an earlier run behind
+                Files.deleteIfExists(target);
+            }
+        }
+    }
+
+    /**
+     * Buffers each attempt and hands the completed image to a sink on commit
+     */
+    private static final class SinkTarget implements Target {
+        private final DiagramSink sink;
+        private final String extension;
+        private AttemptBuffer buffer;
+
+        SinkTarget(DiagramSink sink, String extension) {
+            this.sink = sink;
+            this.extension = extension;
+        }
+
+        @Override
+        public OutputStream open() {
+            buffer = new AttemptBuffer();
+            return buffer;
+        }
+
+        @Override
+        public void commit() throws IOException {
+            try (OutputStream out = sink.open(extension)) {
+                buffer.writeTo(out);
+            }
+        }
+
+        @Override
+        public void close(boolean committed) {
+            buffer = null;
+        }
+    }
+
+    /**
+     * In-memory attempt output that, like a closed file stream, fails the writes of an
+     * abandoned worker once it has been closed
+     */
+    private static final class AttemptBuffer extends ByteArrayOutputStream {
+        private volatile boolean closed;
+
+        @Override
+        public synchronized void write(int b) {
+            checkOpen();
+            super.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            checkOpen();
+            super.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        private void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("Render attempt was abandoned");
+            }
+        }
+    }
+
+    /**
+     * Runs one render attempt on a separate thread.
+     *
+     * @return true if the image was written to {@code outputStream}, false if the attempt timed out
+     */
+    private boolean attempt(String diagram, String code, OutputStream outputStream, String outputPath,
+                            FileFormat format, Layout layout) throws IOException {
+        AnalysisEvents.DiagramRenderedEvent event = new AnalysisEvents.DiagramRenderedEvent();
+        event.begin();
+        boolean success = false;
+        boolean timedOut = false;
+        Engine engine = this.engine;
+        FutureTask<DiagramDescription> task = new FutureTask<>(() -> engine.draw(code, outputStream, format));
+        Thread worker = new Thread(task, "plantuml-render-" + outputPath);
+        worker.setDaemon(true);
+        try {
+            worker.start();
+            DiagramDescription description = timeoutMillis > 0
+                    ? task.get(timeoutMillis, TimeUnit.MILLISECONDS)
+                    : task.get();
+            checkDescription(description);
+            success = true;
+            return true;
+        } catch (TimeoutException e) {
+            timedOut = true;
+            task.cancel(true);
+            if (worker.isAlive()) {
+                abandoned.add(worker);
+                metrics.increment("render.abandoned");
+            }
+            return false;
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering " + outputPath, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("PlantUML failed to render " + outputPath, cause);
+        } finally {
+            // Closing the stream also stops an abandoned worker at its next write
+            outputStream.close();
+            AnalysisEvents.diagramRendered(event, diagram, format.name(), layout.name(), timedOut, code, success);
+        }
+    }
+
+    private static void checkDescription(DiagramDescription description) throws IOException {
+        if (description == null) {
+            return;
+        }
+        String desc = description.getDescription();
+        logger.debug("PlantUML generation result: {}", desc);
+
+        if (desc != null && (desc.toLowerCase().contains("error") || desc.toLowerCase().contains("syntax"))) {
+            logger.error("PlantUML generation error: {}", desc);
+            throw new IOException("PlantUML failed to generate image: " + desc);
+        }
+    }
+
+    /**
+     * Rewrites the PlantUML text for a layout, or returns null when the layout would not
+     * change anything (e.g. no dependency edges to drop)
+     */
+    static String applyLayout(String plantUMLCode, Layout layout) {
+        switch (layout) {
+            case SMETANA:
+                return withSmetana(plantUMLCode);
+            case SMETANA_REDUCED:
+                if (!plantUMLCode.contains(" ..> ")) {
+                    return null;
+                }
+                StringBuilder reduced = new StringBuilder(plantUMLCode.length());
+                for (String line : plantUMLCode.split("\n")) {
+                    if (!line.contains(" ..> ")) {
+                        reduced.append(line).append('\n');
+                    }
+                }
+                return withSmetana(reduced.toString());
+            default:
+                return plantUMLCode;
+        }
+    }
+
+    private static String withSmetana(String plantUMLCode) {
+        int start = plantUMLCode.indexOf("@startuml");
+        if (start < 0) {
+            return plantUMLCode;
+        }
+        int lineEnd = plantUMLCode.indexOf('\n', start);
+        if (lineEnd < 0) {
+            return plantUMLCode;
+        }
+        return plantUMLCode.substring(0, lineEnd + 1) + "!pragma layout smetana\n"
+                + plantUMLCode.substring(lineEnd + 1);
+    }
+
+    private static long elapsedMillis(long startTime) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+}
@@ -0,0 +1,36 @@
+package com.javaanalysis;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Destination of one generated diagram: its PlantUML source and images, one output per
+ * extension ({@code .puml}, {@code .png}, {@code .svg}).
+ *
+ * {@link FileDiagramSink} writes files next to a base path, {@link MemoryDiagramSink} keeps
+ * byte arrays, e.g. for a service answering requests without touching the disk.
+ */
+public interface DiagramSink {
+    /**
+     * Opens the output with the given extension for writing, replacing earlier content; the
+     * caller closes it
+     */
+    OutputStream open(String extension) throws IOException;
+
+    /**
+     * Name of an output, for logs and render results
+     */
+    String describe(String extension);
+
+    /**
+     * Writes text, UTF-8 encoded, to the output with the given extension
+     */
+    default void writeText(String extension, String text) throws IOException {
+        try (Writer writer = new OutputStreamWriter(open(extension), StandardCharsets.UTF_8)) {
+            writer.write(text);
+        }
+    }
+}
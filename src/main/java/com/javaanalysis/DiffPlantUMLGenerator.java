@@ -0,0 +1,211 @@
+package com.javaanalysis;
+
+import net.sourceforge.plantuml.FileFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Generates a PlantUML delta diagram from a {@link ModelDiff}: added classes in green,
+ * removed ones in red, changed ones in yellow with their added and removed members, and
+ * the inheritance and dependency edges that appeared (green) or disappeared (red).
+ * Unchanged classes are only drawn when a changed edge points at them.
+ */
+public class DiffPlantUMLGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(DiffPlantUMLGenerator.class);
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+    private DiagramRenderer renderer = new DiagramRenderer();
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Renderer used for the images (time budget and layout fallback)
+     */
+    public void setRenderer(DiagramRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Generates PlantUML code for the delta diagram
+     */
+    public String generatePlantUML(ModelDiff diff) {
+        try (AnalysisMetrics.Timer timer = metrics.start("diff_diagram.text")) {
+            return buildPlantUML(diff);
+        }
+    }
+
+    private String buildPlantUML(ModelDiff diff) {
+        StringBuilder uml = new StringBuilder();
+        StringBuilder edges = new StringBuilder();
+        Set<String> declared = new HashSet<>();
+        Map<String, String> referenced = new TreeMap<>();
+
+        uml.append("@startuml\n");
+        uml.append("skinparam classAttributeIconSize 0\n");
+        uml.append("skinparam classFontSize 12\n");
+        uml.append("left to right direction\n\n");
+
+        for (ClassInfo classInfo : diff.getAddedClasses()) {
+            declareClass(classInfo.getFullName(), "#CCFFCC", Collections.<String>emptyList(),
+                    Collections.<String>emptyList(), declared, uml);
+            inheritanceEdges(diff, classInfo, true, "#green", edges, referenced);
+        }
+        for (ClassInfo classInfo : diff.getRemovedClasses()) {
+            declareClass(classInfo.getFullName(), "#FFCCCC", Collections.<String>emptyList(),
+                    Collections.<String>emptyList(), declared, uml);
+            inheritanceEdges(diff, classInfo, false, "#red", edges, referenced);
+        }
+
+        for (ModelDiff.ClassChange change : diff.getChangedClasses()) {
+            String name = change.getClassName();
+            declareClass(name, "#FFFFCC", change.getAddedMembers(), change.getRemovedMembers(), declared, uml);
+
+            if (change.isSuperClassChanged()) {
+                ClassInfo oldClass = change.getOldClass();
+                ClassInfo newClass = change.getNewClass();
+                if (oldClass.getSuperClass() != null) {
+                    edge(diff.resolveName(oldClass.getSuperClass(), oldClass, false), " <|-[#red]- ", name, "",
+                            edges, referenced);
+                }
+                if (newClass.getSuperClass() != null) {
+                    edge(diff.resolveName(newClass.getSuperClass(), newClass, true), " <|-[#green]- ", name, "",
+                            edges, referenced);
+                }
+            }
+            for (String interfaceName : change.getAddedInterfaces()) {
+                edge(interfaceName, " <|.[#green]. ", name, "", edges, referenced);
+            }
+            for (String interfaceName : change.getRemovedInterfaces()) {
+                edge(interfaceName, " <|.[#red]. ", name, "", edges, referenced);
+            }
+            for (String dependency : change.getAddedDependencies()) {
+                edge(name, " .[#green].> ", dependency, " : uses (new)", edges, referenced);
+            }
+            for (String dependency : change.getRemovedDependencies()) {
+                edge(name, " .[#red].> ", dependency, " : uses (removed)", edges, referenced);
+            }
+        }
+
+        // Classes that only appear as edge ends are drawn plain
+        for (Map.Entry<String, String> entry : referenced.entrySet()) {
+            if (declared.add(entry.getKey())) {
+                uml.append("class \"").append(entry.getValue()).append("\" as ").append(entry.getKey()).append("\n");
+            }
+        }
+
+        uml.append("\n' Changed relationships\n");
+        uml.append(edges);
+
+        // Component level changes as a note
+        if (!diff.getAddedComponentDependencies().isEmpty() || !diff.getRemovedComponentDependencies().isEmpty()
+                || !diff.getNewCycles().isEmpty()) {
+            uml.append("\nnote as ComponentChanges\n");
+            uml.append("  <b>Component dependencies</b>\n");
+            for (CycleDetector.Dependency dependency : diff.getAddedComponentDependencies()) {
+                uml.append("  <color:green>+ ").append(dependency).append("</color>\n");
+            }
+            for (CycleDetector.Dependency dependency : diff.getRemovedComponentDependencies()) {
+                uml.append("  <color:red>- ").append(dependency).append("</color>\n");
+            }
+            for (CycleDetector.Cycle cycle : diff.getNewCycles()) {
+                uml.append("  <color:red><b>new cycle:</b> ").append(String.join(", ", cycle.getComponents()))
+                        .append("</color>\n");
+            }
+            uml.append("end note\n");
+        }
+
+        uml.append("@enduml\n");
+        return uml.toString();
+    }
+
+    private void declareClass(String fullName, String color, List<String> addedMembers, List<String> removedMembers,
+                              Set<String> declared, StringBuilder uml) {
+        String alias = alias(fullName);
+        declared.add(alias);
+        uml.append("class \"").append(fullName).append("\" as ").append(alias).append(" ").append(color);
+        if (addedMembers.isEmpty() && removedMembers.isEmpty()) {
+            uml.append("\n");
+            return;
+        }
+        uml.append(" {\n");
+        for (String member : addedMembers) {
+            uml.append("  <color:green>added ").append(member).append("</color>\n");
+        }
+        for (String member : removedMembers) {
+            uml.append("  <color:red>removed ").append(member).append("</color>\n");
+        }
+        uml.append("}\n");
+    }
+
+    private void inheritanceEdges(ModelDiff diff, ClassInfo classInfo, boolean newModel, String color,
+                                  StringBuilder edges, Map<String, String> referenced) {
+        String name = classInfo.getFullName();
+        if (classInfo.getSuperClass() != null) {
+            edge(diff.resolveName(classInfo.getSuperClass(), classInfo, newModel), " <|-[" + color + "]- ", name, "",
+                    edges, referenced);
+        }
+        for (String interfaceName : classInfo.getInterfaces()) {
+            edge(diff.resolveName(interfaceName, classInfo, newModel), " <|.[" + color + "]. ", name, "",
+                    edges, referenced);
+        }
+    }
+
+    private void edge(String from, String arrow, String to, String label, StringBuilder edges,
+                      Map<String, String> referenced) {
+        referenced.put(alias(from), from);
+        referenced.put(alias(to), to);
+        edges.append(alias(from)).append(arrow).append(alias(to)).append(label).append("\n");
+    }
+
+    /**
+     * PlantUML identifier for a class name; dots become double underscores
+     */
+    private String alias(String name) {
+        int generic = name.indexOf('<');
+        String clean = generic >= 0 ? name.substring(0, generic) : name;
+        return clean.replace(".", "__").replace("[]", "");
+    }
+
+    /**
+     * Saves PlantUML code to a file
+     */
+    public void savePlantUMLFile(String plantUMLCode, String outputPath) throws IOException {
+        Path path = Paths.get(outputPath);
+        Files.createDirectories(path.toAbsolutePath().getParent());
+
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(plantUMLCode);
+        }
+
+        logger.info("PlantUML file saved to: {}", outputPath);
+    }
+
+    /**
+     * Generates an image file from PlantUML code within the renderer's time budget
+     */
+    public void generateImage(String plantUMLCode, String outputPath, FileFormat format) throws IOException {
+        renderer.render("diff", plantUMLCode, outputPath, format);
+    }
+
+    /**
+     * Generates the PlantUML file, PNG and SVG images and the JSON report of a diff
+     */
+    public void generateDiagram(ModelDiff diff, String basePath) throws IOException {
+        String plantUMLCode = generatePlantUML(diff);
+
+        savePlantUMLFile(plantUMLCode, basePath + ".puml");
+        generateImage(plantUMLCode, basePath + ".png", FileFormat.PNG);
+        generateImage(plantUMLCode, basePath + ".svg", FileFormat.SVG);
+        diff.writeJson(Paths.get(basePath + ".json"));
+
+        logger.info("Diff diagrams generated successfully");
+    }
+}
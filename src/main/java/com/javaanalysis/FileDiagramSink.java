@@ -0,0 +1,43 @@
+package com.javaanalysis;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Writes a diagram to {@code <basePath>.puml}, {@code <basePath>.png}, ..., creating the
+ * directory if needed. Images are rendered to a temporary file next to the target and moved
+ * in place when complete (see {@link DiagramRenderer}).
+ */
+public class FileDiagramSink implements DiagramSink {
+    private final String basePath;
+
+    public FileDiagramSink(String basePath) {
+        this.basePath = basePath;
+    }
+
+    public String getBasePath() {
+        return basePath;
+    }
+
+    /**
+     * File of the output with the given extension
+     */
+    public Path getPath(String extension) {
+        return Paths.get(basePath + extension);
+    }
+
+    @Override
+    public OutputStream open(String extension) throws IOException {
+        Path path = getPath(extension).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        return Files.newOutputStream(path);
+    }
+
+    @Override
+    public String describe(String extension) {
+        return basePath + extension;
+    }
+}
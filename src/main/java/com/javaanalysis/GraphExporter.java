@@ -0,0 +1,365 @@
+package com.javaanalysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Exports the class and component graphs as JSON lines, GraphML or Graphviz DOT.
+ *
+ * Output is streamed: each class is written together with its outgoing edges as soon as
+ * they are resolved, so memory use does not grow with the size of the document. Only
+ * dependencies on classes (or components) that are part of the model become edges.
+ */
+public class GraphExporter {
+    private static final Logger logger = LoggerFactory.getLogger(GraphExporter.class);
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+
+    /**
+     * Supported output formats
+     */
+    public enum Format {
+        /** One JSON object per line: nodes ("type":"node") and edges ("type":"edge") */
+        JSONL,
+        /** GraphML, readable by yEd, Gephi, NetworkX and others */
+        GRAPHML,
+        /** Graphviz DOT */
+        DOT;
+
+        /**
+         * Picks the format from a file extension (.jsonl, .graphml, .dot / .gv)
+         */
+        public static Format fromFileName(String fileName) {
+            String lower = fileName.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".jsonl") || lower.endsWith(".ndjson")) {
+                return JSONL;
+            } else if (lower.endsWith(".graphml")) {
+                return GRAPHML;
+            } else if (lower.endsWith(".dot") || lower.endsWith(".gv")) {
+                return DOT;
+            }
+            throw new IllegalArgumentException("Unknown export format for " + fileName
+                    + " (use .jsonl, .graphml or .dot)");
+        }
+    }
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Exports the class graph to a file, the format taken from its extension
+     */
+    public void exportClasses(Map<String, ClassInfo> classInfoMap, String outputPath) throws IOException {
+        Format format = Format.fromFileName(outputPath);
+        try (OutputStream out = newOutputStream(outputPath)) {
+            exportClasses(classInfoMap, out, format);
+        }
+        logger.info("Class graph exported to: {}", outputPath);
+    }
+
+    /**
+     * Exports the component graph to a file, the format taken from its extension
+     */
+    public void exportComponents(Map<String, ComponentInfo> componentMap, String outputPath) throws IOException {
+        Format format = Format.fromFileName(outputPath);
+        try (OutputStream out = newOutputStream(outputPath)) {
+            exportComponents(componentMap, out, format);
+        }
+        logger.info("Component graph exported to: {}", outputPath);
+    }
+
+    /**
+     * Streams the class graph (extends, implements and uses edges) to the output stream.
+     * Classes are read one at a time and targets are named from the index, so a spilled
+     * model is never loaded whole. The stream is flushed but not closed.
+     */
+    public void exportClasses(Map<String, ClassInfo> classInfoMap, OutputStream out, Format format) throws IOException {
+        try (AnalysisMetrics.Timer timer = metrics.start("export.classes." + format.name().toLowerCase())) {
+            ClassIndex index = new ClassIndex(classInfoMap);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            GraphWriter graph = newGraphWriter(format, writer);
+
+            graph.begin("classes", new String[]{"name", "package", "kind", "fields", "methods"},
+                    new Class<?>[]{String.class, String.class, String.class, Integer.class, Integer.class}, "kind");
+            for (int i = 0; i < index.size(); i++) {
+                ClassInfo classInfo = index.get(i);
+                graph.node(classInfo.getFullName(), new Object[]{
+                        classInfo.getClassName(),
+                        classInfo.getPackageName() == null ? "" : classInfo.getPackageName(),
+                        kindOf(classInfo),
+                        classInfo.getFields().size(),
+                        classInfo.getMethods().size()});
+
+                // Strongest kind first; a target referenced several ways gets one edge
+                Set<Integer> targets = new HashSet<>();
+                if (classInfo.getSuperClass() != null) {
+                    writeEdge(graph, index, i, classInfo.getSuperClass(), "extends", targets);
+                }
+                for (String interfaceName : classInfo.getInterfaces()) {
+                    writeEdge(graph, index, i, interfaceName, "implements", targets);
+                }
+                for (String dependency : classInfo.getDependencies()) {
+                    writeEdge(graph, index, i, dependency, "uses", targets);
+                }
+            }
+            graph.end();
+            writer.flush();
+        }
+    }
+
+    /**
+     * Streams the component graph to the output stream. The stream is flushed but not closed.
+     */
+    public void exportComponents(Map<String, ComponentInfo> componentMap, OutputStream out, Format format)
+            throws IOException {
+        try (AnalysisMetrics.Timer timer = metrics.start("export.components." + format.name().toLowerCase())) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            GraphWriter graph = newGraphWriter(format, writer);
+
+            graph.begin("components", new String[]{"classes", "interfaces", "provided", "required"},
+                    new Class<?>[]{Integer.class, Integer.class, Integer.class, Integer.class}, "kind");
+            for (String name : new TreeSet<>(componentMap.keySet())) {
+                ComponentInfo component = componentMap.get(name);
+                graph.node(name, new Object[]{
+                        component.getClasses().size(),
+                        component.getInterfaces().size(),
+                        component.getProvidedInterfaces().size(),
+                        component.getRequiredInterfaces().size()});
+                for (String dependency : new TreeSet<>(component.getDependencies())) {
+                    if (componentMap.containsKey(dependency) && !dependency.equals(name)) {
+                        graph.edge(name, dependency, "uses");
+                    }
+                }
+            }
+            graph.end();
+            writer.flush();
+        }
+    }
+
+    private void writeEdge(GraphWriter graph, ClassIndex index, int from, String name, String kind,
+                           Set<Integer> written) throws IOException {
+        int target = index.indexOf(name, from);
+        if (target >= 0 && target != from && written.add(target)) {
+            graph.edge(index.getName(from).getFullName(), index.getName(target).getFullName(), kind);
+        }
+    }
+
+    private static String kindOf(ClassInfo classInfo) {
+        if (classInfo.isEnum()) {
+            return "enum";
+        } else if (classInfo.isInterface()) {
+            return "interface";
+        } else if (classInfo.isAbstract()) {
+            return "abstract";
+        }
+        return "class";
+    }
+
+    private static OutputStream newOutputStream(String outputPath) throws IOException {
+        Path path = Path.of(outputPath).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        return Files.newOutputStream(path);
+    }
+
+    private static GraphWriter newGraphWriter(Format format, Writer writer) {
+        switch (format) {
+            case GRAPHML:
+                return new GraphMLWriter(writer);
+            case DOT:
+                return new DotWriter(writer);
+            default:
+                return new JsonLinesWriter(writer);
+        }
+    }
+
+    /**
+     * Writes one graph document; nodes and edges may be interleaved. Node attribute values
+     * are Strings or Integers, as declared by the types given to {@link #begin}.
+     */
+    private abstract static class GraphWriter {
+        protected final Writer writer;
+        protected String[] nodeAttributes;
+        protected Class<?>[] nodeTypes;
+        protected String edgeAttribute;
+
+        GraphWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        void begin(String graphName, String[] nodeAttributes, Class<?>[] nodeTypes, String edgeAttribute)
+                throws IOException {
+            this.nodeAttributes = nodeAttributes;
+            this.nodeTypes = nodeTypes;
+            this.edgeAttribute = edgeAttribute;
+        }
+
+        abstract void node(String id, Object[] values) throws IOException;
+
+        abstract void edge(String source, String target, String value) throws IOException;
+
+        void end() throws IOException {
+        }
+    }
+
+    private static class JsonLinesWriter extends GraphWriter {
+        JsonLinesWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void node(String id, Object[] values) throws IOException {
+            writer.write("{\"type\":\"node\",\"id\":");
+            writeJsonString(id);
+            for (int i = 0; i < values.length; i++) {
+                writer.write(",\"");
+                writer.write(nodeAttributes[i]);
+                writer.write("\":");
+                if (values[i] instanceof Integer) {
+                    writer.write(values[i].toString());
+                } else {
+                    writeJsonString(values[i].toString());
+                }
+            }
+            writer.write("}\n");
+        }
+
+        @Override
+        void edge(String source, String target, String value) throws IOException {
+            writer.write("{\"type\":\"edge\",\"source\":");
+            writeJsonString(source);
+            writer.write(",\"target\":");
+            writeJsonString(target);
+            writer.write(",\"" + edgeAttribute + "\":");
+            writeJsonString(value);
+            writer.write("}\n");
+        }
+
+        private void writeJsonString(String value) throws IOException {
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        writer.write("\\\"");
+                        break;
+                    case '\\':
+                        writer.write("\\\\");
+                        break;
+                    case '\n':
+                        writer.write("\\n");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            writer.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            writer.write(c);
+                        }
+                }
+            }
+            writer.write('"');
+        }
+    }
+
+    private static class GraphMLWriter extends GraphWriter {
+        private int edgeId;
+
+        GraphMLWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void begin(String graphName, String[] nodeAttributes, Class<?>[] nodeTypes, String edgeAttribute)
+                throws IOException {
+            super.begin(graphName, nodeAttributes, nodeTypes, edgeAttribute);
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+            for (int i = 0; i < nodeAttributes.length; i++) {
+                writer.write("  <key id=\"n_" + nodeAttributes[i] + "\" for=\"node\" attr.name=\"" + nodeAttributes[i]
+                        + "\" attr.type=\"" + (nodeTypes[i] == Integer.class ? "int" : "string") + "\"/>\n");
+            }
+            writer.write("  <key id=\"e_" + edgeAttribute + "\" for=\"edge\" attr.name=\"" + edgeAttribute
+                    + "\" attr.type=\"string\"/>\n");
+            writer.write("  <graph id=\"" + graphName + "\" edgedefault=\"directed\">\n");
+        }
+
+        @Override
+        void node(String id, Object[] values) throws IOException {
+            writer.write("    <node id=\"" + escapeXml(id) + "\">");
+            for (int i = 0; i < values.length; i++) {
+                writer.write("<data key=\"n_" + nodeAttributes[i] + "\">" + escapeXml(values[i].toString()) + "</data>");
+            }
+            writer.write("</node>\n");
+        }
+
+        @Override
+        void edge(String source, String target, String value) throws IOException {
+            writer.write("    <edge id=\"e" + (edgeId++) + "\" source=\"" + escapeXml(source)
+                    + "\" target=\"" + escapeXml(target) + "\"><data key=\"e_" + edgeAttribute + "\">"
+                    + escapeXml(value) + "</data></edge>\n");
+        }
+
+        @Override
+        void end() throws IOException {
+            writer.write("  </graph>\n</graphml>\n");
+        }
+
+        private static String escapeXml(String value) {
+            return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+                    .replace("\"", "&quot;");
+        }
+    }
+
+    private static class DotWriter extends GraphWriter {
+        DotWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void begin(String graphName, String[] nodeAttributes, Class<?>[] nodeTypes, String edgeAttribute)
+                throws IOException {
+            super.begin(graphName, nodeAttributes, nodeTypes, edgeAttribute);
+            writer.write("digraph " + graphName + " {\n");
+            writer.write("  node [shape=box];\n");
+        }
+
+        @Override
+        void node(String id, Object[] values) throws IOException {
+            writer.write("  " + quote(id) + " [");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(", ");
+                }
+                writer.write(nodeAttributes[i] + "=" + quote(values[i].toString()));
+            }
+            writer.write("];\n");
+        }
+
+        @Override
+        void edge(String source, String target, String value) throws IOException {
+            writer.write("  " + quote(source) + " -> " + quote(target) + " [" + edgeAttribute + "="
+                    + quote(value));
+            if ("extends".equals(value) || "implements".equals(value)) {
+                writer.write(", arrowhead=empty");
+            }
+            if ("implements".equals(value) || "uses".equals(value)) {
+                writer.write(", style=dashed");
+            }
+            writer.write("];\n");
+        }
+
+        @Override
+        void end() throws IOException {
+            writer.write("}\n");
+        }
+
+        private static String quote(String value) {
+            return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        }
+    }
+}
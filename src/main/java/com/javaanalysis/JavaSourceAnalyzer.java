@@ -1,7 +1,6 @@
 package com.javaanalysis;
 
 import com.github.javaparser.JavaParser;
-import com.github.javaparser.ParseResult;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Modifier;
 import com.github.javaparser.ast.NodeList;
@@ -12,101 +11,137 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InterruptedIOException;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.Flow;
 
 /**
  * Analyzes Java source files and extracts class information
  */
 public class JavaSourceAnalyzer {
     private static final Logger logger = LoggerFactory.getLogger(JavaSourceAnalyzer.class);
-    private final JavaParser javaParser;
+    private static final int DEFAULT_STREAM_BUFFER = 256;
     private final Map<String, ClassInfo> classInfoMap;
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+    private long memoryBudget;
+    private Path spillDirectory;
 
     public JavaSourceAnalyzer() {
-        this.javaParser = new JavaParser();
         this.classInfoMap = new HashMap<>();
     }
 
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
-     * Analyzes all Java files in the given directory
+     * Bounds the heap used for the result of {@link #analyzeDirectory}: beyond the budget
+     * (in estimated bytes) classes are spilled to a log in {@code spillDirectory} (null for
+     * the temporary directory). 0 keeps everything in memory.
+     */
+    public void setMemoryBudget(long memoryBudget, Path spillDirectory) {
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Analyzes all Java files in the given directory.
+     * Files are discovered, read, parsed and extracted concurrently by an {@link AnalysisPipeline}.
+     *
+     * With a memory budget the result is a {@link SpillingClassStore}, which the caller should
+     * close when done, and is not added to {@link #getClassInfoMap()} (that would keep it all
+     * on the heap).
+     *
+     * @return an unmodifiable snapshot of the classes found by this call, or the spilling store
      */
     public Map<String, ClassInfo> analyzeDirectory(String directoryPath) throws IOException {
-        File directory = new File(directoryPath);
-        if (!directory.exists() || !directory.isDirectory()) {
-            throw new IllegalArgumentException("Invalid directory: " + directoryPath);
-        }
+        File directory = validateDirectory(directoryPath);
 
         logger.info("Analyzing Java files in directory: {}", directoryPath);
 
-        List<Path> javaFiles = findJavaFiles(directory.toPath());
-        logger.info("Found {} Java files", javaFiles.size());
-
-        for (Path javaFile : javaFiles) {
-            try {
-                analyzeFile(javaFile);
-            } catch (Exception e) {
-                logger.error("Error analyzing file: {}", javaFile, e);
-            }
+        Map<String, ClassInfo> result;
+        if (memoryBudget > 0) {
+            SpillingClassStore store = new SpillingClassStore(memoryBudget, spillDirectory);
+            store.setMetrics(metrics);
+            result = store;
+        } else {
+            result = new HashMap<>();
+        }
+        try (AnalysisMetrics.Timer timer = metrics.start("analyze")) {
+            newPipeline().run(directory.toPath(), classInfo -> result.put(classInfo.getFullName(), classInfo));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Analysis interrupted: " + directoryPath);
         }
 
-        return classInfoMap;
-    }
-
-    /**
-     * Finds all .java files in the directory recursively
-     */
-    private List<Path> findJavaFiles(Path directory) throws IOException {
-        try (Stream<Path> paths = Files.walk(directory)) {
-            return paths
-                    .filter(Files::isRegularFile)
-                    .filter(path -> path.toString().endsWith(".java"))
-                    .collect(Collectors.toList());
+        if (memoryBudget > 0) {
+            return result;
         }
+        synchronized (classInfoMap) {
+            classInfoMap.putAll(result);
+        }
+        return Collections.unmodifiableMap(result);
     }
 
     /**
-     * Analyzes a single Java file
+     * Analyzes all Java files in the given directory, publishing each ClassInfo as soon as
+     * its file is done. Analysis starts on subscription and stops if the subscription is cancelled.
+     * Results are not added to {@link #getClassInfoMap()}.
+     *
+     * @param bufferSize maximum number of results held for a slow subscriber
      */
-    private void analyzeFile(Path filePath) throws IOException {
-        logger.debug("Analyzing file: {}", filePath);
+    public Flow.Publisher<ClassInfo> analyzeDirectoryStreaming(String directoryPath, int bufferSize) {
+        File directory = validateDirectory(directoryPath);
+        return new ClassInfoPublisher(newPipeline(), directory.toPath(), bufferSize);
+    }
 
-        ParseResult<CompilationUnit> parseResult = javaParser.parse(filePath);
+    public Flow.Publisher<ClassInfo> analyzeDirectoryStreaming(String directoryPath) {
+        return analyzeDirectoryStreaming(directoryPath, DEFAULT_STREAM_BUFFER);
+    }
 
-        if (!parseResult.isSuccessful()) {
-            logger.warn("Failed to parse file: {}", filePath);
-            parseResult.getProblems().forEach(problem ->
-                    logger.warn("Parse problem: {}", problem.getMessage()));
-            return;
+    private File validateDirectory(String directoryPath) {
+        File directory = new File(directoryPath);
+        if (!directory.exists() || !directory.isDirectory()) {
+            throw new IllegalArgumentException("Invalid directory: " + directoryPath);
         }
+        return directory;
+    }
 
-        CompilationUnit cu = parseResult.getResult().orElse(null);
-        if (cu == null) {
-            return;
-        }
+    private AnalysisPipeline newPipeline() {
+        AnalysisPipeline pipeline = new AnalysisPipeline(JavaParser::new, this::extractClasses);
+        pipeline.setMetrics(metrics);
+        return pipeline;
+    }
 
+    /**
+     * Extracts class information from a parsed compilation unit.
+     * Does not touch any analyzer state, so it may be called from several threads.
+     */
+    public List<ClassInfo> extractClasses(CompilationUnit cu) {
         String packageName = cu.getPackageDeclaration()
                 .map(pd -> pd.getNameAsString())
                 .orElse("");
 
+        List<ClassInfo> classes = new ArrayList<>();
+
         // Process classes
         cu.findAll(ClassOrInterfaceDeclaration.class).forEach(classDecl -> {
-            processClassDeclaration(classDecl, packageName);
+            classes.add(processClassDeclaration(classDecl, packageName));
         });
 
         // Process enums
         cu.findAll(EnumDeclaration.class).forEach(enumDecl -> {
-            processEnumDeclaration(enumDecl, packageName);
+            classes.add(processEnumDeclaration(enumDecl, packageName));
         });
+
+        return classes;
     }
 
     /**
      * Processes a class or interface declaration
      */
-    private void processClassDeclaration(ClassOrInterfaceDeclaration classDecl, String packageName) {
+    private ClassInfo processClassDeclaration(ClassOrInterfaceDeclaration classDecl, String packageName) {
         String className = classDecl.getNameAsString();
         ClassInfo classInfo = new ClassInfo(className, packageName);
 
@@ -142,14 +177,14 @@ public class JavaSourceAnalyzer {
             processConstructor(constructor, classInfo);
         });
 
-        classInfoMap.put(classInfo.getFullName(), classInfo);
         logger.debug("Processed class: {}", classInfo.getFullName());
+        return classInfo;
     }
 
     /**
      * Processes an enum declaration
      */
-    private void processEnumDeclaration(EnumDeclaration enumDecl, String packageName) {
+    private ClassInfo processEnumDeclaration(EnumDeclaration enumDecl, String packageName) {
         String enumName = enumDecl.getNameAsString();
         ClassInfo classInfo = new ClassInfo(enumName, packageName);
         classInfo.setEnum(true);
@@ -171,8 +206,8 @@ public class JavaSourceAnalyzer {
             classInfo.addField(fieldInfo);
         });
 
-        classInfoMap.put(classInfo.getFullName(), classInfo);
         logger.debug("Processed enum: {}", classInfo.getFullName());
+        return classInfo;
     }
 
     /**
@@ -289,7 +324,12 @@ public class JavaSourceAnalyzer {
                 || type.startsWith("java.util.");
     }
 
+    /**
+     * Returns an unmodifiable snapshot of every class found by {@link #analyzeDirectory} so far
+     */
     public Map<String, ClassInfo> getClassInfoMap() {
-        return classInfoMap;
+        synchronized (classInfoMap) {
+            return Collections.unmodifiableMap(new HashMap<>(classInfoMap));
+        }
     }
 }
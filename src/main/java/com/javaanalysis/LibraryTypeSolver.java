@@ -0,0 +1,372 @@
+package com.javaanalysis;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.javassistmodel.JavassistFactory;
+import javassist.ClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Type solver over library jars and class directories, e.g. a project's dependency jars or a
+ * whole local Gradle/Maven cache.
+ *
+ * Nothing is read until the first lookup. The index is then built once from the jars' entry
+ * tables and the directory listings, without opening any class file, so an unknown name is
+ * answered from a hash lookup. A class file is read and turned into a declaration only when
+ * its type is first asked for, and the declarations are kept in an LRU of bounded size.
+ * When the same class is found in several places (e.g. two versions of a library in a
+ * cache), the first in path order wins.
+ *
+ * Lookups are synchronized, but declarations are tied to the solver they came from. For
+ * resolving on several threads, give each thread its own {@link #copy()}: copies share the
+ * index and have their own cache.
+ *
+ * Archives are kept open between reads, at most {@link #MAX_OPEN_ARCHIVES} of them (the
+ * least recently read is closed first). {@link #close()} closes them; the solver stays
+ * usable and reopens archives as needed.
+ */
+public class LibraryTypeSolver implements TypeSolver, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LibraryTypeSolver.class);
+
+    /** Default number of loaded type declarations kept */
+    public static final int DEFAULT_CACHE_SIZE = 2048;
+
+    /** Number of archives kept open for reading class files */
+    public static final int MAX_OPEN_ARCHIVES = 64;
+
+    private final Index index;
+    private final int cacheSize;
+    private final Map<String, ResolvedReferenceTypeDeclaration> declarations;
+    private TypeSolver parent;
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+    private ClassPool classPool;
+    private int evictions;
+
+    /**
+     * Where a class file lives: a file on disk, or an entry of an archive
+     */
+    private static final class Location {
+        final Path file;
+        final String entry;
+
+        Location(Path file, String entry) {
+            this.file = file;
+            this.entry = entry;
+        }
+    }
+
+    public LibraryTypeSolver(List<Path> roots) {
+        this(roots, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param roots jar files, class directories, or directories to search for jars
+     * @param cacheSize number of loaded type declarations to keep
+     */
+    public LibraryTypeSolver(List<Path> roots, int cacheSize) {
+        this(new Index(roots), cacheSize);
+    }
+
+    private LibraryTypeSolver(Index index, int cacheSize) {
+        this.index = index;
+        this.cacheSize = cacheSize;
+        this.declarations = new LinkedHashMap<String, ResolvedReferenceTypeDeclaration>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ResolvedReferenceTypeDeclaration> eldest) {
+                if (size() <= LibraryTypeSolver.this.cacheSize) {
+                    return false;
+                }
+                evicted();
+                return true;
+            }
+        };
+    }
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * A solver over the same libraries that shares this one's index, without a parent and
+     * with an empty cache
+     */
+    public LibraryTypeSolver copy() {
+        LibraryTypeSolver copy = new LibraryTypeSolver(index, cacheSize);
+        copy.setMetrics(metrics);
+        return copy;
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        Objects.requireNonNull(parent, "parent");
+        if (this.parent != null) {
+            throw new IllegalStateException("This TypeSolver already has a parent.");
+        }
+        if (parent == this) {
+            throw new IllegalStateException("The parent of this TypeSolver cannot be itself.");
+        }
+        this.parent = parent;
+    }
+
+    @Override
+    public synchronized SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        if (classPool == null) {
+            index.build(metrics);
+            classPool = newClassPool();
+        }
+        String binaryName = index.binaryNames.get(name);
+        if (binaryName == null) {
+            return SymbolReference.unsolved();
+        }
+
+        ResolvedReferenceTypeDeclaration declaration = declarations.get(name);
+        AnalysisEvents.cacheAccess("library-types", name, declaration != null);
+        if (declaration == null) {
+            try (AnalysisMetrics.Timer timer = metrics.start("library.load")) {
+                CtClass ctClass = classPool.get(binaryName);
+                declaration = JavassistFactory.toTypeDeclaration(ctClass, getRoot());
+            } catch (NotFoundException e) {
+                logger.debug("Could not load library class {}", binaryName, e);
+                return SymbolReference.unsolved();
+            }
+            declarations.put(name, declaration);
+            metrics.increment("library.classes.loaded");
+        }
+        return SymbolReference.solved(declaration);
+    }
+
+    /**
+     * Number of classes found in the libraries, indexing them if that has not happened yet
+     */
+    public int getIndexedCount() {
+        index.build(metrics);
+        return index.binaryNames.size();
+    }
+
+    /**
+     * Closes the archives opened for reading class files, for this solver and every copy
+     * sharing its index
+     */
+    @Override
+    public void close() {
+        index.closeArchives();
+    }
+
+    /**
+     * Class files of the libraries by name. Built once, on first use by any of the solvers
+     * sharing it; read-only afterwards. Also holds the archives open for reading.
+     */
+    private static final class Index {
+        private final List<Path> roots;
+        private Map<String, String> binaryNames;
+        private Map<String, Location> locations;
+        private final Map<Path, ZipFile> openArchives = new LinkedHashMap<Path, ZipFile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, ZipFile> eldest) {
+                if (size() <= MAX_OPEN_ARCHIVES) {
+                    return false;
+                }
+                closeQuietly(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+
+        Index(List<Path> roots) {
+            this.roots = new ArrayList<>(roots);
+        }
+
+        synchronized void build(AnalysisMetrics metrics) {
+            if (binaryNames != null) {
+                return;
+            }
+            binaryNames = new HashMap<>();
+            locations = new HashMap<>();
+            int archives = 0;
+            try (AnalysisMetrics.Timer timer = metrics.start("library.index")) {
+                for (Path root : roots) {
+                    if (Files.isDirectory(root)) {
+                        archives += indexDirectory(root);
+                    } else if (Files.isRegularFile(root)) {
+                        indexArchive(root);
+                        archives++;
+                    } else {
+                        logger.warn("Library path does not exist: {}", root);
+                    }
+                }
+            }
+            metrics.add("library.archives", archives);
+            metrics.add("library.classes", locations.size());
+            logger.info("Indexed {} library classes from {} archives", locations.size(), archives);
+        }
+
+        /**
+         * Indexes the class files under a class directory and every archive below it
+         */
+        private int indexDirectory(Path root) {
+            List<Path> archives = new ArrayList<>();
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.sorted().forEach(path -> {
+                    String fileName = path.getFileName().toString();
+                    if (fileName.endsWith(".jar")) {
+                        archives.add(path);
+                    } else if (fileName.endsWith(".class")) {
+                        String relative = root.relativize(path).toString().replace('\\', '/');
+                        add(relative, new Location(path, null));
+                    }
+                });
+            } catch (IOException | UncheckedIOException e) {
+                logger.warn("Could not list library directory {}", root, e);
+            }
+            for (Path archive : archives) {
+                indexArchive(archive);
+            }
+            return archives.size();
+        }
+
+        private void indexArchive(Path archive) {
+            try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && !entry.getName().startsWith("META-INF/")) {
+                        add(entry.getName(), new Location(archive, entry.getName()));
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Could not read library archive {}", archive, e);
+            }
+        }
+
+        /**
+         * Reads an archive entry, opening the archive unless it is already open. Synchronized,
+         * so an archive is never closed while it is read.
+         */
+        synchronized byte[] readEntry(Location location, AnalysisMetrics metrics) throws IOException {
+            ZipFile zipFile = openArchives.get(location.file);
+            if (zipFile == null) {
+                zipFile = new ZipFile(location.file.toFile());
+                openArchives.put(location.file, zipFile);
+                metrics.increment("library.archives_opened");
+            }
+            ZipEntry entry = zipFile.getEntry(location.entry);
+            if (entry == null) {
+                throw new IOException("No entry " + location.entry);
+            }
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                return in.readAllBytes();
+            }
+        }
+
+        synchronized void closeArchives() {
+            for (Map.Entry<Path, ZipFile> archive : openArchives.entrySet()) {
+                closeQuietly(archive.getKey(), archive.getValue());
+            }
+            openArchives.clear();
+        }
+
+        private static void closeQuietly(Path path, ZipFile zipFile) {
+            try {
+                zipFile.close();
+            } catch (IOException e) {
+                logger.debug("Could not close library archive {}", path, e);
+            }
+        }
+
+        /**
+         * Registers a class file under its binary ({@code a.b.Outer$Inner}) and canonical
+         * ({@code a.b.Outer.Inner}) names
+         */
+        private void add(String path, Location location) {
+            if (!path.endsWith(".class") || path.endsWith("module-info.class") || path.endsWith("package-info.class")) {
+                return;
+            }
+            String binaryName = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+            if (locations.putIfAbsent(binaryName, location) == null) {
+                binaryNames.putIfAbsent(binaryName.replace('$', '.'), binaryName);
+            }
+        }
+    }
+
+    private ClassPool newClassPool() {
+        ClassPool pool = new ClassPool(false);
+        pool.appendSystemPath();
+        pool.appendClassPath(new IndexClassPath());
+        return pool;
+    }
+
+    /**
+     * Called for every declaration dropped from the LRU. Javassist keeps its own cache of
+     * every class it has read, including the ones only referenced from signatures, so the
+     * pool is replaced once as many declarations have been dropped as the LRU holds.
+     */
+    private void evicted() {
+        evictions++;
+        if (evictions >= cacheSize) {
+            classPool = newClassPool();
+            evictions = 0;
+            metrics.increment("library.pool_resets");
+        }
+    }
+
+    /**
+     * Javassist class path reading class files through the index
+     */
+    private class IndexClassPath implements ClassPath {
+        @Override
+        public InputStream openClassfile(String classname) throws NotFoundException {
+            Location location = index.locations.get(classname);
+            if (location == null) {
+                return null;
+            }
+            try {
+                if (location.entry == null) {
+                    return Files.newInputStream(location.file);
+                }
+                return new ByteArrayInputStream(index.readEntry(location, metrics));
+            } catch (IOException e) {
+                throw new NotFoundException("Could not read " + classname + " from " + location.file + ": "
+                        + e.getMessage());
+            }
+        }
+
+        @Override
+        public URL find(String classname) {
+            Location location = index.locations.get(classname);
+            if (location == null) {
+                return null;
+            }
+            try {
+                if (location.entry == null) {
+                    return location.file.toUri().toURL();
+                }
+                return URI.create("jar:" + location.file.toUri() + "!/" + location.entry).toURL();
+            } catch (MalformedURLException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
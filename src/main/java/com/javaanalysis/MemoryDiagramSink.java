@@ -0,0 +1,66 @@
+package com.javaanalysis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a diagram's outputs as byte arrays. An output becomes visible when the stream
+ * writing it is closed, so a reader never sees a half-written image.
+ */
+public class MemoryDiagramSink implements DiagramSink {
+    private final String name;
+    private final Map<String, byte[]> outputs = new ConcurrentHashMap<>();
+
+    public MemoryDiagramSink() {
+        this("diagram");
+    }
+
+    /**
+     * @param name used in logs and render results
+     */
+    public MemoryDiagramSink(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public OutputStream open(String extension) {
+        return new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                outputs.put(extension, toByteArray());
+            }
+        };
+    }
+
+    @Override
+    public String describe(String extension) {
+        return "memory:" + name + extension;
+    }
+
+    /**
+     * Content of an output, or null if it was not written (e.g. its render timed out)
+     */
+    public byte[] getBytes(String extension) {
+        return outputs.get(extension);
+    }
+
+    /**
+     * PlantUML source of the diagram, or null if it was not written
+     */
+    public String getPlantUML() {
+        byte[] bytes = outputs.get(".puml");
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Extensions of the outputs written so far
+     */
+    public Set<String> getExtensions() {
+        return new TreeSet<>(outputs.keySet());
+    }
+}
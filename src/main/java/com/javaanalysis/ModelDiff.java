@@ -0,0 +1,401 @@
+package com.javaanalysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Structural difference between two analysis results (e.g. a base and a branch).
+ *
+ * Each class gets a 64-bit signature hash over its kind, inheritance, members and declared
+ * dependencies; lists are combined order-independently so reordering is not a change.
+ * Classes are matched by full name, and only classes whose signature differs are compared
+ * member by member, so the diff is linear in the size of the two models. Component
+ * dependencies are derived from the resolved class edges of each model, and cycles are
+ * looked up with {@link CycleDetector}.
+ */
+public class ModelDiff {
+    private static final Logger logger = LoggerFactory.getLogger(ModelDiff.class);
+
+    private final List<ClassInfo> addedClasses = new ArrayList<>();
+    private final List<ClassInfo> removedClasses = new ArrayList<>();
+    private final List<ClassChange> changedClasses = new ArrayList<>();
+    private final List<CycleDetector.Dependency> addedComponentDependencies = new ArrayList<>();
+    private final List<CycleDetector.Dependency> removedComponentDependencies = new ArrayList<>();
+    private final List<CycleDetector.Cycle> newCycles = new ArrayList<>();
+    private ClassIndex oldIndex;
+    private ClassIndex newIndex;
+
+    /**
+     * What changed in a class that exists in both models
+     */
+    public static class ClassChange {
+        private final ClassInfo oldClass;
+        private final ClassInfo newClass;
+        private final List<String> addedMembers = new ArrayList<>();
+        private final List<String> removedMembers = new ArrayList<>();
+        private final List<String> addedInterfaces = new ArrayList<>();
+        private final List<String> removedInterfaces = new ArrayList<>();
+        private final List<String> addedDependencies = new ArrayList<>();
+        private final List<String> removedDependencies = new ArrayList<>();
+
+        public ClassChange(ClassInfo oldClass, ClassInfo newClass) {
+            this.oldClass = oldClass;
+            this.newClass = newClass;
+        }
+
+        public String getClassName() { return newClass.getFullName(); }
+        public ClassInfo getOldClass() { return oldClass; }
+        public ClassInfo getNewClass() { return newClass; }
+        public List<String> getAddedMembers() { return addedMembers; }
+        public List<String> getRemovedMembers() { return removedMembers; }
+        public List<String> getAddedInterfaces() { return addedInterfaces; }
+        public List<String> getRemovedInterfaces() { return removedInterfaces; }
+        public List<String> getAddedDependencies() { return addedDependencies; }
+        public List<String> getRemovedDependencies() { return removedDependencies; }
+
+        public boolean isSuperClassChanged() {
+            return !Objects.equals(oldClass.getSuperClass(), newClass.getSuperClass());
+        }
+
+        public boolean isKindChanged() {
+            return oldClass.isInterface() != newClass.isInterface() || oldClass.isAbstract() != newClass.isAbstract()
+                    || oldClass.isEnum() != newClass.isEnum();
+        }
+    }
+
+    /**
+     * Compares two models
+     *
+     * @param oldModel the base, e.g. the main branch
+     * @param newModel the changed model, e.g. a feature branch
+     */
+    public static ModelDiff compare(Map<String, ClassInfo> oldModel, Map<String, ClassInfo> newModel) {
+        ModelDiff diff = new ModelDiff();
+        ClassIndex oldIndex = new ClassIndex(oldModel);
+        ClassIndex newIndex = new ClassIndex(newModel);
+        diff.oldIndex = oldIndex;
+        diff.newIndex = newIndex;
+
+        Map<String, ClassInfo> oldByName = new HashMap<>();
+        for (ClassInfo classInfo : oldIndex.getClasses()) {
+            oldByName.put(classInfo.getFullName(), classInfo);
+        }
+
+        Set<String> matched = new HashSet<>();
+        for (ClassInfo newClass : newIndex.getClasses()) {
+            ClassInfo oldClass = oldByName.get(newClass.getFullName());
+            if (oldClass == null) {
+                diff.addedClasses.add(newClass);
+                continue;
+            }
+            matched.add(newClass.getFullName());
+            if (signature(oldClass) != signature(newClass)) {
+                ClassChange change = compareClass(oldClass, newClass, oldIndex, newIndex);
+                if (change != null) {
+                    diff.changedClasses.add(change);
+                }
+            }
+        }
+        for (ClassInfo oldClass : oldIndex.getClasses()) {
+            if (!matched.contains(oldClass.getFullName())) {
+                diff.removedClasses.add(oldClass);
+            }
+        }
+
+        // Component dependencies and cycles
+        Map<String, ComponentInfo> oldComponents = componentGraph(oldIndex);
+        Map<String, ComponentInfo> newComponents = componentGraph(newIndex);
+        Set<CycleDetector.Dependency> oldEdges = componentEdges(oldComponents);
+        Set<CycleDetector.Dependency> newEdges = componentEdges(newComponents);
+        for (CycleDetector.Dependency edge : newEdges) {
+            if (!oldEdges.contains(edge)) {
+                diff.addedComponentDependencies.add(edge);
+            }
+        }
+        for (CycleDetector.Dependency edge : oldEdges) {
+            if (!newEdges.contains(edge)) {
+                diff.removedComponentDependencies.add(edge);
+            }
+        }
+        Comparator<CycleDetector.Dependency> byName = Comparator.comparing(CycleDetector.Dependency::toString);
+        diff.addedComponentDependencies.sort(byName);
+        diff.removedComponentDependencies.sort(byName);
+
+        // A cycle is new when one of its edges was not on a cycle before
+        CycleDetector detector = new CycleDetector();
+        Set<CycleDetector.Dependency> oldCyclic = CycleDetector.cyclicEdges(detector.findCycles(oldComponents));
+        for (CycleDetector.Cycle cycle : detector.findCycles(newComponents)) {
+            for (CycleDetector.Dependency edge : cycle.getEdges()) {
+                if (!oldCyclic.contains(edge)) {
+                    diff.newCycles.add(cycle);
+                    break;
+                }
+            }
+        }
+
+        logger.info("Model diff: {} added, {} removed, {} changed classes; {} added, {} removed component dependencies; {} new cycles",
+                diff.addedClasses.size(), diff.removedClasses.size(), diff.changedClasses.size(),
+                diff.addedComponentDependencies.size(), diff.removedComponentDependencies.size(),
+                diff.newCycles.size());
+        return diff;
+    }
+
+    private static ClassChange compareClass(ClassInfo oldClass, ClassInfo newClass,
+                                            ClassIndex oldIndex, ClassIndex newIndex) {
+        ClassChange change = new ClassChange(oldClass, newClass);
+        difference(members(oldClass), members(newClass), change.addedMembers, change.removedMembers);
+        difference(resolvedNames(oldClass.getInterfaces(), oldClass, oldIndex),
+                resolvedNames(newClass.getInterfaces(), newClass, newIndex),
+                change.addedInterfaces, change.removedInterfaces);
+        difference(resolvedNames(oldClass.getDependencies(), oldClass, oldIndex),
+                resolvedNames(newClass.getDependencies(), newClass, newIndex),
+                change.addedDependencies, change.removedDependencies);
+        // Inheritance is also recorded as a dependency; report it only once
+        change.addedDependencies.removeAll(change.addedInterfaces);
+        change.removedDependencies.removeAll(change.removedInterfaces);
+        if (change.isSuperClassChanged()) {
+            change.addedDependencies.remove(resolvedName(newClass.getSuperClass(), newClass, newIndex));
+            change.removedDependencies.remove(resolvedName(oldClass.getSuperClass(), oldClass, oldIndex));
+        }
+
+        boolean changed = change.isSuperClassChanged() || change.isKindChanged()
+                || !change.addedMembers.isEmpty() || !change.removedMembers.isEmpty()
+                || !change.addedInterfaces.isEmpty() || !change.removedInterfaces.isEmpty()
+                || !change.addedDependencies.isEmpty() || !change.removedDependencies.isEmpty();
+        return changed ? change : null;
+    }
+
+    private static void difference(Set<String> oldValues, Set<String> newValues,
+                                   List<String> added, List<String> removed) {
+        for (String value : newValues) {
+            if (!oldValues.contains(value)) {
+                added.add(value);
+            }
+        }
+        for (String value : oldValues) {
+            if (!newValues.contains(value)) {
+                removed.add(value);
+            }
+        }
+    }
+
+    private static Set<String> members(ClassInfo classInfo) {
+        Set<String> members = new LinkedHashSet<>();
+        for (FieldInfo field : classInfo.getFields()) {
+            members.add(field.toString());
+        }
+        for (MethodInfo method : classInfo.getMethods()) {
+            members.add((method.isStatic() ? "{static} " : "") + (method.isAbstract() ? "{abstract} " : "")
+                    + method);
+        }
+        return members;
+    }
+
+    /**
+     * Type names by full name where they resolve inside the model, as written otherwise
+     */
+    private static Set<String> resolvedNames(List<String> names, ClassInfo classInfo, ClassIndex index) {
+        Set<String> resolved = new LinkedHashSet<>();
+        for (String name : names) {
+            ClassInfo target = index.resolve(name, classInfo);
+            if (target != classInfo) {
+                resolved.add(target != null ? target.getFullName() : name);
+            }
+        }
+        return resolved;
+    }
+
+    private static String resolvedName(String name, ClassInfo classInfo, ClassIndex index) {
+        if (name == null) {
+            return null;
+        }
+        ClassInfo target = index.resolve(name, classInfo);
+        return target != null ? target.getFullName() : name;
+    }
+
+    /**
+     * Resolves a type name referenced by a class of the old or the new model to a full name,
+     * or returns it unchanged if it is not part of that model
+     */
+    public String resolveName(String name, ClassInfo from, boolean newModel) {
+        return resolvedName(name, from, newModel ? newIndex : oldIndex);
+    }
+
+    /**
+     * Order-independent 64-bit signature of everything the diff looks at
+     */
+    static long signature(ClassInfo classInfo) {
+        long hash = mix(classInfo.getClassName().hashCode());
+        hash = hash * 31 + (classInfo.isInterface() ? 1 : 0) + (classInfo.isAbstract() ? 2 : 0)
+                + (classInfo.isEnum() ? 4 : 0);
+        hash = hash * 31 + Objects.hashCode(classInfo.getSuperClass());
+        hash = hash * 31 + unordered(classInfo.getInterfaces());
+        hash = hash * 31 + unordered(classInfo.getDependencies());
+        long members = 0;
+        for (FieldInfo field : classInfo.getFields()) {
+            members += mix(((long) field.getName().hashCode() << 32) ^ Objects.hashCode(field.getType())
+                    ^ Objects.hashCode(field.getVisibility()));
+        }
+        for (MethodInfo method : classInfo.getMethods()) {
+            long methodHash = ((long) method.getName().hashCode() << 32) ^ Objects.hashCode(method.getReturnType());
+            methodHash = methodHash * 31 + Objects.hashCode(method.getVisibility());
+            methodHash = methodHash * 31 + (method.isStatic() ? 1 : 0) + (method.isAbstract() ? 2 : 0);
+            for (ParameterInfo parameter : method.getParameters()) {
+                methodHash = methodHash * 31 + Objects.hashCode(parameter.getType());
+                methodHash = methodHash * 31 + Objects.hashCode(parameter.getName());
+            }
+            members += mix(methodHash);
+        }
+        return mix(hash * 31 + members);
+    }
+
+    private static long unordered(Collection<String> values) {
+        long sum = 0;
+        for (String value : values) {
+            sum += mix(value.hashCode());
+        }
+        return sum;
+    }
+
+    /**
+     * SplitMix64 finalizer, spreads hash codes over all 64 bits
+     */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Component graph from resolved class references, without the per-name scans of
+     * ComponentAnalyzer; only names and dependencies are filled in
+     */
+    private static Map<String, ComponentInfo> componentGraph(ClassIndex index) {
+        Map<String, ComponentInfo> components = new HashMap<>();
+        for (ClassInfo classInfo : index.getClasses()) {
+            String source = ClassIndex.componentName(classInfo);
+            ComponentInfo component = components.computeIfAbsent(source, ComponentInfo::new);
+            List<String> names = new ArrayList<>(classInfo.getDependencies());
+            names.addAll(classInfo.getInterfaces());
+            if (classInfo.getSuperClass() != null) {
+                names.add(classInfo.getSuperClass());
+            }
+            for (String name : names) {
+                ClassInfo target = index.resolve(name, classInfo);
+                if (target != null && !ClassIndex.componentName(target).equals(source)) {
+                    component.addDependency(ClassIndex.componentName(target));
+                }
+            }
+        }
+        return components;
+    }
+
+    private static Set<CycleDetector.Dependency> componentEdges(Map<String, ComponentInfo> components) {
+        Set<CycleDetector.Dependency> edges = new HashSet<>();
+        for (ComponentInfo component : components.values()) {
+            for (String target : component.getDependencies()) {
+                edges.add(new CycleDetector.Dependency(component.getComponentName(), target));
+            }
+        }
+        return edges;
+    }
+
+    public List<ClassInfo> getAddedClasses() { return addedClasses; }
+    public List<ClassInfo> getRemovedClasses() { return removedClasses; }
+    public List<ClassChange> getChangedClasses() { return changedClasses; }
+    public List<CycleDetector.Dependency> getAddedComponentDependencies() { return addedComponentDependencies; }
+    public List<CycleDetector.Dependency> getRemovedComponentDependencies() { return removedComponentDependencies; }
+    public List<CycleDetector.Cycle> getNewCycles() { return newCycles; }
+
+    public boolean isEmpty() {
+        return addedClasses.isEmpty() && removedClasses.isEmpty() && changedClasses.isEmpty()
+                && addedComponentDependencies.isEmpty() && removedComponentDependencies.isEmpty();
+    }
+
+    /**
+     * Writes the diff as a JSON report
+     */
+    public void writeJson(Path path) throws IOException {
+        Path file = path.toAbsolutePath();
+        Files.createDirectories(file.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("{\n");
+            writer.write("  \"addedClasses\": " + classNames(addedClasses) + ",\n");
+            writer.write("  \"removedClasses\": " + classNames(removedClasses) + ",\n");
+            writer.write("  \"changedClasses\": [");
+            for (int i = 0; i < changedClasses.size(); i++) {
+                ClassChange change = changedClasses.get(i);
+                writer.write(i == 0 ? "\n" : ",\n");
+                writer.write("    {\"class\": " + json(change.getClassName()));
+                if (change.isSuperClassChanged()) {
+                    writer.write(", \"oldSuperClass\": " + json(change.oldClass.getSuperClass())
+                            + ", \"newSuperClass\": " + json(change.newClass.getSuperClass()));
+                }
+                if (change.isKindChanged()) {
+                    writer.write(", \"kindChanged\": true");
+                }
+                writer.write(", \"addedMembers\": " + json(change.addedMembers)
+                        + ", \"removedMembers\": " + json(change.removedMembers)
+                        + ", \"addedInterfaces\": " + json(change.addedInterfaces)
+                        + ", \"removedInterfaces\": " + json(change.removedInterfaces)
+                        + ", \"addedDependencies\": " + json(change.addedDependencies)
+                        + ", \"removedDependencies\": " + json(change.removedDependencies) + "}");
+            }
+            writer.write(changedClasses.isEmpty() ? "],\n" : "\n  ],\n");
+            writer.write("  \"addedComponentDependencies\": " + dependencies(addedComponentDependencies) + ",\n");
+            writer.write("  \"removedComponentDependencies\": " + dependencies(removedComponentDependencies) + ",\n");
+            writer.write("  \"newCycles\": [");
+            for (int i = 0; i < newCycles.size(); i++) {
+                writer.write((i == 0 ? "" : ", ") + json(newCycles.get(i).getComponents()));
+            }
+            writer.write("]\n}\n");
+        }
+        logger.info("Diff report saved to: {}", path);
+    }
+
+    private static String classNames(List<ClassInfo> classes) {
+        List<String> names = new ArrayList<>(classes.size());
+        for (ClassInfo classInfo : classes) {
+            names.add(classInfo.getFullName());
+        }
+        return json(names);
+    }
+
+    private static String dependencies(List<CycleDetector.Dependency> edges) {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < edges.size(); i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append("{\"source\": ").append(json(edges.get(i).getSource()))
+                    .append(", \"target\": ").append(json(edges.get(i).getTarget())).append("}");
+        }
+        return result.append("]").toString();
+    }
+
+    private static String json(List<String> values) {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append(json(values.get(i)));
+        }
+        return result.append("]").toString();
+    }
+
+    private static String json(String value) {
+        if (value == null) {
+            return "null";
+        }
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,634 @@
+package com.javaanalysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Versioned binary snapshot of an analysis result, so other diagrams can be generated
+ * without analyzing the sources again.
+ *
+ * Layout (all fixed-width numbers big-endian):
+ * <pre>
+ * header     magic "JAMS", u16 version, u16 flags, u32 section count
+ * directory  per section: u32 id, u64 offset, u64 length
+ * STRINGS    u32 count, u32[count + 1] offsets into the data, UTF-8 data
+ * CLASSES    u32 count, per class (sorted by full name) u32 full-name string id and
+ *            u32 record offset, then the records with varint string ids
+ * COMPONENTS optional, varint encoded
+ * CALLS      optional, sequence call traces per entry point, varint encoded
+ * </pre>
+ * Every string is stored once and referenced by id. The file is memory-mapped when
+ * opened and nothing is decoded up front: strings and class records are decoded (and
+ * cached) the first time they are asked for, so opening a large snapshot is cheap and
+ * e.g. a focused diagram only decodes the classes it touches.
+ */
+public class ModelSnapshot implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ModelSnapshot.class);
+
+    private static final int MAGIC = 0x4A414D53;
+    public static final int VERSION = 2;
+
+    private static final int SECTION_STRINGS = 1;
+    private static final int SECTION_CLASSES = 2;
+    private static final int SECTION_COMPONENTS = 3;
+    private static final int SECTION_CALLS = 4;
+
+    private static final int CLASS_INTERFACE = 1;
+    private static final int CLASS_ABSTRACT = 1 << 1;
+    private static final int CLASS_ENUM = 1 << 2;
+    private static final int CLASS_HAS_SUPER = 1 << 3;
+    private static final int METHOD_STATIC = 1;
+    private static final int METHOD_ABSTRACT = 1 << 1;
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final Map<Integer, int[]> sections = new HashMap<>();
+
+    private final int stringCount;
+    private final int stringOffsets;
+    private final int stringData;
+    private final String[] strings;
+
+    private final int classCount;
+    private final int classSection;
+    private final int classIndex;
+    private final ClassInfo[] classes;
+    private final Map<String, ClassInfo> classInfoMap;
+
+    private ModelSnapshot(Path path, ByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+
+        if (buffer.limit() < 12 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a model snapshot: " + path);
+        }
+        int version = buffer.getShort(4) & 0xFFFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + " (expected " + VERSION + "): " + path);
+        }
+        int sectionCount = buffer.getInt(8);
+        if (sectionCount < 0 || 12 + 20L * sectionCount > buffer.limit()) {
+            throw new IOException("Truncated snapshot: " + path);
+        }
+        int position = 12;
+        for (int i = 0; i < sectionCount; i++) {
+            int id = buffer.getInt(position);
+            long offset = buffer.getLong(position + 4);
+            long length = buffer.getLong(position + 12);
+            // A file cut short (e.g. by an interrupted copy) fails here instead of on first use
+            if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+                throw new IOException("Truncated snapshot: " + path);
+            }
+            sections.put(id, new int[]{(int) offset, (int) length});
+            position += 20;
+        }
+
+        int[] stringSection = requireSection(SECTION_STRINGS);
+        stringCount = buffer.getInt(stringSection[0]);
+        stringOffsets = stringSection[0] + 4;
+        stringData = stringOffsets + (stringCount + 1) * 4;
+        strings = new String[stringCount];
+
+        classSection = requireSection(SECTION_CLASSES)[0];
+        classCount = buffer.getInt(classSection);
+        classIndex = classSection + 4;
+        classes = new ClassInfo[classCount];
+        classInfoMap = new LazyClassMap();
+    }
+
+    /**
+     * Memory-maps a snapshot file. Nothing is decoded until it is used.
+     */
+    public static ModelSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot larger than 2 GB is not supported: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ModelSnapshot snapshot = new ModelSnapshot(path, buffer);
+            logger.info("Opened model snapshot {} ({} classes, {} strings)", path, snapshot.classCount,
+                    snapshot.stringCount);
+            return snapshot;
+        }
+    }
+
+    /**
+     * Whether the path is a snapshot file (checked by its magic number)
+     */
+    public static boolean isSnapshot(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * The classes of the snapshot, keyed by full name in full-name order. Read-only; a class
+     * is decoded on first access and the same instance is returned afterwards.
+     */
+    public Map<String, ClassInfo> getClassInfoMap() {
+        return classInfoMap;
+    }
+
+    public boolean hasComponents() {
+        return sections.containsKey(SECTION_COMPONENTS);
+    }
+
+    /**
+     * Decodes the stored component map, or returns null if none was saved
+     */
+    public Map<String, ComponentInfo> getComponentMap() {
+        int[] section = sections.get(SECTION_COMPONENTS);
+        if (section == null) {
+            return null;
+        }
+        Cursor in = new Cursor(section[0]);
+        int count = in.varint();
+        Map<String, ComponentInfo> componentMap = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            ComponentInfo component = new ComponentInfo(in.string());
+            for (String name : in.strings()) {
+                component.addClass(name);
+            }
+            for (String name : in.strings()) {
+                component.addInterface(name);
+            }
+            for (String name : in.strings()) {
+                component.addDependency(name);
+            }
+            for (String name : in.strings()) {
+                component.addProvidedInterface(name);
+            }
+            for (String name : in.strings()) {
+                component.addRequiredInterface(name);
+            }
+            componentMap.put(component.getComponentName(), component);
+        }
+        return componentMap;
+    }
+
+    /**
+     * Returns the stored call traces of a sequence entry point, or null if there are none
+     */
+    public List<SequenceAnalyzer.CallTrace> getCalls(String className, String methodName) {
+        int[] section = sections.get(SECTION_CALLS);
+        if (section == null) {
+            return null;
+        }
+        Cursor in = new Cursor(section[0]);
+        int count = in.varint();
+        for (int i = 0; i < count; i++) {
+            String entryClass = in.string();
+            String entryMethod = in.string();
+            int traceCount = in.varint();
+            boolean match = entryClass.equals(className) && entryMethod.equals(methodName);
+            List<SequenceAnalyzer.CallTrace> traces = new ArrayList<>(match ? traceCount : 0);
+            for (int t = 0; t < traceCount; t++) {
+                String sourceClass = in.string();
+                String targetClass = in.string();
+                String method = in.string();
+                String returnType = in.nullableString();
+                int depth = in.varint();
+                boolean dispatch = in.varint() != 0;
+                if (match) {
+                    traces.add(new SequenceAnalyzer.CallTrace(sourceClass, targetClass, method, returnType, depth,
+                            dispatch));
+                }
+            }
+            if (match) {
+                return traces;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        // The mapping is released when the buffer is garbage collected
+    }
+
+    private int[] requireSection(int id) throws IOException {
+        int[] section = sections.get(id);
+        if (section == null) {
+            throw new IOException("Snapshot is missing section " + id + ": " + path);
+        }
+        return section;
+    }
+
+    private String string(int id) {
+        String value = strings[id];
+        if (value == null) {
+            int start = buffer.getInt(stringOffsets + id * 4);
+            int end = buffer.getInt(stringOffsets + (id + 1) * 4);
+            byte[] bytes = new byte[end - start];
+            buffer.get(stringData + start, bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            strings[id] = value;
+        }
+        return value;
+    }
+
+    private String classKey(int index) {
+        return string(buffer.getInt(classIndex + index * 8));
+    }
+
+    private synchronized ClassInfo classAt(int index) {
+        ClassInfo classInfo = classes[index];
+        if (classInfo != null) {
+            return classInfo;
+        }
+
+        // Record offsets are relative to the start of the section
+        Cursor in = new Cursor(classSection + buffer.getInt(classIndex + index * 8 + 4));
+        classInfo = new ClassInfo(in.string(), in.string());
+        int flags = in.varint();
+        classInfo.setInterface((flags & CLASS_INTERFACE) != 0);
+        classInfo.setAbstract((flags & CLASS_ABSTRACT) != 0);
+        classInfo.setEnum((flags & CLASS_ENUM) != 0);
+        if ((flags & CLASS_HAS_SUPER) != 0) {
+            classInfo.setSuperClass(in.string());
+        }
+        for (String interfaceName : in.strings()) {
+            classInfo.addInterface(interfaceName);
+        }
+
+        int fieldCount = in.varint();
+        for (int i = 0; i < fieldCount; i++) {
+            classInfo.addField(new FieldInfo(in.string(), in.string(), in.string()));
+        }
+
+        int methodCount = in.varint();
+        for (int i = 0; i < methodCount; i++) {
+            MethodInfo method = new MethodInfo(in.string(), in.nullableString(), in.string());
+            int methodFlags = in.varint();
+            method.setStatic((methodFlags & METHOD_STATIC) != 0);
+            method.setAbstract((methodFlags & METHOD_ABSTRACT) != 0);
+            int parameterCount = in.varint();
+            for (int p = 0; p < parameterCount; p++) {
+                method.addParameter(new ParameterInfo(in.string(), in.string()));
+            }
+            classInfo.addMethod(method);
+        }
+
+        for (String dependency : in.strings()) {
+            classInfo.addDependency(dependency);
+        }
+
+        classes[index] = classInfo;
+        return classInfo;
+    }
+
+    /**
+     * Reads varints and string ids from an absolute position; reads never move the shared buffer
+     */
+    private final class Cursor {
+        private int position;
+
+        Cursor(int position) {
+            this.position = position;
+        }
+
+        int varint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        String string() {
+            return ModelSnapshot.this.string(varint());
+        }
+
+        /**
+         * Id 0 stands for null, other ids are shifted by one
+         */
+        String nullableString() {
+            int id = varint();
+            return id == 0 ? null : ModelSnapshot.this.string(id - 1);
+        }
+
+        List<String> strings() {
+            int count = varint();
+            List<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(string());
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Read-only map over the class section; lookups binary search the sorted class index
+     */
+    private final class LazyClassMap extends AbstractMap<String, ClassInfo> {
+        @Override
+        public int size() {
+            return classCount;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && indexOf((String) key) >= 0;
+        }
+
+        @Override
+        public ClassInfo get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            int index = indexOf((String) key);
+            return index >= 0 ? classAt(index) : null;
+        }
+
+        private int indexOf(String key) {
+            int low = 0;
+            int high = classCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int compare = classKey(middle).compareTo(key);
+                if (compare < 0) {
+                    low = middle + 1;
+                } else if (compare > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Set<Entry<String, ClassInfo>> entrySet() {
+            return new AbstractSet<Entry<String, ClassInfo>>() {
+                @Override
+                public int size() {
+                    return classCount;
+                }
+
+                @Override
+                public Iterator<Entry<String, ClassInfo>> iterator() {
+                    return new Iterator<Entry<String, ClassInfo>>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < classCount;
+                        }
+
+                        @Override
+                        public Entry<String, ClassInfo> next() {
+                            if (next >= classCount) {
+                                throw new NoSuchElementException();
+                            }
+                            int index = next++;
+                            return new SimpleImmutableEntry<>(classKey(index), classAt(index));
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    // ------------------------------------------------------------------ writing
+
+    /**
+     * Writes a snapshot of the class model and, if given, components and sequence call traces
+     *
+     * @param componentMap components to store, or null
+     * @param calls call traces per entry point ("Class#method"), or null
+     */
+    public static void write(Path path, Map<String, ClassInfo> classInfoMap, Map<String, ComponentInfo> componentMap,
+                             Map<String, List<SequenceAnalyzer.CallTrace>> calls) throws IOException {
+        StringTable strings = new StringTable();
+
+        // Classes: records first (assigning string ids), then the index in front of them.
+        // Only names are sorted; classes are fetched one at a time so a spilled model stays on disk.
+        TreeMap<String, String> byFullName = new TreeMap<>();
+        if (classInfoMap instanceof SpillingClassStore) {
+            for (Map.Entry<String, SpillingClassStore.ClassName> entry
+                    : ((SpillingClassStore) classInfoMap).getClassNames().entrySet()) {
+                byFullName.put(entry.getValue().getFullName(), entry.getKey());
+            }
+        } else {
+            for (Map.Entry<String, ClassInfo> entry : classInfoMap.entrySet()) {
+                byFullName.put(entry.getValue().getFullName(), entry.getKey());
+            }
+        }
+        List<String> sorted = new ArrayList<>(byFullName.values());
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        int[] keys = new int[sorted.size()];
+        int[] offsets = new int[sorted.size()];
+        int indexSize = 4 + sorted.size() * 8;
+        for (int i = 0; i < sorted.size(); i++) {
+            ClassInfo classInfo = classInfoMap.get(sorted.get(i));
+            keys[i] = strings.id(classInfo.getFullName());
+            offsets[i] = indexSize + records.size();
+            writeClass(records, classInfo, strings);
+        }
+        ByteArrayOutputStream classSection = new ByteArrayOutputStream(indexSize + records.size());
+        DataOutputStream classOut = new DataOutputStream(classSection);
+        classOut.writeInt(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            classOut.writeInt(keys[i]);
+            classOut.writeInt(offsets[i]);
+        }
+        records.writeTo(classOut);
+
+        ByteArrayOutputStream componentSection = null;
+        if (componentMap != null) {
+            componentSection = new ByteArrayOutputStream();
+            writeVarint(componentSection, componentMap.size());
+            for (String name : new TreeSet<>(componentMap.keySet())) {
+                ComponentInfo component = componentMap.get(name);
+                writeVarint(componentSection, strings.id(name));
+                writeStrings(componentSection, component.getClasses(), strings);
+                writeStrings(componentSection, component.getInterfaces(), strings);
+                writeStrings(componentSection, component.getDependencies(), strings);
+                writeStrings(componentSection, component.getProvidedInterfaces(), strings);
+                writeStrings(componentSection, component.getRequiredInterfaces(), strings);
+            }
+        }
+
+        ByteArrayOutputStream callSection = null;
+        if (calls != null) {
+            callSection = new ByteArrayOutputStream();
+            writeVarint(callSection, calls.size());
+            for (Map.Entry<String, List<SequenceAnalyzer.CallTrace>> entry : calls.entrySet()) {
+                int separator = entry.getKey().indexOf('#');
+                writeVarint(callSection, strings.id(entry.getKey().substring(0, separator)));
+                writeVarint(callSection, strings.id(entry.getKey().substring(separator + 1)));
+                writeVarint(callSection, entry.getValue().size());
+                for (SequenceAnalyzer.CallTrace trace : entry.getValue()) {
+                    writeVarint(callSection, strings.id(trace.sourceClass));
+                    writeVarint(callSection, strings.id(trace.targetClass));
+                    writeVarint(callSection, strings.id(trace.methodName));
+                    writeVarint(callSection, strings.nullableId(trace.returnType));
+                    writeVarint(callSection, trace.depth);
+                    writeVarint(callSection, trace.dispatch ? 1 : 0);
+                }
+            }
+        }
+
+        ByteArrayOutputStream stringSection = strings.encode();
+
+        // Header and section directory, then the sections back to back
+        List<Integer> ids = new ArrayList<>();
+        List<ByteArrayOutputStream> bodies = new ArrayList<>();
+        ids.add(SECTION_STRINGS);
+        bodies.add(stringSection);
+        ids.add(SECTION_CLASSES);
+        bodies.add(classSection);
+        if (componentSection != null) {
+            ids.add(SECTION_COMPONENTS);
+            bodies.add(componentSection);
+        }
+        if (callSection != null) {
+            ids.add(SECTION_CALLS);
+            bodies.add(callSection);
+        }
+
+        Path file = path.toAbsolutePath();
+        Files.createDirectories(file.getParent());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeInt(ids.size());
+            long offset = 12 + ids.size() * 20L;
+            for (int i = 0; i < ids.size(); i++) {
+                out.writeInt(ids.get(i));
+                out.writeLong(offset);
+                out.writeLong(bodies.get(i).size());
+                offset += bodies.get(i).size();
+            }
+            for (ByteArrayOutputStream body : bodies) {
+                body.writeTo(out);
+            }
+        }
+
+        logger.info("Model snapshot saved to: {} ({} classes, {} strings, {} bytes)",
+                path, sorted.size(), strings.size(), Files.size(file));
+    }
+
+    private static void writeClass(ByteArrayOutputStream out, ClassInfo classInfo, StringTable strings) {
+        writeVarint(out, strings.id(classInfo.getClassName()));
+        writeVarint(out, strings.id(classInfo.getPackageName() == null ? "" : classInfo.getPackageName()));
+        int flags = (classInfo.isInterface() ? CLASS_INTERFACE : 0)
+                | (classInfo.isAbstract() ? CLASS_ABSTRACT : 0)
+                | (classInfo.isEnum() ? CLASS_ENUM : 0)
+                | (classInfo.getSuperClass() != null ? CLASS_HAS_SUPER : 0);
+        writeVarint(out, flags);
+        if (classInfo.getSuperClass() != null) {
+            writeVarint(out, strings.id(classInfo.getSuperClass()));
+        }
+        writeStrings(out, classInfo.getInterfaces(), strings);
+
+        writeVarint(out, classInfo.getFields().size());
+        for (FieldInfo field : classInfo.getFields()) {
+            writeVarint(out, strings.id(field.getName()));
+            writeVarint(out, strings.id(field.getType()));
+            writeVarint(out, strings.id(field.getVisibility()));
+        }
+
+        writeVarint(out, classInfo.getMethods().size());
+        for (MethodInfo method : classInfo.getMethods()) {
+            writeVarint(out, strings.id(method.getName()));
+            writeVarint(out, strings.nullableId(method.getReturnType()));
+            writeVarint(out, strings.id(method.getVisibility()));
+            writeVarint(out, (method.isStatic() ? METHOD_STATIC : 0) | (method.isAbstract() ? METHOD_ABSTRACT : 0));
+            writeVarint(out, method.getParameters().size());
+            for (ParameterInfo parameter : method.getParameters()) {
+                writeVarint(out, strings.id(parameter.getName()));
+                writeVarint(out, strings.id(parameter.getType()));
+            }
+        }
+
+        writeStrings(out, classInfo.getDependencies(), strings);
+    }
+
+    private static void writeStrings(ByteArrayOutputStream out, Collection<String> values, StringTable strings) {
+        writeVarint(out, values.size());
+        for (String value : values) {
+            writeVarint(out, strings.id(value));
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Assigns ids to distinct strings in order of first use
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int id(String value) {
+            if (value == null) {
+                value = "";
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        int nullableId(String value) {
+            return value == null ? 0 : id(value) + 1;
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        ByteArrayOutputStream encode() throws IOException {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            int[] offsets = new int[values.size() + 1];
+            for (int i = 0; i < values.size(); i++) {
+                offsets[i] = data.size();
+                data.write(values.get(i).getBytes(StandardCharsets.UTF_8));
+            }
+            offsets[values.size()] = data.size();
+
+            ByteArrayOutputStream section = new ByteArrayOutputStream(4 + offsets.length * 4 + data.size());
+            DataOutputStream out = new DataOutputStream(section);
+            out.writeInt(values.size());
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            data.writeTo(out);
+            return section;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.javaanalysis;
+
+import java.util.*;
+
+/**
+ * Package-prefix trie over the components of a model, for rolling packages up into coarser
+ * components (e.g. everything under {@code com.acme.billing} at level 3).
+ *
+ * The trie is built in one pass over the leaf components. A roll-up to level n is
+ * materialized from level n + 1, which comes from n + 2 and so on down to the leaves, and
+ * every level is cached: diagrams at several granularities share one analysis and each
+ * level is computed once. In a rolled-up component the class and interface names are
+ * qualified with the sub-package they came from (e.g. {@code web.Controller}), and
+ * dependencies point at the rolled-up target; dependencies inside a component disappear.
+ */
+public class PackageTrie {
+    private final Node root = new Node(null, "", 0);
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final Map<Integer, Map<String, ComponentInfo>> levels = new HashMap<>();
+    private int depth;
+
+    private static final class Node {
+        final Node parent;
+        final String name;
+        final int depth;
+        final Map<String, Node> children = new TreeMap<>();
+
+        Node(Node parent, String name, int depth) {
+            this.parent = parent;
+            this.name = name;
+            this.depth = depth;
+        }
+
+        Node ancestorAt(int level) {
+            Node node = this;
+            while (node.depth > level) {
+                node = node.parent;
+            }
+            return node;
+        }
+
+        /**
+         * Last segment of the name
+         */
+        String segment() {
+            return parent == null || parent.depth == 0 ? name : name.substring(parent.name.length() + 1);
+        }
+    }
+
+    public PackageTrie(Map<String, ComponentInfo> componentMap) {
+        for (String name : componentMap.keySet()) {
+            Node node = root;
+            int start = 0;
+            while (start <= name.length()) {
+                int end = name.indexOf('.', start);
+                if (end < 0) {
+                    end = name.length();
+                }
+                String prefix = name.substring(0, end);
+                Node parent = node;
+                node = parent.children.computeIfAbsent(prefix.substring(start),
+                        segment -> new Node(parent, prefix, parent.depth + 1));
+                nodes.putIfAbsent(prefix, node);
+                start = end + 1;
+            }
+            depth = Math.max(depth, node.depth);
+        }
+        levels.put(depth, copyOf(componentMap));
+    }
+
+    /**
+     * Number of segments of the deepest package
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Components with package names cut to at most {@code level} segments. Packages that are
+     * already shallower are kept as they are; a level at or beyond {@link #getDepth()}
+     * returns the leaf components.
+     */
+    public synchronized Map<String, ComponentInfo> rollUp(int level) {
+        if (level < 1) {
+            throw new IllegalArgumentException("level must be at least 1");
+        }
+        int target = Math.min(level, depth);
+        int from = target;
+        while (!levels.containsKey(from)) {
+            from++;
+        }
+        for (int next = from - 1; next >= target; next--) {
+            levels.put(next, rollUpOneLevel(levels.get(next + 1), next));
+        }
+        return Collections.unmodifiableMap(levels.get(target));
+    }
+
+    /**
+     * Folds the components at depth {@code level + 1} into their parents
+     */
+    private Map<String, ComponentInfo> rollUpOneLevel(Map<String, ComponentInfo> lower, int level) {
+        Map<String, ComponentInfo> result = new HashMap<>();
+        for (ComponentInfo component : lower.values()) {
+            Node node = nodes.get(component.getComponentName());
+            Node target = node.ancestorAt(level);
+            ComponentInfo rolled = result.computeIfAbsent(target.name, ComponentInfo::new);
+
+            String qualifier = target == node ? "" : node.segment() + ".";
+            for (String className : component.getClasses()) {
+                rolled.addClass(qualifier + className);
+            }
+            for (String interfaceName : component.getInterfaces()) {
+                rolled.addInterface(qualifier + interfaceName);
+            }
+            for (String interfaceName : component.getProvidedInterfaces()) {
+                rolled.addProvidedInterface(qualifier + interfaceName);
+            }
+            rolled.getRequiredInterfaces().addAll(component.getRequiredInterfaces());
+
+            for (String dependency : component.getDependencies()) {
+                Node dependencyNode = nodes.get(dependency);
+                String rolledDependency = dependencyNode == null ? dependency : dependencyNode.ancestorAt(level).name;
+                if (!rolledDependency.equals(target.name)) {
+                    rolled.addDependency(rolledDependency);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, ComponentInfo> copyOf(Map<String, ComponentInfo> componentMap) {
+        Map<String, ComponentInfo> copy = new HashMap<>();
+        for (ComponentInfo component : componentMap.values()) {
+            ComponentInfo leaf = new ComponentInfo(component.getComponentName());
+            leaf.getClasses().addAll(component.getClasses());
+            leaf.getInterfaces().addAll(component.getInterfaces());
+            leaf.getDependencies().addAll(component.getDependencies());
+            leaf.getProvidedInterfaces().addAll(component.getProvidedInterfaces());
+            leaf.getRequiredInterfaces().addAll(component.getRequiredInterfaces());
+            copy.put(component.getComponentName(), leaf);
+        }
+        return copy;
+    }
+}
@@ -1,9 +1,6 @@
 package com.javaanalysis;
 
 import net.sourceforge.plantuml.FileFormat;
-import net.sourceforge.plantuml.FileFormatOption;
-import net.sourceforge.plantuml.SourceStringReader;
-import net.sourceforge.plantuml.core.DiagramDescription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,20 +16,59 @@ import java.util.*;
  */
 public class PlantUMLGenerator {
     private static final Logger logger = LoggerFactory.getLogger(PlantUMLGenerator.class);
-    
-    static {
-        // Force UTF-8 encoding for PlantUML to avoid CP949 issues on Windows
-        System.setProperty("file.encoding", "UTF-8");
-        System.setProperty("plantuml.charset", "UTF-8");
-        System.setProperty("sun.jnu.encoding", "UTF-8");
-        // Set PlantUML to use UTF-8 for all operations
-        System.setProperty("PLANTUML_SECURITY_PROFILE", "UNSECURE");
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+    private DiagramRenderer renderer = new DiagramRenderer();
+    private Set<String> highlightedClasses = Collections.emptySet();
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Renderer used for the images (time budget and layout fallback)
+     */
+    public void setRenderer(DiagramRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Classes (by full name) drawn with a highlight colour, e.g. the focus of an ego graph
+     */
+    public void setHighlightedClasses(Set<String> highlightedClasses) {
+        this.highlightedClasses = highlightedClasses;
     }
 
     /**
      * Generates PlantUML code from class information
      */
     public String generatePlantUML(Map<String, ClassInfo> classInfoMap) {
+        try (AnalysisMetrics.Timer timer = metrics.start("class_diagram.text")) {
+            StringWriter writer = new StringWriter();
+            writePlantUML(classInfoMap, writer);
+            return writer.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Streams PlantUML code for the classes straight to a file, without building the whole
+     * text in memory. Classes are read one at a time, so this also works for a model that
+     * has been spilled to disk ({@link SpillingClassStore}).
+     */
+    public void writePlantUMLFile(Map<String, ClassInfo> classInfoMap, String outputPath) throws IOException {
+        Path path = Paths.get(outputPath).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+
+        try (AnalysisMetrics.Timer timer = metrics.start("class_diagram.text");
+             BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writePlantUML(classInfoMap, writer);
+        }
+
+        logger.info("PlantUML file saved to: {}", outputPath);
+    }
+
+    private void writePlantUML(Map<String, ClassInfo> classInfoMap, Writer out) throws IOException {
         StringBuilder uml = new StringBuilder();
 
         uml.append("@startuml\n");
@@ -41,21 +77,32 @@ public class PlantUMLGenerator {
         uml.append("skinparam packageStyle rectangle\n");
         uml.append("left to right direction\n\n");
 
-        // Group classes by package
-        Map<String, List<ClassInfo>> packageMap = groupByPackage(classInfoMap);
+        // Group class names by package; simple names are kept for the relationship checks
+        Map<String, List<String>> packageMap = new TreeMap<>();
+        Set<String> classNames = new HashSet<>();
+        groupByPackage(classInfoMap, packageMap, classNames);
+
+        // A spilled model would decode every class twice; collect its relationships while
+        // the definitions are written instead
+        StringBuilder relationships = classInfoMap instanceof SpillingClassStore ? new StringBuilder() : null;
 
         // Generate class definitions
-        for (Map.Entry<String, List<ClassInfo>> entry : packageMap.entrySet()) {
+        for (Map.Entry<String, List<String>> entry : packageMap.entrySet()) {
             String packageName = entry.getKey();
-            List<ClassInfo> classes = entry.getValue();
 
             if (!packageName.isEmpty()) {
                 uml.append("package \"").append(packageName).append("\" {\n");
             }
 
-            for (ClassInfo classInfo : classes) {
+            for (String key : entry.getValue()) {
+                ClassInfo classInfo = classInfoMap.get(key);
                 generateClassDefinition(classInfo, uml);
+                if (relationships != null) {
+                    generateRelationships(classInfo, classNames, relationships);
+                }
                 uml.append("\n");
+                out.append(uml);
+                uml.setLength(0);
             }
 
             if (!packageName.isEmpty()) {
@@ -64,29 +111,47 @@ public class PlantUMLGenerator {
         }
 
         // Generate relationships
-        generateRelationships(classInfoMap, uml);
+        uml.append("\n' Relationships\n");
+        if (relationships != null) {
+            uml.append(relationships);
+        } else {
+            for (ClassInfo classInfo : classInfoMap.values()) {
+                generateRelationships(classInfo, classNames, uml);
+                out.append(uml);
+                uml.setLength(0);
+            }
+        }
 
         uml.append("@enduml\n");
-
-        return uml.toString();
+        out.append(uml);
     }
 
     /**
-     * Groups classes by package
+     * Groups class keys by package and collects the simple class names; from the name index
+     * of a {@link SpillingClassStore}, without reading its classes
      */
-    private Map<String, List<ClassInfo>> groupByPackage(Map<String, ClassInfo> classInfoMap) {
-        Map<String, List<ClassInfo>> packageMap = new TreeMap<>();
-
-        for (ClassInfo classInfo : classInfoMap.values()) {
+    private void groupByPackage(Map<String, ClassInfo> classInfoMap, Map<String, List<String>> packageMap,
+                                Set<String> classNames) {
+        if (classInfoMap instanceof SpillingClassStore) {
+            for (Map.Entry<String, SpillingClassStore.ClassName> entry
+                    : ((SpillingClassStore) classInfoMap).getClassNames().entrySet()) {
+                String packageName = entry.getValue().getPackageName();
+                packageMap.computeIfAbsent(packageName != null ? packageName : "", k -> new ArrayList<>())
+                        .add(entry.getKey());
+                classNames.add(entry.getValue().getClassName());
+            }
+            return;
+        }
+        for (Map.Entry<String, ClassInfo> entry : classInfoMap.entrySet()) {
+            ClassInfo classInfo = entry.getValue();
             String packageName = classInfo.getPackageName() != null
                     ? classInfo.getPackageName()
                     : "";
 
             packageMap.computeIfAbsent(packageName, k -> new ArrayList<>())
-                    .add(classInfo);
+                    .add(entry.getKey());
+            classNames.add(classInfo.getClassName());
         }
-
-        return packageMap;
     }
 
     /**
@@ -106,6 +171,10 @@ public class PlantUMLGenerator {
             uml.append(indent).append("class ").append(classInfo.getClassName());
         }
 
+        if (highlightedClasses.contains(classInfo.getFullName())) {
+            uml.append(" #LightYellow");
+        }
+
         uml.append(" {\n");
 
         // Fields
@@ -131,47 +200,43 @@ public class PlantUMLGenerator {
     }
 
     /**
-     * Generates relationships between classes
+     * Generates the relationships of one class to the other classes
      */
-    private void generateRelationships(Map<String, ClassInfo> classInfoMap, StringBuilder uml) {
-        uml.append("\n' Relationships\n");
-
-        for (ClassInfo classInfo : classInfoMap.values()) {
-            String className = classInfo.getClassName();
-
-            // Inheritance (extends)
-            if (classInfo.getSuperClass() != null && !classInfo.getSuperClass().isEmpty()) {
-                String superClass = getSimpleClassName(classInfo.getSuperClass());
-                if (classExists(superClass, classInfoMap)) {
-                    uml.append(superClass).append(" <|-- ").append(className).append("\n");
-                }
+    private void generateRelationships(ClassInfo classInfo, Set<String> classNames, StringBuilder uml) {
+        String className = classInfo.getClassName();
+
+        // Inheritance (extends)
+        if (classInfo.getSuperClass() != null && !classInfo.getSuperClass().isEmpty()) {
+            String superClass = getSimpleClassName(classInfo.getSuperClass());
+            if (classNames.contains(superClass)) {
+                uml.append(superClass).append(" <|-- ").append(className).append("\n");
             }
+        }
 
-            // Interface implementation
-            for (String interfaceName : classInfo.getInterfaces()) {
-                String simpleInterfaceName = getSimpleClassName(interfaceName);
-                if (classExists(simpleInterfaceName, classInfoMap)) {
-                    uml.append(simpleInterfaceName).append(" <|.. ").append(className).append("\n");
-                }
+        // Interface implementation
+        for (String interfaceName : classInfo.getInterfaces()) {
+            String simpleInterfaceName = getSimpleClassName(interfaceName);
+            if (classNames.contains(simpleInterfaceName)) {
+                uml.append(simpleInterfaceName).append(" <|.. ").append(className).append("\n");
             }
+        }
 
-            // Dependencies (associations)
-            Set<String> processedDependencies = new HashSet<>();
-            for (String dependency : classInfo.getDependencies()) {
-                String simpleDependency = getSimpleClassName(dependency);
+        // Dependencies (associations)
+        Set<String> processedDependencies = new HashSet<>();
+        for (String dependency : classInfo.getDependencies()) {
+            String simpleDependency = getSimpleClassName(dependency);
 
-                // Skip if already processed, is superclass, or is interface
-                if (processedDependencies.contains(simpleDependency)
-                        || simpleDependency.equals(classInfo.getSuperClass())
-                        || classInfo.getInterfaces().contains(dependency)) {
-                    continue;
-                }
+            // Skip if already processed, is superclass, or is interface
+            if (processedDependencies.contains(simpleDependency)
+                    || simpleDependency.equals(classInfo.getSuperClass())
+                    || classInfo.getInterfaces().contains(dependency)) {
+                continue;
+            }
 
-                if (classExists(simpleDependency, classInfoMap) && !simpleDependency.equals(className)) {
-                    uml.append(className).append(" ..> ").append(simpleDependency)
-                            .append(" : uses\n");
-                    processedDependencies.add(simpleDependency);
-                }
+            if (classNames.contains(simpleDependency) && !simpleDependency.equals(className)) {
+                uml.append(className).append(" ..> ").append(simpleDependency)
+                        .append(" : uses\n");
+                processedDependencies.add(simpleDependency);
             }
         }
     }
@@ -186,19 +251,6 @@ public class PlantUMLGenerator {
         return className;
     }
 
-    /**
-     * Checks if a class exists in the classInfoMap
-     */
-    private boolean classExists(String className, Map<String, ClassInfo> classInfoMap) {
-        // Check by simple class name
-        for (ClassInfo info : classInfoMap.values()) {
-            if (info.getClassName().equals(className)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * Saves PlantUML code to a file
      */
@@ -214,52 +266,34 @@ public class PlantUMLGenerator {
     }
 
     /**
-     * Generates an image file from PlantUML code
+     * Generates an image file from PlantUML code within the renderer's time budget
      */
     public void generateImage(String plantUMLCode, String outputPath, FileFormat format) throws IOException {
-        Path outputFilePath = Paths.get(outputPath);
-        Files.createDirectories(outputFilePath.getParent());
-
-        try (FileOutputStream outputStream = new FileOutputStream(outputPath)) {
-            // Create SourceStringReader with the PlantUML code as String
-            // The string is already in Java's internal UTF-16 format, so no encoding issues
-            SourceStringReader reader = new SourceStringReader(plantUMLCode);
-
-            // Generate the diagram with specified format
-            DiagramDescription description = reader.outputImage(outputStream, new FileFormatOption(format));
-
-            if (description != null) {
-                String desc = description.getDescription();
-                logger.debug("PlantUML generation result: {}", desc);
-
-                // Check for errors in the description
-                if (desc != null && (desc.toLowerCase().contains("error") || desc.toLowerCase().contains("syntax"))) {
-                    logger.error("PlantUML generation error: {}", desc);
-                    throw new IOException("PlantUML failed to generate image: " + desc);
-                }
-            }
-        }
-
-        logger.info("UML diagram image saved to: {}", outputPath);
+        renderer.render("class", plantUMLCode, outputPath, format);
     }
 
     /**
      * Generates both PlantUML file and PNG image
      */
     public void generateDiagram(Map<String, ClassInfo> classInfoMap, String basePath) throws IOException {
+        generateDiagram(classInfoMap, new FileDiagramSink(basePath));
+    }
+
+    /**
+     * Writes the PlantUML source and the PNG and SVG images to the sink
+     */
+    public void generateDiagram(Map<String, ClassInfo> classInfoMap, DiagramSink sink) throws IOException {
         String plantUMLCode = generatePlantUML(classInfoMap);
 
         // Save PlantUML source
-        String pumlPath = basePath + ".puml";
-        savePlantUMLFile(plantUMLCode, pumlPath);
+        sink.writeText(".puml", plantUMLCode);
+        logger.info("PlantUML file saved to: {}", sink.describe(".puml"));
 
         // Generate PNG image
-        String pngPath = basePath + ".png";
-        generateImage(plantUMLCode, pngPath, FileFormat.PNG);
+        renderer.render("class", plantUMLCode, sink, FileFormat.PNG);
 
         // Generate SVG image (optional, better quality)
-        String svgPath = basePath + ".svg";
-        generateImage(plantUMLCode, svgPath, FileFormat.SVG);
+        renderer.render("class", plantUMLCode, sink, FileFormat.SVG);
 
         logger.info("UML diagrams generated successfully");
     }
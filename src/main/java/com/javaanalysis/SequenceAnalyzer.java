@@ -4,11 +4,12 @@ import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParseResult;
 import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
-import com.github.javaparser.resolution.declarations.ResolvedMethodDeclaration;
 import com.github.javaparser.resolution.types.ResolvedReferenceType;
 import com.github.javaparser.symbolsolver.JavaSymbolSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
@@ -20,15 +21,36 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
 
-public class SequenceAnalyzer {
+public class SequenceAnalyzer implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(SequenceAnalyzer.class);
-    private final JavaParser javaParser;
     private final String sourceRoot;
+    private final CallResolver callResolver;
+    private final LibraryTypeSolver libraryTypeSolver;
     private static final int MAX_DEPTH = 5; // Prevent infinite recursion
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+    private int maxDepth = 1;
+    private boolean hideSystemCalls;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private ForkJoinPool pool;
+    private boolean closed;
+    private Map<String, ClassInfo> classModel;
+    private SubtypeIndex subtypeIndex;
+    private int maxImplementations;
 
     public static class CallTrace {
         public String sourceClass;
@@ -36,6 +58,8 @@ public class SequenceAnalyzer {
         public String methodName;
         public String returnType;
         public int depth;
+        /** True for a call fanned out from an interface or abstract method (sourceClass) to one implementation */
+        public boolean dispatch;
 
         public CallTrace(String sourceClass, String targetClass, String methodName, String returnType, int depth) {
             this.sourceClass = sourceClass;
@@ -44,65 +68,309 @@ public class SequenceAnalyzer {
             this.returnType = returnType;
             this.depth = depth;
         }
+
+        public CallTrace(String sourceClass, String targetClass, String methodName, String returnType, int depth,
+                         boolean dispatch) {
+            this(sourceClass, targetClass, methodName, returnType, depth);
+            this.dispatch = dispatch;
+        }
     }
 
     public SequenceAnalyzer(String sourceRoot) {
+        this(sourceRoot, Collections.emptyList());
+    }
+
+    /**
+     * @param libraries jars, class directories or directories of jars whose types calls may
+     *                  resolve to; they are indexed on first use. Archives read stay open until
+     *                  garbage collected; pass a {@link LibraryTypeSolver} to close them.
+     */
+    public SequenceAnalyzer(String sourceRoot, List<Path> libraries) {
+        this(sourceRoot, libraries.isEmpty() ? null : new LibraryTypeSolver(libraries));
+    }
+
+    /**
+     * @param libraries solver for library types, or null; it may be shared with other
+     *                  analyzers, as workers use copies sharing its index. The caller closes it.
+     */
+    public SequenceAnalyzer(String sourceRoot, LibraryTypeSolver libraries) {
         this.sourceRoot = sourceRoot;
+        this.libraryTypeSolver = libraries;
+        this.callResolver = new CallResolver(sourceRoot);
+    }
 
-        // Configure Symbol Solver to resolve types
-        CombinedTypeSolver combinedTypeSolver = new CombinedTypeSolver();
-        combinedTypeSolver.add(new ReflectionTypeSolver());
-        combinedTypeSolver.add(new JavaParserTypeSolver(new File(sourceRoot)));
+    /**
+     * Parser with its own symbol solver; JavaParser and the symbol solver are not thread-safe
+     */
+    private final class Worker {
+        final JavaParser javaParser;
 
-        JavaSymbolSolver symbolSolver = new JavaSymbolSolver(combinedTypeSolver);
-        ParserConfiguration parserConfiguration = new ParserConfiguration();
-        parserConfiguration.setSymbolResolver(symbolSolver);
+        Worker() {
+            // Configure Symbol Solver to resolve types
+            CombinedTypeSolver combinedTypeSolver = new CombinedTypeSolver();
+            combinedTypeSolver.add(new ReflectionTypeSolver());
+            combinedTypeSolver.add(new JavaParserTypeSolver(new File(sourceRoot)));
+            if (libraryTypeSolver != null) {
+                combinedTypeSolver.add(libraryTypeSolver.copy());
+            }
+
+            JavaSymbolSolver symbolSolver = new JavaSymbolSolver(combinedTypeSolver);
+            ParserConfiguration parserConfiguration = new ParserConfiguration();
+            parserConfiguration.setSymbolResolver(symbolSolver);
+
+            this.javaParser = new JavaParser(parserConfiguration);
+        }
+
+        /**
+         * Parses a file once per analysis; {@code units} holds what this worker parsed so far
+         */
+        Optional<CompilationUnit> parse(Path file, Map<Path, Optional<CompilationUnit>> units) {
+            Optional<CompilationUnit> unit = units.get(file);
+            if (unit != null) {
+                return unit;
+            }
+            ParseResult<CompilationUnit> parseResult;
+            try (AnalysisMetrics.Timer timer = metrics.start("parse")) {
+                parseResult = javaParser.parse(file);
+            } catch (IOException e) {
+                logger.error("Failed to read file: {}", file, e);
+                parseResult = null;
+            }
+            if (parseResult != null && parseResult.isSuccessful()) {
+                metrics.increment("files.parsed");
+                unit = parseResult.getResult();
+            } else {
+                logger.error("Failed to parse file: {}", file);
+                metrics.increment("files.failed");
+                unit = Optional.empty();
+            }
+            units.put(file, unit);
+            return unit;
+        }
+
+        /**
+         * Finds a method by name, and by argument count unless that is negative
+         */
+        Optional<MethodDeclaration> findMethod(Map<Path, Optional<CompilationUnit>> units, Path file, String className,
+                                               String methodName, int arguments) {
+            return parse(file, units).flatMap(cu -> cu.findFirst(TypeDeclaration.class,
+                            c -> c.getNameAsString().equals(className)))
+                    .flatMap(c -> ((TypeDeclaration<?>) c).findFirst(MethodDeclaration.class,
+                            m -> m.getNameAsString().equals(methodName)
+                                    && (arguments < 0 || m.getParameters().size() == arguments)));
+        }
+    }
+
+    /**
+     * A fork-join thread of this analyzer's pool, carrying its worker for its whole life
+     */
+    private final class WorkerThread extends ForkJoinWorkerThread {
+        private Worker worker;
+
+        WorkerThread(ForkJoinPool pool) {
+            super(pool);
+        }
+
+        Worker worker() {
+            if (worker == null) {
+                worker = new Worker();
+            }
+            return worker;
+        }
+    }
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+        callResolver.setMetrics(metrics);
+        if (libraryTypeSolver != null) {
+            libraryTypeSolver.setMetrics(metrics);
+        }
+    }
 
-        this.javaParser = new JavaParser(parserConfiguration);
+    /**
+     * Lets calls be resolved from an already analyzed class model instead of parsing the
+     * declaring classes again
+     */
+    public void setClassModel(Map<String, ClassInfo> classInfoMap) {
+        callResolver.setClassModel(classInfoMap);
+        classModel = classInfoMap;
+        subtypeIndex = null;
+    }
+
+    /**
+     * Fans calls of interface and abstract methods out to at most {@code max} implementing
+     * classes (0, the default, records only the declaring type). Needs a class model, see
+     * {@link #setClassModel(Map)}.
+     */
+    public void setMaxImplementations(int max) {
+        this.maxImplementations = max;
+    }
+
+    /**
+     * Levels of calls traced: 1 (the default) records the calls made by the entry method, 2
+     * also the calls made by those callees when their source is available, and so on, up to
+     * {@value #MAX_DEPTH}. A method already being traced further up is not expanded again.
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be at least 1");
+        }
+        this.maxDepth = Math.min(maxDepth, MAX_DEPTH);
+    }
+
+    /**
+     * Leaves calls into the JDK ({@code java.*}, {@code javax.*}) out of the trace
+     */
+    public void setHideSystemCalls(boolean hideSystemCalls) {
+        this.hideSystemCalls = hideSystemCalls;
+    }
+
+    /**
+     * Number of fork-join workers expanding callees, each with its own parser and symbol
+     * solver, kept for every analysis until {@link #close()}; 1 traces on a single worker.
+     * The result does not depend on it. Set it before the first analysis.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        if (pool != null) {
+            throw new IllegalStateException("parallelism must be set before the first analysis");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Stops the worker threads, dropping their parsers and symbol solvers
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private synchronized ForkJoinPool pool() {
+        if (closed) {
+            throw new IllegalStateException("SequenceAnalyzer is closed");
+        }
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism, WorkerThread::new, null, false);
+        }
+        return pool;
     }
 
     public List<CallTrace> analyze(String className, String methodName) throws IOException {
+        return analyze(className, methodName, new HashSet<>());
+    }
+
+    /**
+     * Traces the calls of a method and adds to {@code touchedFiles} the source files the
+     * result depends on: the entry class, the types named in the traced method bodies, the
+     * model classes consulted while resolving calls, and the resolved targets. Types the
+     * symbol solver looks at internally are not tracked beyond these.
+     */
+    public List<CallTrace> analyze(String className, String methodName, Set<Path> touchedFiles) throws IOException {
+        return analyze(className, methodName, touchedFiles, new HashSet<>());
+    }
+
+    /**
+     * Like {@link #analyze(String, String, Set)}, and also adds to {@code touchedTypes} the
+     * type names looked up by file name on the way, including those no source file was found
+     * for (a file added later could change the result)
+     */
+    public List<CallTrace> analyze(String className, String methodName, Set<Path> touchedFiles,
+                                   Set<String> touchedTypes) throws IOException {
+        try (AnalysisMetrics.Timer timer = metrics.start("sequence_analysis")) {
+            Set<String> types = ConcurrentHashMap.newKeySet();
+            List<CallTrace> traces = doAnalyze(className, methodName, types, touchedFiles);
+            touchedFiles.addAll(callResolver.sourceFiles(types));
+            touchedTypes.addAll(types);
+            return traces;
+        }
+    }
+
+    private List<CallTrace> doAnalyze(String className, String methodName, Set<String> touchedTypes,
+                                      Set<Path> touchedFiles) throws IOException {
         List<CallTrace> traces = new ArrayList<>();
         
         // Find the starting class file
-        File startFile = findFileForClass(new File(sourceRoot), className);
+        File startFile = findFileForClass(className);
         if (startFile == null) {
             logger.error("Could not find source file for class: {}", className);
             return traces;
         }
+        touchedFiles.add(startFile.toPath());
+        touchedTypes.add(className);
 
-        ParseResult<CompilationUnit> parseResult = javaParser.parse(startFile);
-        if (!parseResult.isSuccessful()) {
-            logger.error("Failed to parse file: {}", startFile);
-            return traces;
+        // Files parsed during this analysis, by worker; dropped with it
+        Map<Worker, Map<Path, Optional<CompilationUnit>>> parsed = new ConcurrentHashMap<>();
+        ExpandTask entry = new ExpandTask(simpleClassName(className), methodName, -1,
+                Collections.singletonList(startFile.toPath()), 0, Collections.emptySet(), touchedTypes, parsed);
+        try {
+            return pool().invoke(entry);
+        } finally {
+            parsed.clear();
         }
+    }
 
-        CompilationUnit cu = parseResult.getResult().get();
-        
-        // Find the starting method
-        Optional<MethodDeclaration> startMethod = cu.findFirst(ClassOrInterfaceDeclaration.class, 
-                c -> c.getNameAsString().equals(className))
-                .flatMap(c -> c.findFirst(MethodDeclaration.class, 
-                        m -> m.getNameAsString().equals(methodName)));
-
-        if (startMethod.isPresent()) {
-            logger.info("Analyzing sequence starting from {}.{}", className, methodName);
-            analyzeMethodBody(startMethod.get(), className, traces, 0);
-        } else {
-            logger.error("Method {} not found in class {}", methodName, className);
+    /**
+     * Class name an unresolved call's scope starts with ({@code System} in
+     * {@code System.out.println()}), if any: a source file of that name could resolve it
+     */
+    private static Set<String> scopeNames(MethodCallExpr call) {
+        if (!call.getScope().isPresent()) {
+            return Collections.emptySet();
+        }
+        Expression scope = call.getScope().get();
+        while (scope.isFieldAccessExpr()) {
+            scope = scope.asFieldAccessExpr().getScope();
+        }
+        if (scope.isNameExpr() && Character.isUpperCase(scope.asNameExpr().getNameAsString().charAt(0))) {
+            return Collections.singleton(scope.asNameExpr().getNameAsString());
         }
+        return Collections.emptySet();
+    }
+
+    /**
+     * Simple name of an entry class given as {@code Cat}, {@code com.acme.Cat} or
+     * {@code Outer.Inner}; traces and diagrams use simple names
+     */
+    public static String simpleClassName(String className) {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
 
-        return traces;
+    /**
+     * Source file of an entry class, or null if there is none. A package-qualified name
+     * only matches a file in that package's directory.
+     */
+    public Path findSourceFile(String className) {
+        File file = findFileForClass(className);
+        return file == null ? null : file.toPath();
     }
 
-    private File findFileForClass(File dir, String className) {
+    private File findFileForClass(String className) {
+        // Segments before the first capitalized one are the package: com.acme.Outer.Inner
+        // is declared in com/acme/Outer.java
+        String[] segments = className.split("\\.");
+        int type = 0;
+        while (type < segments.length - 1 && (segments[type].isEmpty() || !Character.isUpperCase(segments[type].charAt(0)))) {
+            type++;
+        }
+        segments[type] = segments[type] + ".java";
+        return findFileForClass(new File(sourceRoot), Paths.get("", Arrays.copyOfRange(segments, 0, type + 1)));
+    }
+
+    private File findFileForClass(File dir, Path relativePath) {
         File[] files = dir.listFiles();
         if (files != null) {
             for (File file : files) {
                 if (file.isDirectory()) {
-                    File found = findFileForClass(file, className);
+                    File found = findFileForClass(file, relativePath);
                     if (found != null) return found;
-                } else if (file.getName().equals(className + ".java")) {
+                } else if (file.toPath().endsWith(relativePath)) {
                     return file;
                 }
             }
@@ -110,45 +378,228 @@ public class SequenceAnalyzer {
         return null;
     }
 
-    private void analyzeMethodBody(MethodDeclaration method, String currentClass, List<CallTrace> traces, int depth) {
+    /**
+     * Traces the calls of one method and, below the depth limit, expands the callees found in
+     * the sources as subtasks. The calls are resolved first and the subtasks forked after, so
+     * a thread never has two resolutions in flight; every task parses with the parser of the
+     * thread running it. Results are joined in call order, so the trace is the same for any
+     * parallelism.
+     */
+    private final class ExpandTask extends RecursiveTask<List<CallTrace>> {
+        private final String className;
+        private final String methodName;
+        private final int arguments;
+        private final List<Path> files;
+        private final int depth;
+        private final Set<String> stack;
+        private final Set<String> touchedTypes;
+        private final Map<Worker, Map<Path, Optional<CompilationUnit>>> parsed;
+
+        ExpandTask(String className, String methodName, int arguments, List<Path> files, int depth,
+                   Set<String> stack, Set<String> touchedTypes, Map<Worker, Map<Path, Optional<CompilationUnit>>> parsed) {
+            this.className = className;
+            this.methodName = methodName;
+            this.arguments = arguments;
+            this.files = files;
+            this.depth = depth;
+            this.stack = stack;
+            this.touchedTypes = touchedTypes;
+            this.parsed = parsed;
+        }
+
+        @Override
+        protected List<CallTrace> compute() {
+            Worker worker = ((WorkerThread) Thread.currentThread()).worker();
+            Map<Path, Optional<CompilationUnit>> units = parsed.computeIfAbsent(worker, w -> new HashMap<>());
+            Optional<MethodDeclaration> method = Optional.empty();
+            for (Path file : files) {
+                method = worker.findMethod(units, file, className, methodName, arguments);
+                if (method.isPresent()) {
+                    break;
+                }
+            }
+            if (!method.isPresent()) {
+                if (depth == 0) {
+                    logger.error("Method {} not found in class {}", methodName, className);
+                } else {
+                    logger.debug("No source for {}.{}", className, methodName);
+                }
+                return new ArrayList<>();
+            }
+            if (depth == 0) {
+                logger.info("Analyzing sequence starting from {}.{}", className, methodName);
+            }
+
+            List<List<CallTrace>> calls = new ArrayList<>();
+            List<ExpandTask> callees = new ArrayList<>();
+            analyzeMethodBody(method.get(), className, depth, stack, touchedTypes, parsed, calls, callees);
+
+            List<ExpandTask> forked = new ArrayList<>();
+            for (ExpandTask callee : callees) {
+                if (callee != null) {
+                    forked.add(callee);
+                }
+            }
+            invokeAll(forked);
+
+            List<CallTrace> traces = new ArrayList<>();
+            for (int i = 0; i < calls.size(); i++) {
+                traces.addAll(calls.get(i));
+                ExpandTask callee = callees.get(i);
+                if (callee != null) {
+                    traces.addAll(callee.join());
+                }
+            }
+            return traces;
+        }
+    }
+
+    /**
+     * Resolves the calls of a method body in order. For each call adds its traces to
+     * {@code calls} and, at the same position in {@code callees}, a task expanding the
+     * callee or null.
+     */
+    private void analyzeMethodBody(MethodDeclaration method, String currentClass, int depth, Set<String> stack,
+                                   Set<String> touchedTypes, Map<Worker, Map<Path, Optional<CompilationUnit>>> parsed,
+                                   List<List<CallTrace>> calls, List<ExpandTask> callees) {
         if (depth >= MAX_DEPTH) return;
 
+        for (ClassOrInterfaceType type : method.findAll(ClassOrInterfaceType.class)) {
+            touchedTypes.add(type.getNameAsString());
+        }
+        Set<String> path = new HashSet<>(stack);
+        path.add(currentClass + "#" + method.getNameAsString() + "/" + method.getParameters().size());
+
         method.accept(new VoidVisitorAdapter<Void>() {
             @Override
             public void visit(MethodCallExpr n, Void arg) {
                 super.visit(n, arg);
 
-                try {
-                    // Try to resolve the method call to find the target class
-                    ResolvedMethodDeclaration resolvedMethod = n.resolve();
-                    String targetClass = resolvedMethod.declaringType().getClassName();
-                    String calledMethodName = resolvedMethod.getName();
-                    String returnType = resolvedMethod.getReturnType().describe();
-                    
-                    // Filter out common Java classes to keep diagram clean (optional)
-                    if (isSystemClass(targetClass)) {
-                         // Skip java system classes for clarity, or keep them if preferred
-                         // keeping them for now but maybe we can flag them
-                    }
-
-                    traces.add(new CallTrace(currentClass, targetClass, calledMethodName, returnType, depth));
-
-                    // Recursively analyze the called method if it's in our source code
-                    // This is complex because we need to find the source for the target class
-                    // For now, we only trace one level deep or need to load the target CU
-                    
-                    // TODO: For a full depth analysis, we would need to load the target class CU and find the method
-                    // This implementation focuses on the immediate calls from the start method for this iteration.
-                    
-                } catch (Exception e) {
-                    // If resolution fails (e.g., library calls not in solver), just log partial info
-                    logger.debug("Could not resolve method call: {}", n.getNameAsString());
+                List<CallTrace> traces = new ArrayList<>(1);
+                ExpandTask callee = null;
+                AnalysisEvents.CallResolutionEvent event = new AnalysisEvents.CallResolutionEvent();
+                event.begin();
+                CallResolver.Resolution resolution = callResolver.resolve(n, currentClass, touchedTypes);
+                if (resolution != null && hideSystemCalls && isSystemClass(resolution.getQualifiedTargetClass())) {
+                    metrics.increment("calls.hidden");
+                    commitResolution(event, currentClass, resolution.getMethodName(), resolution.getTargetClass(),
+                            resolution.getTier().name(), true);
+                    return;
+                }
+                if (resolution != null) {
+                    traces.add(new CallTrace(currentClass, resolution.getTargetClass(), resolution.getMethodName(),
+                            resolution.getReturnType(), depth));
+                    metrics.increment("calls.resolved");
+                    commitResolution(event, currentClass, resolution.getMethodName(), resolution.getTargetClass(),
+                            resolution.getTier().name(), true);
+                    addImplementations(n, currentClass, resolution, traces, touchedTypes, depth);
+                    callee = callee(resolution, n.getArguments().size(), depth, path, touchedTypes, parsed);
+                } else {
+                    // Library calls not in the solver, just log partial info
+                    touchedTypes.addAll(scopeNames(n));
                     traces.add(new CallTrace(currentClass, "Unknown", n.getNameAsString(), "void", depth));
+                    metrics.increment("calls.unresolved");
+                    commitResolution(event, currentClass, n.getNameAsString(), "Unknown", null, false);
                 }
+                calls.add(traces);
+                callees.add(callee);
             }
         }, null);
     }
 
+    /**
+     * A task expanding the called method, or null if it is at the depth limit, already on
+     * the call path, or not in the sources
+     */
+    private ExpandTask callee(CallResolver.Resolution resolution, int arguments, int depth, Set<String> path,
+                              Set<String> touchedTypes, Map<Worker, Map<Path, Optional<CompilationUnit>>> parsed) {
+        if (depth + 1 >= maxDepth) {
+            return null;
+        }
+        String target = resolution.getTargetClass();
+        String simpleName = target.substring(target.lastIndexOf('.') + 1);
+        if (path.contains(simpleName + "#" + resolution.getMethodName() + "/" + arguments)) {
+            return null;
+        }
+        Set<Path> files = callResolver.sourceFiles(Collections.singleton(target));
+        if (files.isEmpty()) {
+            return null;
+        }
+        metrics.increment("calls.expanded");
+        return new ExpandTask(simpleName, resolution.getMethodName(), arguments, new ArrayList<>(files), depth + 1,
+                path, touchedTypes, parsed);
+    }
+
+    /**
+     * Adds a dispatch trace per implementation when the call went to an interface or an
+     * abstract method
+     */
+    private void addImplementations(MethodCallExpr call, String currentClass, CallResolver.Resolution resolution,
+                                    List<CallTrace> traces, Set<String> touchedTypes, int depth) {
+        if (maxImplementations <= 0 || classModel == null) {
+            return;
+        }
+        SubtypeIndex index = subtypeIndex();
+        ClassInfo caller = index.getIndex().resolve(currentClass);
+        ClassInfo declaring = index.getIndex().resolve(resolution.getTargetClass(), caller);
+        if (declaring == null || !isVirtual(declaring, resolution.getMethodName(), call.getArguments().size())) {
+            return;
+        }
+        List<ClassInfo> implementations = index.implementations(declaring, resolution.getMethodName(),
+                call.getArguments().size(), maxImplementations + 1);
+        if (implementations.size() > maxImplementations) {
+            logger.debug("{}.{} has more than {} implementations; showing the first {}", declaring.getClassName(),
+                    resolution.getMethodName(), maxImplementations, maxImplementations);
+            implementations = implementations.subList(0, maxImplementations);
+            metrics.increment("calls.implementations_capped");
+        }
+        for (ClassInfo implementation : implementations) {
+            touchedTypes.add(implementation.getClassName());
+            traces.add(new CallTrace(resolution.getTargetClass(), implementation.getClassName(),
+                    resolution.getMethodName(), resolution.getReturnType(), depth, true));
+        }
+        metrics.add("calls.implementations", implementations.size());
+    }
+
+    private synchronized SubtypeIndex subtypeIndex() {
+        if (subtypeIndex == null) {
+            try (AnalysisMetrics.Timer timer = metrics.start("subtype_index")) {
+                subtypeIndex = new SubtypeIndex(classModel);
+            }
+        }
+        return subtypeIndex;
+    }
+
+    /**
+     * Whether the method is left to subclasses: declared by an interface without a body, or
+     * abstract in an abstract class
+     */
+    private static boolean isVirtual(ClassInfo declaring, String methodName, int arguments) {
+        if (!declaring.isInterface() && !declaring.isAbstract()) {
+            return false;
+        }
+        for (MethodInfo method : declaring.getMethods()) {
+            if (method.getName().equals(methodName) && method.getParameters().size() == arguments
+                    && (method.isAbstract() || declaring.isInterface() && !method.isStatic())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void commitResolution(AnalysisEvents.CallResolutionEvent event, String sourceClass,
+                                  String methodName, String targetClass, String tier, boolean resolved) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.sourceClass = sourceClass;
+            event.methodName = methodName;
+            event.targetClass = targetClass;
+            event.tier = tier;
+            event.resolved = resolved;
+            event.commit();
+        }
+    }
+
     private boolean isSystemClass(String className) {
         return className.startsWith("java.") || className.startsWith("javax.") || className.equals("String") || className.equals("Object");
     }
@@ -0,0 +1,318 @@
+package com.javaanalysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk cache of sequence diagram results, keyed by the content of the files a trace
+ * depended on.
+ *
+ * For every entry point the cache remembers which source files its last trace touched and
+ * which type names it looked up by file name (see
+ * {@link SequenceAnalyzer#analyze(String, String, Set, Set)}). A result (the traces, the
+ * .puml and the image) is stored under a key hashed from the entry point, the settings, the
+ * SHA-256 of each of those files, and the files each name maps to now, so a lookup finds the
+ * result only if none of the files changed and no file was added or removed under one of the
+ * names: a new {@code Foo.java} may resolve a call that was unknown, or make a name
+ * ambiguous. Results for older contents stay in the cache, e.g. for switching back to a
+ * branch. File hashes and the file index are computed once per instance.
+ */
+public class SequenceCache {
+    private static final Logger logger = LoggerFactory.getLogger(SequenceCache.class);
+
+    private static final int FORMAT = 3;
+    private static final String TRACES = "traces.bin";
+    private static final String[] OUTPUTS = {".puml", ".png"};
+
+    private final Path directory;
+    private final Map<Path, String> fileHashes = new ConcurrentHashMap<>();
+    private final Map<Path, Map<String, List<Path>>> sourceIndexes = new ConcurrentHashMap<>();
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+
+    public SequenceCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Identifies an entry point together with everything besides source files that changes
+     * its result (e.g. options)
+     */
+    public static String entryKey(String sourceRoot, String className, String methodName, String settings) {
+        return Paths.get(sourceRoot).toAbsolutePath().normalize() + "|" + className + "#" + methodName + "|"
+                + settings;
+    }
+
+    /**
+     * Identifies the libraries calls may resolve into by path, size and modification time
+     * of every jar and class file, so a rebuilt jar at the same path invalidates results
+     */
+    public static String librariesKey(List<Path> libraries) throws IOException {
+        StringBuilder key = new StringBuilder();
+        for (Path library : libraries) {
+            key.append(library.toAbsolutePath().normalize()).append('\n');
+            if (Files.isDirectory(library)) {
+                List<Path> files = new ArrayList<>();
+                try (java.util.stream.Stream<Path> paths = Files.walk(library)) {
+                    paths.filter(Files::isRegularFile).forEach(files::add);
+                }
+                Collections.sort(files);
+                for (Path file : files) {
+                    appendStamp(key, file, library.relativize(file).toString());
+                }
+            } else if (Files.isRegularFile(library)) {
+                appendStamp(key, library, "");
+            }
+        }
+        return sha256(key.toString());
+    }
+
+    private static void appendStamp(StringBuilder key, Path file, String name) throws IOException {
+        key.append(name).append(':').append(Files.size(file)).append(':')
+                .append(Files.getLastModifiedTime(file).toMillis()).append('\n');
+    }
+
+    /**
+     * Returns the cached traces of an entry point and restores its .puml and image to
+     * {@code outputBasePath}, or returns null if there is no result for the current contents
+     * of its files
+     */
+    public List<SequenceAnalyzer.CallTrace> lookup(String entryKey, String outputBasePath) throws IOException {
+        try (AnalysisMetrics.Timer timer = metrics.start("sequence_cache.lookup")) {
+            Dependencies dependencies = readDependencies(entryKey);
+            Path result = dependencies == null ? null : directory.resolve(resultKey(entryKey, dependencies));
+            boolean hit = result != null && Files.isRegularFile(result.resolve(TRACES));
+            AnalysisEvents.cacheAccess("sequence-results", entryKey, hit);
+            if (!hit) {
+                metrics.increment("sequence_cache.misses");
+                return null;
+            }
+
+            List<SequenceAnalyzer.CallTrace> traces = readTraces(result.resolve(TRACES));
+            for (String extension : OUTPUTS) {
+                Path cached = result.resolve("diagram" + extension);
+                Path target = Paths.get(outputBasePath + extension);
+                if (Files.isRegularFile(cached)) {
+                    Path parent = target.toAbsolutePath().getParent();
+                    if (parent != null) {
+                        Files.createDirectories(parent);
+                    }
+                    Files.copy(cached, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            metrics.increment("sequence_cache.hits");
+            return traces;
+        }
+    }
+
+    /**
+     * Stores the result of an entry point: its traces and the .puml and image already written
+     * to {@code outputBasePath}
+     *
+     * @param sourceRoot the directory the type names are looked up in
+     * @param files the source files the traces depended on
+     * @param typeNames the type names looked up by file name, found or not
+     */
+    public void store(String entryKey, Path sourceRoot, Set<Path> files, Set<String> typeNames,
+                      List<SequenceAnalyzer.CallTrace> traces, String outputBasePath) throws IOException {
+        try (AnalysisMetrics.Timer timer = metrics.start("sequence_cache.store")) {
+            List<Path> sorted = new ArrayList<>();
+            for (Path file : files) {
+                sorted.add(file.toAbsolutePath().normalize());
+            }
+            Collections.sort(sorted);
+            Dependencies dependencies = new Dependencies(sourceRoot.toAbsolutePath().normalize(), sorted,
+                    new ArrayList<>(new TreeSet<>(typeNames)));
+
+            Path result = directory.resolve(resultKey(entryKey, dependencies));
+            Files.createDirectories(result);
+            for (String extension : OUTPUTS) {
+                Path output = Paths.get(outputBasePath + extension);
+                if (Files.isRegularFile(output)) {
+                    Files.copy(output, result.resolve("diagram" + extension), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            // The traces go last: their presence marks the result as complete
+            writeAtomically(result.resolve(TRACES), out -> writeTraces(out, traces));
+            writeAtomically(directory.resolve(sha256(entryKey) + ".deps"), out -> {
+                out.writeInt(FORMAT);
+                out.writeUTF(entryKey);
+                out.writeUTF(dependencies.sourceRoot.toString());
+                out.writeInt(sorted.size());
+                for (Path file : sorted) {
+                    out.writeUTF(file.toString());
+                }
+                out.writeInt(dependencies.typeNames.size());
+                for (String name : dependencies.typeNames) {
+                    out.writeUTF(name);
+                }
+            });
+        }
+    }
+
+    /**
+     * What a stored result depended on: files by content, type names by the files they map to
+     */
+    private static class Dependencies {
+        final Path sourceRoot;
+        final List<Path> files;
+        final List<String> typeNames;
+
+        Dependencies(Path sourceRoot, List<Path> files, List<String> typeNames) {
+            this.sourceRoot = sourceRoot;
+            this.files = files;
+            this.typeNames = typeNames;
+        }
+    }
+
+    /**
+     * What the last stored result of an entry point depended on, or null if there is none
+     */
+    private Dependencies readDependencies(String entryKey) throws IOException {
+        Path deps = directory.resolve(sha256(entryKey) + ".deps");
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(deps)))) {
+            if (in.readInt() != FORMAT || !in.readUTF().equals(entryKey)) {
+                return null;
+            }
+            Path sourceRoot = Paths.get(in.readUTF());
+            int count = in.readInt();
+            List<Path> files = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                files.add(Paths.get(in.readUTF()));
+            }
+            count = in.readInt();
+            List<String> typeNames = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                typeNames.add(in.readUTF());
+            }
+            return new Dependencies(sourceRoot, files, typeNames);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (EOFException e) {
+            logger.warn("Ignoring truncated sequence cache entry {}", deps);
+            return null;
+        }
+    }
+
+    private String resultKey(String entryKey, Dependencies dependencies) throws IOException {
+        StringBuilder key = new StringBuilder(entryKey);
+        for (Path file : dependencies.files) {
+            key.append('\n').append(file).append('=').append(fileHash(file));
+        }
+        if (!dependencies.typeNames.isEmpty()) {
+            Map<String, List<Path>> index = sourceIndexes.computeIfAbsent(dependencies.sourceRoot,
+                    CallResolver::indexSourceFiles);
+            for (String name : dependencies.typeNames) {
+                key.append('\n').append(name).append(" ->");
+                List<Path> matches = index.get(CallResolver.fileName(name));
+                if (matches != null) {
+                    // In walk order: the first match is the one taken for an entry class
+                    for (Path file : matches) {
+                        Path normalized = file.toAbsolutePath().normalize();
+                        key.append(' ').append(normalized).append('=').append(fileHash(normalized));
+                    }
+                }
+            }
+        }
+        return sha256(key.toString());
+    }
+
+    private String fileHash(Path file) throws IOException {
+        String hash = fileHashes.get(file);
+        if (hash == null) {
+            try {
+                hash = hex(digest().digest(Files.readAllBytes(file)));
+            } catch (NoSuchFileException e) {
+                hash = "missing";
+            }
+            fileHashes.put(file, hash);
+            metrics.increment("sequence_cache.files_hashed");
+        }
+        return hash;
+    }
+
+    private static List<SequenceAnalyzer.CallTrace> readTraces(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != FORMAT) {
+                throw new IOException("Unsupported sequence cache entry: " + path);
+            }
+            int count = in.readInt();
+            List<SequenceAnalyzer.CallTrace> traces = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String sourceClass = in.readUTF();
+                String targetClass = in.readUTF();
+                String methodName = in.readUTF();
+                String returnType = in.readBoolean() ? in.readUTF() : null;
+                int depth = in.readInt();
+                boolean dispatch = in.readBoolean();
+                traces.add(new SequenceAnalyzer.CallTrace(sourceClass, targetClass, methodName, returnType, depth,
+                        dispatch));
+            }
+            return traces;
+        }
+    }
+
+    private static void writeTraces(DataOutputStream out, List<SequenceAnalyzer.CallTrace> traces)
+            throws IOException {
+        out.writeInt(FORMAT);
+        out.writeInt(traces.size());
+        for (SequenceAnalyzer.CallTrace trace : traces) {
+            out.writeUTF(trace.sourceClass);
+            out.writeUTF(trace.targetClass);
+            out.writeUTF(trace.methodName);
+            out.writeBoolean(trace.returnType != null);
+            if (trace.returnType != null) {
+                out.writeUTF(trace.returnType);
+            }
+            out.writeInt(trace.depth);
+            out.writeBoolean(trace.dispatch);
+        }
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static void writeAtomically(Path path, Body body) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            body.write(out);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static String sha256(String text) {
+        return hex(digest().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -1,24 +1,47 @@
 package com.javaanalysis;
 
-import java.io.BufferedWriter;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 
 import net.sourceforge.plantuml.FileFormat;
-import net.sourceforge.plantuml.FileFormatOption;
-import net.sourceforge.plantuml.SourceStringReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class SequencePlantUMLGenerator {
     private static final Logger logger = LoggerFactory.getLogger(SequencePlantUMLGenerator.class);
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+    private DiagramRenderer renderer = new DiagramRenderer();
+    private TraceCompactor compactor;
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Renderer used for the image (time budget)
+     */
+    public void setRenderer(DiagramRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Compaction applied to traces before drawing them (loops, collapsed subtrees); null,
+     * the default, draws every call
+     */
+    public void setCompactor(TraceCompactor compactor) {
+        this.compactor = compactor;
+    }
 
     public void generateDiagram(String startClass, String startMethod, List<SequenceAnalyzer.CallTrace> traces, String outputBasePath) throws IOException {
+        generateDiagram(startClass, startMethod, traces, new FileDiagramSink(outputBasePath));
+    }
+
+    /**
+     * Writes the PlantUML source and the PNG image to the sink
+     */
+    public void generateDiagram(String startClass, String startMethod, List<SequenceAnalyzer.CallTrace> traces, DiagramSink sink) throws IOException {
+        AnalysisMetrics.Timer textTimer = metrics.start("sequence_diagram.text");
         StringBuilder uml = new StringBuilder();
         uml.append("@startuml\n");
         uml.append("skinparam style strictuml\n"); // Cleaner look
@@ -27,39 +50,73 @@ public class SequencePlantUMLGenerator {
         uml.append("User -> ").append(startClass).append(" : ").append(startMethod).append("()\n");
         uml.append("activate ").append(startClass).append("\n");
 
-        for (SequenceAnalyzer.CallTrace trace : traces) {
-            String source = trace.sourceClass;
-            String target = trace.targetClass;
-            
-            // Skip self-calls if desired, or represent them
-            if (target.equals("Unknown")) target = trace.methodName + "_Target"; // Fallback
-
-            uml.append(source).append(" -> ").append(target).append(" : ").append(trace.methodName).append("()\n");
-            uml.append("activate ").append(target).append("\n");
-            // Typically in a simple trace we might assume immediate return for visualization
-            // or we just show the call flow.
-            uml.append(target).append(" --> ").append(source).append(" : ").append(getSimpleType(trace.returnType)).append("\n");
-            uml.append("deactivate ").append(target).append("\n");
-        }
+        List<TraceCompactor.Node> nodes = compactor != null ? compactor.compact(traces) : TraceCompactor.tree(traces);
+        appendNodes(uml, nodes, startClass);
 
         uml.append("deactivate ").append(startClass).append("\n");
         uml.append("@enduml\n");
 
         String plantUMLCode = uml.toString();
+        textTimer.close();
         
         // Save .puml
-        Path pumlPath = Paths.get(outputBasePath + ".puml");
-        try (BufferedWriter writer = Files.newBufferedWriter(pumlPath, StandardCharsets.UTF_8)) {
-            writer.write(plantUMLCode);
-        }
+        sink.writeText(".puml", plantUMLCode);
 
         // Generate PNG
-        try (FileOutputStream outputStream = new FileOutputStream(outputBasePath + ".png")) {
-            SourceStringReader reader = new SourceStringReader(plantUMLCode);
-            reader.outputImage(outputStream, new FileFormatOption(FileFormat.PNG));
-        }
+        renderer.render("sequence", plantUMLCode, sink, FileFormat.PNG);
         
-        logger.info("Sequence diagram generated at: {}", outputBasePath);
+        logger.info("Sequence diagram generated at: {}", sink.describe(""));
+    }
+
+    private void appendNodes(StringBuilder uml, List<TraceCompactor.Node> nodes, String caller) {
+        for (TraceCompactor.Node node : nodes) {
+            switch (node.getKind()) {
+                case LOOP:
+                    uml.append("loop ").append(node.getCount()).append(" times\n");
+                    appendNodes(uml, node.getChildren(), caller);
+                    uml.append("end\n");
+                    break;
+                case SUMMARY:
+                    uml.append("note over ").append(caller).append(" : ").append(node.getCount())
+                            .append(" more calls collapsed");
+                    if (!node.getTargets().isEmpty()) {
+                        List<String> targets = node.getTargets();
+                        uml.append(" (").append(String.join(", ", targets.subList(0, Math.min(5, targets.size()))));
+                        uml.append(targets.size() > 5 ? ", ...)" : ")");
+                    }
+                    uml.append("\n");
+                    break;
+                default:
+                    appendCall(uml, node.getTrace(), node.getChildren());
+                    // Implementations of an interface call are alternatives
+                    List<SequenceAnalyzer.CallTrace> alternatives = node.getAlternatives();
+                    for (int i = 0; i < alternatives.size(); i++) {
+                        uml.append(i == 0 ? "alt " : "else ").append(participant(alternatives.get(i))).append("\n");
+                        appendCall(uml, alternatives.get(i), Collections.<TraceCompactor.Node>emptyList());
+                    }
+                    if (!alternatives.isEmpty()) {
+                        uml.append("end\n");
+                    }
+            }
+        }
+    }
+
+    private void appendCall(StringBuilder uml, SequenceAnalyzer.CallTrace trace, List<TraceCompactor.Node> callees) {
+        String source = trace.sourceClass;
+        String target = participant(trace);
+        uml.append(source).append(" -> ").append(target).append(" : ").append(trace.methodName).append("()\n");
+        uml.append("activate ").append(target).append("\n");
+        appendNodes(uml, callees, target);
+        // Typically in a simple trace we might assume immediate return for visualization
+        // or we just show the call flow.
+        uml.append(target).append(" --> ").append(source).append(" : ").append(getSimpleType(trace.returnType)).append("\n");
+        uml.append("deactivate ").append(target).append("\n");
+    }
+
+    private String participant(SequenceAnalyzer.CallTrace trace) {
+        // Skip self-calls if desired, or represent them
+        if (trace.targetClass.equals("Unknown")) return trace.methodName + "_Target"; // Fallback
+        return trace.targetClass;
     }
 
     private String getSimpleType(String type) {
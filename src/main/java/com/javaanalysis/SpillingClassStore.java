@@ -0,0 +1,515 @@
+package com.javaanalysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Class model that stays within a memory budget by spilling to disk.
+ *
+ * Classes are kept on the heap until their estimated size exceeds the budget; then all
+ * resident classes are appended to an on-disk log and only their log offsets stay in
+ * memory. Lookups of spilled classes read their record back; iteration reads the log
+ * sequentially and then visits the resident classes, so a consumer that iterates never
+ * holds more than one spilled class at a time. Replacing a class appends a new record and
+ * leaves the old one unreferenced (the log is append-only).
+ *
+ * The simple and package name of every class stay in memory ({@link #getClassNames()}), so
+ * passes that only group or sort classes by name do not read records back.
+ *
+ * Lookups and updates are thread-safe; the map must not be modified while it is being
+ * iterated. {@link #close()} deletes the log.
+ */
+public class SpillingClassStore extends AbstractMap<String, ClassInfo> implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SpillingClassStore.class);
+
+    private static final int READ_WINDOW = 1 << 16;
+
+    private final long memoryBudget;
+    private final Path directory;
+    private final Map<String, ClassInfo> resident = new LinkedHashMap<>();
+    private final Map<String, Long> spilled = new HashMap<>();
+    private final Map<String, ClassName> names = new LinkedHashMap<>();
+    private long residentBytes;
+    private Path logFile;
+    private FileChannel log;
+    private long logSize;
+    private int spills;
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+
+    /**
+     * @param memoryBudget estimated heap bytes of resident classes before they are spilled
+     * @param directory where the log file is created, or null for the temporary directory
+     */
+    public SpillingClassStore(long memoryBudget, Path directory) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("memoryBudget must be positive");
+        }
+        this.memoryBudget = memoryBudget;
+        this.directory = directory;
+    }
+
+    /**
+     * Simple and package name of a stored class, and whether it is an interface
+     */
+    public static final class ClassName {
+        private final String className;
+        private final String packageName;
+        private final boolean isInterface;
+
+        ClassName(ClassInfo classInfo) {
+            this.className = classInfo.getClassName();
+            this.packageName = classInfo.getPackageName();
+            this.isInterface = classInfo.isInterface();
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * Package name, or null for the default package
+         */
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public boolean isInterface() {
+            return isInterface;
+        }
+
+        /**
+         * Fully qualified name, as {@link ClassInfo#getFullName()}
+         */
+        public String getFullName() {
+            return packageName != null && !packageName.isEmpty() ? packageName + "." + className : className;
+        }
+    }
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Names of all stored classes by key, without reading any record from disk
+     */
+    public synchronized Map<String, ClassName> getClassNames() {
+        return new LinkedHashMap<>(names);
+    }
+
+    /**
+     * Whether any class has been written to disk
+     */
+    public synchronized boolean hasSpilled() {
+        return !spilled.isEmpty();
+    }
+
+    public synchronized int getSpilledCount() {
+        return spilled.size();
+    }
+
+    @Override
+    public synchronized int size() {
+        return resident.size() + spilled.size();
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return resident.containsKey(key) || spilled.containsKey(key);
+    }
+
+    @Override
+    public ClassInfo get(Object key) {
+        long offset;
+        synchronized (this) {
+            ClassInfo classInfo = resident.get(key);
+            if (classInfo != null) {
+                return classInfo;
+            }
+            Long location = spilled.get(key);
+            if (location == null) {
+                return null;
+            }
+            offset = location;
+        }
+        try {
+            return decode(readRecord(offset));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read spilled class " + key, e);
+        }
+    }
+
+    @Override
+    public synchronized ClassInfo put(String key, ClassInfo classInfo) {
+        // A spilled previous value is read back before the new one shadows it in memory
+        ClassInfo previous = spilled.containsKey(key) ? get(key) : null;
+        spilled.remove(key);
+        ClassInfo replaced = resident.put(key, classInfo);
+        names.put(key, new ClassName(classInfo));
+        if (replaced != null) {
+            residentBytes -= estimateSize(replaced);
+            previous = replaced;
+        }
+        residentBytes += estimateSize(classInfo);
+        if (residentBytes > memoryBudget) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not spill classes to " + logFile, e);
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized ClassInfo remove(Object key) {
+        names.remove(key);
+        ClassInfo previous = resident.remove(key);
+        if (previous != null) {
+            residentBytes -= estimateSize(previous);
+            return previous;
+        }
+        if (spilled.containsKey(key)) {
+            previous = get(key);
+            spilled.remove(key);
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized void clear() {
+        resident.clear();
+        spilled.clear();
+        names.clear();
+        residentBytes = 0;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public int size() {
+                return SpillingClassStore.this.size();
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                // Keys are in memory; no need to decode any record
+                List<String> keys;
+                synchronized (SpillingClassStore.this) {
+                    keys = new ArrayList<>(spilled.size() + resident.size());
+                    keys.addAll(spilled.keySet());
+                    keys.addAll(resident.keySet());
+                }
+                return Collections.unmodifiableList(keys).iterator();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<String, ClassInfo>> entrySet() {
+        return new AbstractSet<Entry<String, ClassInfo>>() {
+            @Override
+            public int size() {
+                return SpillingClassStore.this.size();
+            }
+
+            @Override
+            public Iterator<Entry<String, ClassInfo>> iterator() {
+                return new LogIterator();
+            }
+        };
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+            Files.deleteIfExists(logFile);
+        }
+    }
+
+    /**
+     * Appends every resident class to the log in one sequential write
+     */
+    private void spill() throws IOException {
+        try (AnalysisMetrics.Timer timer = metrics.start("spill")) {
+            if (log == null) {
+                logFile = directory != null
+                        ? Files.createTempFile(directory, "classes-", ".log")
+                        : Files.createTempFile("classes-", ".log");
+                logFile.toFile().deleteOnExit();
+                log = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                logger.info("Model exceeds the memory budget of {} bytes, spilling classes to {}", memoryBudget, logFile);
+            }
+
+            ByteArrayOutputStream batch = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(batch);
+            Map<String, Long> offsets = new HashMap<>();
+            for (Map.Entry<String, ClassInfo> entry : resident.entrySet()) {
+                ByteArrayOutputStream record = new ByteArrayOutputStream();
+                encode(new DataOutputStream(record), entry.getKey(), entry.getValue());
+                offsets.put(entry.getKey(), logSize + batch.size());
+                out.writeInt(record.size());
+                record.writeTo(out);
+            }
+            out.flush();
+
+            ByteBuffer bytes = ByteBuffer.wrap(batch.toByteArray());
+            long position = logSize;
+            while (bytes.hasRemaining()) {
+                position += log.write(bytes, position);
+            }
+            logSize = position;
+            spilled.putAll(offsets);
+
+            metrics.add("spill.classes", resident.size());
+            metrics.add("spill.bytes", batch.size());
+            spills++;
+            logger.debug("Spill {}: {} classes, log is now {} bytes", spills, resident.size(), logSize);
+            resident.clear();
+            residentBytes = 0;
+        }
+    }
+
+    private byte[] readRecord(long offset) throws IOException {
+        FileChannel channel;
+        synchronized (this) {
+            channel = log;
+        }
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(channel, length, offset);
+        ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+        readFully(channel, record, offset + 4);
+        return record.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of the class log at " + position);
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Rough heap size of a class: object headers plus two bytes per character
+     */
+    static long estimateSize(ClassInfo classInfo) {
+        long size = 160 + chars(classInfo.getClassName()) + chars(classInfo.getPackageName())
+                + chars(classInfo.getSuperClass());
+        for (String name : classInfo.getInterfaces()) {
+            size += 48 + chars(name);
+        }
+        for (FieldInfo field : classInfo.getFields()) {
+            size += 96 + chars(field.getName()) + chars(field.getType()) + chars(field.getVisibility());
+        }
+        for (MethodInfo method : classInfo.getMethods()) {
+            size += 128 + chars(method.getName()) + chars(method.getReturnType()) + chars(method.getVisibility());
+            for (ParameterInfo parameter : method.getParameters()) {
+                size += 80 + chars(parameter.getName()) + chars(parameter.getType());
+            }
+        }
+        for (String dependency : classInfo.getDependencies()) {
+            size += 48 + chars(dependency);
+        }
+        return size;
+    }
+
+    private static long chars(String value) {
+        return value == null ? 0 : 2L * value.length();
+    }
+
+    private static void encode(DataOutputStream out, String key, ClassInfo classInfo) throws IOException {
+        out.writeUTF(key);
+        out.writeUTF(classInfo.getClassName());
+        writeNullable(out, classInfo.getPackageName());
+        out.writeBoolean(classInfo.isInterface());
+        out.writeBoolean(classInfo.isAbstract());
+        out.writeBoolean(classInfo.isEnum());
+        writeNullable(out, classInfo.getSuperClass());
+        writeStrings(out, classInfo.getInterfaces());
+
+        out.writeInt(classInfo.getFields().size());
+        for (FieldInfo field : classInfo.getFields()) {
+            writeNullable(out, field.getName());
+            writeNullable(out, field.getType());
+            writeNullable(out, field.getVisibility());
+        }
+
+        out.writeInt(classInfo.getMethods().size());
+        for (MethodInfo method : classInfo.getMethods()) {
+            writeNullable(out, method.getName());
+            writeNullable(out, method.getReturnType());
+            writeNullable(out, method.getVisibility());
+            out.writeBoolean(method.isStatic());
+            out.writeBoolean(method.isAbstract());
+            out.writeInt(method.getParameters().size());
+            for (ParameterInfo parameter : method.getParameters()) {
+                writeNullable(out, parameter.getName());
+                writeNullable(out, parameter.getType());
+            }
+        }
+
+        writeStrings(out, classInfo.getDependencies());
+    }
+
+    private static ClassInfo decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        in.readUTF();
+        ClassInfo classInfo = new ClassInfo(in.readUTF(), readNullable(in));
+        classInfo.setInterface(in.readBoolean());
+        classInfo.setAbstract(in.readBoolean());
+        classInfo.setEnum(in.readBoolean());
+        classInfo.setSuperClass(readNullable(in));
+        int interfaceCount = in.readInt();
+        for (int i = 0; i < interfaceCount; i++) {
+            classInfo.addInterface(in.readUTF());
+        }
+
+        int fieldCount = in.readInt();
+        for (int i = 0; i < fieldCount; i++) {
+            classInfo.addField(new FieldInfo(readNullable(in), readNullable(in), readNullable(in)));
+        }
+
+        int methodCount = in.readInt();
+        for (int i = 0; i < methodCount; i++) {
+            MethodInfo method = new MethodInfo(readNullable(in), readNullable(in), readNullable(in));
+            method.setStatic(in.readBoolean());
+            method.setAbstract(in.readBoolean());
+            int parameterCount = in.readInt();
+            for (int p = 0; p < parameterCount; p++) {
+                method.addParameter(new ParameterInfo(readNullable(in), readNullable(in)));
+            }
+            classInfo.addMethod(method);
+        }
+
+        int dependencyCount = in.readInt();
+        for (int i = 0; i < dependencyCount; i++) {
+            classInfo.addDependency(in.readUTF());
+        }
+        return classInfo;
+    }
+
+    /**
+     * Key of a record without decoding the rest of it
+     */
+    private static String decodeKey(byte[] record) throws IOException {
+        return new DataInputStream(new ByteArrayInputStream(record)).readUTF();
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Walks the log front to back through a read window, skipping records that were
+     * replaced later, then the resident classes
+     */
+    private final class LogIterator implements Iterator<Entry<String, ClassInfo>> {
+        private final long end;
+        private final Iterator<Entry<String, ClassInfo>> residentEntries;
+        private ByteBuffer window = ByteBuffer.allocate(0);
+        private long windowStart;
+        private long position;
+        private Entry<String, ClassInfo> next;
+
+        LogIterator() {
+            synchronized (SpillingClassStore.this) {
+                end = logSize;
+                residentEntries = new ArrayList<>(resident.entrySet()).iterator();
+            }
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<String, ClassInfo> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, ClassInfo> current = next;
+            advance();
+            return current;
+        }
+
+        private void advance() {
+            try {
+                while (position < end) {
+                    long offset = position;
+                    int length = window(offset, 4).getInt();
+                    byte[] record = new byte[length];
+                    window(offset + 4, length).get(record);
+                    position = offset + 4 + length;
+
+                    String key = decodeKey(record);
+                    Long current;
+                    synchronized (SpillingClassStore.this) {
+                        current = spilled.get(key);
+                    }
+                    if (current != null && current == offset) {
+                        next = new SimpleImmutableEntry<>(key, decode(record));
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the class log " + logFile, e);
+            }
+            next = residentEntries.hasNext() ? residentEntries.next() : null;
+        }
+
+        /**
+         * Returns the window positioned at {@code offset} with at least {@code length} bytes
+         * remaining, refilling it from the log when needed
+         */
+        private ByteBuffer window(long offset, int length) throws IOException {
+            long windowEnd = windowStart + window.limit();
+            if (offset < windowStart || offset + length > windowEnd) {
+                int size = (int) Math.min(Math.max(READ_WINDOW, length), end - offset);
+                if (window.capacity() < size) {
+                    window = ByteBuffer.allocate(Math.max(size, READ_WINDOW));
+                }
+                window.clear();
+                window.limit(size);
+                readFully(log, window, offset);
+                window.flip();
+                windowStart = offset;
+            }
+            window.position((int) (offset - windowStart));
+            return window;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.javaanalysis;
+
+import java.util.*;
+
+/**
+ * Transitive subtypes of every class in a model, for answering "who implements this"
+ * without scanning the model.
+ *
+ * Classes get the ids of their {@link ClassIndex} (full-name order). Direct subtypes come
+ * from the superclass and interfaces of each class, resolved once through the index; the
+ * transitive subtypes of each type are then stored as one sorted run in a shared int array,
+ * so a lookup is an array slice. Immutable once built, so safe to share between threads.
+ */
+public class SubtypeIndex {
+    private final ClassIndex index;
+    private final List<ClassInfo> classes;
+    private final Map<ClassInfo, Integer> ids = new IdentityHashMap<>();
+    private final int[] start;
+    private final int[] subtypes;
+
+    public SubtypeIndex(Map<String, ClassInfo> classInfoMap) {
+        this(new ClassIndex(classInfoMap));
+    }
+
+    public SubtypeIndex(ClassIndex index) {
+        this.index = index;
+        this.classes = index.getClasses();
+        int n = classes.size();
+        for (int i = 0; i < n; i++) {
+            ids.put(classes.get(i), i);
+        }
+
+        // Direct subtypes
+        List<List<Integer>> direct = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            direct.add(new ArrayList<>(2));
+        }
+        for (int i = 0; i < n; i++) {
+            ClassInfo classInfo = classes.get(i);
+            addDirect(direct, classInfo.getSuperClass(), classInfo, i);
+            for (String interfaceName : classInfo.getInterfaces()) {
+                addDirect(direct, interfaceName, classInfo, i);
+            }
+        }
+
+        // Transitive subtypes, one walk per type; seen[id] == type + 1 marks a visited class
+        start = new int[n + 1];
+        int[] all = new int[Math.max(16, n)];
+        int size = 0;
+        int[] seen = new int[n];
+        int[] queue = new int[n];
+        for (int type = 0; type < n; type++) {
+            start[type] = size;
+            seen[type] = type + 1;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = type;
+            while (head < tail) {
+                for (int subtype : direct.get(queue[head++])) {
+                    if (seen[subtype] != type + 1) {
+                        seen[subtype] = type + 1;
+                        queue[tail++] = subtype;
+                    }
+                }
+            }
+            int count = tail - 1;
+            if (size + count > all.length) {
+                all = Arrays.copyOf(all, Math.max(all.length * 2, size + count));
+            }
+            System.arraycopy(queue, 1, all, size, count);
+            Arrays.sort(all, size, size + count);
+            size += count;
+        }
+        start[n] = size;
+        subtypes = Arrays.copyOf(all, size);
+    }
+
+    private void addDirect(List<List<Integer>> direct, String supertypeName, ClassInfo classInfo, int id) {
+        ClassInfo supertype = index.resolve(supertypeName, classInfo);
+        if (supertype != null && supertype != classInfo) {
+            direct.get(ids.get(supertype)).add(id);
+        }
+    }
+
+    public ClassIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Ids of all direct and indirect subtypes of a class, ascending
+     */
+    public int[] subtypes(int id) {
+        return Arrays.copyOfRange(subtypes, start[id], start[id + 1]);
+    }
+
+    /**
+     * All direct and indirect subtypes of a class, in full-name order
+     */
+    public List<ClassInfo> subtypes(ClassInfo type) {
+        Integer id = ids.get(type);
+        if (id == null) {
+            return Collections.emptyList();
+        }
+        List<ClassInfo> result = new ArrayList<>(start[id + 1] - start[id]);
+        for (int position = start[id]; position < start[id + 1]; position++) {
+            result.add(classes.get(subtypes[position]));
+        }
+        return result;
+    }
+
+    /**
+     * Classes that implement a method of an interface or abstract class: for every concrete
+     * subtype, the nearest class in its superclass chain that declares a non-abstract method
+     * with this name and argument count. Each class is listed once, in full-name order.
+     *
+     * @param limit maximum number of classes returned
+     */
+    public List<ClassInfo> implementations(ClassInfo type, String methodName, int arguments, int limit) {
+        Integer id = ids.get(type);
+        if (id == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Set<ClassInfo> result = new TreeSet<>(Comparator.comparing(ClassInfo::getFullName));
+        for (int position = start[id]; position < start[id + 1]; position++) {
+            ClassInfo subtype = classes.get(subtypes[position]);
+            if (subtype.isInterface() || subtype.isAbstract()) {
+                continue;
+            }
+            ClassInfo implementation = declaringClass(subtype, methodName, arguments);
+            if (implementation != null) {
+                result.add(implementation);
+            }
+        }
+        List<ClassInfo> implementations = new ArrayList<>(result);
+        return implementations.size() > limit ? implementations.subList(0, limit) : implementations;
+    }
+
+    private ClassInfo declaringClass(ClassInfo classInfo, String methodName, int arguments) {
+        Set<ClassInfo> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        ClassInfo current = classInfo;
+        while (current != null && visited.add(current)) {
+            for (MethodInfo method : current.getMethods()) {
+                if (method.getName().equals(methodName) && method.getParameters().size() == arguments
+                        && !method.isAbstract()) {
+                    return current;
+                }
+            }
+            current = index.resolve(current.getSuperClass(), current);
+        }
+        return null;
+    }
+}
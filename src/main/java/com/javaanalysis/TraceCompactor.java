@@ -0,0 +1,277 @@
+package com.javaanalysis;
+
+import java.util.*;
+
+/**
+ * Turns a flat sequence trace into a call tree and shrinks it for rendering.
+ *
+ * The traces are in call order with their depth, so the tree is rebuilt with a stack;
+ * dispatch traces become the alternatives of the call before them. Then, among the calls
+ * made by one caller, a block of consecutive calls repeated two or more times (with the
+ * same callees below them) is folded into a loop with a count; equal subtrees are found by
+ * interning each subtree's shape to an int once, so comparing two calls is one int
+ * comparison. Finally a call whose callees would still draw more than the budget is
+ * collapsed into a summary note.
+ */
+public class TraceCompactor {
+    /** Longest repeated block looked for, in calls */
+    private static final int MAX_PERIOD = 16;
+
+    private boolean foldLoops = true;
+    private int maxSubtreeCalls;
+    private AnalysisMetrics metrics = AnalysisMetrics.disabled();
+
+    /**
+     * Kind of a node in the compacted tree
+     */
+    public enum Kind {
+        CALL,
+        /** A block of calls repeated {@link Node#getCount()} times */
+        LOOP,
+        /** {@link Node#getCount()} calls left out */
+        SUMMARY
+    }
+
+    /**
+     * A call with its callees, a loop over a block of nodes, or a summary of left out calls
+     */
+    public static class Node {
+        private final Kind kind;
+        private final SequenceAnalyzer.CallTrace trace;
+        private final List<SequenceAnalyzer.CallTrace> alternatives = new ArrayList<>();
+        private List<Node> children = new ArrayList<>();
+        private int count;
+        private List<String> targets = Collections.emptyList();
+        private int shape;
+
+        Node(Kind kind, SequenceAnalyzer.CallTrace trace) {
+            this.kind = kind;
+            this.trace = trace;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * The call, for a CALL node
+         */
+        public SequenceAnalyzer.CallTrace getTrace() {
+            return trace;
+        }
+
+        /**
+         * Implementations the call may dispatch to
+         */
+        public List<SequenceAnalyzer.CallTrace> getAlternatives() {
+            return alternatives;
+        }
+
+        /**
+         * Callees of a CALL node, or the repeated block of a LOOP node
+         */
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        /**
+         * Repetitions of a LOOP node, or calls left out by a SUMMARY node
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Distinct classes called in the calls a SUMMARY node leaves out, in call order
+         */
+        public List<String> getTargets() {
+            return targets;
+        }
+    }
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Whether repeated blocks of calls are folded into loops (default true)
+     */
+    public void setFoldLoops(boolean foldLoops) {
+        this.foldLoops = foldLoops;
+    }
+
+    /**
+     * Most calls drawn below one call before they are collapsed into a note; 0 (the
+     * default) draws all
+     */
+    public void setMaxSubtreeCalls(int maxSubtreeCalls) {
+        this.maxSubtreeCalls = maxSubtreeCalls;
+    }
+
+    public int getMaxSubtreeCalls() {
+        return maxSubtreeCalls;
+    }
+
+    /**
+     * Builds the call tree of a trace, uncompacted
+     */
+    public static List<Node> tree(List<SequenceAnalyzer.CallTrace> traces) {
+        List<Node> roots = new ArrayList<>();
+        Deque<Node> open = new ArrayDeque<>();
+        for (SequenceAnalyzer.CallTrace trace : traces) {
+            if (trace.dispatch) {
+                // An implementation of the call before it at the same depth
+                while (!open.isEmpty() && open.peek().trace.depth > trace.depth) {
+                    open.pop();
+                }
+                if (!open.isEmpty() && open.peek().trace.depth == trace.depth) {
+                    open.peek().alternatives.add(trace);
+                    continue;
+                }
+            }
+            while (!open.isEmpty() && open.peek().trace.depth >= trace.depth) {
+                open.pop();
+            }
+            Node node = new Node(Kind.CALL, trace);
+            (open.isEmpty() ? roots : open.peek().children).add(node);
+            open.push(node);
+        }
+        return roots;
+    }
+
+    /**
+     * Builds the call tree of a trace and compacts it
+     */
+    public List<Node> compact(List<SequenceAnalyzer.CallTrace> traces) {
+        try (AnalysisMetrics.Timer timer = metrics.start("sequence_compaction")) {
+            List<Node> nodes = tree(traces);
+            if (foldLoops) {
+                Map<String, Integer> shapes = new HashMap<>();
+                for (Node node : nodes) {
+                    assignShapes(node, shapes);
+                }
+                nodes = fold(nodes);
+            }
+            if (maxSubtreeCalls > 0) {
+                for (Node node : nodes) {
+                    applyBudget(node);
+                }
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * Gives every call an id that is equal for equal subtrees
+     */
+    private static int assignShapes(Node node, Map<String, Integer> shapes) {
+        StringBuilder key = new StringBuilder();
+        SequenceAnalyzer.CallTrace trace = node.trace;
+        key.append(trace.sourceClass).append('\u0000').append(trace.targetClass).append('\u0000')
+                .append(trace.methodName).append('\u0000').append(trace.returnType);
+        for (SequenceAnalyzer.CallTrace alternative : node.alternatives) {
+            key.append("\u0000|").append(alternative.targetClass);
+        }
+        key.append('(');
+        for (Node child : node.children) {
+            key.append(assignShapes(child, shapes)).append(',');
+        }
+        Integer shape = shapes.get(key.toString());
+        if (shape == null) {
+            shape = shapes.size();
+            shapes.put(key.toString(), shape);
+        }
+        node.shape = shape;
+        return shape;
+    }
+
+    /**
+     * Folds repeated blocks among sibling calls, then the callees of what is left. At each
+     * position the block covering the most calls wins, the shorter block on ties.
+     */
+    private List<Node> fold(List<Node> siblings) {
+        List<Node> result = new ArrayList<>();
+        int i = 0;
+        while (i < siblings.size()) {
+            int bestPeriod = 0;
+            int bestRepeats = 0;
+            for (int period = 1; period <= MAX_PERIOD && i + 2 * period <= siblings.size(); period++) {
+                int repeats = 1;
+                while (i + (repeats + 1) * period <= siblings.size()
+                        && sameBlock(siblings, i, i + repeats * period, period)) {
+                    repeats++;
+                }
+                if (repeats >= 2 && period * repeats > bestPeriod * bestRepeats) {
+                    bestPeriod = period;
+                    bestRepeats = repeats;
+                }
+            }
+
+            if (bestRepeats >= 2) {
+                Node loop = new Node(Kind.LOOP, null);
+                loop.count = bestRepeats;
+                loop.children = fold(siblings.subList(i, i + bestPeriod));
+                result.add(loop);
+                metrics.add("sequence.calls_folded", (long) (bestRepeats - 1) * bestPeriod);
+                i += bestPeriod * bestRepeats;
+            } else {
+                Node node = siblings.get(i);
+                node.children = fold(node.children);
+                result.add(node);
+                i++;
+            }
+        }
+        return result;
+    }
+
+    private static boolean sameBlock(List<Node> siblings, int first, int second, int length) {
+        for (int offset = 0; offset < length; offset++) {
+            if (siblings.get(first + offset).shape != siblings.get(second + offset).shape) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collapses the callees of calls drawing more than the budget; returns the calls drawn
+     */
+    private int applyBudget(Node node) {
+        int drawn = 0;
+        for (Node child : node.children) {
+            drawn += applyBudget(child);
+        }
+        if (node.kind == Kind.CALL && drawn > maxSubtreeCalls) {
+            Node summary = new Node(Kind.SUMMARY, null);
+            Set<String> targets = new LinkedHashSet<>();
+            summary.count = countCalls(node.children, targets);
+            summary.targets = new ArrayList<>(targets);
+            node.children = new ArrayList<>(Collections.singletonList(summary));
+            metrics.add("sequence.calls_collapsed", summary.count);
+            drawn = 0;
+        }
+        return drawn + (node.kind == Kind.CALL ? 1 + node.alternatives.size() : 0);
+    }
+
+    /**
+     * Calls made in the nodes, counting every repetition of a loop
+     */
+    private static int countCalls(List<Node> nodes, Set<String> targets) {
+        int calls = 0;
+        for (Node node : nodes) {
+            switch (node.kind) {
+                case CALL:
+                    targets.add(node.trace.targetClass);
+                    calls += 1 + node.alternatives.size() + countCalls(node.children, targets);
+                    break;
+                case LOOP:
+                    calls += node.count * countCalls(node.children, targets);
+                    break;
+                default:
+                    calls += node.count;
+                    targets.addAll(node.targets);
+            }
+        }
+        return calls;
+    }
+}
@@ -1,10 +1,26 @@
 package com.javaanalysis;
 
+import jdk.jfr.Recording;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Main application for generating UML diagrams from Java source code
@@ -13,45 +29,374 @@ public class UMLGenerator {
     private static final Logger logger = LoggerFactory.getLogger(UMLGenerator.class);
 
     public static void main(String[] args) {
-        // Set UTF-8 encoding to avoid CP949 issues on Windows
-        System.setProperty("file.encoding", "UTF-8");
-        System.setProperty("sun.jnu.encoding", "UTF-8");
+        // The command line owns its JVM, so PlantUML is configured globally here only; the
+        // default charset is UTF-8 since JDK 18, and all files are written as UTF-8 anyway
         System.setProperty("plantuml.charset", "UTF-8");
-
-        // Force default charset to UTF-8 using reflection (aggressive fix for Windows CP949)
-        try {
-            System.setProperty("file.encoding", "UTF-8");
-            java.lang.reflect.Field charset = java.nio.charset.Charset.class.getDeclaredField("defaultCharset");
-            charset.setAccessible(true);
-            charset.set(null, java.nio.charset.StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            logger.warn("Could not set default charset to UTF-8 via reflection: {}", e.getMessage());
-        }
+        System.setProperty("PLANTUML_SECURITY_PROFILE", "UNSECURE");
 
         logger.info("=== Java Source UML Generator ===");
         logger.info("Default Charset: {}", java.nio.charset.Charset.defaultCharset());
 
-        // Parse command line arguments
-        if (args.length == 0) {
-            printUsage();
-            System.exit(1);
+        // Parse command line arguments; the options also own the models and solvers opened
+        // for the run, and close them when it ends
+        try (CliOptions options = new CliOptions()) {
+            args = parseOptions(args, options);
+
+            if (args.length == 0) {
+                printUsage();
+                System.exit(1);
+            }
+
+            Recording recording = startRecording(options);
+            // Modes end failed runs with System.exit, which skips the finally block below;
+            // the hook then writes the metrics and cleans up instead
+            Thread finisher = new Thread(() -> finish(options, recording), "uml-generator-finish");
+            Runtime.getRuntime().addShutdownHook(finisher);
+            try {
+                run(args, options);
+            } finally {
+                Runtime.getRuntime().removeShutdownHook(finisher);
+                finish(options, recording);
+            }
         }
+    }
 
+    /**
+     * Runs the diagram mode named by the first argument
+     */
+    private static void run(String[] args, CliOptions options) {
         if (args[0].equals("-sequence")) {
             if (args.length < 4) {
                 System.out.println("Error: Missing arguments for sequence diagram generation.");
                 printUsage();
                 System.exit(1);
             }
-            generateSequenceDiagram(args);
+            generateSequenceDiagram(args, options);
         } else if (args[0].equals("-component")) {
-            generateComponentDiagram(args);
+            generateComponentDiagram(args, options);
+        } else if (args[0].equals("-all")) {
+            if (args.length < 2) {
+                System.out.println("Error: Missing arguments for generating all diagrams.");
+                printUsage();
+                System.exit(1);
+            }
+            generateAllDiagrams(args, options);
+        } else if (args[0].equals("-diff")) {
+            if (args.length < 3) {
+                System.out.println("Error: Missing arguments for model diff.");
+                printUsage();
+                System.exit(1);
+            }
+            generateDiffDiagram(args, options);
+        } else if (args[0].equals("-depends")) {
+            if (args.length < 3) {
+                System.out.println("Error: Missing arguments for dependency query.");
+                printUsage();
+                System.exit(1);
+            }
+            printTransitiveDependencies(args, options);
+        } else if (args[0].equals("-path")) {
+            if (args.length < 4) {
+                System.out.println("Error: Missing arguments for dependency path.");
+                printUsage();
+                System.exit(1);
+            }
+            generateDependencyPath(args, options);
         } else {
-            generateClassDiagram(args);
+            generateClassDiagram(args, options);
+        }
+    }
+
+    /**
+     * Reports the renders, writes the metrics and the flight recording and releases the
+     * run's resources; called once, at the end of main or on System.exit
+     */
+    private static void finish(CliOptions options, Recording recording) {
+        options.renderer.logSummary();
+        writeMetrics(options);
+        stopRecording(recording, options);
+        options.close();
+    }
+
+    /**
+     * Options that may precede the diagram mode on the command line
+     */
+    private static class CliOptions implements AutoCloseable {
+        boolean bytecode;
+        String metricsDir;
+        String jfrFile;
+        ComponentPlantUMLGenerator.CycleMode cycleMode = ComponentPlantUMLGenerator.CycleMode.NONE;
+        String archMetricsPath;
+        List<String> focusClasses;
+        int radius = 1;
+        int maxIncoming = -1;
+        int maxOutgoing = -1;
+        String exportPath;
+        String snapshotPath;
+        ModelSnapshot snapshot;
+        AnalysisMetrics metrics = AnalysisMetrics.disabled();
+        DiagramRenderer renderer = new DiagramRenderer();
+        long memoryBudget;
+        List<Integer> levels;
+        List<Path> libraries = new ArrayList<>();
+        LibraryTypeSolver librarySolver;
+        int maxImplementations;
+        int depth = 1;
+        SequenceCache sequenceCache;
+        TraceCompactor compactor;
+        boolean hideSystemCalls;
+        /** Spilled models of the run, deleted on close */
+        final List<SpillingClassStore> stores = new ArrayList<>();
+
+        /**
+         * Idempotent: runs at the end of main and may run again from the shutdown hook
+         */
+        @Override
+        public synchronized void close() {
+            for (SpillingClassStore store : stores) {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    logger.warn("Could not delete the class log", e);
+                }
+            }
+            if (librarySolver != null) {
+                librarySolver.close();
+            }
         }
     }
 
-    private static void generateSequenceDiagram(String[] args) {
+    /**
+     * Consumes leading options and returns the remaining (mode) arguments
+     */
+    private static String[] parseOptions(String[] args, CliOptions options) {
+        int i = 0;
+        while (i < args.length) {
+            if (args[i].equals("-bytecode")) {
+                options.bytecode = true;
+                i++;
+            } else if (args[i].equals("-metrics") && i + 1 < args.length) {
+                options.metricsDir = args[i + 1];
+                options.metrics = new AnalysisMetrics();
+                i += 2;
+            } else if (args[i].equals("-jfr") && i + 1 < args.length) {
+                options.jfrFile = args[i + 1];
+                i += 2;
+            } else if (args[i].equals("-cycles") && i + 1 < args.length) {
+                options.cycleMode = cycleMode(args[i + 1]);
+                i += 2;
+            } else if (args[i].equals("-arch-metrics") && i + 1 < args.length) {
+                options.archMetricsPath = args[i + 1];
+                i += 2;
+            } else if (args[i].equals("-save") && i + 1 < args.length) {
+                options.snapshotPath = args[i + 1];
+                i += 2;
+            } else if (args[i].equals("-export") && i + 1 < args.length) {
+                options.exportPath = args[i + 1];
+                i += 2;
+            } else if (args[i].equals("-focus") && i + 1 < args.length) {
+                options.focusClasses = Arrays.asList(args[i + 1].split(","));
+                i += 2;
+            } else if (args[i].equals("-radius") && i + 1 < args.length) {
+                options.radius = intOption("-radius", args[i + 1], 0);
+                i += 2;
+            } else if (args[i].equals("-in") && i + 1 < args.length) {
+                options.maxIncoming = intOption("-in", args[i + 1], 0);
+                i += 2;
+            } else if (args[i].equals("-out") && i + 1 < args.length) {
+                options.maxOutgoing = intOption("-out", args[i + 1], 0);
+                i += 2;
+            } else if (args[i].equals("-memory-budget") && i + 1 < args.length) {
+                options.memoryBudget = longOption("-memory-budget", args[i + 1], 0, Long.MAX_VALUE / (1024 * 1024))
+                        * 1024 * 1024;
+                i += 2;
+            } else if (args[i].equals("-level") && i + 1 < args.length) {
+                options.levels = new ArrayList<>();
+                for (String level : args[i + 1].split(",")) {
+                    options.levels.add(intOption("-level", level, 1));
+                }
+                i += 2;
+            } else if (args[i].equals("-classpath") && i + 1 < args.length) {
+                for (String library : args[i + 1].split(File.pathSeparator)) {
+                    if (!library.isEmpty()) {
+                        options.libraries.add(Paths.get(library));
+                    }
+                }
+                i += 2;
+            } else if (args[i].equals("-implementations") && i + 1 < args.length) {
+                options.maxImplementations = intOption("-implementations", args[i + 1], 0);
+                i += 2;
+            } else if (args[i].equals("-depth") && i + 1 < args.length) {
+                options.depth = intOption("-depth", args[i + 1], 1);
+                i += 2;
+            } else if (args[i].equals("-compact") && i + 1 < args.length) {
+                options.compactor = new TraceCompactor();
+                options.compactor.setMaxSubtreeCalls(intOption("-compact", args[i + 1], 0));
+                i += 2;
+            } else if (args[i].equals("-hide-system")) {
+                options.hideSystemCalls = true;
+                i++;
+            } else if (args[i].equals("-sequence-cache") && i + 1 < args.length) {
+                options.sequenceCache = new SequenceCache(Paths.get(args[i + 1]));
+                i += 2;
+            } else if (args[i].equals("-render-timeout") && i + 1 < args.length) {
+                options.renderer.setTimeoutMillis(longOption("-render-timeout", args[i + 1], 0, Long.MAX_VALUE / 1000) * 1000);
+                i += 2;
+            } else {
+                break;
+            }
+        }
+        options.renderer.setMetrics(options.metrics);
+        if (options.sequenceCache != null) {
+            options.sequenceCache.setMetrics(options.metrics);
+        }
+        if (options.compactor != null) {
+            options.compactor.setMetrics(options.metrics);
+        }
+        return Arrays.copyOfRange(args, i, args.length);
+    }
+
+    private static ComponentPlantUMLGenerator.CycleMode cycleMode(String value) {
+        for (ComponentPlantUMLGenerator.CycleMode mode : ComponentPlantUMLGenerator.CycleMode.values()) {
+            if (mode.name().equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        exitWithUsage("Invalid value for -cycles: " + value + " (expected "
+                + Arrays.toString(ComponentPlantUMLGenerator.CycleMode.values()).toLowerCase() + ")");
+        return null;
+    }
+
+    /**
+     * Parses an integer option value, or exits with the usage if it is not a number of at
+     * least {@code min}
+     */
+    private static int intOption(String option, String value, int min) {
+        return (int) longOption(option, value, min, Integer.MAX_VALUE);
+    }
+
+    private static long longOption(String option, String value, long min, long max) {
+        long number = 0;
+        boolean valid;
+        try {
+            number = Long.parseLong(value.trim());
+            valid = number >= min && number <= max;
+        } catch (NumberFormatException e) {
+            valid = false;
+        }
+        if (!valid) {
+            exitWithUsage("Invalid value for " + option + ": " + value + " (expected a whole number of at least "
+                    + min + ")");
+        }
+        return number;
+    }
+
+    private static void exitWithUsage(String message) {
+        System.out.println("Error: " + message);
+        printUsage();
+        System.exit(1);
+    }
+
+    /**
+     * Starts a flight recording around the run when -jfr was given
+     */
+    private static Recording startRecording(CliOptions options) {
+        if (options.jfrFile == null) {
+            return null;
+        }
+        try {
+            Path destination = Paths.get(options.jfrFile).toAbsolutePath();
+            Files.createDirectories(destination.getParent());
+            Recording recording = AnalysisEvents.startRecording(destination);
+            logger.info("Flight recording started: {}", destination);
+            return recording;
+        } catch (IOException e) {
+            logger.error("Could not start flight recording", e);
+            return null;
+        }
+    }
+
+    private static void stopRecording(Recording recording, CliOptions options) {
+        if (recording == null) {
+            return;
+        }
+        try {
+            recording.stop();
+        } catch (IllegalStateException e) {
+            // Already stopped: the JVM dumps recordings with a destination when it exits
+            logger.debug("Flight recording was already stopped", e);
+        }
+        recording.close();
+        logger.info("Flight recording written to: {}", options.jfrFile);
+    }
+
+    /**
+     * Writes metrics.json and metrics.prom when -metrics was given
+     */
+    private static void writeMetrics(CliOptions options) {
+        if (options.metricsDir == null) {
+            return;
+        }
+        try {
+            Path dir = Paths.get(options.metricsDir);
+            options.metrics.writeJson(dir.resolve("metrics.json"));
+            options.metrics.writePrometheus(dir.resolve("metrics.prom"));
+            logger.info("Metrics written to: {}", dir);
+        } catch (IOException e) {
+            logger.error("Could not write metrics", e);
+        }
+    }
+
+    /**
+     * Builds the class model from Java sources, or from class files / a jar in bytecode mode.
+     * A snapshot file given as the source is loaded instead of analyzing anything.
+     */
+    private static Map<String, ClassInfo> analyzeModel(String sourcePath, CliOptions options) throws Exception {
+        if (ModelSnapshot.isSnapshot(Paths.get(sourcePath))) {
+            try (AnalysisMetrics.Timer timer = options.metrics.start("snapshot.load")) {
+                options.snapshot = ModelSnapshot.open(Paths.get(sourcePath));
+                return options.snapshot.getClassInfoMap();
+            }
+        }
+        if (options.bytecode) {
+            ClassFileAnalyzer analyzer = new ClassFileAnalyzer();
+            analyzer.setMetrics(options.metrics);
+            return analyzer.analyze(sourcePath);
+        }
+        JavaSourceAnalyzer analyzer = new JavaSourceAnalyzer();
+        analyzer.setMetrics(options.metrics);
+        analyzer.setMemoryBudget(options.memoryBudget, null);
+        Map<String, ClassInfo> classInfoMap = analyzer.analyzeDirectory(sourcePath);
+        if (classInfoMap instanceof SpillingClassStore) {
+            synchronized (options.stores) {
+                options.stores.add((SpillingClassStore) classInfoMap);
+            }
+        }
+        return classInfoMap;
+    }
+
+    /**
+     * Whether the model outgrew the -memory-budget and now lives (partly) on disk
+     */
+    private static boolean isSpilled(Map<String, ClassInfo> classInfoMap) {
+        return classInfoMap instanceof SpillingClassStore && ((SpillingClassStore) classInfoMap).hasSpilled();
+    }
+
+    /**
+     * Writes the analysis result to the -save snapshot, if one was requested
+     */
+    private static void saveSnapshot(CliOptions options, Map<String, ClassInfo> classInfoMap,
+                                     Map<String, ComponentInfo> componentMap,
+                                     Map<String, List<SequenceAnalyzer.CallTrace>> calls) throws IOException {
+        if (options.snapshotPath == null) {
+            return;
+        }
+        try (AnalysisMetrics.Timer timer = options.metrics.start("snapshot.save")) {
+            ModelSnapshot.write(Paths.get(options.snapshotPath), classInfoMap, componentMap, calls);
+        }
+    }
+
+    private static void generateSequenceDiagram(String[] args, CliOptions options) {
         String sourceDirectory = args[1];
         String className = args[2];
         String methodName = args[3];
@@ -62,25 +407,140 @@ public class UMLGenerator {
             logger.info("Source: {}", sourceDirectory);
             logger.info("Entry Point: {}.{}", className, methodName);
 
-            SequenceAnalyzer analyzer = new SequenceAnalyzer(sourceDirectory);
-            java.util.List<SequenceAnalyzer.CallTrace> traces = analyzer.analyze(className, methodName);
+            java.util.List<SequenceAnalyzer.CallTrace> traces;
+            Map<String, ClassInfo> classInfoMap = null;
+            String cacheKey = null;
+            Set<Path> touchedFiles = new HashSet<>();
+            Set<String> touchedTypes = new HashSet<>();
+            if (ModelSnapshot.isSnapshot(Paths.get(sourceDirectory))) {
+                ModelSnapshot snapshot = ModelSnapshot.open(Paths.get(sourceDirectory));
+                traces = snapshot.getCalls(className, methodName);
+                if (traces == null) {
+                    throw new IllegalArgumentException("Snapshot has no call traces for " + className + "."
+                            + methodName + "; save one with -save while generating this sequence diagram");
+                }
+            } else if (options.bytecode) {
+                ClassFileAnalyzer analyzer = new ClassFileAnalyzer();
+                analyzer.setMetrics(options.metrics);
+                classInfoMap = analyzer.analyze(sourceDirectory);
+                traces = analyzer.analyzeCalls(className, methodName);
+            } else {
+                if (options.sequenceCache != null) {
+                    cacheKey = SequenceCache.entryKey(sourceDirectory, className, methodName,
+                            sequenceSettings(sourceDirectory, options));
+                    traces = options.sequenceCache.lookup(cacheKey, outputBasePath);
+                    if (traces != null) {
+                        logger.info("Sequence diagram is up to date (from cache): {}", outputBasePath);
+                        if (options.snapshotPath != null) {
+                            Map<String, List<SequenceAnalyzer.CallTrace>> calls = new LinkedHashMap<>();
+                            calls.put(className + "#" + methodName, traces);
+                            saveSnapshot(options, analyzeModel(sourceDirectory, options), null, calls);
+                        }
+                        return;
+                    }
+                }
+                Map<String, ClassInfo> model = null;
+                if (options.snapshotPath != null || options.maxImplementations > 0) {
+                    model = analyzeModel(sourceDirectory, options);
+                    if (options.snapshotPath != null) {
+                        classInfoMap = model;
+                    }
+                }
+                try (SequenceAnalyzer analyzer = newSequenceAnalyzer(sourceDirectory, model, options)) {
+                    traces = analyzer.analyze(className, methodName, touchedFiles, touchedTypes);
+                }
+            }
+
+            if (classInfoMap != null) {
+                Map<String, List<SequenceAnalyzer.CallTrace>> calls = new LinkedHashMap<>();
+                calls.put(className + "#" + methodName, traces);
+                saveSnapshot(options, classInfoMap, null, calls);
+            }
 
-            SequencePlantUMLGenerator generator = new SequencePlantUMLGenerator();
-            generator.generateDiagram(className, methodName, traces, outputBasePath);
+            drawSequenceDiagram(className, methodName, traces, outputBasePath, cacheKey,
+                    sourceDirectory, touchedFiles, touchedTypes, options);
 
         } catch (Exception e) {
             logger.error("Error generating Sequence Diagram", e);
         }
     }
 
-    private static void generateClassDiagram(String[] args) {
+    /**
+     * Sequence analyzer for the options. With a model, calls are also resolved from it and
+     * fanned out to implementations, unless it was spilled to disk.
+     */
+    private static SequenceAnalyzer newSequenceAnalyzer(String sourceDirectory, Map<String, ClassInfo> model,
+                                                        CliOptions options) {
+        if (options.librarySolver == null && !options.libraries.isEmpty()) {
+            options.librarySolver = new LibraryTypeSolver(options.libraries);
+        }
+        SequenceAnalyzer analyzer = new SequenceAnalyzer(sourceDirectory, options.librarySolver);
+        analyzer.setMetrics(options.metrics);
+        analyzer.setMaxImplementations(options.maxImplementations);
+        analyzer.setMaxDepth(options.depth);
+        analyzer.setHideSystemCalls(options.hideSystemCalls);
+        if (model != null && !isSpilled(model)) {
+            analyzer.setClassModel(model);
+        } else if (model != null && options.maxImplementations > 0) {
+            logger.warn("The class model was spilled to disk; calls are not fanned out to implementations");
+        }
+        return analyzer;
+    }
+
+    /**
+     * Draws the traces and, with a cache key, stores the result in the -sequence-cache
+     */
+    private static void drawSequenceDiagram(String className, String methodName,
+                                            List<SequenceAnalyzer.CallTrace> traces, String outputBasePath,
+                                            String cacheKey, String sourceDirectory, Set<Path> touchedFiles,
+                                            Set<String> touchedTypes, CliOptions options)
+            throws IOException {
+        SequencePlantUMLGenerator generator = new SequencePlantUMLGenerator();
+        generator.setMetrics(options.metrics);
+        generator.setRenderer(options.renderer);
+        generator.setCompactor(options.compactor);
+        generator.generateDiagram(SequenceAnalyzer.simpleClassName(className), methodName, traces, outputBasePath);
+
+        // A render that timed out is retried next time instead of being cached
+        if (cacheKey != null && Files.exists(Paths.get(outputBasePath + ".png"))) {
+            options.sequenceCache.store(cacheKey, Paths.get(sourceDirectory), touchedFiles, touchedTypes, traces,
+                    outputBasePath);
+        }
+    }
+
+    /**
+     * Options that change a sequence trace, for the cache key. With implementations the
+     * result also depends on which classes exist, so the list of source files is included.
+     */
+    private static String sequenceSettings(String sourceDirectory, CliOptions options) throws IOException {
+        StringBuilder settings = new StringBuilder();
+        settings.append("depth=").append(options.depth);
+        settings.append(";implementations=").append(options.maxImplementations);
+        settings.append(";libraries=").append(SequenceCache.librariesKey(options.libraries));
+        settings.append(";hide-system=").append(options.hideSystemCalls);
+        if (options.compactor != null) {
+            settings.append(";compact=").append(options.compactor.getMaxSubtreeCalls());
+        }
+        if (options.maxImplementations > 0) {
+            StringBuilder listing = new StringBuilder();
+            try (java.util.stream.Stream<Path> paths = Files.walk(Paths.get(sourceDirectory))) {
+                paths.filter(path -> path.toString().endsWith(".java")).sorted()
+                        .forEach(path -> listing.append(path).append('\n'));
+            }
+            settings.append(";sources=").append(SequenceCache.sha256(listing.toString()));
+        }
+        return settings.toString();
+    }
+
+    private static void generateClassDiagram(String[] args, CliOptions options) {
         String sourceDirectory = args[0];
         String outputBasePath = args.length > 1 ? args[1] : "output/uml-diagram";
 
         try {
             // Validate source directory
             File sourceDir = new File(sourceDirectory);
-            if (!sourceDir.exists() || !sourceDir.isDirectory()) {
+            if (!sourceDir.exists() || (!sourceDir.isDirectory() && !options.bytecode
+                    && !ModelSnapshot.isSnapshot(sourceDir.toPath()))) {
                 logger.error("Source directory does not exist or is not a directory: {}", sourceDirectory);
                 System.exit(1);
             }
@@ -90,8 +550,7 @@ public class UMLGenerator {
 
             // Analyze Java source files
             logger.info("\n--- Analyzing Java Source Files ---");
-            JavaSourceAnalyzer analyzer = new JavaSourceAnalyzer();
-            Map<String, ClassInfo> classInfoMap = analyzer.analyzeDirectory(sourceDirectory);
+            Map<String, ClassInfo> classInfoMap = analyzeModel(sourceDirectory, options);
 
             if (classInfoMap.isEmpty()) {
                 logger.warn("No Java classes found in the specified directory");
@@ -108,15 +567,8 @@ public class UMLGenerator {
                 logger.info("  - {} {}", type, classInfo.getFullName());
             }
 
-            // Generate UML diagrams
-            logger.info("\n--- Generating UML Diagrams ---");
-            PlantUMLGenerator generator = new PlantUMLGenerator();
-            generator.generateDiagram(classInfoMap, outputBasePath);
-
-            logger.info("\n=== UML Generation Complete ===");
-            logger.info("PlantUML file: {}.puml", outputBasePath);
-            logger.info("PNG diagram: {}.png", outputBasePath);
-            logger.info("SVG diagram: {}.svg", outputBasePath);
+            saveSnapshot(options, classInfoMap, null, null);
+            drawClassDiagram(classInfoMap, outputBasePath, options);
 
         } catch (Exception e) {
             logger.error("Error generating UML diagram", e);
@@ -124,14 +576,54 @@ public class UMLGenerator {
         }
     }
 
-    private static void generateComponentDiagram(String[] args) {
+    /**
+     * Draws the class diagram of the model, or of the -focus neighbourhood, and writes the
+     * -export graph
+     */
+    private static void drawClassDiagram(Map<String, ClassInfo> classInfoMap, String outputBasePath,
+                                         CliOptions options) throws IOException {
+        PlantUMLGenerator generator = new PlantUMLGenerator();
+        generator.setMetrics(options.metrics);
+        generator.setRenderer(options.renderer);
+
+        if (options.focusClasses != null) {
+            logger.info("\n--- Extracting Focus Neighbourhood ---");
+            classInfoMap = extractNeighbourhood(classInfoMap, options, generator);
+        }
+
+        if (options.exportPath != null) {
+            GraphExporter exporter = new GraphExporter();
+            exporter.setMetrics(options.metrics);
+            exporter.exportClasses(classInfoMap, options.exportPath);
+        }
+
+        // Generate UML diagrams
+        logger.info("\n--- Generating UML Diagrams ---");
+        if (isSpilled(classInfoMap)) {
+            // Too large to render within the budget; stream the text only
+            generator.writePlantUMLFile(classInfoMap, outputBasePath + ".puml");
+            logger.warn("Model exceeds the memory budget; images were not rendered (use -focus for a smaller view)");
+            logger.info("\n=== UML Generation Complete ===");
+            logger.info("PlantUML file: {}.puml", outputBasePath);
+            return;
+        }
+        generator.generateDiagram(classInfoMap, outputBasePath);
+
+        logger.info("\n=== UML Generation Complete ===");
+        logger.info("PlantUML file: {}.puml", outputBasePath);
+        logger.info("PNG diagram: {}.png", outputBasePath);
+        logger.info("SVG diagram: {}.svg", outputBasePath);
+    }
+
+    private static void generateComponentDiagram(String[] args, CliOptions options) {
         String sourceDirectory = args.length > 1 ? args[1] : "sample";
         String outputBasePath = args.length > 2 ? args[2] : "output/component-diagram";
 
         try {
             // Validate source directory
             File sourceDir = new File(sourceDirectory);
-            if (!sourceDir.exists() || !sourceDir.isDirectory()) {
+            if (!sourceDir.exists() || (!sourceDir.isDirectory() && !options.bytecode
+                    && !ModelSnapshot.isSnapshot(sourceDir.toPath()))) {
                 logger.error("Source directory does not exist or is not a directory: {}", sourceDirectory);
                 System.exit(1);
             }
@@ -142,8 +634,7 @@ public class UMLGenerator {
 
             // Analyze Java source files
             logger.info("\n--- Analyzing Java Source Files ---");
-            JavaSourceAnalyzer analyzer = new JavaSourceAnalyzer();
-            Map<String, ClassInfo> classInfoMap = analyzer.analyzeDirectory(sourceDirectory);
+            Map<String, ClassInfo> classInfoMap = analyzeModel(sourceDirectory, options);
 
             if (classInfoMap.isEmpty()) {
                 logger.warn("No Java classes found in the specified directory");
@@ -152,23 +643,395 @@ public class UMLGenerator {
 
             logger.info("Found {} classes", classInfoMap.size());
 
-            // Analyze components
-            logger.info("\n--- Analyzing Components ---");
+            Map<String, ComponentInfo> componentMap = analyzeComponents(classInfoMap, options);
+            saveSnapshot(options, classInfoMap, componentMap, null);
+
+            if (options.exportPath != null) {
+                GraphExporter exporter = new GraphExporter();
+                exporter.setMetrics(options.metrics);
+                exporter.exportComponents(componentMap, options.exportPath);
+            }
+
+            drawComponentDiagram(classInfoMap, componentMap, outputBasePath, options);
+
+        } catch (Exception e) {
+            logger.error("Error generating Component Diagram", e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Groups the model into components (or takes them from a snapshot) and logs their cycles
+     */
+    private static Map<String, ComponentInfo> analyzeComponents(Map<String, ClassInfo> classInfoMap,
+                                                                CliOptions options) {
+        logger.info("\n--- Analyzing Components ---");
+        ComponentAnalyzer componentAnalyzer = new ComponentAnalyzer();
+        componentAnalyzer.setMetrics(options.metrics);
+        Map<String, ComponentInfo> componentMap = options.snapshot != null && options.snapshot.hasComponents()
+                ? options.snapshot.getComponentMap()
+                : componentAnalyzer.analyzeComponents(classInfoMap);
+        CycleDetector.logCycles(new CycleDetector().findCycles(componentMap));
+        return componentMap;
+    }
+
+    /**
+     * Writes the -arch-metrics report and draws the component diagram, once per -level if
+     * levels were given
+     */
+    private static void drawComponentDiagram(Map<String, ClassInfo> classInfoMap,
+                                             Map<String, ComponentInfo> componentMap, String outputBasePath,
+                                             CliOptions options) throws IOException {
+        ArchitectureReport architectureReport = null;
+        if (options.archMetricsPath != null) {
+            logger.info("\n--- Computing Architecture Metrics ---");
             ComponentAnalyzer componentAnalyzer = new ComponentAnalyzer();
-            Map<String, ComponentInfo> componentMap = componentAnalyzer.analyzeComponents(classInfoMap);
+            componentAnalyzer.setMetrics(options.metrics);
+            architectureReport = componentAnalyzer.computeMetrics(classInfoMap);
+            architectureReport.writeCsv(options.archMetricsPath);
+            architectureReport.writeJson(options.archMetricsPath);
+            logger.info("Architecture metrics written to: {}-packages.csv, {}-classes.csv, {}.json",
+                    options.archMetricsPath, options.archMetricsPath, options.archMetricsPath);
+        }
 
-            // Generate component diagram
-            logger.info("\n--- Generating Component Diagram ---");
-            ComponentPlantUMLGenerator generator = new ComponentPlantUMLGenerator();
-            generator.generateDiagram(componentMap, outputBasePath);
+        // Generate component diagram
+        logger.info("\n--- Generating Component Diagram ---");
+        ComponentPlantUMLGenerator generator = new ComponentPlantUMLGenerator();
+        generator.setMetrics(options.metrics);
+        generator.setRenderer(options.renderer);
+        generator.setCycleMode(options.cycleMode);
 
+        if (options.levels != null) {
+            // Package metrics do not apply to rolled-up components
+            PackageTrie trie;
+            try (AnalysisMetrics.Timer timer = options.metrics.start("package_trie")) {
+                trie = new PackageTrie(componentMap);
+            }
+            for (int level : options.levels) {
+                String levelBasePath = options.levels.size() == 1 ? outputBasePath : outputBasePath + "-level" + level;
+                Map<String, ComponentInfo> rolledUp;
+                try (AnalysisMetrics.Timer timer = options.metrics.start("package_rollup")) {
+                    rolledUp = trie.rollUp(level);
+                }
+                logger.info("Level {}: {} components", level, rolledUp.size());
+                generator.generateDiagram(rolledUp, levelBasePath);
+                logger.info("PlantUML file (level {}): {}.puml", level, levelBasePath);
+            }
             logger.info("\n=== Component Diagram Generation Complete ===");
+            return;
+        }
+
+        generator.setArchitectureReport(architectureReport);
+        generator.generateDiagram(componentMap, outputBasePath);
+
+        logger.info("\n=== Component Diagram Generation Complete ===");
+        logger.info("PlantUML file: {}.puml", outputBasePath);
+        logger.info("PNG diagram: {}.png", outputBasePath);
+        logger.info("SVG diagram: {}.svg", outputBasePath);
+    }
+
+    /**
+     * Analyzes the sources once and draws the class diagram, the component diagram and a
+     * sequence diagram per entry point from that model, concurrently. The sequence diagrams
+     * share one analyzer, which resolves calls from the model before trying the symbol
+     * solver; -export writes the class graph.
+     */
+    private static void generateAllDiagrams(String[] args, CliOptions options) {
+        String sourceDirectory = args[1];
+        String outputDirectory = args.length > 2 ? args[2] : "output";
+        List<String> entryPoints = Arrays.asList(args).subList(Math.min(3, args.length), args.length);
+
+        try {
+            // Validate source directory
+            File sourceDir = new File(sourceDirectory);
+            if (!sourceDir.exists() || (!sourceDir.isDirectory() && !options.bytecode
+                    && !ModelSnapshot.isSnapshot(sourceDir.toPath()))) {
+                logger.error("Source directory does not exist or is not a directory: {}", sourceDirectory);
+                System.exit(1);
+            }
+            if (options.bytecode && !entryPoints.isEmpty()) {
+                throw new IllegalArgumentException("Sequence diagrams of -all are traced from sources or a snapshot;"
+                        + " leave out -bytecode or the entry points");
+            }
+            // Entry points are checked before anything is drawn, so a typo fails the run early
+            List<String[]> sequenceEntries = new ArrayList<>();
+            for (String entryPoint : entryPoints) {
+                int dot = entryPoint.lastIndexOf('.');
+                if (dot <= 0 || dot == entryPoint.length() - 1) {
+                    throw new IllegalArgumentException("Entry point must be <class-name>.<method-name>: " + entryPoint);
+                }
+                sequenceEntries.add(new String[]{entryPoint.substring(0, dot), entryPoint.substring(dot + 1)});
+            }
+
+            logger.info("Generating all diagrams...");
+            logger.info("Source directory: {}", sourceDirectory);
+            logger.info("Output directory: {}", outputDirectory);
+
+            logger.info("\n--- Analyzing Java Source Files ---");
+            Map<String, ClassInfo> classInfoMap = analyzeModel(sourceDirectory, options);
+            if (classInfoMap.isEmpty()) {
+                logger.warn("No Java classes found in the specified directory");
+                System.exit(0);
+            }
+            logger.info("Found {} classes", classInfoMap.size());
+
+            SequenceAnalyzer sequenceAnalyzer = options.snapshot == null && !entryPoints.isEmpty()
+                    ? newSequenceAnalyzer(sourceDirectory, classInfoMap, options)
+                    : null;
+            for (String[] entry : sequenceEntries) {
+                if (options.snapshot != null ? options.snapshot.getCalls(entry[0], entry[1]) == null
+                        : sequenceAnalyzer.findSourceFile(entry[0]) == null) {
+                    throw new IllegalArgumentException(options.snapshot != null
+                            ? "Snapshot has no call traces for " + entry[0] + "." + entry[1]
+                                    + "; save one with -save while generating this sequence diagram"
+                            : "Entry point class not found in " + sourceDirectory + ": " + entry[0]);
+                }
+            }
+            Future<?> classDiagram;
+            Future<Map<String, ComponentInfo>> componentDiagram;
+            Map<String, Future<List<SequenceAnalyzer.CallTrace>>> sequenceDiagrams = new LinkedHashMap<>();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                classDiagram = executor.submit(() -> {
+                    drawClassDiagram(classInfoMap, Paths.get(outputDirectory, "uml-diagram").toString(), options);
+                    return null;
+                });
+                componentDiagram = executor.submit(() -> {
+                    Map<String, ComponentInfo> componentMap = analyzeComponents(classInfoMap, options);
+                    drawComponentDiagram(classInfoMap, componentMap,
+                            Paths.get(outputDirectory, "component-diagram").toString(), options);
+                    return componentMap;
+                });
+                for (String[] entry : sequenceEntries) {
+                    String className = entry[0];
+                    String methodName = entry[1];
+                    String outputBasePath = Paths.get(outputDirectory,
+                            "sequence-" + className + "-" + methodName).toString();
+                    sequenceDiagrams.put(className + "#" + methodName, executor.submit(() -> traceEntryPoint(
+                            sequenceAnalyzer, sourceDirectory, className, methodName, outputBasePath, options)));
+                }
+            } finally {
+                if (sequenceAnalyzer != null) {
+                    sequenceAnalyzer.close();
+                }
+            }
+
+            int failed = 0;
+            failed += failures(classDiagram, "class diagram");
+            failed += failures(componentDiagram, "component diagram");
+            Map<String, List<SequenceAnalyzer.CallTrace>> calls = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<List<SequenceAnalyzer.CallTrace>>> entry : sequenceDiagrams.entrySet()) {
+                if (failures(entry.getValue(), "sequence diagram of " + entry.getKey()) == 0) {
+                    calls.put(entry.getKey(), entry.getValue().get());
+                } else {
+                    failed++;
+                }
+            }
+            if (failed > 0) {
+                logger.error("{} diagram(s) failed", failed);
+                System.exit(1);
+            }
+            saveSnapshot(options, classInfoMap, componentDiagram.get(), calls.isEmpty() ? null : calls);
+
+            logger.info("\n=== All Diagrams Complete ===");
+            logger.info("Output directory: {}", outputDirectory);
+        } catch (Exception e) {
+            logger.error("Error generating diagrams", e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Traces and draws the sequence diagram of one -all entry point; from the snapshot when
+     * the source is one, otherwise with the shared analyzer
+     */
+    private static List<SequenceAnalyzer.CallTrace> traceEntryPoint(SequenceAnalyzer analyzer,
+                                                                    String sourceDirectory, String className,
+                                                                    String methodName, String outputBasePath,
+                                                                    CliOptions options) throws Exception {
+        List<SequenceAnalyzer.CallTrace> traces;
+        if (options.snapshot != null) {
+            traces = options.snapshot.getCalls(className, methodName);
+            if (traces == null) {
+                throw new IllegalArgumentException("Snapshot has no call traces for " + className + "."
+                        + methodName + "; save one with -save while generating this sequence diagram");
+            }
+            drawSequenceDiagram(className, methodName, traces, outputBasePath, null, null, null, null, options);
+            return traces;
+        }
+
+        String cacheKey = null;
+        if (options.sequenceCache != null) {
+            cacheKey = SequenceCache.entryKey(sourceDirectory, className, methodName,
+                    sequenceSettings(sourceDirectory, options));
+            traces = options.sequenceCache.lookup(cacheKey, outputBasePath);
+            if (traces != null) {
+                logger.info("Sequence diagram is up to date (from cache): {}", outputBasePath);
+                return traces;
+            }
+        }
+        Set<Path> touchedFiles = new HashSet<>();
+        Set<String> touchedTypes = new HashSet<>();
+        traces = analyzer.analyze(className, methodName, touchedFiles, touchedTypes);
+        drawSequenceDiagram(className, methodName, traces, outputBasePath, cacheKey, sourceDirectory, touchedFiles,
+                touchedTypes, options);
+        return traces;
+    }
+
+    /**
+     * Logs the failure of a finished task; returns 1 if it failed, 0 otherwise
+     */
+    private static int failures(Future<?> task, String description) throws InterruptedException {
+        try {
+            task.get();
+            return 0;
+        } catch (ExecutionException e) {
+            logger.error("Error generating the {}", description, e.getCause());
+            return 1;
+        }
+    }
+
+    /**
+     * Reduces the model to the k-hop neighbourhood of the -focus classes and highlights them
+     */
+    private static Map<String, ClassInfo> extractNeighbourhood(Map<String, ClassInfo> classInfoMap,
+                                                               CliOptions options, PlantUMLGenerator generator) {
+        try (AnalysisMetrics.Timer timer = options.metrics.start("focus_extract")) {
+            ClassGraph graph = new ClassGraph(classInfoMap);
+
+            List<Integer> focus = new ArrayList<>();
+            Set<String> focusNames = new HashSet<>();
+            for (String className : options.focusClasses) {
+                int id = graph.find(className.trim());
+                if (id < 0) {
+                    logger.warn("Focus class not found: {}", className);
+                    continue;
+                }
+                focus.add(id);
+                focusNames.add(graph.name(id).getFullName());
+            }
+            if (focus.isEmpty()) {
+                throw new IllegalArgumentException("None of the focus classes were found: " + options.focusClasses);
+            }
+
+            BitSet ids = graph.neighbourhood(focus, options.radius, options.maxIncoming, options.maxOutgoing);
+            Map<String, ClassInfo> neighbourhood = new LinkedHashMap<>();
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                ClassInfo classInfo = graph.node(id);
+                neighbourhood.put(classInfo.getFullName(), classInfo);
+            }
+            generator.setHighlightedClasses(focusNames);
+
+            logger.info("Focus {} with radius {}: {} of {} classes",
+                    focusNames, options.radius, neighbourhood.size(), classInfoMap.size());
+            return neighbourhood;
+        }
+    }
+
+    private static void generateDiffDiagram(String[] args, CliOptions options) {
+        String oldSource = args[1];
+        String newSource = args[2];
+        String outputBasePath = args.length > 3 ? args[3] : "output/model-diff";
+
+        try {
+            logger.info("Comparing {} (old) with {} (new)", oldSource, newSource);
+            Map<String, ClassInfo> oldModel = analyzeModel(oldSource, options);
+            Map<String, ClassInfo> newModel = analyzeModel(newSource, options);
+
+            ModelDiff diff;
+            try (AnalysisMetrics.Timer timer = options.metrics.start("model_diff")) {
+                diff = ModelDiff.compare(oldModel, newModel);
+            }
+
+            DiffPlantUMLGenerator generator = new DiffPlantUMLGenerator();
+            generator.setMetrics(options.metrics);
+            generator.setRenderer(options.renderer);
+            generator.generateDiagram(diff, outputBasePath);
+
+            logger.info("\n=== Model Diff Complete ===");
             logger.info("PlantUML file: {}.puml", outputBasePath);
-            logger.info("PNG diagram: {}.png", outputBasePath);
-            logger.info("SVG diagram: {}.svg", outputBasePath);
+            logger.info("JSON report: {}.json", outputBasePath);
+        } catch (Exception e) {
+            logger.error("Error comparing models", e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Builds the dependency graph and its reachability index for the model
+     */
+    private static DependencyReachability buildReachability(Map<String, ClassInfo> classInfoMap,
+                                                            CliOptions options) {
+        try (AnalysisMetrics.Timer timer = options.metrics.start("dependency_graph")) {
+            ClassGraph graph = new ClassGraph(classInfoMap);
+            logger.info("Dependency graph: {} classes, {} edges", graph.size(), graph.getEdgeCount());
+            return new DependencyReachability(graph);
+        }
+    }
 
+    private static void printTransitiveDependencies(String[] args, CliOptions options) {
+        String sourceDirectory = args[1];
+        String name = args[2];
+
+        try {
+            Map<String, ClassInfo> classInfoMap = analyzeModel(sourceDirectory, options);
+            DependencyReachability reachability = buildReachability(classInfoMap, options);
+
+            List<ClassInfo> dependencies;
+            try (AnalysisMetrics.Timer timer = options.metrics.start("reachability")) {
+                if (reachability.getGraph().find(name) >= 0) {
+                    dependencies = reachability.transitiveDependencies(name);
+                } else {
+                    // Not a class: treat the name as a package
+                    dependencies = reachability.packageDependencies(name);
+                }
+            }
+
+            System.out.println(name + " transitively depends on " + dependencies.size() + " classes:");
+            for (ClassInfo dependency : dependencies) {
+                System.out.println("  " + dependency.getFullName());
+            }
         } catch (Exception e) {
-            logger.error("Error generating Component Diagram", e);
+            logger.error("Error computing transitive dependencies", e);
+            System.exit(1);
+        }
+    }
+
+    private static void generateDependencyPath(String[] args, CliOptions options) {
+        String sourceDirectory = args[1];
+        String fromClass = args[2];
+        String toClass = args[3];
+        String outputBasePath = args.length > 4 ? args[4] : "output/dependency-path";
+
+        try {
+            Map<String, ClassInfo> classInfoMap = analyzeModel(sourceDirectory, options);
+            DependencyReachability reachability = buildReachability(classInfoMap, options);
+
+            List<ClassInfo> path;
+            try (AnalysisMetrics.Timer timer = options.metrics.start("reachability")) {
+                path = reachability.shortestPath(fromClass, toClass);
+            }
+            if (path.isEmpty()) {
+                System.out.println(fromClass + " does not depend on " + toClass);
+                return;
+            }
+
+            StringBuilder line = new StringBuilder();
+            Map<String, ClassInfo> pathClasses = new LinkedHashMap<>();
+            for (ClassInfo classInfo : path) {
+                if (line.length() > 0) {
+                    line.append(" -> ");
+                }
+                line.append(classInfo.getFullName());
+                pathClasses.put(classInfo.getFullName(), classInfo);
+            }
+            System.out.println("Shortest dependency path (" + (path.size() - 1) + " steps): " + line);
+
+            PlantUMLGenerator generator = new PlantUMLGenerator();
+            generator.setMetrics(options.metrics);
+            generator.setRenderer(options.renderer);
+            generator.generateDiagram(pathClasses, outputBasePath);
+        } catch (Exception e) {
+            logger.error("Error generating dependency path", e);
             System.exit(1);
         }
     }
@@ -181,6 +1044,42 @@ public class UMLGenerator {
         System.out.println("  Class Diagram:     java -jar JavaAnalysis.jar <source-directory> [output-base-path]");
         System.out.println("  Sequence Diagram:  java -jar JavaAnalysis.jar -sequence <source-directory> <class-name> <method-name> [output-base-path]");
         System.out.println("  Component Diagram: java -jar JavaAnalysis.jar -component [source-directory] [output-base-path]");
+        System.out.println("  All Diagrams:      java -jar JavaAnalysis.jar -all <source-directory> [output-directory] [<class-name>.<method-name> ...]");
+        System.out.println("  Model Diff:        java -jar JavaAnalysis.jar -diff <old-source|snapshot> <new-source|snapshot> [output-base-path]");
+        System.out.println("  Dependencies:      java -jar JavaAnalysis.jar -depends <source-directory> <class-or-package>");
+        System.out.println("  Dependency Path:   java -jar JavaAnalysis.jar -path <source-directory> <from-class> <to-class> [output-base-path]");
+        System.out.println();
+        System.out.println("Options:");
+        System.out.println("  -bytecode         Read compiled classes (a classes directory or a .jar) instead of sources, e.g.");
+        System.out.println("                    java -jar JavaAnalysis.jar -bytecode -component build/libs/app.jar");
+        System.out.println("  -metrics <dir>    Write per-stage timings and counters to <dir>/metrics.json and <dir>/metrics.prom");
+        System.out.println("  -jfr <file>       Record the run with Java Flight Recorder (includes JavaAnalysis events)");
+        System.out.println("  -cycles <mode>    Component diagram: 'highlight' cyclic dependencies in red, or show 'only' cycles");
+        System.out.println("  -arch-metrics <base>  Component diagram: write coupling/instability/abstractness metrics to");
+        System.out.println("                    <base>-packages.csv, <base>-classes.csv and <base>.json and colour components by them");
+        System.out.println("  -save <file>      Save the analysis result as a binary snapshot; pass the snapshot file instead");
+        System.out.println("                    of a source directory to any mode to reuse it without analyzing again");
+        System.out.println("  -export <file>    Also write the class (or component) graph as .jsonl, .graphml or .dot");
+        System.out.println("  -focus <classes>  Class diagram: draw only the neighbourhood of these (comma separated) classes");
+        System.out.println("  -radius <k>       Hops around the focus classes (default 1)");
+        System.out.println("  -in <n> / -out <n>  Follow at most n incoming / outgoing edges per class (0 = none, default all)");
+        System.out.println("  -level <n[,m..]>  Component diagram: roll packages up to their first n segments (e.g. com.acme.*");
+        System.out.println("                    at 2); several levels write <output-base-path>-level<n> diagrams from one analysis");
+        System.out.println("  -memory-budget <mb>  Keep at most about <mb> MB of classes on the heap; the rest is spilled to a");
+        System.out.println("                    temporary file. A spilled class diagram is written as .puml only");
+        System.out.println("  -classpath <paths>  Sequence diagram: also resolve calls into these jars, class directories or");
+        System.out.println("                    directories of jars (e.g. ~/.m2/repository), separated by '" + File.pathSeparator + "'");
+        System.out.println("  -implementations <n>  Sequence diagram: show calls of interface and abstract methods going to");
+        System.out.println("                    at most n implementing classes, as alternatives");
+        System.out.println("  -depth <n>        Sequence diagram: also trace the calls made by callees found in the sources,");
+        System.out.println("                    n levels deep (default 1, at most 5); callees are expanded in parallel");
+        System.out.println("  -compact <n>      Sequence diagram: fold repeated calls into loops and collapse the callees of a");
+        System.out.println("                    call drawing more than n calls into a note (0 = fold loops only)");
+        System.out.println("  -hide-system      Sequence diagram: leave out calls into java.* and javax.* classes");
+        System.out.println("  -sequence-cache <dir>  Sequence diagram: reuse the trace, .puml and image from <dir> while none of");
+        System.out.println("                    the source files the trace depended on changed");
+        System.out.println("  -render-timeout <s>  Time budget per image render in seconds (default 120, 0 = none); on timeout");
+        System.out.println("                    the image is retried with the Smetana layout, then without dependency edges");
         System.out.println();
         System.out.println("Examples:");
         System.out.println("  java -jar JavaAnalysis.jar ./src/main/java");
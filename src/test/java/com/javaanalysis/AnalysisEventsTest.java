@@ -0,0 +1,82 @@
+package com.javaanalysis;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisEventsTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordingContainsTheCommittedEvents() throws IOException {
+        Path file = directory.resolve("analysis.jfr");
+        try (Recording recording = AnalysisEvents.startRecording(file)) {
+            AnalysisEvents.cacheAccess("reachability", "shop.Cart", true);
+
+            AnalysisEvents.DiagramRenderedEvent rendered = new AnalysisEvents.DiagramRenderedEvent();
+            rendered.begin();
+            AnalysisEvents.diagramRendered(rendered, "class", "PNG", "SMETANA", false,
+                    "@startuml\nclass A\ninterface B\nB <|.. A\nA ..> C\n@enduml\n", true);
+            recording.stop();
+        }
+
+        RecordedEvent cache = only(file, "com.javaanalysis.CacheAccess");
+        assertEquals("reachability", cache.getString("cache"));
+        assertEquals("shop.Cart", cache.getString("key"));
+        assertTrue(cache.getBoolean("hit"));
+
+        RecordedEvent diagram = only(file, "com.javaanalysis.DiagramRendered");
+        assertEquals("class", diagram.getString("diagram"));
+        assertEquals("SMETANA", diagram.getString("layout"));
+        assertEquals(2, diagram.getInt("nodeCount"));
+        assertEquals(2, diagram.getInt("edgeCount"));
+        assertTrue(diagram.getBoolean("success"));
+        assertFalse(diagram.getBoolean("timedOut"));
+    }
+
+    @Test
+    void sequenceParticipantsAreCountedFromMessages() throws IOException {
+        Path file = directory.resolve("sequence.jfr");
+        try (Recording recording = AnalysisEvents.startRecording(file)) {
+            AnalysisEvents.DiagramRenderedEvent rendered = new AnalysisEvents.DiagramRenderedEvent();
+            rendered.begin();
+            AnalysisEvents.diagramRendered(rendered, "sequence", "SVG", "DEFAULT", false,
+                    "@startuml\nShop -> Cart : total()\nCart -> Item : price()\nShop -> Cart : clear()\n@enduml\n",
+                    true);
+            recording.stop();
+        }
+
+        RecordedEvent diagram = only(file, "com.javaanalysis.DiagramRendered");
+        assertEquals(3, diagram.getInt("edgeCount"));
+        assertEquals(2, diagram.getInt("nodeCount"));
+    }
+
+    @Test
+    void eventsOutsideARecordingAreDropped() {
+        AnalysisEvents.CacheAccessEvent event = new AnalysisEvents.CacheAccessEvent();
+        assertFalse(event.shouldCommit());
+        // Does nothing, and must not fail, without a recording
+        AnalysisEvents.cacheAccess("sequence", "key", false);
+    }
+
+    private static RecordedEvent only(Path file, String name) throws IOException {
+        List<RecordedEvent> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            if (event.getEventType().getName().equals(name)) {
+                events.add(event);
+            }
+        }
+        assertEquals(1, events.size(), name);
+        return events.get(0);
+    }
+}
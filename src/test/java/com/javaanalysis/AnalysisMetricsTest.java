@@ -0,0 +1,97 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisMetricsTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void percentilesUseTheNearestRank() {
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        for (int i = 100; i >= 1; i--) {
+            metrics.record("parse", i * 1_000_000L, i);
+        }
+
+        AnalysisMetrics.Snapshot parse = metrics.getStages().get(0);
+        assertEquals("parse", parse.getStage());
+        assertEquals(100, parse.getCount());
+        assertEquals(5050 * 1_000_000L, parse.getTotalNanos());
+        assertEquals(5050, parse.getAllocatedBytes());
+        assertEquals(50_000_000L, parse.percentile(50));
+        assertEquals(90_000_000L, parse.percentile(90));
+        assertEquals(100_000_000L, parse.percentile(100));
+        assertEquals(1_000_000L, parse.percentile(0));
+    }
+
+    @Test
+    void countersAddUpAcrossThreads() throws InterruptedException {
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    metrics.increment("files.parsed");
+                    try (AnalysisMetrics.Timer timer = metrics.start("extract")) {
+                        metrics.add("classes", 2);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(8000, metrics.getCount("files.parsed"));
+        assertEquals(16000, metrics.getCount("classes"));
+        assertEquals(8000, metrics.getStages().get(0).getCount());
+        assertEquals(0, metrics.getCount("unknown"));
+    }
+
+    @Test
+    void disabledMetricsRecordNothing() {
+        AnalysisMetrics metrics = AnalysisMetrics.disabled();
+        try (AnalysisMetrics.Timer timer = metrics.start("parse")) {
+            metrics.increment("files.parsed");
+        }
+        metrics.record("render", 1, 1);
+
+        assertFalse(metrics.isEnabled());
+        assertTrue(metrics.getStages().isEmpty());
+        assertEquals(0, metrics.getCount("files.parsed"));
+    }
+
+    @Test
+    void exportsEscapeNames() throws IOException {
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        metrics.record("render \"class\"", 2_000_000L, -1);
+        metrics.increment("render.timeouts");
+        Path json = directory.resolve("metrics/metrics.json");
+        Path prometheus = directory.resolve("metrics/metrics.prom");
+
+        metrics.writeJson(json);
+        metrics.writePrometheus(prometheus);
+
+        String jsonText = Files.readString(json);
+        assertTrue(jsonText.contains("{\"stage\": \"render \\\"class\\\"\", \"count\": 1, \"totalMillis\": 2.000,"), jsonText);
+        assertTrue(jsonText.contains("\"allocatedBytes\": null"), jsonText);
+        assertTrue(jsonText.contains("\"render.timeouts\": 1"), jsonText);
+
+        String prometheusText = Files.readString(prometheus);
+        assertTrue(prometheusText.contains("javaanalysis_stage_seconds_count{stage=\"render \\\"class\\\"\"} 1\n"),
+                prometheusText);
+        assertTrue(prometheusText.contains("javaanalysis_stage_seconds_sum{stage=\"render \\\"class\\\"\"} 0.002000\n"),
+                prometheusText);
+        assertTrue(prometheusText.contains("javaanalysis_events_total{event=\"render.timeouts\"} 1\n"), prometheusText);
+        assertFalse(prometheusText.contains("javaanalysis_stage_allocated_bytes_total{"), prometheusText);
+    }
+}
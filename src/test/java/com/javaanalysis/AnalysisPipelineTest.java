@@ -0,0 +1,129 @@
+package com.javaanalysis;
+
+import com.github.javaparser.JavaParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisPipelineTest {
+    private static final int FILES = 100;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void everyClassReachesTheSink() throws Exception {
+        writeSources();
+        JavaSourceAnalyzer analyzer = new JavaSourceAnalyzer();
+        AnalysisPipeline pipeline = new AnalysisPipeline(JavaParser::new, analyzer::extractClasses, 3, 2);
+
+        List<String> names = Collections.synchronizedList(new ArrayList<>());
+        pipeline.run(directory, classInfo -> names.add(classInfo.getFullName()));
+
+        assertEquals(FILES, names.size());
+        assertTrue(names.contains("p2.C42"));
+    }
+
+    @Test
+    void parsingWaitsWhileExtractionStalls() throws Exception {
+        writeSources();
+        CountDownLatch extracting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        JavaSourceAnalyzer analyzer = new JavaSourceAnalyzer();
+        AnalysisPipeline pipeline = new AnalysisPipeline(JavaParser::new, unit -> {
+            extracting.countDown();
+            await(release);
+            return analyzer.extractClasses(unit);
+        }, 4, 2);
+        pipeline.setMetrics(metrics);
+
+        AtomicInteger count = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread runner = new Thread(() -> {
+            try {
+                pipeline.run(directory, classInfo -> count.incrementAndGet());
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        runner.start();
+        assertTrue(extracting.await(10, TimeUnit.SECONDS));
+        sleep(200);
+        // The AST being extracted and one more; the other parsers wait for a permit
+        long parsedWhileStalled = metrics.getCount("files.parsed");
+        release.countDown();
+        runner.join(30_000);
+
+        assertTrue(parsedWhileStalled <= 2, "parsed while stalled: " + parsedWhileStalled);
+        assertNull(failure.get());
+        assertEquals(FILES, count.get());
+    }
+
+    @Test
+    void interruptStopsEveryStage() throws Exception {
+        writeSources();
+        CountDownLatch extracting = new CountDownLatch(1);
+        JavaSourceAnalyzer analyzer = new JavaSourceAnalyzer();
+        // One AST at a time and an extractor that stalls: the parser, then every pending read, block
+        AnalysisPipeline pipeline = new AnalysisPipeline(JavaParser::new, unit -> {
+            extracting.countDown();
+            LockSupport.park();
+            return analyzer.extractClasses(unit);
+        }, 1, 1);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread runner = new Thread(() -> {
+            try {
+                pipeline.run(directory, classInfo -> { });
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        runner.start();
+        assertTrue(extracting.await(10, TimeUnit.SECONDS));
+        sleep(200);
+        runner.interrupt();
+        runner.join(10_000);
+
+        assertFalse(runner.isAlive(), "pipeline did not stop after the interrupt");
+        assertTrue(failure.get() instanceof InterruptedException, String.valueOf(failure.get()));
+    }
+
+    private void writeSources() throws IOException {
+        for (int i = 0; i < FILES; i++) {
+            Path file = directory.resolve("p" + (i % 10)).resolve("C" + i + ".java");
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, "package p" + (i % 10) + ";\npublic class C" + i + " { void run() { } }\n");
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.javaanalysis;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.type.Type;
+import com.github.javaparser.resolution.SymbolResolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.types.ResolvedPrimitiveType;
+import com.github.javaparser.resolution.types.ResolvedType;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallResolverTest {
+    /** Counts solver lookups, knows the type of every scope except {@code lib}, resolves no call */
+    private final AtomicInteger solverCalls = new AtomicInteger();
+    private final SymbolResolver solver = new SymbolResolver() {
+        @Override
+        public <T> T resolveDeclaration(Node node, Class<T> resultClass) {
+            solverCalls.incrementAndGet();
+            throw new IllegalStateException("not resolvable: " + node);
+        }
+
+        @Override
+        public <T> T toResolvedType(Type javaparserType, Class<T> resultClass) {
+            throw new IllegalStateException("not resolvable: " + javaparserType);
+        }
+
+        @Override
+        public ResolvedType calculateType(Expression expression) {
+            if (expression.toString().equals("lib")) {
+                throw new IllegalStateException("unknown type of " + expression);
+            }
+            return ResolvedPrimitiveType.INT;
+        }
+
+        @Override
+        public ResolvedReferenceTypeDeclaration toTypeDeclaration(Node node) {
+            throw new IllegalStateException("not resolvable: " + node);
+        }
+    };
+
+    @Test
+    void failureOnAKnownScopeTypeStaysWithItsCallSite() {
+        CallResolver resolver = resolver(new HashMap<>());
+        List<MethodCallExpr> calls = calls(
+                "package app;",
+                "import java.util.List;",
+                "class Main {",
+                "    void run(List<Object> list, Missing unknown) {",
+                "        list.add(unknown);",
+                "        list.add(\"x\");",
+                "    }",
+                "}");
+
+        assertNull(resolver.resolve(calls.get(0), "Main"));
+        assertNull(resolver.resolve(calls.get(1), "Main"));
+        assertEquals(2, solverCalls.get(), "a failing add(unknown) must not hide add(\"x\")");
+
+        assertNull(resolver.resolve(calls.get(0), "Main"));
+        assertEquals(2, solverCalls.get());
+        assertEquals(2, resolver.getNegativeCacheSize());
+    }
+
+    @Test
+    void failureOnAnUnknownScopeTypeIsSharedByEveryCall() {
+        CallResolver resolver = resolver(new HashMap<>());
+        List<MethodCallExpr> calls = calls(
+                "package app;",
+                "import lib.Lib;",
+                "class Main {",
+                "    void first(Lib lib) { lib.call(1); }",
+                "    void second(Lib lib) { lib.call(\"x\"); }",
+                "}");
+
+        assertNull(resolver.resolve(calls.get(0), "Main"));
+        assertNull(resolver.resolve(calls.get(1), "Main"));
+
+        assertEquals(1, solverCalls.get());
+        assertEquals(1, resolver.getNegativeCacheSize());
+    }
+
+    @Test
+    void importedLibraryTypeIsNotTakenForAModelClass() {
+        Map<String, ClassInfo> model = new HashMap<>();
+        add(model, classWithMethod("List", "app.model", "add", "boolean", "Object"));
+        CallResolver resolver = resolver(model);
+
+        List<MethodCallExpr> imported = calls(
+                "package app;",
+                "import java.util.List;",
+                "class Main { void run(List<String> list) { list.add(\"x\"); } }");
+        List<MethodCallExpr> samePackage = calls(
+                "package app.model;",
+                "class Main { void run(List list) { list.add(\"x\"); } }");
+        List<MethodCallExpr> importedModel = calls(
+                "package app;",
+                "import app.model.List;",
+                "class Main { void run(List list) { list.add(\"x\"); } }");
+
+        assertNull(resolver.resolve(imported.get(0), "Main"));
+        assertEquals("app.model.List", resolver.resolve(samePackage.get(0), "Main").getQualifiedTargetClass());
+        assertEquals("app.model.List", resolver.resolve(importedModel.get(0), "Main").getQualifiedTargetClass());
+    }
+
+    @Test
+    void duplicateSimpleNamesResolveInTheCallersPackage() {
+        Map<String, ClassInfo> model = new HashMap<>();
+        add(model, classWithMethod("Cart", "a", "total", "int"));
+        add(model, classWithMethod("Cart", "b", "total", "int"));
+        CallResolver resolver = resolver(model);
+
+        List<MethodCallExpr> calls = calls(
+                "package b;",
+                "class Shop { void run(Cart cart) { cart.total(); } }");
+
+        CallResolver.Resolution resolution = resolver.resolve(calls.get(0), "Shop");
+        assertEquals("b.Cart", resolution.getQualifiedTargetClass());
+        assertEquals(CallResolver.Tier.MODEL, resolution.getTier());
+    }
+
+    @Test
+    void returnTypesAreShownWithoutPackages() {
+        Map<String, ClassInfo> model = new HashMap<>();
+        add(model, classWithMethod("Cart", "shop", "items", "java.util.List<shop.Item>"));
+        CallResolver resolver = resolver(model);
+
+        List<MethodCallExpr> calls = calls(
+                "package shop;",
+                "class Shop { void run(Cart cart) { cart.items(); } }");
+
+        assertEquals("List<Item>", resolver.resolve(calls.get(0), "Shop").getReturnType());
+        assertEquals("Map<String, Cart.Line>",
+                CallResolver.displayType("java.util.Map<java.lang.String, com.shop.Cart.Line>"));
+        assertEquals("int[]", CallResolver.displayType("int[]"));
+    }
+
+    private CallResolver resolver(Map<String, ClassInfo> model) {
+        CallResolver resolver = new CallResolver(".");
+        resolver.setClassModel(model);
+        return resolver;
+    }
+
+    private List<MethodCallExpr> calls(String... lines) {
+        JavaParser parser = new JavaParser(new ParserConfiguration().setSymbolResolver(solver));
+        return parser.parse(String.join("\n", lines)).getResult().get().findAll(MethodCallExpr.class);
+    }
+
+    private static ClassInfo classWithMethod(String name, String packageName, String method, String returnType,
+                                             String... parameterTypes) {
+        ClassInfo classInfo = new ClassInfo(name, packageName);
+        MethodInfo methodInfo = new MethodInfo(method, returnType, "public");
+        for (int i = 0; i < parameterTypes.length; i++) {
+            methodInfo.addParameter(new ParameterInfo("p" + i, parameterTypes[i]));
+        }
+        classInfo.addMethod(methodInfo);
+        return classInfo;
+    }
+
+    private static void add(Map<String, ClassInfo> model, ClassInfo classInfo) {
+        model.put(classInfo.getFullName(), classInfo);
+    }
+}
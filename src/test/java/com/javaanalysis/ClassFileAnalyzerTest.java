@@ -0,0 +1,165 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassFileAnalyzerTest {
+    @TempDir
+    Path directory;
+
+    private Path classes;
+
+    @BeforeEach
+    void compileFixture() throws IOException {
+        Path sources = directory.resolve("src");
+        classes = directory.resolve("classes");
+        List<String> arguments = new ArrayList<>(List.of("-parameters", "-d", classes.toString()));
+        arguments.add(write(sources, "com/shop/Item.java",
+                "package com.shop;",
+                "public class Item { }"));
+        arguments.add(write(sources, "com/shop/Cart.java",
+                "package com.shop;",
+                "import java.util.ArrayList;",
+                "import java.util.List;",
+                "public class Cart implements Comparable<Cart> {",
+                "    private final List<Item> items = new ArrayList<>();",
+                "    public Cart() { }",
+                "    public Cart(Item first) { items.add(first); }",
+                "    public int total() { return items.size(); }",
+                "    public void clear() { items.clear(); }",
+                "    public int compareTo(Cart other) { return 0; }",
+                "}"));
+        arguments.add(write(sources, "com/shop/Shop.java",
+                "package com.shop;",
+                "public class Shop {",
+                "    private final Cart cart = new Cart();",
+                "    private final Runnable audit = new Runnable() { public void run() { } };",
+                "    private final Runnable log = () -> { };",
+                "    public void checkout() { cart.total(); cart.clear(); }",
+                "}"));
+        arguments.add(write(sources, "com/shop/Size.java",
+                "package com.shop;",
+                "public enum Size { SMALL, LARGE }"));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, arguments.toArray(new String[0])));
+    }
+
+    @Test
+    void modelMatchesTheSourceFrontEnd() throws IOException {
+        Map<String, ClassInfo> model = new ClassFileAnalyzer().analyze(classes.toString());
+
+        // Shop$1 (anonymous) is skipped
+        assertEquals(4, model.size());
+
+        ClassInfo cart = model.get("com.shop.Cart");
+        assertNull(cart.getSuperClass());
+        assertEquals(List.of("Comparable"), cart.getInterfaces());
+        assertEquals("List<Item>", cart.getFields().get(0).getType());
+        assertEquals("private", cart.getFields().get(0).getVisibility());
+        assertEquals(List.of("Item"), cart.getDependencies());
+
+        // The compareTo(Object) bridge is skipped; constructors take the class name
+        assertEquals(List.of("Cart", "Cart", "total", "clear", "compareTo"), methodNames(cart));
+        MethodInfo constructor = cart.getMethods().get(1);
+        assertEquals("", constructor.getReturnType());
+        assertEquals("first", constructor.getParameters().get(0).getName());
+        assertEquals("Item", constructor.getParameters().get(0).getType());
+        assertEquals("int", cart.getMethods().get(2).getReturnType());
+
+        // Lambda bodies are synthetic
+        assertEquals(List.of("Shop", "checkout"), methodNames(model.get("com.shop.Shop")));
+
+        ClassInfo size = model.get("com.shop.Size");
+        assertTrue(size.isEnum());
+        assertNull(size.getSuperClass());
+        assertEquals(2, size.getFields().size());
+        assertEquals("SMALL", size.getFields().get(0).getName());
+        assertTrue(size.getMethods().isEmpty());
+    }
+
+    @Test
+    void jarsAndDirectoriesGiveTheSameModel() throws IOException {
+        Path jar = directory.resolve("shop.jar");
+        try (OutputStream out = Files.newOutputStream(jar); ZipOutputStream zip = new ZipOutputStream(out);
+             Stream<Path> paths = Files.walk(classes)) {
+            for (Path classFile : (Iterable<Path>) paths::iterator) {
+                if (Files.isRegularFile(classFile)) {
+                    zip.putNextEntry(new ZipEntry(classes.relativize(classFile).toString().replace('\\', '/')));
+                    zip.write(Files.readAllBytes(classFile));
+                }
+            }
+            zip.putNextEntry(new ZipEntry("META-INF/versions/21/com/shop/Extra.class"));
+            zip.write(Files.readAllBytes(classes.resolve("com/shop/Item.class")));
+            zip.closeEntry();
+        }
+
+        Map<String, ClassInfo> fromDirectory = new ClassFileAnalyzer().analyze(classes.toString());
+        Map<String, ClassInfo> fromJar = new ClassFileAnalyzer().analyze(jar.toString());
+
+        assertEquals(fromDirectory.keySet(), fromJar.keySet());
+        for (String name : fromDirectory.keySet()) {
+            assertEquals(fromDirectory.get(name).toString(), fromJar.get(name).toString());
+        }
+    }
+
+    @Test
+    void unreadableClassFilesAreCountedAndSkipped() throws IOException {
+        Files.write(classes.resolve("com/shop/Broken.class"), new byte[]{1, 2, 3, 4});
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        ClassFileAnalyzer analyzer = new ClassFileAnalyzer();
+        analyzer.setMetrics(metrics);
+
+        assertEquals(4, analyzer.analyze(classes.toString()).size());
+        assertEquals(1, metrics.getCount("files.failed"));
+        assertEquals(4, metrics.getCount("files.parsed"));
+    }
+
+    @Test
+    void callsAreReadFromTheMethodBody() throws IOException {
+        ClassFileAnalyzer analyzer = new ClassFileAnalyzer();
+        analyzer.analyze(classes.toString());
+
+        List<SequenceAnalyzer.CallTrace> traces = analyzer.analyzeCalls("Shop", "checkout");
+        assertEquals(2, traces.size());
+        assertEquals("Shop", traces.get(0).sourceClass);
+        assertEquals("Cart", traces.get(0).targetClass);
+        assertEquals("total", traces.get(0).methodName);
+        assertEquals("int", traces.get(0).returnType);
+        assertEquals("clear", traces.get(1).methodName);
+
+        assertTrue(analyzer.analyzeCalls("Shop", "missing").isEmpty());
+        assertTrue(analyzer.analyzeCalls("Missing", "checkout").isEmpty());
+    }
+
+    private static List<String> methodNames(ClassInfo classInfo) {
+        List<String> names = new ArrayList<>();
+        for (MethodInfo method : classInfo.getMethods()) {
+            names.add(method.getName());
+        }
+        return names;
+    }
+
+    private static String write(Path root, String path, String... lines) throws IOException {
+        Path file = root.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, String.join("\n", lines) + "\n");
+        return file.toString();
+    }
+}
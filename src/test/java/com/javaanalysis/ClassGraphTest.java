@@ -0,0 +1,98 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassGraphTest {
+
+    @Test
+    void strongestKindWinsForRepeatedReferences() {
+        Map<String, ClassInfo> model = new HashMap<>();
+        ClassInfo dog = add(model, "Dog", "Tail", "Animal", "Missing");
+        dog.setSuperClass("Animal");
+        dog.addInterface("Pet");
+        dog.addDependency("Pet");
+        add(model, "Animal");
+        add(model, "Pet");
+        add(model, "Tail");
+        ClassGraph graph = new ClassGraph(model);
+
+        int id = graph.find("Dog");
+        assertEquals(3, graph.outgoing(id).length);
+        assertEquals(3, graph.getEdgeCount());
+        assertEquals(ClassGraph.EdgeKind.EXTENDS, kindOf(graph, id, "Animal"));
+        assertEquals(ClassGraph.EdgeKind.IMPLEMENTS, kindOf(graph, id, "Pet"));
+        assertEquals(ClassGraph.EdgeKind.USES, kindOf(graph, id, "Tail"));
+        assertEquals(id, graph.incoming(graph.find("zoo.Pet"))[0]);
+        assertEquals(-1, graph.find("Missing"));
+    }
+
+    @Test
+    void neighbourhoodStopsAtTheRadius() {
+        // A -> B -> C -> D, E -> A
+        Map<String, ClassInfo> model = new HashMap<>();
+        add(model, "A", "B");
+        add(model, "B", "C");
+        add(model, "C", "D");
+        add(model, "D");
+        add(model, "E", "A");
+        ClassGraph graph = new ClassGraph(model);
+        int a = graph.find("A");
+
+        assertEquals(List.of("A"), names(graph, graph.neighbourhood(List.of(a), 0, -1, -1)));
+        assertEquals(List.of("A", "B", "E"), names(graph, graph.neighbourhood(List.of(a), 1, -1, -1)));
+        assertEquals(List.of("A", "B", "C", "E"), names(graph, graph.neighbourhood(List.of(a), 2, -1, -1)));
+        assertEquals(List.of("A", "B", "C"), names(graph, graph.neighbourhood(List.of(a), 2, 0, -1)));
+        assertEquals(List.of("A", "E"), names(graph, graph.neighbourhood(List.of(a), 2, -1, 0)));
+    }
+
+    @Test
+    void neighbourLimitsKeepTheStrongestEdges() {
+        Map<String, ClassInfo> model = new HashMap<>();
+        ClassInfo focus = add(model, "Focus", "Helper", "Other");
+        focus.setSuperClass("Base");
+        focus.addInterface("Api");
+        add(model, "Base");
+        add(model, "Api");
+        add(model, "Helper");
+        add(model, "Other");
+        ClassGraph graph = new ClassGraph(model);
+
+        BitSet two = graph.neighbourhood(List.of(graph.find("Focus")), 1, -1, 2);
+        assertEquals(List.of("Api", "Base", "Focus"), names(graph, two));
+    }
+
+    private static ClassGraph.EdgeKind kindOf(ClassGraph graph, int id, String target) {
+        int[] outgoing = graph.outgoing(id);
+        for (int i = 0; i < outgoing.length; i++) {
+            if (outgoing[i] == graph.find(target)) {
+                return graph.outgoingKinds(id)[i];
+            }
+        }
+        return null;
+    }
+
+    private static ClassInfo add(Map<String, ClassInfo> model, String name, String... dependencies) {
+        ClassInfo classInfo = new ClassInfo(name, "zoo");
+        for (String dependency : dependencies) {
+            classInfo.addDependency(dependency);
+        }
+        model.put(classInfo.getFullName(), classInfo);
+        return classInfo;
+    }
+
+    private static List<String> names(ClassGraph graph, BitSet ids) {
+        List<String> names = new ArrayList<>();
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            names.add(graph.name(id).getClassName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,135 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassInfoPublisherTest {
+    private static final int FILES = 40;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void everyClassIsPublishedThenCompletes() throws Exception {
+        writeSources();
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+
+        new JavaSourceAnalyzer().analyzeDirectoryStreaming(directory.toString()).subscribe(recorder);
+
+        assertTrue(recorder.finished.await(30, TimeUnit.SECONDS));
+        assertNull(recorder.error.get());
+        assertEquals(FILES, recorder.received.size());
+        assertTrue(recorder.received.contains("p3.C13"));
+    }
+
+    @Test
+    void nothingIsPublishedBeyondTheDemand() throws Exception {
+        writeSources();
+        Recorder recorder = new Recorder(5);
+
+        new JavaSourceAnalyzer().analyzeDirectoryStreaming(directory.toString(), 2).subscribe(recorder);
+        Thread.sleep(500);
+
+        assertEquals(5, recorder.received.size());
+        assertEquals(1, recorder.finished.getCount());
+
+        recorder.subscription.request(FILES);
+        assertTrue(recorder.finished.await(30, TimeUnit.SECONDS));
+        assertNull(recorder.error.get());
+        assertEquals(FILES, recorder.received.size());
+    }
+
+    @Test
+    void cancelStopsPublishing() throws Exception {
+        writeSources();
+        Recorder recorder = new Recorder(1) {
+            @Override
+            public void onNext(ClassInfo item) {
+                super.onNext(item);
+                subscription.cancel();
+                subscription.request(FILES);
+            }
+        };
+
+        new JavaSourceAnalyzer().analyzeDirectoryStreaming(directory.toString(), 1).subscribe(recorder);
+        Thread.sleep(500);
+
+        assertEquals(1, recorder.received.size());
+        assertEquals(1, recorder.finished.getCount(), "no terminal signal after cancel");
+    }
+
+    @Test
+    void invalidRequestsAndSecondSubscribersGetAnError() throws Exception {
+        writeSources();
+        Flow.Publisher<ClassInfo> publisher = new JavaSourceAnalyzer().analyzeDirectoryStreaming(directory.toString());
+        Recorder first = new Recorder(0);
+        publisher.subscribe(first);
+        Recorder second = new Recorder(1);
+        publisher.subscribe(second);
+
+        assertTrue(second.finished.await(5, TimeUnit.SECONDS));
+        assertTrue(second.error.get() instanceof IllegalStateException);
+
+        first.subscription.request(0);
+        assertTrue(first.finished.await(30, TimeUnit.SECONDS));
+        assertTrue(first.error.get() instanceof IllegalArgumentException);
+        assertTrue(first.received.isEmpty());
+    }
+
+    /** Requests {@code initial} items on subscribe and records what arrives */
+    private static class Recorder implements Flow.Subscriber<ClassInfo> {
+        private final long initial;
+        final List<String> received = new CopyOnWriteArrayList<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch finished = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+
+        Recorder(long initial) {
+            this.initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initial > 0) {
+                subscription.request(initial);
+            }
+        }
+
+        @Override
+        public void onNext(ClassInfo item) {
+            received.add(item.getFullName());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.set(throwable);
+            finished.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            finished.countDown();
+        }
+    }
+
+    private void writeSources() throws IOException {
+        for (int i = 0; i < FILES; i++) {
+            Path file = directory.resolve("p" + (i % 5)).resolve("C" + i + ".java");
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, "package p" + (i % 5) + ";\npublic class C" + i + " { }\n");
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ComponentAnalyzerTest {
+    /** More classes than one aggregation chunk, so the parallel run forks */
+    private static final int CLASSES = 5_000;
+    private static final int PACKAGES = 20;
+
+    @Test
+    void parallelAndSerialMatchTheBaseline() {
+        Map<String, ClassInfo> model = generatedModel();
+
+        ComponentAnalyzer serial = new ComponentAnalyzer();
+        serial.setParallelism(1);
+        ComponentAnalyzer parallel = new ComponentAnalyzer();
+        parallel.setParallelism(4);
+
+        Map<String, String> expected = describe(baseline(model));
+        assertEquals(expected, describe(serial.analyzeComponents(model)));
+        assertEquals(expected, describe(parallel.analyzeComponents(model)));
+    }
+
+    @Test
+    void simpleNamesPreferTheReferencingPackage() {
+        Map<String, ClassInfo> model = new HashMap<>();
+        add(model, interfaceInfo("Util", "b"));
+        add(model, interfaceInfo("Util", "a"));
+        ClassInfo foo = new ClassInfo("Foo", "a");
+        foo.addDependency("Util");
+        add(model, foo);
+        ClassInfo bar = new ClassInfo("Bar", "c");
+        bar.addDependency("b.Util");
+        add(model, bar);
+
+        Map<String, ComponentInfo> components = new ComponentAnalyzer().analyzeComponents(model);
+
+        assertTrue(components.get("a").getDependencies().isEmpty());
+        assertEquals(List.of("b"), new ArrayList<>(components.get("c").getDependencies()));
+        assertEquals(List.of("Util"), new ArrayList<>(components.get("c").getRequiredInterfaces()));
+    }
+
+    /**
+     * Classes C0..Cn with unique simple names spread over packages, each depending on a
+     * neighbour by simple name, on another class by full name, on an interface by simple
+     * name and on a library type outside the model
+     */
+    private static Map<String, ClassInfo> generatedModel() {
+        Map<String, ClassInfo> model = new HashMap<>();
+        for (int i = 0; i < CLASSES; i++) {
+            ClassInfo classInfo = new ClassInfo("C" + i, packageOf(i));
+            classInfo.setInterface(i % 10 == 0);
+            classInfo.addDependency("C" + ((i + 1) % CLASSES));
+            int other = (i * 7) % CLASSES;
+            classInfo.addDependency(packageOf(other) + ".C" + other);
+            classInfo.addDependency("C" + ((i * 13) % CLASSES / 10 * 10));
+            classInfo.addDependency("String");
+            model.put(classInfo.getFullName(), classInfo);
+        }
+        return model;
+    }
+
+    private static String packageOf(int i) {
+        return "com.acme.p" + (i % PACKAGES);
+    }
+
+    private static ClassInfo interfaceInfo(String name, String packageName) {
+        ClassInfo classInfo = new ClassInfo(name, packageName);
+        classInfo.setInterface(true);
+        return classInfo;
+    }
+
+    private static void add(Map<String, ClassInfo> model, ClassInfo classInfo) {
+        model.put(classInfo.getFullName(), classInfo);
+    }
+
+    /**
+     * The serial aggregation as it was before the fork-join tasks: group by package, then
+     * scan the whole model for every dependency and take the first class whose simple or
+     * full name matches
+     */
+    private static Map<String, ComponentInfo> baseline(Map<String, ClassInfo> classInfoMap) {
+        Map<String, ComponentInfo> componentMap = new HashMap<>();
+        for (ClassInfo classInfo : classInfoMap.values()) {
+            ComponentInfo component = componentMap.computeIfAbsent(
+                    ClassIndex.componentName(classInfo), ComponentInfo::new);
+            if (classInfo.isInterface()) {
+                component.addInterface(classInfo.getClassName());
+                component.addProvidedInterface(classInfo.getClassName());
+            } else {
+                component.addClass(classInfo.getClassName());
+            }
+        }
+        for (ClassInfo classInfo : classInfoMap.values()) {
+            String sourcePackage = ClassIndex.componentName(classInfo);
+            ComponentInfo sourceComponent = componentMap.get(sourcePackage);
+            for (String dependency : classInfo.getDependencies()) {
+                ClassInfo target = firstMatch(dependency, classInfoMap);
+                if (target != null && !ClassIndex.componentName(target).equals(sourcePackage)) {
+                    sourceComponent.addDependency(ClassIndex.componentName(target));
+                    if (target.isInterface()) {
+                        sourceComponent.addRequiredInterface(dependency);
+                    }
+                }
+            }
+        }
+        return componentMap;
+    }
+
+    private static ClassInfo firstMatch(String className, Map<String, ClassInfo> classInfoMap) {
+        for (ClassInfo classInfo : classInfoMap.values()) {
+            if (classInfo.getClassName().equals(className) || classInfo.getFullName().equals(className)) {
+                return classInfo;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> describe(Map<String, ComponentInfo> components) {
+        Map<String, String> description = new TreeMap<>();
+        for (ComponentInfo component : components.values()) {
+            description.put(component.getComponentName(), "classes=" + sorted(component.getClasses())
+                    + " interfaces=" + sorted(component.getInterfaces())
+                    + " dependencies=" + sorted(component.getDependencies())
+                    + " provided=" + sorted(component.getProvidedInterfaces())
+                    + " required=" + sorted(component.getRequiredInterfaces()));
+        }
+        return description;
+    }
+
+    private static List<String> sorted(Collection<String> names) {
+        List<String> list = new ArrayList<>(names);
+        list.sort(null);
+        return list;
+    }
+}
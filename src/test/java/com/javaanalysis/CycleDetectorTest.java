@@ -0,0 +1,77 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CycleDetectorTest {
+    @Test
+    void findsEveryCycleLargestFirstWithItsEdges() {
+        // a -> b -> c -> a and c -> d -> c form one component; e <-> f another; g only points in
+        Map<String, ComponentInfo> components = new HashMap<>();
+        depends(components, "a", "b");
+        depends(components, "b", "c");
+        depends(components, "c", "a", "d");
+        depends(components, "d", "c");
+        depends(components, "e", "f");
+        depends(components, "f", "e", "a");
+        depends(components, "g", "a", "g", "external");
+
+        List<CycleDetector.Cycle> cycles = new CycleDetector().findCycles(components);
+
+        assertEquals(2, cycles.size());
+        assertEquals(Arrays.asList("a", "b", "c", "d"), cycles.get(0).getComponents());
+        assertEquals(new HashSet<>(Arrays.asList(edge("a", "b"), edge("b", "c"), edge("c", "a"), edge("c", "d"),
+                edge("d", "c"))), new HashSet<>(cycles.get(0).getEdges()));
+        assertEquals(Arrays.asList("e", "f"), cycles.get(1).getComponents());
+        assertEquals(new HashSet<>(Arrays.asList(edge("e", "f"), edge("f", "e"))),
+                new HashSet<>(cycles.get(1).getEdges()));
+
+        // f -> a leaves its cycle; g -> g is a self-reference, not a cycle
+        assertFalse(CycleDetector.cyclicEdges(cycles).contains(edge("f", "a")));
+        assertFalse(CycleDetector.cyclicEdges(cycles).contains(edge("g", "g")));
+        assertEquals(7, CycleDetector.cyclicEdges(cycles).size());
+    }
+
+    @Test
+    void acyclicGraphHasNoCycles() {
+        Map<String, ComponentInfo> components = new HashMap<>();
+        depends(components, "a", "b", "c");
+        depends(components, "b", "c");
+        depends(components, "c");
+
+        assertTrue(new CycleDetector().findCycles(components).isEmpty());
+    }
+
+    @Test
+    void longChainDoesNotOverflowTheStack() {
+        int length = 200_000;
+        int[][] adjacency = new int[length][];
+        for (int i = 0; i < length; i++) {
+            adjacency[i] = new int[]{(i + 1) % length};
+        }
+
+        int[] componentOf = CycleDetector.stronglyConnectedComponents(adjacency);
+
+        for (int id : componentOf) {
+            assertEquals(componentOf[0], id);
+        }
+    }
+
+    private static void depends(Map<String, ComponentInfo> components, String name, String... targets) {
+        ComponentInfo component = components.computeIfAbsent(name, ComponentInfo::new);
+        for (String target : targets) {
+            component.addDependency(target);
+        }
+    }
+
+    private static CycleDetector.Dependency edge(String source, String target) {
+        return new CycleDetector.Dependency(source, target);
+    }
+}
@@ -0,0 +1,118 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DependencyReachabilityTest {
+
+    @Test
+    void closuresFollowDependenciesThroughCycles() {
+        // app.D -> app.A -> lib.B <-> lib.C, app.E alone
+        Map<String, ClassInfo> model = new HashMap<>();
+        add(model, "app", "A", "B");
+        add(model, "lib", "B", "C");
+        add(model, "lib", "C", "B");
+        add(model, "app", "D", "A");
+        add(model, "app", "E");
+        DependencyReachability reachability = new DependencyReachability(new ClassGraph(model));
+
+        assertEquals(List.of("lib.B", "lib.C"), names(reachability.transitiveDependencies("A")));
+        assertEquals(List.of("lib.B", "lib.C"), names(reachability.transitiveDependencies("B")));
+        assertEquals(List.of("app.A", "lib.B", "lib.C"), names(reachability.transitiveDependencies("app.D")));
+        assertEquals(List.of(), names(reachability.transitiveDependencies("E")));
+        assertEquals(List.of("app.A", "lib.B", "lib.C"), names(reachability.packageDependencies("app")));
+
+        assertTrue(reachability.canReach("D", "C"));
+        assertTrue(reachability.canReach("C", "C"));
+        assertFalse(reachability.canReach("A", "A"));
+        assertFalse(reachability.canReach("C", "A"));
+        assertThrows(IllegalArgumentException.class, () -> reachability.canReach("A", "Missing"));
+    }
+
+    @Test
+    void shortestPathsIncludeBothEnds() {
+        Map<String, ClassInfo> model = new HashMap<>();
+        add(model, "p", "A", "B", "X");
+        add(model, "p", "B", "C");
+        add(model, "p", "X", "Y");
+        add(model, "p", "Y", "C");
+        add(model, "p", "C");
+        DependencyReachability reachability = new DependencyReachability(new ClassGraph(model));
+
+        assertEquals(List.of("p.A", "p.B", "p.C"), names(reachability.shortestPath("A", "C")));
+        assertEquals(List.of(), names(reachability.shortestPath("C", "A")));
+        // Also answered from the cached closure
+        reachability.transitiveDependencies("C");
+        assertEquals(List.of(), names(reachability.shortestPath("C", "A")));
+    }
+
+    @Test
+    void cachedClosuresMatchAPlainSearch() {
+        Random random = new Random(33);
+        Map<String, ClassInfo> model = new HashMap<>();
+        int classes = 400;
+        for (int i = 0; i < classes; i++) {
+            ClassInfo classInfo = new ClassInfo("C" + i, "p" + (i % 8));
+            for (int d = random.nextInt(3); d > 0; d--) {
+                int target = random.nextInt(classes);
+                if (target != i) {
+                    classInfo.addDependency("p" + (target % 8) + ".C" + target);
+                }
+            }
+            model.put(classInfo.getFullName(), classInfo);
+        }
+        ClassGraph graph = new ClassGraph(model);
+        // A tiny cache evicts constantly, a large one reuses closures across queries
+        DependencyReachability evicting = new DependencyReachability(graph, 2);
+        DependencyReachability caching = new DependencyReachability(graph, classes);
+
+        for (int id = graph.size() - 1; id >= 0; id--) {
+            BitSet expected = search(graph, id);
+            assertEquals(expected, evicting.transitiveDependencies(id), graph.name(id).getFullName());
+            assertEquals(expected, caching.transitiveDependencies(id), graph.name(id).getFullName());
+        }
+    }
+
+    /** Depth-first search from the class's direct dependencies */
+    private static BitSet search(ClassGraph graph, int id) {
+        BitSet reached = new BitSet();
+        List<Integer> stack = new ArrayList<>();
+        for (int target : graph.outgoing(id)) {
+            stack.add(target);
+        }
+        while (!stack.isEmpty()) {
+            int v = stack.remove(stack.size() - 1);
+            if (!reached.get(v)) {
+                reached.set(v);
+                for (int target : graph.outgoing(v)) {
+                    stack.add(target);
+                }
+            }
+        }
+        return reached;
+    }
+
+    private static void add(Map<String, ClassInfo> model, String packageName, String name, String... dependencies) {
+        ClassInfo classInfo = new ClassInfo(name, packageName);
+        for (String dependency : dependencies) {
+            classInfo.addDependency(dependency);
+        }
+        model.put(classInfo.getFullName(), classInfo);
+    }
+
+    private static List<String> names(List<ClassInfo> classes) {
+        List<String> names = new ArrayList<>();
+        for (ClassInfo classInfo : classes) {
+            names.add(classInfo.getFullName());
+        }
+        return names;
+    }
+}
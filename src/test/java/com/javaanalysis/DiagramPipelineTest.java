@@ -0,0 +1,99 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagramPipelineTest {
+    @TempDir
+    Path directory;
+
+    private Path sources;
+
+    @BeforeEach
+    void writeFixture() throws IOException {
+        sources = directory.resolve("src");
+        write("com/shop/Shop.java",
+                "package com.shop;",
+                "public class Shop {",
+                "    private final Cart cart = new Cart();",
+                "    public void checkout() { cart.total(); cart.clear(); }",
+                "}");
+        write("com/shop/Cart.java",
+                "package com.shop;",
+                "public class Cart {",
+                "    public int total() { return 1; }",
+                "    public void clear() { }",
+                "}");
+    }
+
+    @Test
+    void jobsRunConcurrentlyOnOnePipeline() throws Exception {
+        List<MemoryDiagramSink> sinks = new ArrayList<>();
+        try (DiagramPipeline pipeline = DiagramPipeline.builder(sources).renderTimeoutMillis(0).build()) {
+            Map<String, ClassInfo> model = pipeline.analyze();
+            assertTrue(model.containsKey("com.shop.Cart"));
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<List<SequenceAnalyzer.CallTrace>>> jobs = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    MemoryDiagramSink sink = new MemoryDiagramSink("checkout" + i);
+                    sinks.add(sink);
+                    jobs.add(executor.submit(() -> pipeline.sequenceDiagram(model, "com.shop.Shop", "checkout", sink)));
+                }
+                for (Future<List<SequenceAnalyzer.CallTrace>> job : jobs) {
+                    assertEquals(2, job.get().size());
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        String expected = sinks.get(0).getPlantUML();
+        assertTrue(expected.contains("Shop -> Cart : total()"), expected);
+        assertTrue(expected.contains("Shop -> Cart : clear()"), expected);
+        for (MemoryDiagramSink sink : sinks) {
+            assertEquals(expected, sink.getPlantUML());
+            assertTrue(sink.getExtensions().contains(".png"), String.valueOf(sink.getExtensions()));
+        }
+    }
+
+    @Test
+    void spilledModelsStayUsableUntilClose() throws IOException {
+        try (DiagramPipeline pipeline = DiagramPipeline.builder(sources).memoryBudget(1).build()) {
+            Map<String, ClassInfo> model = pipeline.analyze();
+
+            assertTrue(model instanceof SpillingClassStore);
+            assertTrue(((SpillingClassStore) model).hasSpilled());
+            assertEquals("total", model.get("com.shop.Cart").getMethods().get(0).getName());
+        }
+    }
+
+    @Test
+    void failuresAreThrownNotExited() {
+        assertThrows(IllegalArgumentException.class,
+                () -> DiagramPipeline.builder(directory.resolve("missing")).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> DiagramPipeline.builder(sources).depth(0).build()
+                        .sequenceDiagram(null, "Shop", "checkout", new MemoryDiagramSink()));
+    }
+
+    private void write(String path, String... lines) throws IOException {
+        Path file = sources.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, String.join("\n", lines) + "\n");
+    }
+}
@@ -0,0 +1,154 @@
+package com.javaanalysis;
+
+import net.sourceforge.plantuml.FileFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagramRendererTest {
+    private static final String CODE = "@startuml\nclass A\nclass B\nA --> B\nA ..> B\n@enduml\n";
+
+    /** Releases engines that ignore interrupts, the way PlantUML does while laying out */
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> attempts = new CopyOnWriteArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void waitForAbandonedRenders() throws InterruptedException {
+        release.countDown();
+        while (DiagramRenderer.getAbandonedCount() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void slowLayoutFallsBackToSmetana() throws IOException {
+        DiagramRenderer renderer = renderer(false);
+        Path image = directory.resolve("class.png");
+
+        DiagramRenderer.RenderResult result = renderer.render("class", CODE, image.toString(), FileFormat.PNG);
+
+        assertEquals(DiagramRenderer.Outcome.FALLBACK, result.getOutcome());
+        assertEquals(DiagramRenderer.Layout.SMETANA, result.getLayout());
+        assertEquals(2, attempts.size());
+        assertEquals("smetana", Files.readString(image));
+        assertFalse(Files.exists(directory.resolve("class.png.part")));
+    }
+
+    @Test
+    void renderThatTimesOutEverywhereLeavesNoImage() throws IOException {
+        DiagramRenderer renderer = renderer(false);
+        renderer.setEngine((code, out, format) -> {
+            attempts.add(code);
+            awaitInterruptibly();
+            return null;
+        });
+        Path image = directory.resolve("class.png");
+        Files.writeString(image, "stale");
+
+        DiagramRenderer.RenderResult result = renderer.render("class", CODE, image.toString(), FileFormat.PNG);
+
+        assertEquals(DiagramRenderer.Outcome.TIMED_OUT, result.getOutcome());
+        assertNull(result.getLayout());
+        assertEquals(3, attempts.size());
+        assertTrue(attempts.get(2).contains("!pragma layout smetana"));
+        assertFalse(attempts.get(2).contains(" ..> "));
+        assertFalse(Files.exists(image));
+        assertEquals(List.of(result), renderer.getResults());
+    }
+
+    @Test
+    void sequenceDiagramsAreNotRetried() throws IOException {
+        DiagramRenderer renderer = renderer(false);
+        MemoryDiagramSink sink = new MemoryDiagramSink();
+
+        DiagramRenderer.RenderResult result = renderer.render("sequence", CODE, sink, FileFormat.PNG);
+
+        assertEquals(DiagramRenderer.Outcome.TIMED_OUT, result.getOutcome());
+        assertEquals(1, attempts.size());
+        assertNull(sink.getBytes(".png"));
+    }
+
+    @Test
+    void rendersAreRefusedWhileTooManyAreAbandoned() throws IOException {
+        DiagramRenderer renderer = renderer(true);
+        String slow = "@startuml\nclass A\n@enduml\n";
+        // No dependency edges, so each render abandons the default and the Smetana attempt
+        for (int i = 0; i < DiagramRenderer.MAX_ABANDONED_RENDERS / 2; i++) {
+            DiagramRenderer.RenderResult result = renderer.render("class", slow,
+                    directory.resolve("slow" + i + ".png").toString(), FileFormat.PNG);
+            assertEquals(DiagramRenderer.Outcome.TIMED_OUT, result.getOutcome());
+        }
+        assertEquals(DiagramRenderer.MAX_ABANDONED_RENDERS, DiagramRenderer.getAbandonedCount());
+
+        DiagramRenderer.RenderResult refused = renderer.render("class", CODE,
+                directory.resolve("next.png").toString(), FileFormat.PNG);
+        assertEquals(DiagramRenderer.Outcome.REFUSED, refused.getOutcome());
+        assertEquals(DiagramRenderer.MAX_ABANDONED_RENDERS, attempts.size());
+    }
+
+    @Test
+    void smetanaLayoutsRewriteTheSource() {
+        assertEquals(CODE, DiagramRenderer.applyLayout(CODE, DiagramRenderer.Layout.DEFAULT));
+        assertEquals("@startuml\n!pragma layout smetana\nclass A\nclass B\nA --> B\nA ..> B\n@enduml\n",
+                DiagramRenderer.applyLayout(CODE, DiagramRenderer.Layout.SMETANA));
+        assertEquals("@startuml\n!pragma layout smetana\nclass A\nclass B\nA --> B\n@enduml\n",
+                DiagramRenderer.applyLayout(CODE, DiagramRenderer.Layout.SMETANA_REDUCED));
+        assertNull(DiagramRenderer.applyLayout("@startuml\nclass A\n@enduml\n", DiagramRenderer.Layout.SMETANA_REDUCED));
+    }
+
+    /**
+     * A renderer with a short budget whose engine hangs on the default layout and draws
+     * "smetana" otherwise; a stubborn engine hangs on every layout and ignores interrupts
+     */
+    private DiagramRenderer renderer(boolean stubborn) {
+        DiagramRenderer renderer = new DiagramRenderer();
+        renderer.setTimeoutMillis(200);
+        renderer.setEngine((code, out, format) -> {
+            attempts.add(code);
+            if (stubborn) {
+                awaitUninterruptibly();
+            } else if (!code.contains("!pragma layout smetana")) {
+                awaitInterruptibly();
+            }
+            out.write("smetana".getBytes(StandardCharsets.UTF_8));
+            return null;
+        });
+        return renderer;
+    }
+
+    private void awaitInterruptibly() throws IOException {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            throw new IOException("interrupted", e);
+        }
+    }
+
+    private void awaitUninterruptibly() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                release.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphExporterTest {
+
+    @Test
+    void jsonLinesHaveOneNodePerClassAndOneEdgePerTarget() throws IOException {
+        String expected = String.join("\n",
+                "{\"type\":\"node\",\"id\":\"shop.Base\",\"name\":\"Base\",\"package\":\"shop\",\"kind\":\"abstract\",\"fields\":0,\"methods\":0}",
+                "{\"type\":\"node\",\"id\":\"shop.Cart\",\"name\":\"Cart\",\"package\":\"shop\",\"kind\":\"class\",\"fields\":1,\"methods\":0}",
+                "{\"type\":\"edge\",\"source\":\"shop.Cart\",\"target\":\"shop.Base\",\"kind\":\"extends\"}",
+                "{\"type\":\"edge\",\"source\":\"shop.Cart\",\"target\":\"shop.Priced\",\"kind\":\"implements\"}",
+                "{\"type\":\"edge\",\"source\":\"shop.Cart\",\"target\":\"util.Money\",\"kind\":\"uses\"}",
+                "{\"type\":\"node\",\"id\":\"shop.Priced\",\"name\":\"Priced\",\"package\":\"shop\",\"kind\":\"interface\",\"fields\":0,\"methods\":0}",
+                "{\"type\":\"node\",\"id\":\"util.Money\",\"name\":\"Money\",\"package\":\"util\",\"kind\":\"enum\",\"fields\":0,\"methods\":0}",
+                "");
+        assertEquals(expected, export(model(), GraphExporter.Format.JSONL));
+    }
+
+    @Test
+    void graphMLIsWellFormed() throws Exception {
+        Map<String, ClassInfo> model = model();
+        model.get("shop.Cart").addDependency("Base");
+        String graphML = export(model, GraphExporter.Format.GRAPHML);
+
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(graphML.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(4, document.getElementsByTagName("node").getLength());
+        assertEquals(3, document.getElementsByTagName("edge").getLength());
+    }
+
+    @Test
+    void dotMarksInheritanceArrows() throws IOException {
+        String dot = export(model(), GraphExporter.Format.DOT);
+
+        assertTrue(dot.startsWith("digraph classes {\n"));
+        assertTrue(dot.contains("  \"shop.Cart\" -> \"shop.Base\" [kind=\"extends\", arrowhead=empty];\n"));
+        assertTrue(dot.contains("  \"shop.Cart\" -> \"shop.Priced\" [kind=\"implements\", arrowhead=empty, style=dashed];\n"));
+        assertTrue(dot.contains("  \"shop.Cart\" -> \"util.Money\" [kind=\"uses\", style=dashed];\n"));
+        assertTrue(dot.endsWith("}\n"));
+    }
+
+    @Test
+    void componentEdgesOnlyPointAtOtherComponents() throws IOException {
+        Map<String, ComponentInfo> components = new HashMap<>();
+        ComponentInfo shop = new ComponentInfo("shop");
+        shop.addClass("Cart");
+        shop.addDependency("util");
+        shop.addDependency("shop");
+        shop.addDependency("java.util");
+        components.put("shop", shop);
+        components.put("util", new ComponentInfo("util"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new GraphExporter().exportComponents(components, out, GraphExporter.Format.JSONL);
+
+        assertEquals(String.join("\n",
+                "{\"type\":\"node\",\"id\":\"shop\",\"classes\":1,\"interfaces\":0,\"provided\":0,\"required\":0}",
+                "{\"type\":\"edge\",\"source\":\"shop\",\"target\":\"util\",\"kind\":\"uses\"}",
+                "{\"type\":\"node\",\"id\":\"util\",\"classes\":0,\"interfaces\":0,\"provided\":0,\"required\":0}",
+                ""), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void formatFollowsTheExtension() {
+        assertEquals(GraphExporter.Format.JSONL, GraphExporter.Format.fromFileName("out/graph.ndjson"));
+        assertEquals(GraphExporter.Format.GRAPHML, GraphExporter.Format.fromFileName("graph.GraphML"));
+        assertEquals(GraphExporter.Format.DOT, GraphExporter.Format.fromFileName("graph.gv"));
+        assertThrows(IllegalArgumentException.class, () -> GraphExporter.Format.fromFileName("graph.svg"));
+    }
+
+    /** Cart extends Base, implements Priced and uses Money (twice) and a class outside the model */
+    private static Map<String, ClassInfo> model() {
+        Map<String, ClassInfo> model = new HashMap<>();
+        ClassInfo cart = add(model, "Cart", "shop");
+        cart.setSuperClass("Base");
+        cart.addInterface("Priced");
+        cart.addDependency("Money");
+        cart.addDependency("util.Money");
+        cart.addDependency("java.util.List");
+        cart.addField(new FieldInfo("total", "Money", "private"));
+        add(model, "Base", "shop").setAbstract(true);
+        add(model, "Priced", "shop").setInterface(true);
+        add(model, "Money", "util").setEnum(true);
+        return model;
+    }
+
+    private static ClassInfo add(Map<String, ClassInfo> model, String name, String packageName) {
+        ClassInfo classInfo = new ClassInfo(name, packageName);
+        model.put(classInfo.getFullName(), classInfo);
+        return classInfo;
+    }
+
+    private static String export(Map<String, ClassInfo> model, GraphExporter.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new GraphExporter().exportClasses(model, out, format);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
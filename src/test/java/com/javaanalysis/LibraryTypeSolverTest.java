@@ -0,0 +1,124 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibraryTypeSolverTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void indexCoversDirectoriesAndTheJarsBelowThem() throws IOException {
+        writeLibraries();
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        LibraryTypeSolver solver = new LibraryTypeSolver(List.of(classes(), lib(), directory.resolve("missing.jar")));
+        solver.setMetrics(metrics);
+
+        // ParameterInfo, DiagramRenderer$Layout and lib.Plain; not META-INF or module-info
+        assertEquals(3, solver.getIndexedCount());
+        assertEquals(1, metrics.getCount("library.archives"));
+        assertEquals(3, metrics.getCount("library.classes"));
+    }
+
+    @Test
+    void onlyIndexedNamesAreLoaded() throws IOException {
+        writeLibraries();
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        try (LibraryTypeSolver solver = new LibraryTypeSolver(List.of(classes(), lib()))) {
+            solver.setMetrics(metrics);
+
+            assertFalse(solver.tryToSolveType("com.javaanalysis.Missing").isSolved());
+            assertFalse(solver.tryToSolveType("com.javaanalysis.DiagramRenderer$Layout").isSolved());
+            assertNull(stage(metrics, "library.load"), "unknown names must not read a class file");
+
+            // Nested classes are found by their canonical name
+            solver.tryToSolveType("com.javaanalysis.DiagramRenderer.Layout");
+            solver.tryToSolveType("com.javaanalysis.ParameterInfo");
+            assertEquals(2, stage(metrics, "library.load").getCount());
+        }
+    }
+
+    @Test
+    void copiesShareTheIndex() throws IOException {
+        writeLibraries();
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        LibraryTypeSolver solver = new LibraryTypeSolver(List.of(classes(), lib()));
+        solver.setMetrics(metrics);
+        LibraryTypeSolver copy = solver.copy();
+
+        assertEquals(3, copy.getIndexedCount());
+        assertEquals(3, solver.getIndexedCount());
+        assertEquals(1, stage(metrics, "library.index").getCount());
+        assertNull(copy.getParent());
+    }
+
+    @Test
+    void parentCanBeSetOnce() {
+        LibraryTypeSolver solver = new LibraryTypeSolver(List.of(directory));
+        assertThrows(IllegalStateException.class, () -> solver.setParent(solver));
+        solver.setParent(new LibraryTypeSolver(List.of(directory)));
+        assertThrows(IllegalStateException.class, () -> solver.setParent(new LibraryTypeSolver(List.of(directory))));
+    }
+
+    private Path classes() {
+        return directory.resolve("classes");
+    }
+
+    private Path lib() {
+        return directory.resolve("lib");
+    }
+
+    /**
+     * A class directory with a real class file, and a directory with a jar holding a nested
+     * class, an unreadable class that is only indexed, and entries that must be skipped
+     */
+    private void writeLibraries() throws IOException {
+        Path classFile = classes().resolve("com/javaanalysis/ParameterInfo.class");
+        Files.createDirectories(classFile.getParent());
+        Files.write(classFile, classBytes("ParameterInfo.class"));
+        Files.write(classes().resolve("module-info.class"), new byte[]{0});
+
+        Path jar = lib().resolve("library.jar");
+        Files.createDirectories(jar.getParent());
+        try (OutputStream out = Files.newOutputStream(jar); ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("com/javaanalysis/DiagramRenderer$Layout.class"));
+            zip.write(classBytes("DiagramRenderer$Layout.class"));
+            zip.putNextEntry(new ZipEntry("lib/Plain.class"));
+            zip.write(new byte[]{0});
+            zip.putNextEntry(new ZipEntry("META-INF/versions/21/lib/Plain.class"));
+            zip.write(new byte[]{0});
+            zip.putNextEntry(new ZipEntry("lib/package-info.class"));
+            zip.write(new byte[]{0});
+            zip.putNextEntry(new ZipEntry("lib/readme.txt"));
+            zip.write(new byte[]{0});
+            zip.closeEntry();
+        }
+    }
+
+    private static byte[] classBytes(String name) throws IOException {
+        try (InputStream in = ParameterInfo.class.getResourceAsStream(name)) {
+            assertNotNull(in, name);
+            return in.readAllBytes();
+        }
+    }
+
+    private static AnalysisMetrics.Snapshot stage(AnalysisMetrics metrics, String name) {
+        for (AnalysisMetrics.Snapshot stage : metrics.getStages()) {
+            if (stage.getStage().equals(name)) {
+                return stage;
+            }
+        }
+        return null;
+    }
+}
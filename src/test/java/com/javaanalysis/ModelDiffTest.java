@@ -0,0 +1,127 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelDiffTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void reorderedListsAreNotAChange() {
+        Map<String, ClassInfo> oldModel = new HashMap<>();
+        ClassInfo cart = add(oldModel, "shop", "Cart", "Item", "Price");
+        cart.addMethod(new MethodInfo("total", "int", "public"));
+        cart.addMethod(new MethodInfo("clear", "void", "public"));
+        add(oldModel, "shop", "Item");
+        add(oldModel, "shop", "Price");
+
+        Map<String, ClassInfo> newModel = new HashMap<>();
+        ClassInfo reordered = add(newModel, "shop", "Cart", "Price", "Item");
+        reordered.addMethod(new MethodInfo("clear", "void", "public"));
+        reordered.addMethod(new MethodInfo("total", "int", "public"));
+        add(newModel, "shop", "Price");
+        add(newModel, "shop", "Item");
+
+        assertEquals(ModelDiff.signature(cart), ModelDiff.signature(reordered));
+        assertTrue(ModelDiff.compare(oldModel, newModel).isEmpty());
+    }
+
+    @Test
+    void classesAreAddedRemovedAndChanged() {
+        Map<String, ClassInfo> oldModel = new HashMap<>();
+        ClassInfo oldCart = add(oldModel, "shop", "Cart", "Item");
+        oldCart.setSuperClass("Base");
+        oldCart.addMethod(new MethodInfo("total", "int", "public"));
+        add(oldModel, "shop", "Base");
+        add(oldModel, "shop", "Item");
+        add(oldModel, "shop", "Legacy");
+
+        Map<String, ClassInfo> newModel = new HashMap<>();
+        ClassInfo newCart = add(newModel, "shop", "Cart", "Item", "Coupon");
+        newCart.setSuperClass("Entity");
+        newCart.addMethod(new MethodInfo("total", "long", "public"));
+        add(newModel, "shop", "Base");
+        add(newModel, "shop", "Entity");
+        add(newModel, "shop", "Item");
+        add(newModel, "shop", "Coupon");
+
+        ModelDiff diff = ModelDiff.compare(oldModel, newModel);
+
+        assertEquals(List.of("shop.Coupon", "shop.Entity"), names(diff.getAddedClasses()));
+        assertEquals(List.of("shop.Legacy"), names(diff.getRemovedClasses()));
+        assertEquals(1, diff.getChangedClasses().size());
+        ModelDiff.ClassChange change = diff.getChangedClasses().get(0);
+        assertEquals("shop.Cart", change.getClassName());
+        assertTrue(change.isSuperClassChanged());
+        assertFalse(change.isKindChanged());
+        assertEquals(List.of("+total(): long"), change.getAddedMembers());
+        assertEquals(List.of("+total(): int"), change.getRemovedMembers());
+        // The new superclass is reported as such, not again as a dependency
+        assertEquals(List.of("shop.Coupon"), change.getAddedDependencies());
+        assertEquals(List.of(), change.getRemovedDependencies());
+    }
+
+    @Test
+    void newComponentCyclesAreReported() throws IOException {
+        Map<String, ClassInfo> oldModel = new HashMap<>();
+        add(oldModel, "web", "Controller", "service.Service");
+        add(oldModel, "service", "Service");
+
+        Map<String, ClassInfo> newModel = new HashMap<>();
+        add(newModel, "web", "Controller", "service.Service");
+        add(newModel, "service", "Service", "web.Controller");
+
+        ModelDiff diff = ModelDiff.compare(oldModel, newModel);
+
+        assertEquals("[service -> web]", diff.getAddedComponentDependencies().toString());
+        assertEquals(List.of(), diff.getRemovedComponentDependencies());
+        assertEquals(1, diff.getNewCycles().size());
+        assertEquals(List.of("service", "web"), sorted(diff.getNewCycles().get(0).getComponents()));
+
+        Path report = directory.resolve("diff.json");
+        diff.writeJson(report);
+        String json = Files.readString(report);
+        assertTrue(json.contains("\"addedComponentDependencies\": [{\"source\": \"service\", \"target\": \"web\"}]"), json);
+        assertTrue(json.contains("\"newCycles\": [["), json);
+
+        // Comparing the other way round removes the edge and finds no new cycle
+        ModelDiff reverse = ModelDiff.compare(newModel, oldModel);
+        assertEquals("[service -> web]", reverse.getRemovedComponentDependencies().toString());
+        assertEquals(List.of(), reverse.getNewCycles());
+    }
+
+    private static ClassInfo add(Map<String, ClassInfo> model, String packageName, String name,
+                                 String... dependencies) {
+        ClassInfo classInfo = new ClassInfo(name, packageName);
+        for (String dependency : dependencies) {
+            classInfo.addDependency(dependency);
+        }
+        model.put(classInfo.getFullName(), classInfo);
+        return classInfo;
+    }
+
+    private static List<String> names(List<ClassInfo> classes) {
+        List<String> names = new ArrayList<>();
+        for (ClassInfo classInfo : classes) {
+            names.add(classInfo.getFullName());
+        }
+        return names;
+    }
+
+    private static List<String> sorted(List<String> values) {
+        List<String> copy = new ArrayList<>(values);
+        copy.sort(null);
+        return copy;
+    }
+}
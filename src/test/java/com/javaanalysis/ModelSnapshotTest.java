@@ -0,0 +1,117 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelSnapshotTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripKeepsClassesComponentsAndCalls() throws IOException {
+        Map<String, ClassInfo> model = sampleModel();
+        ComponentInfo component = new ComponentInfo("com.acme");
+        component.addClass("Cat");
+        component.addInterface("Pet");
+        component.addProvidedInterface("Pet");
+        component.addDependency("com.acme.food");
+        Map<String, List<SequenceAnalyzer.CallTrace>> calls = new LinkedHashMap<>();
+        calls.put("Cat#play", Arrays.asList(
+                new SequenceAnalyzer.CallTrace("Cat", "Toy", "roll", "void", 1),
+                new SequenceAnalyzer.CallTrace("Pet", "Cat", "eat", null, 2, true)));
+
+        Path file = directory.resolve("model.snapshot");
+        ModelSnapshot.write(file, model, Collections.singletonMap("com.acme", component), calls);
+
+        assertTrue(ModelSnapshot.isSnapshot(file));
+        try (ModelSnapshot snapshot = ModelSnapshot.open(file)) {
+            assertEquals(2, snapshot.getClassCount());
+            Map<String, ClassInfo> loaded = snapshot.getClassInfoMap();
+            assertEquals(Arrays.asList("com.acme.Cat", "com.acme.Pet"), Arrays.asList(loaded.keySet().toArray()));
+
+            ClassInfo cat = loaded.get("com.acme.Cat");
+            assertEquals("Cat", cat.getClassName());
+            assertEquals("com.acme", cat.getPackageName());
+            assertEquals("Animal", cat.getSuperClass());
+            assertEquals(Collections.singletonList("Pet"), cat.getInterfaces());
+            assertEquals(Collections.singletonList("Toy"), cat.getDependencies());
+            assertEquals(1, cat.getFields().size());
+            assertEquals("name", cat.getFields().get(0).getName());
+            assertEquals("String", cat.getFields().get(0).getType());
+            MethodInfo play = cat.getMethods().get(0);
+            assertEquals("play", play.getName());
+            assertTrue(play.isStatic());
+            assertEquals("toy", play.getParameters().get(0).getName());
+            assertEquals("Toy", play.getParameters().get(0).getType());
+            assertTrue(loaded.get("com.acme.Pet").isInterface());
+
+            ComponentInfo loadedComponent = snapshot.getComponentMap().get("com.acme");
+            assertEquals(component.getClasses(), loadedComponent.getClasses());
+            assertEquals(component.getProvidedInterfaces(), loadedComponent.getProvidedInterfaces());
+            assertEquals(component.getDependencies(), loadedComponent.getDependencies());
+
+            List<SequenceAnalyzer.CallTrace> traces = snapshot.getCalls("Cat", "play");
+            assertEquals(2, traces.size());
+            assertEquals("Toy", traces.get(0).targetClass);
+            assertEquals("roll", traces.get(0).methodName);
+            assertNull(traces.get(1).returnType);
+            assertTrue(traces.get(1).dispatch);
+            assertNull(snapshot.getCalls("Cat", "sleep"));
+        }
+    }
+
+    @Test
+    void rejectsOtherVersion() throws IOException {
+        Path file = directory.resolve("model.snapshot");
+        ModelSnapshot.write(file, sampleModel(), null, null);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putShort(4, (short) (ModelSnapshot.VERSION + 1));
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> ModelSnapshot.open(file));
+        assertTrue(e.getMessage().contains("version"), e.getMessage());
+    }
+
+    @Test
+    void rejectsTruncatedFile() throws IOException {
+        Path file = directory.resolve("model.snapshot");
+        ModelSnapshot.write(file, sampleModel(), null, null);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 8));
+
+        IOException e = assertThrows(IOException.class, () -> ModelSnapshot.open(file));
+        assertTrue(e.getMessage().contains("Truncated"), e.getMessage());
+    }
+
+    private static Map<String, ClassInfo> sampleModel() {
+        ClassInfo cat = new ClassInfo("Cat", "com.acme");
+        cat.setSuperClass("Animal");
+        cat.addInterface("Pet");
+        cat.addDependency("Toy");
+        cat.addField(new FieldInfo("name", "String", "private"));
+        MethodInfo play = new MethodInfo("play", "void", "public");
+        play.setStatic(true);
+        play.addParameter(new ParameterInfo("toy", "Toy"));
+        cat.addMethod(play);
+
+        ClassInfo pet = new ClassInfo("Pet", "com.acme");
+        pet.setInterface(true);
+
+        Map<String, ClassInfo> model = new LinkedHashMap<>();
+        model.put("com.acme.Pet", pet);
+        model.put("com.acme.Cat", cat);
+        return model;
+    }
+}
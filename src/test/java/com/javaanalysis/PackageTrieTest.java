@@ -0,0 +1,98 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackageTrieTest {
+    @Test
+    void depthIsTheDeepestPackage() {
+        assertEquals(4, new PackageTrie(components()).getDepth());
+    }
+
+    @Test
+    void rollUpFoldsSubPackagesAndQualifiesTheirClasses() {
+        PackageTrie trie = new PackageTrie(components());
+
+        Map<String, ComponentInfo> level3 = trie.rollUp(3);
+        assertEquals(set("com.acme.core", "com.acme.web", "com.other"), new TreeSet<>(level3.keySet()));
+        ComponentInfo core = level3.get("com.acme.core");
+        assertEquals(set("Service", "db.Jdbc"), core.getClasses());
+        assertEquals(set("Repository"), core.getProvidedInterfaces());
+        assertTrue(core.getDependencies().isEmpty(), "dependency inside the component is dropped");
+        assertEquals(set("com.acme.core", "org.lib"), level3.get("com.acme.web").getDependencies());
+
+        Map<String, ComponentInfo> level2 = trie.rollUp(2);
+        assertEquals(set("com.acme", "com.other"), new TreeSet<>(level2.keySet()));
+        assertEquals(set("core.Service", "core.db.Jdbc", "web.Controller"), level2.get("com.acme").getClasses());
+        assertEquals(set("core.Repository"), level2.get("com.acme").getInterfaces());
+        assertEquals(set("org.lib"), level2.get("com.acme").getDependencies());
+        assertEquals(set("com.acme"), level2.get("com.other").getDependencies());
+
+        Map<String, ComponentInfo> level1 = trie.rollUp(1);
+        assertEquals(set("com"), level1.keySet());
+        assertEquals(set("acme.core.Service", "acme.core.db.Jdbc", "acme.web.Controller", "other.Client"),
+                level1.get("com").getClasses());
+        assertEquals(set("org.lib"), level1.get("com").getDependencies());
+    }
+
+    @Test
+    void levelsAreCachedAndIndependentOfOrder() {
+        PackageTrie first = new PackageTrie(components());
+        PackageTrie second = new PackageTrie(components());
+        first.rollUp(1);
+
+        assertEquals(second.rollUp(2).get("com.acme").getClasses(), first.rollUp(2).get("com.acme").getClasses());
+        assertSame(first.rollUp(2).get("com.acme"), first.rollUp(2).get("com.acme"));
+    }
+
+    @Test
+    void levelAtOrBeyondTheDepthReturnsTheLeaves() {
+        Map<String, ComponentInfo> leaves = new PackageTrie(components()).rollUp(9);
+
+        assertEquals(components().keySet(), leaves.keySet());
+        assertEquals(set("Jdbc"), leaves.get("com.acme.core.db").getClasses());
+        assertThrows(UnsupportedOperationException.class, () -> leaves.remove("com.other"));
+    }
+
+    @Test
+    void levelBelowOneIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new PackageTrie(components()).rollUp(0));
+    }
+
+    private static Map<String, ComponentInfo> components() {
+        Map<String, ComponentInfo> components = new HashMap<>();
+        ComponentInfo web = component(components, "com.acme.web");
+        web.addClass("Controller");
+        web.addDependency("com.acme.core");
+        web.addDependency("org.lib");
+        ComponentInfo core = component(components, "com.acme.core");
+        core.addClass("Service");
+        core.addInterface("Repository");
+        core.addProvidedInterface("Repository");
+        ComponentInfo db = component(components, "com.acme.core.db");
+        db.addClass("Jdbc");
+        db.addDependency("com.acme.core");
+        ComponentInfo other = component(components, "com.other");
+        other.addClass("Client");
+        other.addDependency("com.acme.web");
+        return components;
+    }
+
+    private static ComponentInfo component(Map<String, ComponentInfo> components, String name) {
+        ComponentInfo component = new ComponentInfo(name);
+        components.put(name, component);
+        return component;
+    }
+
+    private static Set<String> set(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+}
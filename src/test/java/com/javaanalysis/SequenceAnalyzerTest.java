@@ -0,0 +1,159 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceAnalyzerTest {
+    @TempDir
+    Path directory;
+
+    private Path sources;
+
+    @BeforeEach
+    void writeFixture() throws IOException {
+        sources = directory.resolve("src");
+        write("com/shop/Shop.java",
+                "package com.shop;",
+                "import com.shop.pay.Payment;",
+                "public class Shop {",
+                "    private final Cart cart = new Cart();",
+                "    private Payment payment;",
+                "    public void checkout() {",
+                "        int total = cart.total();",
+                "        for (int i = 0; i < 3; i++) { cart.audit(); }",
+                "        payment.pay(total);",
+                "        cart.clear();",
+                "    }",
+                "}");
+        write("com/shop/Cart.java",
+                "package com.shop;",
+                "public class Cart {",
+                "    private final Item item = new Item();",
+                "    public int total() { return item.price() + item.tax(); }",
+                "    public void audit() { item.price(); }",
+                "    public void clear() { }",
+                "}");
+        write("com/shop/Item.java",
+                "package com.shop;",
+                "public class Item {",
+                "    private final Catalog catalog = new Catalog();",
+                "    public int price() { return catalog.lookup(); }",
+                "    public int tax() { return catalog.rate(); }",
+                "}");
+        write("com/shop/Catalog.java",
+                "package com.shop;",
+                "public class Catalog {",
+                "    public int lookup() { return 1; }",
+                "    public int rate() { return 2; }",
+                "}");
+        write("com/shop/pay/Payment.java",
+                "package com.shop.pay;",
+                "public interface Payment { void pay(int amount); }");
+        write("com/shop/pay/Card.java",
+                "package com.shop.pay;",
+                "public class Card implements Payment {",
+                "    private final Ledger ledger = new Ledger();",
+                "    public void pay(int amount) { ledger.record(amount); }",
+                "}");
+        write("com/shop/pay/Cash.java",
+                "package com.shop.pay;",
+                "public class Cash implements Payment {",
+                "    public void pay(int amount) { }",
+                "}");
+        write("com/shop/pay/Ledger.java",
+                "package com.shop.pay;",
+                "public class Ledger { public void record(int amount) { } }");
+    }
+
+    @Test
+    void parallelTraceEqualsSerialTrace() throws IOException {
+        Map<String, ClassInfo> model = new JavaSourceAnalyzer().analyzeDirectory(sources.toString());
+
+        List<String> serial;
+        List<String> parallel;
+        try (SequenceAnalyzer analyzer = analyzer(1, model)) {
+            serial = describe(analyzer.analyze("com.shop.Shop", "checkout"));
+        }
+        try (SequenceAnalyzer analyzer = analyzer(4, model)) {
+            parallel = describe(analyzer.analyze("com.shop.Shop", "checkout"));
+        }
+
+        assertTrue(serial.size() > 5, "fixture traced too little: " + serial);
+        assertTrue(serial.stream().anyMatch(call -> call.contains("Catalog.lookup")), serial.toString());
+        assertEquals(serial, parallel);
+    }
+
+    @Test
+    void analyzerIsReusedUntilClosed() throws IOException {
+        Map<String, ClassInfo> model = new JavaSourceAnalyzer().analyzeDirectory(sources.toString());
+        SequenceAnalyzer analyzer = analyzer(4, model);
+
+        List<String> first = describe(analyzer.analyze("com.shop.Shop", "checkout"));
+        List<String> second = describe(analyzer.analyze("com.shop.Shop", "checkout"));
+        assertEquals(first, second);
+        assertThrows(IllegalStateException.class, () -> analyzer.setParallelism(2));
+
+        analyzer.close();
+        assertThrows(IllegalStateException.class, () -> analyzer.analyze("com.shop.Shop", "checkout"));
+    }
+
+    @Test
+    void qualifiedEntryPointUsesItsPackage() throws IOException {
+        // Same simple name in another package, which a qualified entry point must not pick
+        write("com/other/Shop.java",
+                "package com.other;",
+                "public class Shop { public void checkout() { } }");
+        try (SequenceAnalyzer analyzer = analyzer(1, null)) {
+            assertEquals(sources.resolve("com/shop/Shop.java"), analyzer.findSourceFile("com.shop.Shop"));
+            assertEquals(sources.resolve("com/other/Shop.java"), analyzer.findSourceFile("com.other.Shop"));
+            assertNull(analyzer.findSourceFile("com.missing.Shop"));
+            assertTrue(analyzer.analyze("com.other.Shop", "checkout").isEmpty());
+
+            List<SequenceAnalyzer.CallTrace> traces = analyzer.analyze("com.shop.Shop", "checkout");
+            assertFalse(traces.isEmpty());
+            assertEquals("Shop", traces.get(0).sourceClass);
+        }
+    }
+
+    @Test
+    void simpleClassNameDropsThePackage() {
+        assertEquals("Shop", SequenceAnalyzer.simpleClassName("Shop"));
+        assertEquals("Shop", SequenceAnalyzer.simpleClassName("com.shop.Shop"));
+    }
+
+    private SequenceAnalyzer analyzer(int parallelism, Map<String, ClassInfo> model) {
+        SequenceAnalyzer analyzer = new SequenceAnalyzer(sources.toString());
+        analyzer.setParallelism(parallelism);
+        analyzer.setMaxDepth(4);
+        analyzer.setMaxImplementations(2);
+        if (model != null) {
+            analyzer.setClassModel(model);
+        }
+        return analyzer;
+    }
+
+    private void write(String path, String... lines) throws IOException {
+        Path file = sources.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, String.join("\n", lines).getBytes());
+    }
+
+    private static List<String> describe(List<SequenceAnalyzer.CallTrace> traces) {
+        List<String> calls = new ArrayList<>();
+        for (SequenceAnalyzer.CallTrace trace : traces) {
+            calls.add(trace.depth + " " + trace.sourceClass + " -> " + trace.targetClass + "." + trace.methodName
+                    + " : " + trace.returnType + (trace.dispatch ? " (dispatch)" : ""));
+        }
+        return calls;
+    }
+}
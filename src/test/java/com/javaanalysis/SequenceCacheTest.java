@@ -0,0 +1,111 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceCacheTest {
+    @TempDir
+    Path directory;
+
+    private Path sources;
+    private Path cat;
+    private String entryKey;
+    private String outputBasePath;
+
+    @BeforeEach
+    void storeResult() throws IOException {
+        sources = Files.createDirectories(directory.resolve("src/com/acme"));
+        cat = Files.write(sources.resolve("Cat.java"), "class Cat { void play() { new Toy().roll(); } }".getBytes());
+        Files.write(sources.resolve("Dog.java"), "class Dog { }".getBytes());
+        entryKey = SequenceCache.entryKey(directory.resolve("src").toString(), "Cat", "play", "depth=1");
+        outputBasePath = directory.resolve("out/sequence").toString();
+        Files.createDirectories(directory.resolve("out"));
+        Files.write(Path.of(outputBasePath + ".puml"), "@startuml\n@enduml\n".getBytes());
+        Files.write(Path.of(outputBasePath + ".png"), new byte[]{1, 2, 3});
+
+        // Toy was looked up but not found, Cat was read
+        List<SequenceAnalyzer.CallTrace> traces = Collections.singletonList(
+                new SequenceAnalyzer.CallTrace("Cat", "Toy", "roll", null, 1));
+        newCache().store(entryKey, directory.resolve("src"), Collections.singleton(cat),
+                new HashSet<>(Arrays.asList("Cat", "Toy")), traces, outputBasePath);
+    }
+
+    @Test
+    void hitRestoresTracesAndOutputs() throws IOException {
+        Files.delete(Path.of(outputBasePath + ".png"));
+
+        List<SequenceAnalyzer.CallTrace> traces = lookup();
+        assertNotNull(traces);
+        assertEquals(1, traces.size());
+        assertEquals("Toy", traces.get(0).targetClass);
+        assertTrue(Files.exists(Path.of(outputBasePath + ".png")));
+    }
+
+    @Test
+    void unrelatedFilesDoNotInvalidate() throws IOException {
+        Files.write(sources.resolve("Dog.java"), "class Dog { void bark() { } }".getBytes());
+        Files.write(sources.resolve("Bird.java"), "class Bird { }".getBytes());
+
+        assertNotNull(lookup());
+    }
+
+    @Test
+    void changedFileInvalidates() throws IOException {
+        Files.write(cat, "class Cat { void play() { } }".getBytes());
+        assertNull(lookup());
+
+        Files.write(cat, "class Cat { void play() { new Toy().roll(); } }".getBytes());
+        assertNotNull(lookup(), "same content as when stored");
+    }
+
+    @Test
+    void addedFileOfALookedUpNameInvalidates() throws IOException {
+        Files.write(sources.resolve("Toy.java"), "class Toy { void roll() { } }".getBytes());
+
+        assertNull(lookup());
+    }
+
+    @Test
+    void addedClassOfTheSameNameElsewhereInvalidates() throws IOException {
+        Path other = Files.createDirectories(directory.resolve("src/com/other"));
+        Files.write(other.resolve("Cat.java"), "class Cat { }".getBytes());
+
+        assertNull(lookup());
+    }
+
+    @Test
+    void deletedFileInvalidates() throws IOException {
+        Files.delete(cat);
+
+        assertNull(lookup());
+    }
+
+    @Test
+    void otherSettingsMiss() throws IOException {
+        String otherKey = SequenceCache.entryKey(directory.resolve("src").toString(), "Cat", "play", "depth=2");
+
+        assertNull(newCache().lookup(otherKey, outputBasePath));
+    }
+
+    /**
+     * Looks up with a fresh cache, as a new run would; a cache remembers file hashes
+     */
+    private List<SequenceAnalyzer.CallTrace> lookup() throws IOException {
+        return newCache().lookup(entryKey, outputBasePath);
+    }
+
+    private SequenceCache newCache() {
+        return new SequenceCache(directory.resolve("cache"));
+    }
+}
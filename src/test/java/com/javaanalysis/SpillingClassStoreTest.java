@@ -0,0 +1,154 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillingClassStoreTest {
+    private static final int CLASSES = 50;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void getReadsSpilledClassesBack() throws IOException {
+        try (SpillingClassStore store = fill(new SpillingClassStore(1024, directory))) {
+            assertTrue(store.hasSpilled());
+            assertEquals(CLASSES, store.size());
+            for (int i = 0; i < CLASSES; i++) {
+                assertClass(i, store.get(key(i)));
+            }
+            assertNull(store.get("com.acme.Missing"));
+        }
+    }
+
+    @Test
+    void iterationVisitsEveryClassOnce() throws IOException {
+        try (SpillingClassStore store = fill(new SpillingClassStore(1024, directory))) {
+            Set<String> seen = new HashSet<>();
+            for (Map.Entry<String, ClassInfo> entry : store.entrySet()) {
+                assertTrue(seen.add(entry.getKey()), "visited twice: " + entry.getKey());
+                assertClass(Integer.parseInt(entry.getKey().substring("com.acme.C".length())), entry.getValue());
+            }
+            assertEquals(CLASSES, seen.size());
+            assertEquals(seen, new HashSet<>(store.keySet()));
+            assertEquals(seen, store.getClassNames().keySet());
+            assertEquals("com.acme", store.getClassNames().get(key(7)).getPackageName());
+        }
+    }
+
+    @Test
+    void replacedAndRemovedClassesAreNotReadFromTheLog() throws IOException {
+        try (SpillingClassStore store = fill(new SpillingClassStore(1024, directory))) {
+            ClassInfo replacement = new ClassInfo("C3", "com.acme");
+            replacement.addDependency("Replaced");
+            assertClass(3, store.put(key(3), replacement));
+            assertEquals("Replaced", store.get(key(3)).getDependencies().get(0));
+
+            assertClass(4, store.remove(key(4)));
+            assertNull(store.get(key(4)));
+            assertFalse(store.keySet().contains(key(4)));
+            assertEquals(CLASSES - 1, store.size());
+        }
+    }
+
+    @Test
+    void closeDeletesTheLog() throws IOException {
+        SpillingClassStore store = fill(new SpillingClassStore(1024, directory));
+        assertTrue(store.hasSpilled());
+        store.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void componentsAndExportReadSpilledClassesOneAtATime() throws IOException {
+        AtomicInteger reads = new AtomicInteger();
+        try (SpillingClassStore store = new SpillingClassStore(1024, directory) {
+            @Override
+            public ClassInfo get(Object key) {
+                reads.incrementAndGet();
+                return super.get(key);
+            }
+
+            @Override
+            public Set<Entry<String, ClassInfo>> entrySet() {
+                throw new AssertionError("the whole model was iterated");
+            }
+        }) {
+            Map<String, ClassInfo> resident = new HashMap<>();
+            for (int i = 0; i < CLASSES; i++) {
+                ClassInfo classInfo = new ClassInfo("C" + i, "p" + (i % 5));
+                classInfo.setInterface(i % 7 == 0);
+                classInfo.addDependency("C" + ((i + 1) % CLASSES));
+                classInfo.addDependency("p" + ((i + 2) % 5) + ".C" + ((i + 2) % CLASSES));
+                store.put(classInfo.getFullName(), classInfo);
+                resident.put(classInfo.getFullName(), classInfo);
+            }
+            assertTrue(store.hasSpilled());
+
+            new ClassIndex(store);
+            assertEquals(0, reads.get(), "building the index must not read classes");
+
+            Map<String, ComponentInfo> spilled = new ComponentAnalyzer().analyzeComponents(store);
+            assertEquals(CLASSES, reads.get());
+            Map<String, ComponentInfo> expected = new ComponentAnalyzer().analyzeComponents(resident);
+            assertEquals(expected.keySet(), spilled.keySet());
+            for (ComponentInfo component : expected.values()) {
+                ComponentInfo actual = spilled.get(component.getComponentName());
+                assertEquals(component.getClasses(), actual.getClasses());
+                assertEquals(component.getInterfaces(), actual.getInterfaces());
+                assertEquals(component.getDependencies(), actual.getDependencies());
+                assertEquals(component.getRequiredInterfaces(), actual.getRequiredInterfaces());
+            }
+
+            ByteArrayOutputStream fromStore = new ByteArrayOutputStream();
+            ByteArrayOutputStream fromMap = new ByteArrayOutputStream();
+            new GraphExporter().exportClasses(store, fromStore, GraphExporter.Format.JSONL);
+            new GraphExporter().exportClasses(resident, fromMap, GraphExporter.Format.JSONL);
+            assertEquals(fromMap.toString(), fromStore.toString());
+        }
+    }
+
+    private static SpillingClassStore fill(SpillingClassStore store) {
+        for (int i = 0; i < CLASSES; i++) {
+            ClassInfo classInfo = new ClassInfo("C" + i, "com.acme");
+            classInfo.setSuperClass("Base");
+            classInfo.addDependency("D" + i);
+            classInfo.addField(new FieldInfo("f" + i, "int", "private"));
+            MethodInfo method = new MethodInfo("m" + i, "void", "public");
+            method.addParameter(new ParameterInfo("p", "String"));
+            classInfo.addMethod(method);
+            store.put(key(i), classInfo);
+        }
+        return store;
+    }
+
+    private static String key(int i) {
+        return "com.acme.C" + i;
+    }
+
+    private static void assertClass(int i, ClassInfo classInfo) {
+        assertNotNull(classInfo, "class " + i);
+        assertEquals("C" + i, classInfo.getClassName());
+        assertEquals("com.acme", classInfo.getPackageName());
+        assertEquals("Base", classInfo.getSuperClass());
+        assertEquals("D" + i, classInfo.getDependencies().get(0));
+        assertEquals("f" + i, classInfo.getFields().get(0).getName());
+        assertEquals("m" + i, classInfo.getMethods().get(0).getName());
+        assertEquals("String", classInfo.getMethods().get(0).getParameters().get(0).getType());
+    }
+}
@@ -0,0 +1,99 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubtypeIndexTest {
+
+    @Test
+    void subtypesAreTransitive() {
+        Map<String, ClassInfo> model = shapes();
+        SubtypeIndex index = new SubtypeIndex(model);
+
+        assertEquals(List.of("Base", "Circle", "Cube", "Solid", "Square", "Template"),
+                names(index.subtypes(model.get("geo.Shape"))));
+        assertEquals(List.of("Circle", "Square"), names(index.subtypes(model.get("geo.Base"))));
+        assertEquals(List.of(), names(index.subtypes(model.get("geo.Circle"))));
+        assertEquals(List.of(), names(index.subtypes(new ClassInfo("Shape", "geo"))));
+    }
+
+    @Test
+    void implementationsAreTheNearestDeclaringClasses() {
+        Map<String, ClassInfo> model = shapes();
+        SubtypeIndex index = new SubtypeIndex(model);
+        ClassInfo shape = model.get("geo.Shape");
+
+        // Square inherits Base's area(); the abstract Template declares none that is concrete
+        assertEquals(List.of("Base", "Circle", "Cube"), names(index.implementations(shape, "area", 0, 10)));
+        assertEquals(List.of("Base", "Circle"), names(index.implementations(shape, "area", 0, 2)));
+        assertEquals(List.of(), names(index.implementations(shape, "area", 1, 10)));
+        assertEquals(List.of(), names(index.implementations(shape, "area", 0, 0)));
+    }
+
+    @Test
+    void inheritanceCyclesDoNotLoop() {
+        Map<String, ClassInfo> model = new HashMap<>();
+        add(model, "Api", true).addMethod(abstractMethod("run"));
+        ClassInfo first = add(model, "First", false);
+        first.setSuperClass("Second");
+        first.addInterface("Api");
+        add(model, "Second", false).setSuperClass("First");
+        SubtypeIndex index = new SubtypeIndex(model);
+
+        assertEquals(List.of("First", "Second"), names(index.subtypes(model.get("geo.Api"))));
+        assertEquals(List.of(), names(index.implementations(model.get("geo.Api"), "run", 0, 10)));
+    }
+
+    /**
+     * Shape <- Base (area) <- Circle (area), Square; Shape <- Solid <- Cube (area);
+     * Shape <- Template (abstract area)
+     */
+    private static Map<String, ClassInfo> shapes() {
+        Map<String, ClassInfo> model = new HashMap<>();
+        add(model, "Shape", true).addMethod(abstractMethod("area"));
+        ClassInfo base = add(model, "Base", false);
+        base.addInterface("Shape");
+        base.addMethod(new MethodInfo("area", "double", "public"));
+        ClassInfo circle = add(model, "Circle", false);
+        circle.setSuperClass("Base");
+        circle.addMethod(new MethodInfo("area", "double", "public"));
+        add(model, "Square", false).setSuperClass("Base");
+        ClassInfo solid = add(model, "Solid", true);
+        solid.addInterface("Shape");
+        ClassInfo cube = add(model, "Cube", false);
+        cube.addInterface("Solid");
+        cube.addMethod(new MethodInfo("area", "double", "public"));
+        ClassInfo template = add(model, "Template", false);
+        template.setAbstract(true);
+        template.addInterface("Shape");
+        template.addMethod(abstractMethod("area"));
+        return model;
+    }
+
+    private static MethodInfo abstractMethod(String name) {
+        MethodInfo method = new MethodInfo(name, "double", "public");
+        method.setAbstract(true);
+        return method;
+    }
+
+    private static ClassInfo add(Map<String, ClassInfo> model, String name, boolean isInterface) {
+        ClassInfo classInfo = new ClassInfo(name, "geo");
+        classInfo.setInterface(isInterface);
+        model.put(classInfo.getFullName(), classInfo);
+        return classInfo;
+    }
+
+    private static List<String> names(List<ClassInfo> classes) {
+        List<String> names = new ArrayList<>();
+        for (ClassInfo classInfo : classes) {
+            names.add(classInfo.getClassName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,114 @@
+package com.javaanalysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceCompactorTest {
+    @Test
+    void repeatedCallWithItsCalleesIsFoldedIntoOneLoop() {
+        List<SequenceAnalyzer.CallTrace> traces = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            traces.add(call("Cat", "Toy", "roll", 1));
+            traces.add(call("Toy", "Ball", "bounce", 2));
+        }
+        traces.add(call("Cat", "Bowl", "fill", 1));
+
+        List<TraceCompactor.Node> nodes = new TraceCompactor().compact(traces);
+
+        assertEquals("loop 3 [roll [bounce]], fill", describe(nodes));
+    }
+
+    @Test
+    void blockOfSeveralCallsIsFoldedWhole() {
+        List<SequenceAnalyzer.CallTrace> traces = Arrays.asList(
+                call("Cat", "Toy", "roll", 1),
+                call("Cat", "Toy", "stop", 1),
+                call("Cat", "Toy", "roll", 1),
+                call("Cat", "Toy", "stop", 1),
+                call("Cat", "Toy", "roll", 1));
+
+        assertEquals("loop 2 [roll, stop], roll", describe(new TraceCompactor().compact(traces)));
+    }
+
+    @Test
+    void callsWithDifferentCalleesAreNotFolded() {
+        List<SequenceAnalyzer.CallTrace> traces = Arrays.asList(
+                call("Cat", "Toy", "roll", 1),
+                call("Toy", "Ball", "bounce", 2),
+                call("Cat", "Toy", "roll", 1),
+                call("Toy", "Ball", "spin", 2));
+
+        assertEquals("roll [bounce], roll [spin]", describe(new TraceCompactor().compact(traces)));
+    }
+
+    @Test
+    void loopsInsideCalleesAreFolded() {
+        List<SequenceAnalyzer.CallTrace> traces = Arrays.asList(
+                call("Cat", "Toy", "roll", 1),
+                call("Toy", "Ball", "bounce", 2),
+                call("Toy", "Ball", "bounce", 2),
+                call("Toy", "Ball", "bounce", 2),
+                call("Toy", "Ball", "bounce", 2));
+
+        assertEquals("roll [loop 4 [bounce]]", describe(new TraceCompactor().compact(traces)));
+    }
+
+    @Test
+    void foldingCanBeTurnedOff() {
+        List<SequenceAnalyzer.CallTrace> traces = Arrays.asList(
+                call("Cat", "Toy", "roll", 1),
+                call("Cat", "Toy", "roll", 1));
+        TraceCompactor compactor = new TraceCompactor();
+        compactor.setFoldLoops(false);
+
+        assertEquals("roll, roll", describe(compactor.compact(traces)));
+    }
+
+    @Test
+    void calleesBeyondTheBudgetAreSummarized() {
+        List<SequenceAnalyzer.CallTrace> traces = Arrays.asList(
+                call("Cat", "Toy", "roll", 1),
+                call("Toy", "Ball", "bounce", 2),
+                call("Toy", "Floor", "hit", 2),
+                call("Cat", "Bowl", "fill", 1));
+        TraceCompactor compactor = new TraceCompactor();
+        compactor.setMaxSubtreeCalls(1);
+
+        List<TraceCompactor.Node> nodes = compactor.compact(traces);
+
+        assertEquals("roll [summary 2], fill", describe(nodes));
+        assertEquals(Arrays.asList("Ball", "Floor"), nodes.get(0).getChildren().get(0).getTargets());
+    }
+
+    private static SequenceAnalyzer.CallTrace call(String source, String target, String method, int depth) {
+        return new SequenceAnalyzer.CallTrace(source, target, method, "void", depth);
+    }
+
+    private static String describe(List<TraceCompactor.Node> nodes) {
+        StringBuilder description = new StringBuilder();
+        for (TraceCompactor.Node node : nodes) {
+            if (description.length() > 0) {
+                description.append(", ");
+            }
+            switch (node.getKind()) {
+                case LOOP:
+                    description.append("loop ").append(node.getCount());
+                    break;
+                case SUMMARY:
+                    description.append("summary ").append(node.getCount());
+                    break;
+                default:
+                    description.append(node.getTrace().methodName);
+            }
+            if (!node.getChildren().isEmpty()) {
+                description.append(" [").append(describe(node.getChildren())).append(']');
+            }
+        }
+        return description.toString();
+    }
+}